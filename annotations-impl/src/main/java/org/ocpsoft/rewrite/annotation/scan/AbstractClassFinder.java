@@ -18,6 +18,13 @@ package org.ocpsoft.rewrite.annotation.scan;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import javax.servlet.ServletContext;
 
@@ -33,6 +40,13 @@ import org.ocpsoft.rewrite.annotation.spi.ClassFinder;
  */
 public abstract class AbstractClassFinder implements ClassFinder
 {
+   /**
+    * Servlet context init parameter to ignore the indexes written by the {@link AnnotationIndexProcessor} and always
+    * scan class files, by setting it to <code>false</code>. Indexes that do not cover all annotation types or classes
+    * of their location are ignored in any case.
+    */
+   public final static String CONFIG_USE_INDEX = "org.ocpsoft.rewrite.annotation.USE_INDEX";
+
    /**
     * Common logger for all implementations
     */
@@ -56,7 +70,7 @@ public abstract class AbstractClassFinder implements ClassFinder
    /**
     * The filter to check bytecode for interesting annotations
     */
-   private final ByteCodeFilter byteCodeFilter;
+   protected final ByteCodeFilter byteCodeFilter;
 
    /**
     * Initialization procedure
@@ -163,6 +177,28 @@ public abstract class AbstractClassFinder implements ClassFinder
     * @param visitor the visitor
     */
    protected void processClass(String className, InputStream classFileStream, ClassVisitor visitor)
+   {
+      if (mayContainAnnotations(className, classFileStream))
+      {
+         visitClass(className, visitor);
+      }
+   }
+
+   /**
+    * <p>
+    * Checks whether a class may contain annotations by scanning its class file with the {@link ByteCodeFilter}. If no
+    * {@link InputStream} is supplied, or the class file cannot be parsed, the class is assumed to contain annotations.
+    * </p>
+    * <p>
+    * This method does not load the class and may be called from several threads at once. The caller is responsible to
+    * close the supplied {@link InputStream}.
+    * </p>
+    * 
+    * @param className The FQCN of the class
+    * @param classFileStream The Java class file of the class (may be <code>null</code>)
+    * @return <code>true</code> if the class must be visited
+    */
+   protected boolean mayContainAnnotations(String className, InputStream classFileStream)
    {
 
       // bytecode check is only performed if the InputStream is available
@@ -179,7 +215,7 @@ public abstract class AbstractClassFinder implements ClassFinder
             // No annotations -> abort
             if (!shouldScanClass)
             {
-               return;
+               return false;
             }
 
             // filter says we should scan the class
@@ -198,6 +234,20 @@ public abstract class AbstractClassFinder implements ClassFinder
          }
       }
 
+      return true;
+
+   }
+
+   /**
+    * Loads a class without initializing it and calls {@link ClassVisitor#visit(Class)}. Classes must be visited from
+    * the thread that called {@link #findClasses(ClassVisitor)}, as visitors are not thread-safe.
+    * 
+    * @param className The FQCN of the class
+    * @param visitor the visitor
+    */
+   protected void visitClass(String className, ClassVisitor visitor)
+   {
+
       try
       {
          // request this class from the ClassLoader
@@ -220,4 +270,152 @@ public abstract class AbstractClassFinder implements ClassFinder
 
    }
 
+   /**
+    * Checks whether the indexes written by the {@link AnnotationIndexProcessor} may be used instead of scanning class
+    * files.
+    * 
+    * @return <code>false</code> if disabled with {@link #CONFIG_USE_INDEX}
+    */
+   protected boolean useAnnotationIndex()
+   {
+      String config = servletContext.getInitParameter(CONFIG_USE_INDEX);
+      return config == null || !config.trim().equalsIgnoreCase("false");
+   }
+
+   /**
+    * Reads an index written by the {@link AnnotationIndexProcessor} and returns the names of the listed classes that
+    * were found at its location. The index is only used if it covers that location: it must have looked for all
+    * annotation types of the {@link ByteCodeFilter}, and at every class found there.
+    * 
+    * @param indexStream The index (will be closed)
+    * @param location The location of the index, for logging
+    * @param classNames The names of the classes found at the location that are accepted by the {@link PackageFilter}
+    * @return the names of the classes to visit, or <code>null</code> if the classes must be scanned instead
+    * @throws IOException if the index cannot be read
+    */
+   List<String> readAnnotationIndex(InputStream indexStream, String location, Set<String> classNames)
+            throws IOException
+   {
+
+      AnnotatedClassIndex index;
+      try
+      {
+         index = AnnotatedClassIndex.read(indexStream);
+      }
+      finally
+      {
+         indexStream.close();
+      }
+
+      // custom annotation handlers may look for annotations the index did not
+      if (!index.covers(byteCodeFilter))
+      {
+         log.info("Annotation index does not look for all of " + byteCodeFilter.getTypeNames()
+                  + ", scanning classes instead: " + location);
+         return null;
+      }
+
+      // classes may have been compiled without the annotation processor
+      for (String className : classNames)
+      {
+         if (!index.isCompiled(className))
+         {
+            log.info("Annotation index does not list class " + className + ", scanning classes instead: " + location);
+            return null;
+         }
+      }
+
+      if (log.isDebugEnabled())
+      {
+         log.debug("Using annotation index: " + location);
+      }
+
+      // skip classes that are gone since the index was written
+      List<String> result = new ArrayList<String>();
+      for (String className : index.getClassNames())
+      {
+         if (classNames.contains(className))
+         {
+            result.add(className);
+         }
+      }
+      return result;
+
+   }
+
+   /**
+    * Runs the supplied tasks on a {@link ForkJoinPool} with one thread per available processor, and returns their
+    * results in the order of the tasks. Runs a single task on the calling thread.
+    * 
+    * @param tasks The tasks to run
+    * @return the results of the tasks
+    */
+   protected <T> List<T> invokeAll(List<Callable<T>> tasks)
+   {
+
+      List<T> results = new ArrayList<T>(tasks.size());
+
+      // not worth starting any threads
+      if (tasks.size() < 2)
+      {
+         for (Callable<T> task : tasks)
+         {
+            results.add(call(task));
+         }
+         return results;
+      }
+
+      ForkJoinPool pool = new ForkJoinPool(Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+      try
+      {
+         for (Future<T> future : pool.invokeAll(tasks))
+         {
+            try
+            {
+               results.add(future.get());
+            }
+            catch (InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               throw new IllegalStateException("Interrupted while scanning for classes", e);
+            }
+            catch (ExecutionException e)
+            {
+               throw rethrow(e.getCause());
+            }
+         }
+         return results;
+      }
+      finally
+      {
+         pool.shutdownNow();
+      }
+
+   }
+
+   private static <T> T call(Callable<T> task)
+   {
+      try
+      {
+         return task.call();
+      }
+      catch (Exception e)
+      {
+         throw rethrow(e);
+      }
+   }
+
+   private static RuntimeException rethrow(Throwable cause)
+   {
+      if (cause instanceof RuntimeException)
+      {
+         return (RuntimeException) cause;
+      }
+      if (cause instanceof Error)
+      {
+         throw (Error) cause;
+      }
+      return new IllegalStateException("Failed to scan for classes", cause);
+   }
+
 }
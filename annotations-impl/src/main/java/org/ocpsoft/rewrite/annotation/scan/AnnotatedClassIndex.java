@@ -0,0 +1,188 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.annotation.scan;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The index of annotated classes written at compile time by the {@link AnnotationIndexProcessor}. Lists one binary
+ * class name per line, ignoring blank lines and other lines starting with <code>#</code>. Two kinds of comment lines
+ * describe what the index covers:
+ * <ul>
+ * <li><code>#annotations</code> followed by a comma-separated list of the annotation packages or types that were looked
+ * for</li>
+ * <li><code>#compiled</code> followed by the name of a top-level class that was looked at</li>
+ * </ul>
+ * An index may only replace scanning if it was looking for all annotation types of the runtime {@link ByteCodeFilter},
+ * and if every class file of its location belongs to a top-level class that was looked at.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+final class AnnotatedClassIndex
+{
+   /**
+    * The location of the index, relative to the root of a class directory or JAR file.
+    */
+   static final String LOCATION = "META-INF/rewrite/annotated-classes.idx";
+
+   private static final String ANNOTATIONS = "#annotations ";
+   private static final String COMPILED = "#compiled ";
+
+   private final List<String> annotations;
+   private final Set<String> compiled;
+   private final Set<String> classNames;
+
+   AnnotatedClassIndex(Collection<String> annotations, Collection<String> compiled, Collection<String> classNames)
+   {
+      this.annotations = new ArrayList<String>(annotations);
+      this.compiled = new TreeSet<String>(compiled);
+      this.classNames = new TreeSet<String>(classNames);
+   }
+
+   /**
+    * Read an index. The caller is responsible to close the {@link InputStream}.
+    */
+   static AnnotatedClassIndex read(InputStream stream) throws IOException
+   {
+      List<String> annotations = new ArrayList<String>();
+      List<String> compiled = new ArrayList<String>();
+      List<String> classNames = new ArrayList<String>();
+
+      BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+         line = line.trim();
+         if (line.startsWith(ANNOTATIONS))
+         {
+            for (String annotation : line.substring(ANNOTATIONS.length()).split(","))
+            {
+               if (annotation.trim().length() > 0)
+               {
+                  annotations.add(annotation.trim());
+               }
+            }
+         }
+         else if (line.startsWith(COMPILED))
+         {
+            compiled.add(line.substring(COMPILED.length()).trim());
+         }
+         else if (line.length() > 0 && !line.startsWith("#"))
+         {
+            classNames.add(line);
+         }
+      }
+      return new AnnotatedClassIndex(annotations, compiled, classNames);
+   }
+
+   /**
+    * Write this index. The caller is responsible to close the {@link Writer}.
+    */
+   void write(Writer writer) throws IOException
+   {
+      writer.write(ANNOTATIONS);
+      for (int i = 0; i < annotations.size(); i++)
+      {
+         writer.write(i == 0 ? "" : ",");
+         writer.write(annotations.get(i));
+      }
+      writer.write('\n');
+
+      for (String className : compiled)
+      {
+         writer.write(COMPILED);
+         writer.write(className);
+         writer.write('\n');
+      }
+
+      for (String className : classNames)
+      {
+         writer.write(className);
+         writer.write('\n');
+      }
+   }
+
+   /**
+    * Returns the annotation packages or types that were looked for.
+    */
+   List<String> getAnnotations()
+   {
+      return Collections.unmodifiableList(annotations);
+   }
+
+   /**
+    * Returns the names of the top-level classes that were looked at.
+    */
+   Set<String> getCompiled()
+   {
+      return Collections.unmodifiableSet(compiled);
+   }
+
+   /**
+    * Returns the names of the annotated classes.
+    */
+   Set<String> getClassNames()
+   {
+      return Collections.unmodifiableSet(classNames);
+   }
+
+   /**
+    * Checks whether all annotation types the given {@link ByteCodeFilter} looks for were looked for by this index.
+    */
+   boolean covers(ByteCodeFilter byteCodeFilter)
+   {
+      for (String type : byteCodeFilter.getTypeNames())
+      {
+         if (!covers(type))
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private boolean covers(String type)
+   {
+      for (String annotation : annotations)
+      {
+         if (type.equals(annotation) || type.startsWith(annotation + "."))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Checks whether the class with the given binary name belongs to a top-level class that was looked at, so that it is
+    * listed if it is annotated.
+    */
+   boolean isCompiled(String className)
+   {
+      int nested = className.indexOf('$');
+      return compiled.contains(nested == -1 ? className : className.substring(0, nested));
+   }
+}
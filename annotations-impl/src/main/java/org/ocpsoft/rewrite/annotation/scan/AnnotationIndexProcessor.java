@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.annotation.scan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that writes the names of all classes carrying Rewrite or PrettyFaces annotations on the class,
+ * its fields, methods or method parameters to <code>META-INF/rewrite/annotated-classes.idx</code>.
+ * {@link WebClassesFinder} and {@link WebLibFinder} read this index instead of scanning the class files of a location
+ * that contains it, as long as it covers that location: see {@link AnnotatedClassIndex}.
+ * <p>
+ * The processor is registered as a service, so it runs whenever this library is on the annotation processor path. The
+ * annotations to look for may be changed with the <code>-Arewrite.annotationPackages</code> option, which takes a
+ * comma-separated list of package or annotation type names. Applications with custom annotation handlers must list
+ * the packages of their annotations there, or their classes are scanned at runtime.
+ * <p>
+ * Classes compiled in earlier, incremental runs stay in the index unless they are compiled again, if the earlier index
+ * can be read and looked for the same annotations. Names of classes that no longer exist are skipped at runtime.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(AnnotationIndexProcessor.PACKAGES_OPTION)
+public class AnnotationIndexProcessor extends AbstractProcessor
+{
+   static final String PACKAGES_OPTION = "rewrite.annotationPackages";
+
+   private static final String DEFAULT_PACKAGES = "org.ocpsoft.rewrite,com.ocpsoft.pretty";
+
+   private final Set<String> compiled = new TreeSet<String>();
+   private final Set<String> annotated = new TreeSet<String>();
+   private List<String> packages;
+
+   @Override
+   public SourceVersion getSupportedSourceVersion()
+   {
+      return SourceVersion.latestSupported();
+   }
+
+   @Override
+   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+   {
+      if (roundEnv.processingOver())
+      {
+         write();
+      }
+      else
+      {
+         for (Element element : roundEnv.getRootElements())
+         {
+            if (element instanceof TypeElement)
+            {
+               collect((TypeElement) element);
+            }
+         }
+      }
+
+      // let other processors see the annotations
+      return false;
+   }
+
+   /**
+    * Records the given top-level type as looked at, and it and its member types as annotated if they carry any of the
+    * annotations to look for.
+    */
+   private void collect(TypeElement type)
+   {
+      compiled.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+      collectAnnotated(type);
+   }
+
+   private void collectAnnotated(TypeElement type)
+   {
+      String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+
+      boolean found = isAnnotated(type);
+      for (Element member : type.getEnclosedElements())
+      {
+         if (member instanceof TypeElement)
+         {
+            collectAnnotated((TypeElement) member);
+         }
+         else if (!found)
+         {
+            found = isAnnotated(member);
+            if (!found && member instanceof ExecutableElement)
+            {
+               for (VariableElement parameter : ((ExecutableElement) member).getParameters())
+               {
+                  found = found || isAnnotated(parameter);
+               }
+            }
+         }
+      }
+
+      if (found)
+      {
+         annotated.add(className);
+      }
+   }
+
+   /**
+    * Checks for annotations declared directly on the element, like the {@link ByteCodeFilter} does.
+    */
+   private boolean isAnnotated(Element element)
+   {
+      for (AnnotationMirror annotation : element.getAnnotationMirrors())
+      {
+         String name = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+         for (String pkg : getPackages())
+         {
+            if (name.equals(pkg) || name.startsWith(pkg + "."))
+            {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
+   private List<String> getPackages()
+   {
+      if (packages == null)
+      {
+         String option = processingEnv.getOptions().get(PACKAGES_OPTION);
+         packages = new ArrayList<String>();
+         for (String pkg : (option == null ? DEFAULT_PACKAGES : option).split(","))
+         {
+            if (pkg.trim().length() > 0)
+            {
+               packages.add(pkg.trim());
+            }
+         }
+      }
+      return packages;
+   }
+
+   private void write()
+   {
+      if (compiled.isEmpty())
+      {
+         return;
+      }
+
+      AnnotatedClassIndex current = new AnnotatedClassIndex(getPackages(), compiled, annotated);
+      Set<String> allCompiled = new TreeSet<String>(compiled);
+      Set<String> classNames = new TreeSet<String>(annotated);
+
+      // keep classes from earlier runs that were not compiled again
+      AnnotatedClassIndex previous = read();
+      if (previous != null && previous.getAnnotations().equals(current.getAnnotations()))
+      {
+         allCompiled.addAll(previous.getCompiled());
+         for (String className : previous.getClassNames())
+         {
+            if (!current.isCompiled(className))
+            {
+               classNames.add(className);
+            }
+         }
+      }
+
+      try
+      {
+         FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                  AnnotatedClassIndex.LOCATION);
+         Writer writer = new OutputStreamWriter(file.openOutputStream(), "UTF-8");
+         try
+         {
+            new AnnotatedClassIndex(getPackages(), allCompiled, classNames).write(writer);
+         }
+         finally
+         {
+            writer.close();
+         }
+      }
+      catch (IOException e)
+      {
+         processingEnv.getMessager().printMessage(Kind.WARNING,
+                  "Could not write " + AnnotatedClassIndex.LOCATION + ": " + e.getMessage());
+      }
+   }
+
+   private AnnotatedClassIndex read()
+   {
+      try
+      {
+         FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                  AnnotatedClassIndex.LOCATION);
+         InputStream stream = file.openInputStream();
+         try
+         {
+            return AnnotatedClassIndex.read(stream);
+         }
+         finally
+         {
+            stream.close();
+         }
+      }
+      catch (IOException e)
+      {
+         // no index written yet
+         return null;
+      }
+      catch (IllegalArgumentException e)
+      {
+         // some compilers cannot read from the class output
+         return null;
+      }
+   }
+}
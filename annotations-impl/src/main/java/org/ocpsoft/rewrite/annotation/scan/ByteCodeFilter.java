@@ -19,8 +19,9 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
-import java.util.LinkedHashSet;
+import java.util.Collections;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.ocpsoft.logging.Logger;
 
@@ -70,9 +71,15 @@ public class ByteCodeFilter
    private static final int CONSTANT_InvokeDynamic = 18;
 
    /**
-    * The strings to look for in the constants table
+    * The strings to look for in the constants table, sorted so that {@link #toString()} identifies this filter across
+    * restarts
     */
-   private final Set<String> fieldDescriptors = new LinkedHashSet<String>();
+   private final Set<String> fieldDescriptors = new TreeSet<String>();
+
+   /**
+    * The names of the types to look for
+    */
+   private final Set<String> typeNames = new TreeSet<String>();
 
    /**
     * The filter must be initialized with a list of types to look for when scanning the class files. If a class files
@@ -84,6 +91,7 @@ public class ByteCodeFilter
    {
       for (Class<? extends Annotation> type : types) {
          fieldDescriptors.add("L" + type.getName().replace('.', '/'));
+         typeNames.add(type.getName());
       }
    }
 
@@ -296,6 +304,14 @@ public class ByteCodeFilter
    /**
     * Returns true if the given string contains a field descriptor of one of the annotations we are looking for.
     */
+   /**
+    * Returns the names of the annotation types this filter looks for.
+    */
+   Set<String> getTypeNames()
+   {
+      return Collections.unmodifiableSet(typeNames);
+   }
+
    private boolean containsFieldDescriptor(String str)
    {
       for (String descriptor : fieldDescriptors) {
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.annotation.scan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.logging.Logger;
+
+/**
+ * Remembers which classes of each JAR file in <code>/WEB-INF/lib/</code> passed the {@link PackageFilter} and
+ * {@link ByteCodeFilter}, so that JAR files that did not change since the last start of the application need not be
+ * read again. Entries are keyed by the path, size and modification time of the JAR file, and the whole index is
+ * discarded if the filters changed.
+ * <p>
+ * The index is stored in the work directory of the web application. To disable it, add the following servlet context
+ * init parameter to <code>web.xml</code>:
+ *
+ * <pre>
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.annotation.SCAN_INDEX&lt;/param-name&gt;
+ *   &lt;param-value&gt;false&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * </pre>
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+class ScanIndex
+{
+   private static final Logger log = Logger.getLogger(ScanIndex.class);
+
+   private static final String TEMP_DIR = "javax.servlet.context.tempdir";
+   private static final String FILE_NAME = "rewrite-annotation-scan.idx";
+   private static final int FORMAT = 0x52574931;
+
+   private final File file;
+   private final String key;
+   private final Map<String, Entry> previous = new ConcurrentHashMap<String, Entry>();
+   private final Map<String, Entry> current = new ConcurrentHashMap<String, Entry>();
+
+   private ScanIndex(File file, String key)
+   {
+      this.file = file;
+      this.key = key;
+   }
+
+   /**
+    * Load the {@link ScanIndex} of the given {@link ServletContext} for the given filters, or return <code>null</code>
+    * if the index is disabled or there is no work directory.
+    */
+   static ScanIndex load(ServletContext servletContext, PackageFilter packageFilter, ByteCodeFilter byteCodeFilter)
+   {
+      String config = servletContext.getInitParameter(WebLibFinder.CONFIG_SCAN_INDEX);
+      if (config != null && config.trim().equalsIgnoreCase("false"))
+      {
+         return null;
+      }
+
+      Object directory = servletContext.getAttribute(TEMP_DIR);
+      if (!(directory instanceof File) || !((File) directory).isDirectory())
+      {
+         return null;
+      }
+
+      ScanIndex index = new ScanIndex(new File((File) directory, FILE_NAME), packageFilter + "\n" + byteCodeFilter);
+      index.read();
+      return index;
+   }
+
+   /**
+    * Get the file-system location of the JAR at the given {@link URL}, or <code>null</code> if it is not a file.
+    */
+   static File getFile(URL url)
+   {
+      if ("file".equals(url.getProtocol()))
+      {
+         try
+         {
+            File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+         }
+         catch (URISyntaxException e)
+         {
+            return null;
+         }
+         catch (IllegalArgumentException e)
+         {
+            return null;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Get the remembered class names of the given JAR file, or <code>null</code> if it changed or was not indexed.
+    */
+   List<String> get(File jar)
+   {
+      Entry entry = previous.get(jar.getAbsolutePath());
+      if (entry != null && entry.size == jar.length() && entry.modified == jar.lastModified())
+      {
+         current.put(jar.getAbsolutePath(), entry);
+         return entry.classNames;
+      }
+      return null;
+   }
+
+   /**
+    * Remember the class names of the given JAR file.
+    */
+   void put(File jar, List<String> classNames)
+   {
+      current.put(jar.getAbsolutePath(), new Entry(jar.length(), jar.lastModified(), classNames));
+   }
+
+   /**
+    * Store the entries retrieved or remembered since this index was loaded, dropping entries of JAR files that are
+    * gone.
+    */
+   void store()
+   {
+      if (current.equals(previous))
+      {
+         return;
+      }
+
+      File temp = new File(file.getPath() + ".tmp");
+      try
+      {
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+         try
+         {
+            out.writeInt(FORMAT);
+            out.writeUTF(key);
+            out.writeInt(current.size());
+            for (Map.Entry<String, Entry> entry : current.entrySet())
+            {
+               out.writeUTF(entry.getKey());
+               out.writeLong(entry.getValue().size);
+               out.writeLong(entry.getValue().modified);
+               out.writeInt(entry.getValue().classNames.size());
+               for (String className : entry.getValue().classNames)
+               {
+                  out.writeUTF(className);
+               }
+            }
+         }
+         finally
+         {
+            out.close();
+         }
+         Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (IOException e)
+      {
+         log.warn("Failed to write annotation scan index: " + file, e);
+         temp.delete();
+      }
+   }
+
+   private void read()
+   {
+      try
+      {
+         DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+         try
+         {
+            if (in.readInt() != FORMAT || !key.equals(in.readUTF()))
+            {
+               if (log.isDebugEnabled())
+               {
+                  log.debug("Discarding annotation scan index for different filters: " + file);
+               }
+               return;
+            }
+
+            int entries = in.readInt();
+            for (int i = 0; i < entries; i++)
+            {
+               String path = in.readUTF();
+               long size = in.readLong();
+               long modified = in.readLong();
+               int count = in.readInt();
+               List<String> classNames = new ArrayList<String>(count);
+               for (int j = 0; j < count; j++)
+               {
+                  classNames.add(in.readUTF());
+               }
+               previous.put(path, new Entry(size, modified, classNames));
+            }
+         }
+         finally
+         {
+            in.close();
+         }
+      }
+      catch (FileNotFoundException e)
+      {
+         // nothing indexed yet
+      }
+      catch (IOException e)
+      {
+         log.warn("Discarding unreadable annotation scan index: " + file, e);
+         previous.clear();
+      }
+   }
+
+   private static class Entry
+   {
+      private final long size;
+      private final long modified;
+      private final List<String> classNames;
+
+      private Entry(long size, long modified, List<String> classNames)
+      {
+         this.size = size;
+         this.modified = modified;
+         this.classNames = Collections.unmodifiableList(classNames);
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (!(obj instanceof Entry))
+         {
+            return false;
+         }
+         Entry other = (Entry) obj;
+         return size == other.size && modified == other.modified && classNames.equals(other.classNames);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return (int) (size ^ modified) * 31 + classNames.hashCode();
+      }
+   }
+}
@@ -19,8 +19,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.servlet.ServletContext;
 
@@ -29,8 +35,9 @@ import org.ocpsoft.rewrite.annotation.spi.ClassFinder;
 
 /**
  * Implementation of {@link ClassFinder} that searches for classes in the <code>/WEB-INF/classes</code> directory of a
- * web application. Please note that this class is stateful. It should be used only for one call to
- * {@link #findClasses(ClassVisitor)}.
+ * web application. Class files are filtered in parallel, one task per directory, and the classes are then visited on the
+ * calling thread in the order they were found. Please note that this class is stateful. It should be used only for one
+ * call to {@link #findClasses(ClassVisitor)}.
  * 
  * @author Christian Kaltepoth
  */
@@ -42,11 +49,21 @@ public class WebClassesFinder extends AbstractClassFinder
     */
    private final static String CLASSES_FOLDER = "/WEB-INF/classes/";
 
+   /**
+    * The index written by the {@link AnnotationIndexProcessor}
+    */
+   private final static String INDEX_FILE = CLASSES_FOLDER + AnnotatedClassIndex.LOCATION;
+
    /**
     * Manage a set of classes already processed
     */
    private final Set<String> processedClasses = new LinkedHashSet<String>();
 
+   /**
+    * Class files found but not yet filtered, grouped by directory
+    */
+   private final Map<String, List<String>> pendingClassEntries = new LinkedHashMap<String, List<String>>();
+
    /**
     * Initialization
     */
@@ -74,6 +91,19 @@ public class WebClassesFinder extends AbstractClassFinder
          // call recursive directory processing method
          processDirectory(classesFolderUrl, CLASSES_FOLDER, visitor);
 
+         // use the index written at compile time, if there is one
+         if (useAnnotationIndex())
+         {
+            InputStream indexStream = servletContext.getResourceAsStream(INDEX_FILE);
+            if (indexStream != null && processIndex(indexStream, visitor))
+            {
+               return;
+            }
+         }
+
+         // filter and visit the classes found
+         processPendingClasses(visitor);
+
       }
       catch (MalformedURLException e)
       {
@@ -81,10 +111,53 @@ public class WebClassesFinder extends AbstractClassFinder
       }
    }
 
+   /**
+    * Visit the classes found that are listed in the index written at compile time, instead of filtering them.
+    * 
+    * @return <code>false</code> if the index cannot be used and the classes found must be filtered
+    */
+   private boolean processIndex(InputStream indexStream, ClassVisitor visitor)
+   {
+
+      Set<String> classNames = new HashSet<String>();
+      for (List<String> entries : pendingClassEntries.values())
+      {
+         for (String entryName : entries)
+         {
+            classNames.add(getClassName(entryName.substring(CLASSES_FOLDER.length())));
+         }
+      }
+
+      List<String> indexed;
+      try
+      {
+         indexed = readAnnotationIndex(indexStream, INDEX_FILE, classNames);
+      }
+      catch (IOException e)
+      {
+         log.warn("Failed to read annotation index, scanning classes instead: " + INDEX_FILE, e);
+         return false;
+      }
+
+      if (indexed == null)
+      {
+         return false;
+      }
+      pendingClassEntries.clear();
+
+      // load and visit the classes on this thread
+      for (String className : indexed)
+      {
+         visitClass(className, visitor);
+      }
+      return true;
+
+   }
+
    /**
     * Scan for classes in a single directory. This method will call itself recursively if it finds other directories and
-    * call {@link #processClass(String, InputStream, ClassVisitor)} when it finds a file ending with ".class" and
-    * that is accepted by the {@link PackageFilter}
+    * collect the files ending with ".class" that are accepted by the {@link PackageFilter}, which are processed once
+    * all directories have been scanned
     * 
     * @param absoluteUrl The absolute URL of the WEB-INF node to scan
     * @param relativePath The path of the node inside the WEB-INF
@@ -161,45 +234,102 @@ public class WebClassesFinder extends AbstractClassFinder
          // mark this class as processed
          processedClasses.add(className);
 
-         // the class file stream
-         InputStream classFileStream = null;
-
-         // close the stream in finally block
-         try
+         // group the class file with the others of its directory
+         String directory = entryName.substring(0, entryName.lastIndexOf('/') + 1);
+         List<String> entries = pendingClassEntries.get(directory);
+         if (entries == null)
          {
+            entries = new ArrayList<String>();
+            pendingClassEntries.put(directory, entries);
+         }
+         entries.add(entryName);
+      }
 
-            /*
-             * Try to open the .class file. if this isn't possible, we will scan it anyway.
-             */
-            classFileStream = servletContext.getResourceAsStream(entryName);
+   }
+
+   /**
+    * Runs the {@link ByteCodeFilter} on all class files found, in parallel, and visits the accepted classes.
+    */
+   private void processPendingClasses(ClassVisitor visitor)
+   {
 
-            if (classFileStream == null)
+      List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+      for (final List<String> entries : pendingClassEntries.values())
+      {
+         tasks.add(new Callable<List<String>>() {
+            @Override
+            public List<String> call()
             {
-               if (log.isDebugEnabled())
+               List<String> classNames = new ArrayList<String>();
+               for (String entryName : entries)
                {
-                  log.debug("Could not obtain InputStream for class file: " + entryName);
+                  String className = getClassName(entryName.substring(CLASSES_FOLDER.length()));
+                  if (filterClassEntry(entryName, className))
+                  {
+                     classNames.add(className);
+                  }
                }
+               return classNames;
             }
+         });
+      }
+      pendingClassEntries.clear();
+
+      // load and visit the classes on this thread
+      for (List<String> classNames : invokeAll(tasks))
+      {
+         for (String className : classNames)
+         {
+            visitClass(className, visitor);
+         }
+      }
+
+   }
+
+   /**
+    * Checks a single class file with the {@link ByteCodeFilter}. May be called from several threads at once.
+    */
+   private boolean filterClassEntry(String entryName, String className)
+   {
+
+      // the class file stream
+      InputStream classFileStream = null;
+
+      // close the stream in finally block
+      try
+      {
 
-            // analyze the class (with or without classFileStream)
-            processClass(className, classFileStream, visitor);
+         /*
+          * Try to open the .class file. if this isn't possible, we will scan it anyway.
+          */
+         classFileStream = servletContext.getResourceAsStream(entryName);
 
+         if (classFileStream == null)
+         {
+            if (log.isDebugEnabled())
+            {
+               log.debug("Could not obtain InputStream for class file: " + entryName);
+            }
          }
-         finally
+
+         // analyze the class (with or without classFileStream)
+         return mayContainAnnotations(className, classFileStream);
+
+      }
+      finally
+      {
+         try
          {
-            try
+            if (classFileStream != null)
             {
-               if (classFileStream != null)
-               {
-                  classFileStream.close();
-               }
+               classFileStream.close();
             }
-            catch (IOException e)
+         }
+         catch (IOException e)
+         {
+            if (log.isDebugEnabled())
             {
-               if (log.isDebugEnabled())
-               {
-                  log.debug("Failed to close input stream: " + e.getMessage());
-               }
+               log.debug("Failed to close input stream: " + e.getMessage());
             }
          }
       }
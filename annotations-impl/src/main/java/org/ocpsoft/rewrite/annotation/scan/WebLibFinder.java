@@ -15,12 +15,23 @@
  */
 package org.ocpsoft.rewrite.annotation.scan;
 
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.servlet.ServletContext;
 
@@ -29,7 +40,12 @@ import org.ocpsoft.rewrite.annotation.spi.ClassFinder;
 
 /**
  * Implementation of {@link ClassFinder} that searches for classes in the JAR archives found in the
- * <code>/WEB-INF/lib/</code> directory of a web application.
+ * <code>/WEB-INF/lib/</code> directory of a web application. JAR files are read in parallel, with random access if they
+ * are on the local file-system, and JAR files that did not change since the last start of the application are skipped
+ * using the {@link ScanIndex}. JAR files with other than <code>file:</code> URLs, such as the <code>vfs:</code> URLs of
+ * some application servers, are always read as a stream. Of JAR files containing an index written by the
+ * {@link AnnotationIndexProcessor}, only the listed classes are visited. Classes are visited on the calling thread, in
+ * the order of the JAR files.
  *
  * @author Christian Kaltepoth
  */
@@ -41,6 +57,11 @@ public class WebLibFinder extends AbstractClassFinder
     */
    private final static String LIB_FOLDER = "/WEB-INF/lib/";
 
+   /**
+    * Servlet context init parameter to disable the {@link ScanIndex} by setting it to <code>false</code>
+    */
+   public final static String CONFIG_SCAN_INDEX = "org.ocpsoft.rewrite.annotation.SCAN_INDEX";
+
    /**
     * Initialization
     */
@@ -54,6 +75,9 @@ public class WebLibFinder extends AbstractClassFinder
    public void findClasses(ClassVisitor visitor)
    {
 
+      // the JAR files to read
+      List<URL> jarUrls = new ArrayList<URL>();
+
       // catch MalformedURLException
       try
       {
@@ -81,7 +105,7 @@ public class WebLibFinder extends AbstractClassFinder
             // we are only interested in JAR files
             if (entryUrl.getPath().endsWith(".jar"))
             {
-               processJarFile(entryUrl, visitor);
+               jarUrls.add(entryUrl);
             }
 
          }
@@ -91,23 +115,94 @@ public class WebLibFinder extends AbstractClassFinder
       {
          throw new IllegalStateException("Invalid URL: " + e.getMessage(), e);
       }
+
+      // may be null if there is no work directory
+      final ScanIndex index = ScanIndex.load(servletContext, packageFilter, byteCodeFilter);
+
+      // use the indexes written at compile time, if there are any
+      final boolean useAnnotationIndex = useAnnotationIndex();
+
+      // read all JAR files in parallel
+      List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+      for (final URL jarUrl : jarUrls)
+      {
+         tasks.add(new Callable<List<String>>() {
+            @Override
+            public List<String> call()
+            {
+               return processJarFile(jarUrl, index, useAnnotationIndex);
+            }
+         });
+      }
+      List<List<String>> results = invokeAll(tasks);
+
+      if (index != null)
+      {
+         index.store();
+      }
+
+      // load and visit the classes on this thread
+      for (List<String> classNames : results)
+      {
+         for (String className : classNames)
+         {
+            visitClass(className, visitor);
+         }
+      }
    }
 
    /**
-    * Process a single JAR file in the <code>/WEB-INF/lib/</code> directory.
+    * Process a single JAR file in the <code>/WEB-INF/lib/</code> directory. May be called from several threads at once.
     *
     * @param jarUrl The URL of the JAR file
-    * @param visitor The visitor to call on classes
+    * @param index The index of previously read JAR files (may be <code>null</code>)
+    * @param useAnnotationIndex Whether to use the index written by the {@link AnnotationIndexProcessor}
+    * @return the names of the classes to visit
     */
-   private void processJarFile(URL jarUrl, ClassVisitor visitor)
+   private List<String> processJarFile(URL jarUrl, ScanIndex index, boolean useAnnotationIndex)
    {
 
+      // the JAR file on the file-system, if there is one
+      File jarFile = ScanIndex.getFile(jarUrl);
+
+      // skip JAR files that did not change since they were indexed
+      if (jarFile != null && index != null)
+      {
+         List<String> indexed = index.get(jarFile);
+         if (indexed != null)
+         {
+            if (log.isDebugEnabled())
+            {
+               log.debug("Skipping unchanged JAR file: " + jarUrl.toString());
+            }
+            return indexed;
+         }
+      }
+
+      // read local JAR files through their central directory
+      if (jarFile != null)
+      {
+         List<String> classNames = processZipFile(jarFile, useAnnotationIndex);
+         if (classNames != null)
+         {
+            // remember the result for the next start
+            if (index != null)
+            {
+               index.put(jarFile, classNames);
+            }
+            return classNames;
+         }
+      }
+
       // log file name on debug lvel
       if (log.isDebugEnabled())
       {
          log.debug("Processing JAR file: " + jarUrl.toString());
       }
 
+      // the classes to visit
+      List<String> classNames = new ArrayList<String>();
+
       // Use a JarInputStream to read the archive
       JarInputStream jarStream = null;
 
@@ -130,13 +225,10 @@ public class WebLibFinder extends AbstractClassFinder
                // generate FQCN from entry
                String className = getClassName(jarEntry.getName());
 
-               // check name against PackageFilter
-               if (mustProcessClass(className))
+               // check name against PackageFilter and analyze this class
+               if (mustProcessClass(className) && mayContainAnnotations(className, jarStream))
                {
-
-                  // analyze this class
-                  processClass(className, jarStream, visitor);
-
+                  classNames.add(className);
                }
 
             }
@@ -164,6 +256,116 @@ public class WebLibFinder extends AbstractClassFinder
          }
       }
 
+      return classNames;
+
+   }
+
+   /**
+    * <p>
+    * Process a JAR file on the local file-system with random access. Entry names are filtered using the central
+    * directory first, so entries rejected by the {@link PackageFilter} are never inflated, and only the beginning of
+    * the remaining class files, up to the end of the constant pool, is inflated for the {@link ByteCodeFilter}. Only
+    * JAR files with <code>file:</code> URLs are processed this way; others, such as <code>vfs:</code> URLs, skip this
+    * fast path.
+    * </p>
+    * <p>
+    * If the JAR file contains an index written by the {@link AnnotationIndexProcessor} that covers it, only the listed
+    * classes are returned, without reading any class files.
+    * </p>
+    *
+    * @param jarFile The JAR file
+    * @param useAnnotationIndex Whether to use the index written by the {@link AnnotationIndexProcessor}
+    * @return the names of the classes to visit, or <code>null</code> if the JAR file must be read as a stream
+    */
+   private List<String> processZipFile(File jarFile, boolean useAnnotationIndex)
+   {
+
+      // log file name on debug lvel
+      if (log.isDebugEnabled())
+      {
+         log.debug("Processing JAR file: " + jarFile);
+      }
+
+      ZipFile zipFile = null;
+      try
+      {
+
+         // reads only the central directory
+         zipFile = new ZipFile(jarFile);
+
+         // Loop over all entries of the central directory, checking names against the PackageFilter
+         Map<String, ZipEntry> classEntries = new LinkedHashMap<String, ZipEntry>();
+         Enumeration<? extends ZipEntry> entries = zipFile.entries();
+         while (entries.hasMoreElements())
+         {
+            ZipEntry entry = entries.nextElement();
+
+            // We are only interested in java class files
+            if (!entry.isDirectory() && entry.getName().endsWith(".class"))
+            {
+               String className = getClassName(entry.getName());
+               if (mustProcessClass(className))
+               {
+                  classEntries.put(className, entry);
+               }
+            }
+         }
+
+         // read only the classes listed in the index written at compile time, if it covers the archive
+         ZipEntry indexEntry = useAnnotationIndex ? zipFile.getEntry(AnnotatedClassIndex.LOCATION) : null;
+         if (indexEntry != null)
+         {
+            List<String> indexed = readAnnotationIndex(zipFile.getInputStream(indexEntry), jarFile.getPath(),
+                     classEntries.keySet());
+            if (indexed != null)
+            {
+               return indexed;
+            }
+         }
+
+         // inflate the remaining class files for the ByteCodeFilter
+         List<String> classNames = new ArrayList<String>();
+         for (Map.Entry<String, ZipEntry> classEntry : classEntries.entrySet())
+         {
+            InputStream classFileStream = new BufferedInputStream(zipFile.getInputStream(classEntry.getValue()), 2048);
+            try
+            {
+               if (mayContainAnnotations(classEntry.getKey(), classFileStream))
+               {
+                  classNames.add(classEntry.getKey());
+               }
+            }
+            finally
+            {
+               classFileStream.close();
+            }
+         }
+         return classNames;
+
+      }
+      catch (IOException e)
+      {
+         if (log.isDebugEnabled())
+         {
+            log.debug("Failed to read JAR file with random access, reading it as a stream: " + jarFile, e);
+         }
+         return null;
+      }
+      finally
+      {
+         if (zipFile != null)
+         {
+            try
+            {
+               zipFile.close();
+            }
+            catch (IOException e)
+            {
+               // ignore IO failures on close
+            }
+         }
+      }
+
    }
 
    @Override
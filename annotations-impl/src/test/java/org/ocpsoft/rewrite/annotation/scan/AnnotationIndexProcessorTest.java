@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.annotation.scan;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.TreeSet;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class AnnotationIndexProcessorTest
+{
+   private File directory;
+
+   @Before
+   public void before() throws IOException
+   {
+      directory = Files.createTempDirectory("AnnotationIndexProcessorTest").toFile();
+   }
+
+   @After
+   public void after()
+   {
+      delete(directory);
+   }
+
+   @Test
+   public void testIndexesAnnotatedClasses() throws IOException
+   {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      Assume.assumeNotNull(compiler);
+
+      String annotation = "@" + TestAnnotation.class.getName();
+      File annotated = source("Annotated", "public class Annotated {\n"
+               + "   " + annotation + " public void method() {}\n"
+               + "   public static class Plain {}\n"
+               + "   " + annotation + " public static class Nested {}\n"
+               + "}\n");
+      File plain = source("Plain", "@Deprecated public class Plain {}\n");
+
+      int result = compiler.run(null, null, null, "-proc:only", "-processor",
+               AnnotationIndexProcessor.class.getName(), "-classpath", System.getProperty("java.class.path"), "-d",
+               directory.getPath(), annotated.getPath(), plain.getPath());
+      Assert.assertEquals(0, result);
+
+      AnnotatedClassIndex index = readIndex();
+      Assert.assertEquals(new TreeSet<String>(Arrays.asList("Annotated", "Annotated$Nested")), index.getClassNames());
+      Assert.assertEquals(new TreeSet<String>(Arrays.asList("Annotated", "Plain")), index.getCompiled());
+      Assert.assertTrue(index.isCompiled("Annotated$Plain"));
+      Assert.assertTrue(index.isCompiled("Annotated$1"));
+      Assert.assertFalse(index.isCompiled("Other"));
+   }
+
+   @Test
+   public void testIndexCoversOnlyAnnotationsLookedFor() throws IOException
+   {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      Assume.assumeNotNull(compiler);
+
+      File plain = source("Plain", "public class Plain {}\n");
+      int result = compiler.run(null, null, null, "-proc:only", "-processor",
+               AnnotationIndexProcessor.class.getName(), "-classpath", System.getProperty("java.class.path"), "-d",
+               directory.getPath(), plain.getPath());
+      Assert.assertEquals(0, result);
+
+      AnnotatedClassIndex index = readIndex();
+      Assert.assertEquals(Arrays.asList("org.ocpsoft.rewrite", "com.ocpsoft.pretty"), index.getAnnotations());
+      Assert.assertTrue(index.covers(filter(TestAnnotation.class)));
+      Assert.assertFalse(index.covers(filter(TestAnnotation.class, Deprecated.class)));
+   }
+
+   @Test
+   public void testIndexCoversAnnotationTypesFromOption() throws IOException
+   {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      Assume.assumeNotNull(compiler);
+
+      File plain = source("Plain", "@Deprecated public class Plain {}\n");
+      int result = compiler.run(null, null, null, "-proc:only", "-processor",
+               AnnotationIndexProcessor.class.getName(), "-Arewrite.annotationPackages=java.lang.Deprecated",
+               "-classpath", System.getProperty("java.class.path"), "-d", directory.getPath(), plain.getPath());
+      Assert.assertEquals(0, result);
+
+      AnnotatedClassIndex index = readIndex();
+      Assert.assertEquals(Collections.singleton("Plain"), index.getClassNames());
+      Assert.assertTrue(index.covers(filter(Deprecated.class)));
+      Assert.assertFalse(index.covers(filter(TestAnnotation.class)));
+   }
+
+   private AnnotatedClassIndex readIndex() throws IOException
+   {
+      InputStream stream = new FileInputStream(new File(directory, AnnotatedClassIndex.LOCATION));
+      try
+      {
+         return AnnotatedClassIndex.read(stream);
+      }
+      finally
+      {
+         stream.close();
+      }
+   }
+
+   @SafeVarargs
+   private static ByteCodeFilter filter(Class<? extends Annotation>... types)
+   {
+      return new ByteCodeFilter(new HashSet<Class<? extends Annotation>>(Arrays.asList(types)));
+   }
+
+   private File source(String name, String content) throws IOException
+   {
+      File file = new File(directory, name + ".java");
+      FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+         out.write(content.getBytes("UTF-8"));
+      }
+      finally
+      {
+         out.close();
+      }
+      return file;
+   }
+
+   private static void delete(File file)
+   {
+      File[] children = file.listFiles();
+      if (children != null)
+      {
+         for (File child : children)
+         {
+            delete(child);
+         }
+      }
+      file.delete();
+   }
+}
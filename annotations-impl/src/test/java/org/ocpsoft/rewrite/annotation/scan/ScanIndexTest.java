@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.annotation.scan;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.ServletContext;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class ScanIndexTest
+{
+   private File directory;
+   private File jar;
+   private ServletContext servletContext;
+
+   @Before
+   public void before() throws IOException
+   {
+      directory = Files.createTempDirectory("ScanIndexTest").toFile();
+      jar = new File(directory, "mylib.jar");
+      write(jar, "jar");
+
+      servletContext = Mockito.mock(ServletContext.class);
+      Mockito.when(servletContext.getAttribute("javax.servlet.context.tempdir")).thenReturn(directory);
+   }
+
+   @After
+   public void after()
+   {
+      for (File file : directory.listFiles())
+      {
+         file.delete();
+      }
+      directory.delete();
+   }
+
+   @Test
+   public void testRemembersUnchangedJarFiles()
+   {
+      List<String> classNames = Arrays.asList(ClassFinderTestBean.class.getName());
+      ScanIndex index = load("com.example");
+      Assert.assertNull(index.get(jar));
+      index.put(jar, classNames);
+      index.store();
+
+      Assert.assertEquals(classNames, load("com.example").get(jar));
+   }
+
+   @Test
+   public void testForgetsChangedJarFiles() throws IOException
+   {
+      ScanIndex index = load("com.example");
+      index.put(jar, Collections.<String> emptyList());
+      index.store();
+
+      write(jar, "changed jar");
+      Assert.assertNull(load("com.example").get(jar));
+   }
+
+   @Test
+   public void testForgetsAllJarFilesIfFiltersChanged()
+   {
+      ScanIndex index = load("com.example");
+      index.put(jar, Collections.<String> emptyList());
+      index.store();
+
+      Assert.assertNull(load("org.example").get(jar));
+   }
+
+   @Test
+   public void testIsDisabledByInitParameter()
+   {
+      Mockito.when(servletContext.getInitParameter(WebLibFinder.CONFIG_SCAN_INDEX)).thenReturn("false");
+      Assert.assertNull(load("com.example"));
+   }
+
+   private ScanIndex load(String packages)
+   {
+      return ScanIndex.load(servletContext, new PackageFilter(packages), new ByteCodeFilter(
+               Collections.<Class<? extends Annotation>> singleton(TestAnnotation.class)));
+   }
+
+   private static void write(File file, String content) throws IOException
+   {
+      FileOutputStream out = new FileOutputStream(file);
+      try
+      {
+         out.write(content.getBytes("UTF-8"));
+      }
+      finally
+      {
+         out.close();
+      }
+   }
+}
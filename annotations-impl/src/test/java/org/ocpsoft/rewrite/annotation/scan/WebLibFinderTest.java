@@ -19,6 +19,8 @@ import static org.junit.Assert.assertNotNull;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
@@ -83,6 +85,116 @@ public class WebLibFinderTest
 
    }
 
+   @Test
+   public void testWebLibFinderWithRandomAccess() throws Exception
+   {
+      ClassVisitor classVisitor = findClassesInJarFile("META-INF/", null, "META-INF/MANIFEST.MF",
+               "Manifest-Version: 1.0\n", "org/", null, "org/example/", null, "org/example/nested/", null,
+               "org/example/nested/messages.properties", "greeting=Hello\n", "org/example/Broken.class",
+               "not a class file", "README.txt", "Hello\n");
+      Mockito.verify(classVisitor).visit(ClassFinderTestBean.class);
+      Mockito.verifyNoMoreInteractions(classVisitor);
+   }
+
+   @Test
+   public void testUsesAnnotationIndexCoveringJarFile() throws Exception
+   {
+      String bean = ClassFinderTestBean.class.getName();
+      ClassVisitor classVisitor = findClassesInJarFile(AnnotatedClassIndex.LOCATION, "#annotations org.ocpsoft.rewrite\n#compiled " + bean + "\n");
+      Mockito.verify(classVisitor, Mockito.never()).visit(Mockito.any(Class.class));
+   }
+
+   @Test
+   public void testScansJarFileIfIndexMissesAnnotationTypes() throws Exception
+   {
+      String bean = ClassFinderTestBean.class.getName();
+      ClassVisitor classVisitor = findClassesInJarFile(AnnotatedClassIndex.LOCATION, "#annotations com.example\n#compiled " + bean + "\n");
+      Mockito.verify(classVisitor).visit(ClassFinderTestBean.class);
+   }
+
+   @Test
+   public void testScansJarFileIfIndexMissesClasses() throws Exception
+   {
+      ClassVisitor classVisitor = findClassesInJarFile(AnnotatedClassIndex.LOCATION,
+               "#annotations org.ocpsoft.rewrite\n#compiled com.example.Other\n");
+      Mockito.verify(classVisitor).visit(ClassFinderTestBean.class);
+   }
+
+   /**
+    * Runs the {@link WebLibFinder} on a local JAR file containing the {@link ClassFinderTestBean} class and the given
+    * entries, as pairs of entry name and text content. Directory entries have <code>null</code> content.
+    */
+   private ClassVisitor findClassesInJarFile(String... entries) throws Exception
+   {
+      File jarFile = File.createTempFile("WebLibFinderTest", ".jar");
+      try
+      {
+         JarOutputStream jarOutput = new JarOutputStream(new FileOutputStream(jarFile));
+         try
+         {
+            for (int i = 0; i < entries.length; i += 2)
+            {
+               jarOutput.putNextEntry(new ZipEntry(entries[i]));
+               if (entries[i + 1] != null)
+               {
+                  jarOutput.write(entries[i + 1].getBytes("UTF-8"));
+               }
+               jarOutput.closeEntry();
+            }
+            writeTestClass(jarOutput);
+         }
+         finally
+         {
+            jarOutput.close();
+         }
+
+         ServletContext servletContext = Mockito.mock(ServletContext.class);
+         Mockito.when(servletContext.getResource("/WEB-INF/lib/")).thenReturn(new URL("file:/somewhere/WEB-INF/lib/"));
+         Mockito.when(servletContext.getResourcePaths("/WEB-INF/lib/")).thenReturn(
+                  new HashSet<String>(Arrays.asList("/WEB-INF/lib/mylib.jar")));
+         Mockito.when(servletContext.getResource("/WEB-INF/lib/mylib.jar")).thenReturn(jarFile.toURI().toURL());
+
+         ClassLoader classLoader = Mockito.mock(ClassLoader.class);
+         Mockito.when(classLoader.loadClass(ClassFinderTestBean.class.getName()))
+                  .thenReturn((Class) ClassFinderTestBean.class);
+
+         Set<Class<? extends Annotation>> types = new HashSet<Class<? extends Annotation>>();
+         types.add(TestAnnotation.class);
+
+         ClassVisitor classVisitor = Mockito.mock(ClassVisitor.class);
+         new WebLibFinder(servletContext, classLoader, new PackageFilter(null), new ByteCodeFilter(types))
+                  .findClasses(classVisitor);
+         return classVisitor;
+      }
+      finally
+      {
+         jarFile.delete();
+      }
+   }
+
+   /**
+    * Writes the class file of the {@link ClassFinderTestBean} class to the given archive.
+    */
+   private static void writeTestClass(JarOutputStream jarOutput) throws IOException
+   {
+      // location of the class on the classpath and in the archive
+      final String classLocation = ClassFinderTestBean.class.getName().replace('.', '/') + ".class";
+
+      // read the original class file from the classpath
+      ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+      InputStream classStream = classLoader.getResourceAsStream(classLocation);
+      assertNotNull("Cannot find test class", classStream);
+
+      jarOutput.putNextEntry(new ZipEntry(classLocation));
+      byte[] buffer = new byte[255];
+      for (int len; (len = classStream.read(buffer)) != -1;)
+      {
+         jarOutput.write(buffer, 0, len);
+      }
+      jarOutput.closeEntry();
+      classStream.close();
+   }
+
    /**
     * A custom {@link URLStreamHandler} that will always return an in-memory JAR archive containing only the
     * {@link ClassFinderTestBean} class.
@@ -104,26 +216,12 @@ public class WebLibFinderTest
             {
                try
                {
-                  // location of the class on the classpath and in the archive
-                  final String classLocation = ClassFinderTestBean.class.getName().replace('.', '/') + ".class";
-
-                  // read the original class file from the classpath
-                  ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-                  InputStream classStream = classLoader.getResourceAsStream(classLocation);
-                  assertNotNull("Cannot find test class", classStream);
-
                   // prepare the in-memory JAR file
                   ByteArrayOutputStream byteArrayStream = new ByteArrayOutputStream();
                   JarOutputStream jarOutput = new JarOutputStream(byteArrayStream);
 
                   // write the class file to the archive
-                  jarOutput.putNextEntry(new ZipEntry(classLocation));
-                  byte[] buffer = new byte[255];
-                  for (int len; (len = classStream.read(buffer)) != -1;)
-                  {
-                     jarOutput.write(buffer, 0, len);
-                  }
-                  jarOutput.closeEntry();
+                  writeTestClass(jarOutput);
 
                   // close the JAR archive and return the InputStream
                   jarOutput.close();
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet;
+
+import javax.servlet.ServletResponse;
+
+/**
+ * Similar to <code>javax.servlet.AsyncContext</code>. But as the original is only available in Servlet 3.0 and newer we
+ * use our own. Instances are obtained from the {@link org.ocpsoft.rewrite.servlet.spi.AsyncRequestProvider} SPI.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public interface AsyncRequest
+{
+   /**
+    * Get the {@link ServletResponse} to which the result of asynchronous processing must be written.
+    */
+   ServletResponse getResponse();
+
+   /**
+    * Set the time in milliseconds after which the container may time out this {@link AsyncRequest}. A value of zero or
+    * less disables the timeout.
+    */
+   void setTimeout(long timeout);
+
+   /**
+    * Complete asynchronous processing, committing and closing the {@link ServletResponse}.
+    */
+   void complete();
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config.response;
+
+import java.io.OutputStream;
+
+import javax.servlet.ServletResponse;
+
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+
+/**
+ * A {@link ResponseContentInterceptor} that can also operate on {@link ServletResponse#getOutputStream()} content as
+ * it is written, instead of on the fully buffered response.
+ * <p>
+ * When every registered {@link ResponseContentInterceptor} is a {@link StreamingResponseContentInterceptor}, and none
+ * requires buffering for the current {@link HttpServletRewrite}, response content is pushed through the stream of each
+ * interceptor, in the order in which they were registered, and then on to the client. Otherwise, the entire response
+ * is buffered and all interceptors are invoked via
+ * {@link #intercept(HttpServletRewrite, ResponseContent, ResponseContentInterceptorChain)}.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public interface StreamingResponseContentInterceptor extends ResponseContentInterceptor
+{
+   /**
+    * Return <code>true</code> if this interceptor must operate on the entire buffered response for the current
+    * {@link HttpServletRewrite}, or <code>false</code> if it may operate on content as it is written.
+    */
+   boolean isBufferingRequired(HttpServletRewrite event);
+
+   /**
+    * Return an {@link OutputStream} to which response content for the current {@link HttpServletRewrite} will be
+    * written in chunks, as it is produced. Processed content must be written to the given {@link OutputStream}. Closing
+    * the returned {@link OutputStream} signals the end of the response; any remaining content must then be written and
+    * the given {@link OutputStream} closed.
+    */
+   OutputStream intercept(HttpServletRewrite event, OutputStream output);
+}
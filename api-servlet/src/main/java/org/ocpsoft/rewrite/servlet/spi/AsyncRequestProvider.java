@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.spi;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.ocpsoft.common.pattern.Weighted;
+import org.ocpsoft.rewrite.servlet.AsyncRequest;
+
+/**
+ * SPI for processing a request asynchronously, so that the container thread which received it may be released before
+ * the response is complete. This API is typically used by asking all registered providers in an order determined by
+ * their priority. The result of the first implementation that doesn't return <code>null</code> is expected to be the
+ * correct one.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public interface AsyncRequestProvider extends Weighted
+{
+
+   /**
+    * Put the given request into asynchronous mode, and return the {@link AsyncRequest} through which it must be
+    * completed. Implementations MUST return <code>null</code> if they are unable to process the request asynchronously.
+    */
+   AsyncRequest startAsync(ServletRequest request, ServletResponse response, ServletContext context);
+
+}
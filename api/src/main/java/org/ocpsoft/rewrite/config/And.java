@@ -31,7 +31,7 @@ import org.ocpsoft.rewrite.event.Rewrite;
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public final class And extends DefaultConditionBuilder implements CompositeCondition
+public final class And extends DefaultConditionBuilder implements ConjunctiveCondition, Cacheable
 {
    private final Condition[] conditions;
 
@@ -95,4 +95,10 @@ public final class And extends DefaultConditionBuilder implements CompositeCondi
    {
       return "And.all(" + Strings.join(getConditions(), ", ") + ")";
    }
+
+   @Override
+   public boolean isCacheable()
+   {
+      return true;
+   }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config;
+
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.spi.RuleCacheProvider;
+
+/**
+ * A {@link Condition} whose result depends only on the {@link Rewrite} direction, the request method, and the request
+ * path, and may therefore be remembered by {@link RuleCacheProvider} implementations. {@link Condition} instances that
+ * do not implement this interface, such as those depending on the time of day, request headers, or EL expressions, are
+ * never cached.
+ * <p>
+ * A {@link CompositeCondition} implementing this interface declares that its result depends only on the results of its
+ * children; it is cacheable only if each of its children is also cacheable.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public interface Cacheable
+{
+   /**
+    * Return <code>true</code> if the result of this {@link Condition} may currently be cached, otherwise
+    * <code>false</code>.
+    */
+   boolean isCacheable();
+}
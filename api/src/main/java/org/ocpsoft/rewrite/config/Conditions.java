@@ -18,7 +18,7 @@ package org.ocpsoft.rewrite.config;
 import java.util.Arrays;
 import java.util.List;
 
-import org.ocpsoft.rewrite.config.DefaultConditionBuilder.DefaultConditionBuilderInternal;
+import org.ocpsoft.rewrite.config.DefaultConditionBuilder.DefaultConjunctiveConditionBuilderInternal;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 /*
  * Copyright 2013 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
@@ -121,7 +121,7 @@ public final class Conditions
       if (condition instanceof ConditionBuilder)
          return (ConditionBuilder) condition;
 
-      return new DefaultConditionBuilderInternal(condition) {
+      return new DefaultConjunctiveConditionBuilderInternal(condition) {
          @Override
          public boolean evaluate(Rewrite event, EvaluationContext context)
          {
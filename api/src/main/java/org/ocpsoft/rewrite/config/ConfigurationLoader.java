@@ -36,6 +36,7 @@ import org.ocpsoft.rewrite.param.ParameterStore;
 import org.ocpsoft.rewrite.param.Parameterized;
 import org.ocpsoft.rewrite.param.ParameterizedRule;
 import org.ocpsoft.rewrite.spi.ConfigurationCacheProvider;
+import org.ocpsoft.rewrite.spi.RuleIndexProvider;
 import org.ocpsoft.rewrite.util.Visitor;
 
 /**
@@ -49,6 +50,7 @@ public class ConfigurationLoader
    public static Logger log = Logger.getLogger(ConfigurationLoader.class);
    private final List<ConfigurationCacheProvider<?>> caches;
    private final List<ConfigurationProvider<?>> providers;
+   private final List<RuleIndexProvider> indexProviders;
 
    @SuppressWarnings({ "unchecked" })
    public ConfigurationLoader(Object context)
@@ -58,6 +60,9 @@ public class ConfigurationLoader
 
       providers = Iterators.asList(ServiceLoader.load(ConfigurationProvider.class));
       Collections.sort(providers, new WeightedComparator());
+
+      indexProviders = Iterators.asList(ServiceLoader.load(RuleIndexProvider.class));
+      Collections.sort(indexProviders, new WeightedComparator());
    }
 
    /**
@@ -220,7 +225,44 @@ public class ConfigurationLoader
          }
       }
 
-      return result;
+      return index(context, result);
+   }
+
+   /**
+    * Compile a {@link RuleIndex} for the given {@link Configuration} using the first {@link RuleIndexProvider} that
+    * handles the given context. If no index is available, return the original {@link Configuration}.
+    */
+   private Configuration index(Object context, final Configuration configuration)
+   {
+      for (RuleIndexProvider provider : indexProviders) {
+         if (provider.handles(context))
+         {
+            final RuleIndex index = provider.getIndex(context, configuration.getRules());
+            if (index != null)
+            {
+               return new IndexedConfiguration() {
+                  @Override
+                  public List<Rule> getRules()
+                  {
+                     return configuration.getRules();
+                  }
+
+                  @Override
+                  public RuleIndex getRuleIndex()
+                  {
+                     return index;
+                  }
+
+                  @Override
+                  public String toString()
+                  {
+                     return configuration.toString();
+                  }
+               };
+            }
+         }
+      }
+      return configuration;
    }
 
    @SuppressWarnings("unchecked")
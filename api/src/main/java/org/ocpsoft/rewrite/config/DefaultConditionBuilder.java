@@ -38,7 +38,7 @@ public abstract class DefaultConditionBuilder implements ConditionBuilder
       if (condition == null)
          return this;
 
-      return new DefaultConditionBuilderInternal(self, condition) {
+      return new DefaultConjunctiveConditionBuilderInternal(self, condition) {
 
          @Override
          public boolean evaluate(Rewrite event, EvaluationContext context)
@@ -126,7 +126,7 @@ public abstract class DefaultConditionBuilder implements ConditionBuilder
    }
 
    static abstract class DefaultConditionBuilderInternal extends DefaultConditionBuilder implements
-            CompositeCondition
+            CompositeCondition, Cacheable
    {
       private List<Condition> conditions;
 
@@ -140,5 +140,20 @@ public abstract class DefaultConditionBuilder implements ConditionBuilder
       {
          return conditions;
       }
+
+      @Override
+      public boolean isCacheable()
+      {
+         return true;
+      }
+   }
+
+   static abstract class DefaultConjunctiveConditionBuilderInternal extends DefaultConditionBuilderInternal implements
+            ConjunctiveCondition
+   {
+      public DefaultConjunctiveConditionBuilderInternal(Condition... conditions)
+      {
+         super(conditions);
+      }
    }
 }
@@ -15,6 +15,9 @@
  */
 package org.ocpsoft.rewrite.config;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.event.InboundRewrite;
 import org.ocpsoft.rewrite.event.OutboundRewrite;
@@ -26,7 +29,7 @@ import org.ocpsoft.rewrite.event.Rewrite;
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public abstract class Direction extends DefaultConditionBuilder
+public abstract class Direction extends DefaultConditionBuilder implements Dispatchable, Cacheable
 {
    /**
     * Returns a new {@link Condition} that returns true when operating on an {@link InboundRewrite} event.
@@ -46,12 +49,20 @@ public abstract class Direction extends DefaultConditionBuilder
 
    private static class Inbound extends Direction
    {
+      private static final List<DispatchKey> KEYS = Arrays.asList(DispatchKey.eventType(InboundRewrite.class));
+
       @Override
       public boolean evaluate(final Rewrite event, final EvaluationContext context)
       {
          return event instanceof InboundRewrite;
       }
 
+      @Override
+      public List<DispatchKey> getDispatchKeys()
+      {
+         return KEYS;
+      }
+
       @Override
       public String toString()
       {
@@ -61,16 +72,30 @@ public abstract class Direction extends DefaultConditionBuilder
 
    private static class Outbound extends Direction
    {
+      private static final List<DispatchKey> KEYS = Arrays.asList(DispatchKey.eventType(OutboundRewrite.class));
+
       @Override
       public boolean evaluate(final Rewrite event, final EvaluationContext context)
       {
          return event instanceof OutboundRewrite;
       }
 
+      @Override
+      public List<DispatchKey> getDispatchKeys()
+      {
+         return KEYS;
+      }
+
       @Override
       public String toString()
       {
          return "Direction.isOutbound()";
       }
    }
+
+   @Override
+   public boolean isCacheable()
+   {
+      return true;
+   }
 }
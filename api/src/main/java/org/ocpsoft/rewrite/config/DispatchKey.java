@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config;
+
+import org.ocpsoft.rewrite.event.Rewrite;
+
+/**
+ * Immutable description of a necessary precondition for a {@link Condition} to match a {@link Rewrite} event. Each
+ * property is optional; a <code>null</code> property places no restriction on the event.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * @see Dispatchable
+ */
+public final class DispatchKey
+{
+   private static final DispatchKey ANY = new DispatchKey(null, null, null);
+
+   private final Class<? extends Rewrite> eventType;
+   private final String method;
+   private final String pathPrefix;
+
+   private DispatchKey(final Class<? extends Rewrite> eventType, final String method, final String pathPrefix)
+   {
+      this.eventType = eventType;
+      this.method = method;
+      this.pathPrefix = pathPrefix == null || pathPrefix.isEmpty() ? null : pathPrefix;
+   }
+
+   /**
+    * Return a {@link DispatchKey} that places no restriction on the {@link Rewrite} event.
+    */
+   public static DispatchKey any()
+   {
+      return ANY;
+   }
+
+   /**
+    * Return a {@link DispatchKey} that matches only {@link Rewrite} events of the given type.
+    */
+   public static DispatchKey eventType(final Class<? extends Rewrite> eventType)
+   {
+      return new DispatchKey(eventType, null, null);
+   }
+
+   /**
+    * Return a {@link DispatchKey} that matches only requests using the given request method, e.g: "GET".
+    */
+   public static DispatchKey method(final String method)
+   {
+      return new DispatchKey(null, method, null);
+   }
+
+   /**
+    * Return a {@link DispatchKey} that matches only requests whose path starts with the given literal prefix.
+    */
+   public static DispatchKey pathPrefix(final String prefix)
+   {
+      return new DispatchKey(null, null, prefix);
+   }
+
+   /**
+    * Return a new {@link DispatchKey} matching only events matched by both this and the given {@link DispatchKey}, or
+    * <code>null</code> if no event can satisfy both.
+    */
+   public DispatchKey and(final DispatchKey other)
+   {
+      Class<? extends Rewrite> type = eventType;
+      if (type == null)
+         type = other.eventType;
+      else if (other.eventType != null && !type.equals(other.eventType))
+      {
+         if (type.isAssignableFrom(other.eventType))
+            type = other.eventType;
+         else if (!other.eventType.isAssignableFrom(type))
+            return null;
+      }
+
+      String m = method;
+      if (m == null)
+         m = other.method;
+      else if (other.method != null && !m.equals(other.method))
+         return null;
+
+      String prefix = pathPrefix;
+      if (prefix == null)
+         prefix = other.pathPrefix;
+      else if (other.pathPrefix != null)
+      {
+         if (other.pathPrefix.startsWith(prefix))
+            prefix = other.pathPrefix;
+         else if (!prefix.startsWith(other.pathPrefix))
+            return null;
+      }
+
+      return new DispatchKey(type, m, prefix);
+   }
+
+   /**
+    * Get the required {@link Rewrite} event type, or <code>null</code> if any event type may match.
+    */
+   public Class<? extends Rewrite> getEventType()
+   {
+      return eventType;
+   }
+
+   /**
+    * Get the required request method, or <code>null</code> if any method may match.
+    */
+   public String getMethod()
+   {
+      return method;
+   }
+
+   /**
+    * Get the required literal path prefix, or <code>null</code> if any path may match.
+    */
+   public String getPathPrefix()
+   {
+      return pathPrefix;
+   }
+
+   @Override
+   public int hashCode()
+   {
+      final int prime = 31;
+      int result = 1;
+      result = prime * result + ((eventType == null) ? 0 : eventType.hashCode());
+      result = prime * result + ((method == null) ? 0 : method.hashCode());
+      result = prime * result + ((pathPrefix == null) ? 0 : pathPrefix.hashCode());
+      return result;
+   }
+
+   @Override
+   public boolean equals(final Object obj)
+   {
+      if (this == obj)
+         return true;
+      if (obj == null)
+         return false;
+      if (getClass() != obj.getClass())
+         return false;
+      DispatchKey other = (DispatchKey) obj;
+      if (eventType == null)
+      {
+         if (other.eventType != null)
+            return false;
+      }
+      else if (!eventType.equals(other.eventType))
+         return false;
+      if (method == null)
+      {
+         if (other.method != null)
+            return false;
+      }
+      else if (!method.equals(other.method))
+         return false;
+      if (pathPrefix == null)
+      {
+         if (other.pathPrefix != null)
+            return false;
+      }
+      else if (!pathPrefix.equals(other.pathPrefix))
+         return false;
+      return true;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "DispatchKey [eventType=" + (eventType == null ? null : eventType.getSimpleName()) + ", method="
+               + method + ", pathPrefix=" + pathPrefix + "]";
+   }
+}
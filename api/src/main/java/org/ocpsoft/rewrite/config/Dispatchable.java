@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config;
+
+import java.util.List;
+
+import org.ocpsoft.rewrite.event.Rewrite;
+
+/**
+ * A {@link Condition} that is able to describe, before evaluation, every {@link Rewrite} event it could possibly match.
+ * Used by {@link RuleIndex} implementations to skip {@link Rule} instances that cannot match the current event.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public interface Dispatchable
+{
+   /**
+    * Return the {@link DispatchKey} instances describing the {@link Rewrite} events this {@link Condition} may match.
+    * The {@link Condition} may only match an event if at least one returned {@link DispatchKey} matches that event.
+    * Return <code>null</code> or an empty {@link List} if this cannot be determined.
+    */
+   List<DispatchKey> getDispatchKeys();
+}
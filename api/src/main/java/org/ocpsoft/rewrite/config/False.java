@@ -23,7 +23,7 @@ import org.ocpsoft.rewrite.event.Rewrite;
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public final class False extends DefaultConditionBuilder
+public final class False extends DefaultConditionBuilder implements Cacheable
 {
    @Override
    public boolean evaluate(final Rewrite event, final EvaluationContext context)
@@ -36,4 +36,10 @@ public final class False extends DefaultConditionBuilder
    {
       return "false";
    }
+
+   @Override
+   public boolean isCacheable()
+   {
+      return true;
+   }
 }
@@ -16,7 +16,6 @@
 package org.ocpsoft.rewrite.config;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.util.Set;
 
 import org.ocpsoft.common.util.Assert;
@@ -31,20 +30,26 @@ import org.ocpsoft.rewrite.param.RegexParameterizedPatternParser;
 
 /**
  * A {@link Condition} responsible for determining existence of {@link File} paths on the host file-system.
+ * <p>
+ * By default, the file-system is inspected on every evaluation. Conditions that are evaluated for many requests may
+ * instead be {@link #cached()}, in which case results are remembered in a {@link FilesystemIndex} until the
+ * file-system reports a change.
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
 public class Filesystem implements Condition, Parameterized
 {
    private final ParameterizedPatternParser resource;
-   private final FileFilter filter;
+   private final File location;
+   private final boolean directory;
+   private FilesystemIndex index;
 
-   private Filesystem(final File resource, FileFilter filter)
+   private Filesystem(final File resource, boolean directory)
    {
       Assert.notNull(resource, "File path to inspect must not be null.");
-      Assert.notNull(filter, "FileFilter must not be null.");
       this.resource = new RegexParameterizedPatternParser(getCanonicalPath(resource));
-      this.filter = filter;
+      this.location = resource;
+      this.directory = directory;
    }
 
    @Override
@@ -57,7 +62,9 @@ public class Filesystem implements Condition, Parameterized
          {
             String filePath = builder.build(event, context);
             File file = new File(filePath);
-            return filter.accept(file);
+            if (index != null)
+               return directory ? index.isDirectory(file) : index.isFile(file);
+            return directory ? file.isDirectory() : file.isFile();
          }
       }
       return false;
@@ -83,20 +90,7 @@ public class Filesystem implements Condition, Parameterized
     */
    public static Filesystem fileExists(final File resource)
    {
-      return new Filesystem(resource, new FileFilter()
-      {
-         @Override
-         public boolean accept(File file)
-         {
-            return file.exists() && file.isFile();
-         }
-
-         @Override
-         public String toString()
-         {
-            return "Filesystem.fileExists(" + resource.getAbsolutePath() + ")";
-         }
-      });
+      return new Filesystem(resource, false);
    }
 
    /**
@@ -119,20 +113,27 @@ public class Filesystem implements Condition, Parameterized
     */
    public static Filesystem directoryExists(final File resource)
    {
-      return new Filesystem(resource, new FileFilter()
-      {
-         @Override
-         public boolean accept(File file)
-         {
-            return file.exists() && file.isDirectory();
-         }
+      return new Filesystem(resource, true);
+   }
 
-         @Override
-         public String toString()
-         {
-            return "Filesystem.directoryExists(" + resource.getAbsolutePath() + ")";
-         }
-      });
+   /**
+    * Remember the existence of inspected paths in the {@link FilesystemIndex#getDefault() default}
+    * {@link FilesystemIndex}, instead of inspecting the file-system on every evaluation.
+    */
+   public Filesystem cached()
+   {
+      return cached(FilesystemIndex.getDefault());
+   }
+
+   /**
+    * Remember the existence of inspected paths in the given {@link FilesystemIndex}, instead of inspecting the
+    * file-system on every evaluation.
+    */
+   public Filesystem cached(FilesystemIndex index)
+   {
+      Assert.notNull(index, "FilesystemIndex must not be null.");
+      this.index = index;
+      return this;
    }
 
    private String getCanonicalPath(final File resource)
@@ -161,4 +162,11 @@ public class Filesystem implements Condition, Parameterized
       resource.setParameterStore(store);
    }
 
+   @Override
+   public String toString()
+   {
+      return "Filesystem." + (directory ? "directoryExists" : "fileExists") + "(" + location.getAbsolutePath() + ")"
+               + (index == null ? "" : ".cached()");
+   }
+
 }
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ocpsoft.common.util.Assert;
+import org.ocpsoft.logging.Logger;
+import org.ocpsoft.rewrite.exception.RewriteException;
+import org.ocpsoft.rewrite.util.BoundedCache;
+
+/**
+ * Remembers whether paths on the host file-system exist, and whether they are files or directories, for
+ * {@link Filesystem#cached() cached} {@link Filesystem} conditions. Paths are looked up on first use, or up front with
+ * {@link #scan(File)}, and forgotten as soon as a {@link WatchService} reports that they, or one of their parent
+ * directories, were created or deleted.
+ * <p>
+ * If the host file-system cannot be watched, every lookup goes to the file-system. The {@link #getDefault() default}
+ * index stops watching the file-system once every servlet context that {@link #register(Object) registered} with it is
+ * destroyed, and resumes on its next lookup.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class FilesystemIndex
+{
+   private static final Logger log = Logger.getLogger(FilesystemIndex.class);
+
+   private static final FilesystemIndex DEFAULT = new FilesystemIndex();
+   private static final int MAX_SIZE = 8192;
+
+   private enum Kind
+   {
+      FILE, DIRECTORY, MISSING
+   }
+
+   private final BoundedCache<Path, Kind> entries = new BoundedCache<Path, Kind>(MAX_SIZE);
+   private final ConcurrentMap<Path, WatchKey> watched = new ConcurrentHashMap<Path, WatchKey>();
+   private final AtomicLong changes = new AtomicLong();
+   private final Set<Object> owners = new HashSet<Object>();
+
+   private WatchService watcher;
+   private boolean unavailable = false;
+
+   /**
+    * Get the {@link FilesystemIndex} shared by all {@link Filesystem} conditions that are {@link Filesystem#cached()
+    * cached} without specifying an index.
+    */
+   public static FilesystemIndex getDefault()
+   {
+      return DEFAULT;
+   }
+
+   /**
+    * Return <code>true</code> if the given {@link File} exists and is a normal file.
+    */
+   public boolean isFile(File file)
+   {
+      return lookup(file) == Kind.FILE;
+   }
+
+   /**
+    * Return <code>true</code> if the given {@link File} exists and is a directory.
+    */
+   public boolean isDirectory(File file)
+   {
+      return lookup(file) == Kind.DIRECTORY;
+   }
+
+   /**
+    * Index all files and directories below the given root directory, so that later lookups need not touch the
+    * file-system.
+    */
+   public FilesystemIndex scan(File root)
+   {
+      Assert.notNull(root, "Root directory must not be null.");
+      final WatchService watcher = getWatcher();
+      if (watcher != null)
+      {
+         try {
+            Files.walkFileTree(normalize(root), new SimpleFileVisitor<Path>() {
+               @Override
+               public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+                        throws IOException
+               {
+                  register(watcher, directory);
+                  entries.put(directory, Kind.DIRECTORY);
+                  return FileVisitResult.CONTINUE;
+               }
+
+               @Override
+               public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+               {
+                  entries.put(file, attributes.isDirectory() ? Kind.DIRECTORY : attributes.isRegularFile() ? Kind.FILE
+                           : Kind.MISSING);
+                  return FileVisitResult.CONTINUE;
+               }
+            });
+         }
+         catch (IOException e) {
+            throw new RewriteException("Could not index [" + root + "]", e);
+         }
+      }
+      return this;
+   }
+
+   /**
+    * Forget all indexed paths. Directories remain watched.
+    */
+   public void clear()
+   {
+      changes.incrementAndGet();
+      entries.clear();
+   }
+
+   /**
+    * Forget all indexed paths and stop watching the file-system. Later lookups index paths again.
+    */
+   public synchronized void close()
+   {
+      if (watcher != null)
+      {
+         try {
+            watcher.close();
+         }
+         catch (IOException e) {
+            log.warn("Could not stop watching the file-system", e);
+         }
+         watcher = null;
+      }
+      watched.clear();
+      clear();
+   }
+
+   /**
+    * Record that the given owner, such as a servlet context, uses this index.
+    */
+   public synchronized void register(Object owner)
+   {
+      Assert.notNull(owner, "Owner must not be null.");
+      owners.add(owner);
+   }
+
+   /**
+    * Record that the given owner no longer uses this index, and {@link #close()} it once all registered owners are
+    * gone. An index shared by several applications thus keeps watching the file-system until the last of them is
+    * undeployed.
+    */
+   public synchronized void unregister(Object owner)
+   {
+      if (owners.remove(owner) && owners.isEmpty())
+         close();
+   }
+
+   /**
+    * Get the number of lookups answered from this index.
+    */
+   public long getHits()
+   {
+      return entries.getHitCount();
+   }
+
+   /**
+    * Get the number of lookups that went to the file-system.
+    */
+   public long getMisses()
+   {
+      return entries.getMissCount();
+   }
+
+   /**
+    * Get the fraction of lookups answered from this index, or <code>0</code> if there were none.
+    */
+   public double getHitRate()
+   {
+      long hits = getHits();
+      long total = hits + getMisses();
+      return total == 0 ? 0 : (double) hits / total;
+   }
+
+   /**
+    * Get the number of paths currently indexed.
+    */
+   public int size()
+   {
+      return entries.size();
+   }
+
+   private Kind lookup(File file)
+   {
+      Path path = normalize(file);
+      Kind kind = entries.get(path);
+      if (kind != null)
+         return kind;
+
+      /*
+       * Watch before looking, so that a change made while looking is not missed, and do not keep what was seen if any
+       * change was reported in the meantime.
+       */
+      long seen = changes.get();
+      boolean watching = watch(path);
+      kind = Files.isRegularFile(path) ? Kind.FILE : Files.isDirectory(path) ? Kind.DIRECTORY : Kind.MISSING;
+      if (watching)
+      {
+         entries.put(path, kind);
+         if (changes.get() != seen)
+            entries.remove(path, kind);
+      }
+      return kind;
+   }
+
+   /**
+    * Get the absolute, normalized {@link Path} of the given {@link File}, so that each file is indexed only once however
+    * it is named.
+    */
+   private static Path normalize(File file)
+   {
+      return file.getAbsoluteFile().toPath().normalize();
+   }
+
+   /**
+    * Watch the nearest existing parent directory of the given {@link File}, which reports its creation or deletion.
+    */
+   private boolean watch(Path path)
+   {
+      WatchService watcher = getWatcher();
+      if (watcher == null)
+         return false;
+
+      Path directory = path.getParent();
+      while (directory != null && !Files.isDirectory(directory))
+      {
+         directory = directory.getParent();
+      }
+      if (directory == null)
+         return false;
+
+      try {
+         register(watcher, directory);
+         return true;
+      }
+      catch (IOException e) {
+         log.debug("Could not watch [" + directory + "] for changes", e);
+         return false;
+      }
+      catch (ClosedWatchServiceException e) {
+         return false;
+      }
+   }
+
+   private void register(WatchService watcher, Path directory) throws IOException
+   {
+      if (!watched.containsKey(directory))
+      {
+         WatchKey key = directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                  StandardWatchEventKinds.ENTRY_DELETE);
+         watched.put(directory, key);
+      }
+   }
+
+   private synchronized WatchService getWatcher()
+   {
+      if (watcher == null && !unavailable)
+      {
+         try {
+            watcher = FileSystems.getDefault().newWatchService();
+            start(watcher);
+         }
+         catch (IOException e) {
+            log.warn("Could not watch the file-system for changes, cached paths will not be indexed", e);
+            unavailable = true;
+         }
+         catch (UnsupportedOperationException e) {
+            log.warn("Could not watch the file-system for changes, cached paths will not be indexed", e);
+            unavailable = true;
+         }
+      }
+      return watcher;
+   }
+
+   private void start(final WatchService watcher)
+   {
+      Thread thread = new Thread(new Runnable() {
+         @Override
+         public void run()
+         {
+            while (true)
+            {
+               WatchKey key;
+               try {
+                  key = watcher.take();
+               }
+               catch (InterruptedException e) {
+                  return;
+               }
+               catch (ClosedWatchServiceException e) {
+                  return;
+               }
+
+               Path directory = (Path) key.watchable();
+               for (WatchEvent<?> event : key.pollEvents()) {
+                  if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                     clear();
+                  else
+                     invalidate(directory.resolve((Path) event.context()));
+               }
+
+               if (!key.reset())
+               {
+                  watched.remove(directory, key);
+                  invalidate(directory);
+               }
+            }
+         }
+      }, "rewrite-filesystem-watcher");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   /**
+    * Forget the given path, and all paths below it.
+    */
+   private void invalidate(Path path)
+   {
+      changes.incrementAndGet();
+      for (Path entry : entries.keys()) {
+         if (entry.startsWith(path))
+            entries.remove(entry);
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "FilesystemIndex [size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+   }
+}
@@ -31,7 +31,7 @@ import org.ocpsoft.rewrite.event.Rewrite;
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  * 
  */
-public final class Not extends DefaultConditionBuilder implements CompositeCondition
+public final class Not extends DefaultConditionBuilder implements CompositeCondition, Cacheable
 {
    private final Condition condition;
 
@@ -76,5 +76,9 @@ public final class Not extends DefaultConditionBuilder implements CompositeCondi
       return "Not.any(" + condition + ")";
    }
 
-
+   @Override
+   public boolean isCacheable()
+   {
+      return true;
+   }
 }
@@ -31,7 +31,7 @@ import org.ocpsoft.rewrite.event.Rewrite;
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public final class Or extends DefaultConditionBuilder implements CompositeCondition
+public final class Or extends DefaultConditionBuilder implements CompositeCondition, Cacheable
 {
    private final Condition[] conditions;
 
@@ -96,4 +96,10 @@ public final class Or extends DefaultConditionBuilder implements CompositeCondit
       }
       return result;
    }
+
+   @Override
+   public boolean isCacheable()
+   {
+      return true;
+   }
 }
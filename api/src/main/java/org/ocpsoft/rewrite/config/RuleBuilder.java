@@ -43,8 +43,8 @@ import org.ocpsoft.rewrite.util.Visitor;
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public final class RuleBuilder implements ParameterizedRule, RelocatableRule, CompositeCondition, CompositeOperation,
-         CompositeRule, Context
+public final class RuleBuilder implements ParameterizedRule, RelocatableRule, ConjunctiveCondition,
+         Cacheable, CompositeOperation, CompositeRule, Context
 {
    private final ParameterStore store;
 
@@ -430,4 +430,10 @@ public final class RuleBuilder implements ParameterizedRule, RelocatableRule, Co
 
       return operation == null ? "" : operation.toString();
    }
+
+   @Override
+   public boolean isCacheable()
+   {
+      return true;
+   }
 }
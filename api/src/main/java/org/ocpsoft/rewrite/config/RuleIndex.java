@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config;
+
+import java.util.List;
+
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.spi.RuleIndexProvider;
+
+/**
+ * A precompiled lookup structure over the {@link Rule} instances of a {@link Configuration}. Built once per
+ * {@link Configuration} by a {@link RuleIndexProvider}.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public interface RuleIndex
+{
+   /**
+    * Return the {@link Rule} instances that may match the given {@link Rewrite} event, in the same relative order in
+    * which they appear in {@link Configuration#getRules()}. {@link Rule} instances that are not returned are
+    * guaranteed not to match the event.
+    */
+   List<Rule> getCandidates(Rewrite event);
+}
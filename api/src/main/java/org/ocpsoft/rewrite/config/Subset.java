@@ -32,7 +32,6 @@ import org.ocpsoft.rewrite.event.Rewrite;
 import org.ocpsoft.rewrite.param.ConfigurableParameter;
 import org.ocpsoft.rewrite.param.Constraint;
 import org.ocpsoft.rewrite.param.DefaultParameter;
-import org.ocpsoft.rewrite.param.DefaultParameterStore;
 import org.ocpsoft.rewrite.param.Parameter;
 import org.ocpsoft.rewrite.param.ParameterStore;
 import org.ocpsoft.rewrite.param.ParameterValueStore;
@@ -165,11 +164,6 @@ public class Subset extends DefaultOperationBuilder implements CompositeOperatio
       private final List<Operation> postOperations = new ArrayList<Operation>();
       private RewriteState state;
 
-      public EvaluationContextImpl()
-      {
-         put(ParameterStore.class, new DefaultParameterStore());
-      }
-
       @Override
       public void addPreOperation(final Operation operation)
       {
@@ -179,7 +173,7 @@ public class Subset extends DefaultOperationBuilder implements CompositeOperatio
       @Override
       public void addPostOperation(final Operation operation)
       {
-         this.preOperations.add(operation);
+         this.postOperations.add(operation);
       }
 
       /**
@@ -210,8 +204,9 @@ public class Subset extends DefaultOperationBuilder implements CompositeOperatio
       @Override
       public void clear()
       {
+         this.preOperations.clear();
          this.postOperations.clear();
-         this.postOperations.clear();
+         state = null;
          super.clear();
       }
 
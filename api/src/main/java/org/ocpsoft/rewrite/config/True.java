@@ -23,7 +23,7 @@ import org.ocpsoft.rewrite.event.Rewrite;
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public final class True extends DefaultConditionBuilder
+public final class True extends DefaultConditionBuilder implements Cacheable
 {
    @Override
    public boolean evaluate(final Rewrite event, final EvaluationContext context)
@@ -36,4 +36,10 @@ public final class True extends DefaultConditionBuilder
    {
       return "new True()";
    }
+
+   @Override
+   public boolean isCacheable()
+   {
+      return true;
+   }
 }
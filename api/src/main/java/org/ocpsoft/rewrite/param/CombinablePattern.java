@@ -0,0 +1,31 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.param;
+
+/**
+ * A {@link Parameterized} object whose {@link RegexParameterizedPatternParser} instances may be matched by a shared
+ * {@link CombinedPatternMatcher}.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public interface CombinablePattern
+{
+   /**
+    * Add each {@link RegexParameterizedPatternParser} of this object to the {@link CombinedPatternMatcher} responsible
+    * for the input value against which that pattern is matched.
+    */
+   void combine(CombinedPatternMatchers matchers);
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.param;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ocpsoft.rewrite.context.Context;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.param.RegexParameterizedPatternParser.RegexGroup;
+
+/**
+ * Matches many {@link RegexParameterizedPatternParser} instances against the same input value in a single pass, using
+ * a trie of '/' delimited segments instead of one {@link java.util.regex.Pattern} per parser. Only patterns whose
+ * parameters are each confined to a single segment, and which use the default segment parameter pattern "[^/]+" with
+ * no additional {@link RegexConstraint}, can be added; all other patterns continue to use their own
+ * {@link java.util.regex.Pattern}.
+ * <p>
+ * Results are computed once per input value and stored in the {@link Rewrite#getRewriteContext()}, so that every
+ * added pattern evaluated during the same {@link Rewrite} shares a single pass over the input.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class CombinedPatternMatcher
+{
+   private static final String SEGMENT_PARAMETER_PATTERN = "[^/]+";
+
+   private final Node root = new Node();
+   private final Map<RegexParameterizedPatternParser, Integer> parsers = new IdentityHashMap<RegexParameterizedPatternParser, Integer>();
+
+   /**
+    * Add the given {@link RegexParameterizedPatternParser} to this matcher. Return <code>true</code> if the pattern is
+    * supported and will be matched by this {@link CombinedPatternMatcher}; otherwise, return <code>false</code>.
+    */
+   public boolean add(final RegexParameterizedPatternParser parser)
+   {
+      if (parsers.containsKey(parser))
+         return true;
+
+      List<Segment> segments = getSegments(parser);
+      if (segments == null)
+         return false;
+
+      int id = parsers.size();
+      Node node = root;
+      for (Segment segment : segments) {
+         node = node.getOrCreate(segment);
+      }
+      node.terminals.add(id);
+
+      parsers.put(parser, id);
+      parser.setCombinedPatternMatcher(this);
+      return true;
+   }
+
+   /**
+    * Get the number of patterns matched by this {@link CombinedPatternMatcher}.
+    */
+   public int size()
+   {
+      return parsers.size();
+   }
+
+   /**
+    * Parse the given value for the given {@link RegexParameterizedPatternParser}, re-using the results of any prior
+    * pass over the same value during the given {@link Rewrite}.
+    */
+   ParameterizedPatternResult parse(final RegexParameterizedPatternParser parser, final Rewrite event,
+            final String value)
+   {
+      Integer id = parsers.get(parser);
+      if (id == null)
+         return parser.parse(value);
+
+      Context context = event == null ? null : event.getRewriteContext();
+
+      Match match = null;
+      if (context != null)
+         match = (Match) context.get(this);
+
+      if (match == null || !match.value.equals(value))
+      {
+         match = new Match(value, match(value));
+         if (context != null)
+            context.put(this, match);
+      }
+
+      return new CombinedPatternResult(parser.getGroups(), match.values[id]);
+   }
+
+   /**
+    * Perform a single pass over the given value, returning the captured parameter values for each matching pattern,
+    * indexed by pattern ID. Patterns that do not match have a <code>null</code> entry.
+    */
+   String[][] match(final String value)
+   {
+      String[][] result = new String[parsers.size()][];
+      List<String> segments = split(value);
+      match(root, segments, 0, new ArrayList<String>(), result);
+      return result;
+   }
+
+   private void match(final Node node, final List<String> segments, final int index, final List<String> captured,
+            final String[][] result)
+   {
+      if (index == segments.size())
+      {
+         for (Integer id : node.terminals) {
+            result[id] = captured.toArray(new String[captured.size()]);
+         }
+         return;
+      }
+
+      String segment = segments.get(index);
+      Node literal = node.literals.get(segment);
+      if (literal != null)
+         match(literal, segments, index + 1, captured, result);
+
+      for (Edge edge : node.parameters) {
+         if (edge.matches(segment))
+         {
+            captured.add(segment.substring(edge.prefix.length(), segment.length() - edge.suffix.length()));
+            match(edge.next, segments, index + 1, captured, result);
+            captured.remove(captured.size() - 1);
+         }
+      }
+   }
+
+   private static List<String> split(final String value)
+   {
+      List<String> result = new ArrayList<String>();
+      int start = 0;
+      for (int i = 0; i < value.length(); i++)
+      {
+         if (value.charAt(i) == '/')
+         {
+            result.add(value.substring(start, i));
+            start = i + 1;
+         }
+      }
+      result.add(value.substring(start));
+      return result;
+   }
+
+   /**
+    * Split the pattern of the given parser into segments, or return <code>null</code> if it cannot be represented.
+    */
+   private static List<Segment> getSegments(final RegexParameterizedPatternParser parser)
+   {
+      if (!SEGMENT_PARAMETER_PATTERN.equals(parser.getDefaultParameterPattern()))
+         return null;
+
+      ParameterStore store = parser.getParameterStore();
+      List<RegexGroup> groups = parser.getGroups();
+      for (RegexGroup group : groups) {
+         if (store != null && store.contains(group.getName()))
+         {
+            for (Constraint<String> constraint : store.get(group.getName()).getConstraints()) {
+               if (constraint instanceof RegexConstraint)
+                  return null;
+            }
+         }
+      }
+
+      List<Segment> result = new ArrayList<Segment>();
+      char[] chars = parser.getPattern().toCharArray();
+      Iterator<RegexGroup> iterator = groups.iterator();
+      RegexGroup next = iterator.hasNext() ? iterator.next() : null;
+
+      StringBuilder literal = new StringBuilder();
+      String prefix = null;
+      for (int i = 0; i < chars.length; i++)
+      {
+         if (next != null && i == next.getCapture().getStart())
+         {
+            if (prefix != null)
+               return null;
+
+            prefix = parser.unescape(literal.toString());
+            literal.setLength(0);
+            i = next.getCapture().getEnd();
+            next = iterator.hasNext() ? iterator.next() : null;
+         }
+         else if (chars[i] == '/')
+         {
+            result.add(new Segment(prefix, parser.unescape(literal.toString())));
+            literal.setLength(0);
+            prefix = null;
+         }
+         else
+            literal.append(chars[i]);
+      }
+      result.add(new Segment(prefix, parser.unescape(literal.toString())));
+
+      return result;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "CombinedPatternMatcher [patterns=" + parsers.size() + "]";
+   }
+
+   private static class Segment
+   {
+      /*
+       * null if this segment has no parameter.
+       */
+      private final String prefix;
+      private final String literal;
+
+      public Segment(final String prefix, final String literal)
+      {
+         this.prefix = prefix;
+         this.literal = literal;
+      }
+   }
+
+   private static class Edge
+   {
+      private final String prefix;
+      private final String suffix;
+      private final Node next = new Node();
+
+      public Edge(final String prefix, final String suffix)
+      {
+         this.prefix = prefix;
+         this.suffix = suffix;
+      }
+
+      public boolean matches(final String segment)
+      {
+         return segment.length() > prefix.length() + suffix.length()
+                  && segment.startsWith(prefix) && segment.endsWith(suffix);
+      }
+   }
+
+   private static class Node
+   {
+      private final Map<String, Node> literals = new HashMap<String, Node>();
+      private final List<Edge> parameters = new ArrayList<Edge>();
+      private final List<Integer> terminals = new ArrayList<Integer>();
+
+      public Node getOrCreate(final Segment segment)
+      {
+         if (segment.prefix == null)
+         {
+            Node result = literals.get(segment.literal);
+            if (result == null)
+            {
+               result = new Node();
+               literals.put(segment.literal, result);
+            }
+            return result;
+         }
+
+         for (Edge edge : parameters) {
+            if (edge.prefix.equals(segment.prefix) && edge.suffix.equals(segment.literal))
+               return edge.next;
+         }
+
+         Edge edge = new Edge(segment.prefix, segment.literal);
+         parameters.add(edge);
+         return edge.next;
+      }
+   }
+
+   private static class Match
+   {
+      private final String value;
+      private final String[][] values;
+
+      public Match(final String value, final String[][] values)
+      {
+         this.value = value;
+         this.values = values;
+      }
+   }
+
+   private static class CombinedPatternResult implements ParameterizedPatternResult
+   {
+      private final List<RegexGroup> groups;
+      private final String[] values;
+
+      public CombinedPatternResult(final List<RegexGroup> groups, final String[] values)
+      {
+         this.groups = groups;
+         this.values = values;
+      }
+
+      @Override
+      public boolean matches()
+      {
+         return values != null;
+      }
+
+      @Override
+      public Map<Parameter<?>, String> getParameters(final EvaluationContext context)
+      {
+         Map<Parameter<?>, String> result = new LinkedHashMap<Parameter<?>, String>();
+         ParameterStore store = DefaultParameterStore.getInstance(context);
+
+         if (matches())
+         {
+            for (RegexGroup group : groups) {
+               result.put(store.get(group.getName()), values[group.getIndex()]);
+            }
+         }
+         return result;
+      }
+
+      @Override
+      public boolean isValid(final Rewrite event, final EvaluationContext context)
+      {
+         if (matches())
+         {
+            ParameterStore store = DefaultParameterStore.getInstance(context);
+            ParameterValueStore valueStore = DefaultParameterValueStore.getInstance(context);
+            for (RegexGroup group : groups) {
+               Parameter<?> param = store.get(group.getName());
+               if (!valueStore.isValid(event, context, param, values[group.getIndex()]))
+                  return false;
+            }
+            return true;
+         }
+         return false;
+      }
+
+      @Override
+      public boolean submit(final Rewrite event, final EvaluationContext context)
+      {
+         if (matches())
+         {
+            ParameterStore store = DefaultParameterStore.getInstance(context);
+            ParameterValueStore valueStore = DefaultParameterValueStore.getInstance(context);
+            for (RegexGroup group : groups) {
+               Parameter<?> param = store.get(group.getName());
+               if (!valueStore.submit(event, context, param, values[group.getIndex()]))
+                  return false;
+            }
+            return true;
+         }
+         return false;
+      }
+   }
+}
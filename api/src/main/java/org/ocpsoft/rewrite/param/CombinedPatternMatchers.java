@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.param;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds one {@link CombinedPatternMatcher} for each kind of input value, e.g: the request path or the full request
+ * URL.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class CombinedPatternMatchers
+{
+   private final Map<Object, CombinedPatternMatcher> matchers = new LinkedHashMap<Object, CombinedPatternMatcher>();
+
+   /**
+    * Get the {@link CombinedPatternMatcher} for the given input key, creating it if necessary.
+    */
+   public CombinedPatternMatcher get(final Object input)
+   {
+      CombinedPatternMatcher result = matchers.get(input);
+      if (result == null)
+      {
+         result = new CombinedPatternMatcher();
+         matchers.put(input, result);
+      }
+      return result;
+   }
+
+   /**
+    * Get all {@link CombinedPatternMatcher} instances created by this registry.
+    */
+   public Collection<CombinedPatternMatcher> getMatchers()
+   {
+      return Collections.unmodifiableCollection(matchers.values());
+   }
+
+   @Override
+   public String toString()
+   {
+      return "CombinedPatternMatchers " + matchers;
+   }
+}
@@ -177,6 +177,14 @@ public class DefaultParameterValueStore implements ParameterValueStore, Iterable
       return result;
    }
 
+   /**
+    * Remove all {@link Parameter} and value pairs from this {@link DefaultParameterValueStore}, so that it may be reused.
+    */
+   public void clear()
+   {
+      map.clear();
+   }
+
    @Override
    public Iterator<Entry<Parameter<?>, String>> iterator()
    {
@@ -51,6 +51,7 @@ public class RegexParameterizedPatternParser implements ParameterizedPatternPars
    private String defaultParameterPattern;
    private ParameterStore store;
    private CaptureType type;
+   private CombinedPatternMatcher combined;
 
    RegexParameterizedPatternParser(RegexParameterizedPatternBuilder builder,
             String defaultParameterPattern, String pattern)
@@ -164,6 +165,38 @@ public class RegexParameterizedPatternParser implements ParameterizedPatternPars
       return new RegexParameterizedPatternMatchResult(groups, getCompiledPattern(store).matcher(value));
    }
 
+   /**
+    * Parse the given value during the given {@link Rewrite} event. If this pattern has been added to a
+    * {@link CombinedPatternMatcher}, the result of its single pass over the value is used instead of this pattern's own
+    * {@link Pattern}; otherwise, this is equivalent to {@link #parse(String)}.
+    */
+   public ParameterizedPatternResult parse(final Rewrite event, final String value)
+   {
+      if (combined != null)
+         return combined.parse(this, event, value);
+      return parse(value);
+   }
+
+   void setCombinedPatternMatcher(CombinedPatternMatcher combined)
+   {
+      this.combined = combined;
+   }
+
+   List<RegexGroup> getGroups()
+   {
+      return groups;
+   }
+
+   String getDefaultParameterPattern()
+   {
+      return defaultParameterPattern;
+   }
+
+   ParameterStore getParameterStore()
+   {
+      return store;
+   }
+
    public Pattern getCompiledPattern(ParameterStore store)
    {
       if (compiledPattern == null)
@@ -262,7 +295,46 @@ public class RegexParameterizedPatternParser implements ParameterizedPatternPars
       return result.toString();
    }
 
-   private String unescape(String literal)
+   /**
+    * Get the literal portion of this pattern that precedes the first parameter, or the entire pattern if it contains no
+    * parameters. Every value matched by this pattern starts with the returned prefix.
+    */
+   public String getLiteralPrefix()
+   {
+      if (groups.isEmpty())
+         return unescape(pattern);
+      return unescape(String.valueOf(Arrays.copyOfRange(chars, 0, groups.get(0).getCapture().getStart())));
+   }
+
+   /**
+    * Return <code>true</code> if whether this pattern matches a given value depends only on that value; that is, if
+    * every {@link Parameter} is constrained only by {@link RegexConstraint} instances and has no {@link Transposition}
+    * instances. Return <code>false</code> if the {@link ParameterStore} has not yet been set.
+    */
+   public boolean isSelfContained()
+   {
+      if (store == null)
+         return false;
+
+      for (RegexGroup group : groups)
+      {
+         if (!store.contains(group.getName()))
+            return false;
+
+         Parameter<?> parameter = store.get(group.getName());
+         if (!parameter.getTranspositions().isEmpty())
+            return false;
+
+         for (Constraint<String> constraint : parameter.getConstraints())
+         {
+            if (!(constraint instanceof RegexConstraint))
+               return false;
+         }
+      }
+      return true;
+   }
+
+   String unescape(String literal)
    {
       String result = literal.replace("\\\\", "\\");
       result = result.replace("\\" + type.getBegin(), String.valueOf(type.getBegin()));
@@ -340,6 +412,7 @@ public class RegexParameterizedPatternParser implements ParameterizedPatternPars
    public void setParameterStore(ParameterStore store)
    {
       this.store = store;
+      this.combined = null;
    }
 
    private static class RegexParameterizedPatternMatchResult implements ParameterizedPatternResult
@@ -17,28 +17,46 @@ package org.ocpsoft.rewrite.spi;
 
 import java.util.List;
 
+import org.ocpsoft.rewrite.config.Configuration;
 import org.ocpsoft.rewrite.config.Rule;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.event.Rewrite;
 
 /**
  * SPI for implementing {@link Rule} caching. For use in optimized {@link RewriteProvider} instances.
+ * <p>
+ * For each event, the {@link RewriteProvider} first asks every {@link RuleCacheProvider} to
+ * {@link #createKey(Rewrite, EvaluationContext) create a key}, then looks up the {@link Rule} instances cached for that
+ * key. If none are cached, it evaluates its candidate {@link Rule} instances and {@link #put(Object, List) stores} those
+ * that may still match an event with the same key.
+ * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
 public interface RuleCacheProvider
 {
    /**
-    * Get {@link Rule} instances matching the given cache key.
+    * Get the {@link Rule} instances stored for the given cache key, or <code>null</code> if nothing is stored for it.
+    * An empty {@link List} is a cache hit, meaning that no {@link Rule} can match an event with the given key, and no
+    * {@link Rule} will be evaluated.
     */
    List<Rule> get(Object key);
 
    /**
-    * Store a list of {@link Rule} instances matching the given cache key.
+    * Store the {@link Rule} instances that may match an event with the given cache key, in the order in which they must
+    * be evaluated. {@link Rule} instances that did not match, and never will for an event with the same key, are left
+    * out, so the {@link List} may be empty. The {@link List} must be returned as given by later calls to
+    * {@link #get(Object)} with an equal key, and must not be modified.
     */
    void put(Object key, List<Rule> rules);
 
    /**
-    * Create a unique key for the given {@link Rewrite} event and {@link EvaluationContext} states.
+    * Create a unique key for the given {@link Rewrite} event and {@link EvaluationContext} states, or return
+    * <code>null</code> if the event cannot be cached by this provider.
+    * <p>
+    * The {@link Configuration} whose {@link Rule} instances are being evaluated is available from
+    * {@link EvaluationContext#get(Object)} under the key <code>Configuration.class</code>. Since the
+    * {@link Configuration} may be reloaded, keys created for different {@link Configuration} instances must not be
+    * equal, or entries must be discarded when the {@link Configuration} changes.
     */
    Object createKey(Rewrite event, EvaluationContext context);
-}
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.spi;
+
+import java.util.List;
+
+import org.ocpsoft.common.pattern.Specialized;
+import org.ocpsoft.common.pattern.Weighted;
+import org.ocpsoft.rewrite.config.Configuration;
+import org.ocpsoft.rewrite.config.ConfigurationLoader;
+import org.ocpsoft.rewrite.config.Rule;
+import org.ocpsoft.rewrite.config.RuleIndex;
+
+/**
+ * SPI for compiling a {@link RuleIndex} over the {@link Rule} instances of a {@link Configuration}. Invoked by
+ * {@link ConfigurationLoader} once each time a {@link Configuration} is built. The first provider (in order of
+ * {@link Weighted#priority()}) that handles the current context and returns a non-<code>null</code> {@link RuleIndex}
+ * is used.
+ * <p>
+ * Additional index providers may be specified by providing a service activator file containing the name of your
+ * implementations:
+ * <p>
+ * <code> /META-INF/services/org.ocpsoft.rewrite.spi.RuleIndexProvider<br>
+ * 
+ * --------------<br>
+ * com.example.RuleIndexProviderImpl</code>
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public interface RuleIndexProvider extends Weighted, Specialized<Object>
+{
+   /**
+    * Compile a {@link RuleIndex} for the given {@link Rule} instances, or return <code>null</code> if no index should
+    * be used.
+    */
+   RuleIndex getIndex(Object context, List<Rule> rules);
+}
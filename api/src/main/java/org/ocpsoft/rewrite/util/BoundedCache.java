@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ocpsoft.common.util.Assert;
+
+/**
+ * A thread-safe cache holding a bounded number of entries. Entries are held in a fixed number of segments, each locked
+ * independently and evicting its least recently used entry once full, so that concurrent lookups of different keys
+ * rarely contend.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of cached values
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class BoundedCache<K, V>
+{
+   private static final int SEGMENTS = 16;
+
+   private final int capacity;
+   private final List<Segment<K, V>> segments;
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+   private final AtomicLong evictions = new AtomicLong();
+
+   /**
+    * Create a new {@link BoundedCache} holding about the given number of entries. Each segment holds an equal share of
+    * the capacity, rounded up.
+    */
+   public BoundedCache(final int capacity)
+   {
+      Assert.assertTrue(capacity > 0, "Capacity must be greater than zero.");
+      this.capacity = capacity;
+
+      int perSegment = (capacity + SEGMENTS - 1) / SEGMENTS;
+      this.segments = new ArrayList<Segment<K, V>>(SEGMENTS);
+      for (int i = 0; i < SEGMENTS; i++) {
+         segments.add(new Segment<K, V>(perSegment, evictions));
+      }
+   }
+
+   /**
+    * Get the value cached for the given key, or <code>null</code> if there is none.
+    */
+   public V get(final K key)
+   {
+      V result = segmentFor(key).get(key);
+      if (result == null)
+         misses.incrementAndGet();
+      else
+         hits.incrementAndGet();
+      return result;
+   }
+
+   /**
+    * Cache the given value for the given key, evicting the least recently used entry of its segment if full.
+    */
+   public void put(final K key, final V value)
+   {
+      Assert.notNull(value, "Value must not be null.");
+      segmentFor(key).put(key, value);
+   }
+
+   /**
+    * Remove the value cached for the given key, and return it, or <code>null</code> if there was none.
+    */
+   public V remove(final K key)
+   {
+      return segmentFor(key).remove(key, null);
+   }
+
+   /**
+    * Remove the value cached for the given key only if it is the given value. Return <code>true</code> if it was
+    * removed.
+    */
+   public boolean remove(final K key, final V value)
+   {
+      Assert.notNull(value, "Value must not be null.");
+      return segmentFor(key).remove(key, value) != null;
+   }
+
+   /**
+    * Get a snapshot of the keys currently cached.
+    */
+   public List<K> keys()
+   {
+      List<K> result = new ArrayList<K>();
+      for (Segment<K, V> segment : segments) {
+         segment.addKeysTo(result);
+      }
+      return result;
+   }
+
+   /**
+    * Remove all cached entries.
+    */
+   public void clear()
+   {
+      for (Segment<K, V> segment : segments) {
+         segment.clear();
+      }
+   }
+
+   /**
+    * Get the number of entries currently cached.
+    */
+   public int size()
+   {
+      int result = 0;
+      for (Segment<K, V> segment : segments) {
+         result += segment.size();
+      }
+      return result;
+   }
+
+   /**
+    * Get the number of entries this cache was created to hold.
+    */
+   public int getCapacity()
+   {
+      return capacity;
+   }
+
+   /**
+    * Get the number of lookups that returned a cached value.
+    */
+   public long getHitCount()
+   {
+      return hits.get();
+   }
+
+   /**
+    * Get the number of lookups that did not return a cached value.
+    */
+   public long getMissCount()
+   {
+      return misses.get();
+   }
+
+   /**
+    * Get the number of entries discarded to make room for new entries.
+    */
+   public long getEvictionCount()
+   {
+      return evictions.get();
+   }
+
+   private Segment<K, V> segmentFor(final K key)
+   {
+      int hash = key == null ? 0 : key.hashCode();
+      hash ^= (hash >>> 16);
+      return segments.get(hash & (SEGMENTS - 1));
+   }
+
+   @Override
+   public String toString()
+   {
+      return "BoundedCache [capacity=" + capacity + ", size=" + size() + ", hits=" + hits + ", misses=" + misses
+               + ", evictions=" + evictions + "]";
+   }
+
+   /**
+    * A synchronized, access-ordered map evicting its least recently used entry once full.
+    */
+   private static class Segment<K, V>
+   {
+      private final Map<K, V> map;
+
+      public Segment(final int capacity, final AtomicLong evictions)
+      {
+         this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = -2283396409460447545L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+            {
+               if (size() > capacity)
+               {
+                  evictions.incrementAndGet();
+                  return true;
+               }
+               return false;
+            }
+         };
+      }
+
+      public synchronized V get(final K key)
+      {
+         return map.get(key);
+      }
+
+      public synchronized void put(final K key, final V value)
+      {
+         map.put(key, value);
+      }
+
+      /**
+       * Remove the value for the given key, if it is the given value or the given value is <code>null</code>.
+       */
+      public synchronized V remove(final K key, final V value)
+      {
+         V current = map.get(key);
+         if (current == null || (value != null && !value.equals(current)))
+            return null;
+         return map.remove(key);
+      }
+
+      public synchronized void addKeysTo(final List<K> keys)
+      {
+         keys.addAll(map.keySet());
+      }
+
+      public synchronized void clear()
+      {
+         map.clear();
+      }
+
+      public synchronized int size()
+      {
+         return map.size();
+      }
+   }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ocpsoft.rewrite.event.InboundRewrite;
+import org.ocpsoft.rewrite.event.OutboundRewrite;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class DispatchKeyTest
+{
+   @Test
+   public void testAndCombinesIndependentProperties()
+   {
+      DispatchKey key = DispatchKey.eventType(InboundRewrite.class).and(DispatchKey.method("GET"))
+               .and(DispatchKey.pathPrefix("/foo"));
+
+      Assert.assertEquals(InboundRewrite.class, key.getEventType());
+      Assert.assertEquals("GET", key.getMethod());
+      Assert.assertEquals("/foo", key.getPathPrefix());
+   }
+
+   @Test
+   public void testAndKeepsLongestPathPrefix()
+   {
+      Assert.assertEquals("/foo/bar", DispatchKey.pathPrefix("/foo").and(DispatchKey.pathPrefix("/foo/bar"))
+               .getPathPrefix());
+      Assert.assertEquals("/foo/bar", DispatchKey.pathPrefix("/foo/bar").and(DispatchKey.pathPrefix("/foo"))
+               .getPathPrefix());
+   }
+
+   @Test
+   public void testAndReturnsNullOnContradiction()
+   {
+      Assert.assertNull(DispatchKey.pathPrefix("/foo").and(DispatchKey.pathPrefix("/bar")));
+      Assert.assertNull(DispatchKey.method("GET").and(DispatchKey.method("POST")));
+      Assert.assertNull(DispatchKey.eventType(InboundRewrite.class).and(
+               DispatchKey.eventType(OutboundRewrite.class)));
+   }
+
+   @Test
+   public void testEmptyPathPrefixIsAny()
+   {
+      Assert.assertEquals(DispatchKey.any(), DispatchKey.pathPrefix(""));
+      Assert.assertEquals(DispatchKey.method("GET"), DispatchKey.any().and(DispatchKey.method("GET")));
+   }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ocpsoft.rewrite.MockEvaluationContext;
+import org.ocpsoft.rewrite.MockRewrite;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.param.DefaultParameterStore;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class FilesystemIndexTest
+{
+   private File root;
+   private FilesystemIndex index;
+
+   @Before
+   public void before() throws IOException
+   {
+      root = Files.createTempDirectory("FilesystemIndexTest").toFile();
+      index = new FilesystemIndex();
+   }
+
+   @After
+   public void after()
+   {
+      index.close();
+      delete(root);
+   }
+
+   @Test
+   public void testAnswersRepeatedLookupsFromIndex() throws IOException
+   {
+      File file = new File(root, "page.html");
+      file.createNewFile();
+
+      Assert.assertTrue(index.isFile(file));
+      Assert.assertFalse(index.isDirectory(file));
+      Assert.assertFalse(index.isFile(new File(root, "missing.html")));
+      Assert.assertFalse(index.isFile(new File(root, "missing.html")));
+
+      Assert.assertEquals(2, index.getMisses());
+      Assert.assertEquals(2, index.getHits());
+      Assert.assertEquals(0.5, index.getHitRate(), 0);
+   }
+
+   @Test
+   public void testForgetsCreatedAndDeletedPaths() throws IOException, InterruptedException
+   {
+      File file = new File(root, "pages/page.html");
+      Assert.assertFalse(index.isFile(file));
+
+      file.getParentFile().mkdirs();
+      file.createNewFile();
+      for (int i = 0; i < 1000 && !index.isFile(file); i++)
+         Thread.sleep(10);
+      Assert.assertTrue(index.isFile(file));
+
+      file.delete();
+      for (int i = 0; i < 1000 && index.isFile(file); i++)
+         Thread.sleep(10);
+      Assert.assertFalse(index.isFile(file));
+   }
+
+   @Test
+   public void testScanIndexesDirectoryTree() throws IOException
+   {
+      new File(root, "pages").mkdirs();
+      new File(root, "pages/page.html").createNewFile();
+      index.scan(root);
+
+      Assert.assertTrue(index.isDirectory(new File(root, "pages")));
+      Assert.assertTrue(index.isFile(new File(root, "pages/page.html")));
+      Assert.assertEquals(0, index.getMisses());
+   }
+
+   @Test
+   public void testIndexesEachPathOnce() throws IOException
+   {
+      new File(root, "pages").mkdirs();
+      File file = new File(root, "pages/page.html");
+      file.createNewFile();
+
+      Assert.assertTrue(index.isFile(file));
+      Assert.assertTrue(index.isFile(new File(root, "pages/../pages/./page.html")));
+      Assert.assertEquals(1, index.getMisses());
+      Assert.assertEquals(1, index.size());
+   }
+
+   @Test
+   public void testClosesOnceAllOwnersAreGone() throws IOException
+   {
+      File file = new File(root, "page.html");
+      file.createNewFile();
+
+      Object first = new Object();
+      Object second = new Object();
+      index.register(first);
+      index.register(second);
+      Assert.assertTrue(index.isFile(file));
+
+      index.unregister(first);
+      Assert.assertEquals(1, index.size());
+
+      index.unregister(second);
+      Assert.assertEquals(0, index.size());
+   }
+
+   @Test
+   public void testCachedFilesystemCondition() throws IOException
+   {
+      File file = new File(root, "page.html");
+      file.createNewFile();
+      Filesystem condition = Filesystem.fileExists(file).cached(index);
+      EvaluationContext context = new MockEvaluationContext();
+      FilesystemTest.initialize(DefaultParameterStore.getInstance(context), condition);
+
+      Assert.assertTrue(condition.evaluate(new MockRewrite(), context));
+      Assert.assertTrue(condition.evaluate(new MockRewrite(), context));
+      Assert.assertEquals(1, index.getMisses());
+      Assert.assertEquals(1, index.getHits());
+   }
+
+   private static void delete(File file)
+   {
+      File[] children = file.listFiles();
+      if (children != null)
+      {
+         for (File child : children) {
+            delete(child);
+         }
+      }
+      file.delete();
+   }
+}
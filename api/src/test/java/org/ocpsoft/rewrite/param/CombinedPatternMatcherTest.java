@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.param;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.ocpsoft.rewrite.MockEvaluationContext;
+import org.ocpsoft.rewrite.MockRewrite;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class CombinedPatternMatcherTest
+{
+   private static final String SEGMENT = "[^/]+";
+
+   private MockRewrite event;
+   private EvaluationContext context;
+
+   @Before
+   public void before()
+   {
+      event = new MockRewrite();
+      context = new MockEvaluationContext();
+      context.put(ParameterStore.class, new DefaultParameterStore());
+      context.put(ParameterValueStore.class, new DefaultParameterValueStore());
+   }
+
+   private RegexParameterizedPatternParser parser(String pattern)
+   {
+      RegexParameterizedPatternParser parser = new RegexParameterizedPatternParser(SEGMENT, pattern);
+      ParameterizedPatternTest.initialize((ParameterStore) context.get(ParameterStore.class), parser);
+      return parser;
+   }
+
+   @Test
+   public void testMatchesSameValuesAsRegex()
+   {
+      List<RegexParameterizedPatternParser> parsers = Arrays.asList(
+               parser("/"),
+               parser("/store"),
+               parser("/store/"),
+               parser("/store/{category}"),
+               parser("/store/{category}/{item}"),
+               parser("/store/item-{id}.html"),
+               parser("/{lang}/store"),
+               parser(""));
+
+      CombinedPatternMatcher matcher = new CombinedPatternMatcher();
+      for (RegexParameterizedPatternParser parser : parsers) {
+         Assert.assertTrue(matcher.add(parser));
+      }
+
+      List<String> values = Arrays.asList("", "/", "/store", "/store/", "/store/books", "/store/books/",
+               "/store/books/42", "/store/item-42.html", "/store/item-.html", "/en/store", "/en/store/x", "//store",
+               "store");
+
+      for (String value : values) {
+         for (RegexParameterizedPatternParser parser : parsers) {
+            ParameterizedPatternResult expected = parser.parse(value);
+            ParameterizedPatternResult actual = parser.parse(event, value);
+            Assert.assertEquals(parser + " -> " + value, expected.matches(), actual.matches());
+            Assert.assertEquals(parser + " -> " + value, expected.getParameters(context),
+                     actual.getParameters(context));
+         }
+      }
+   }
+
+   @Test
+   public void testUnsupportedPatternsAreRejected()
+   {
+      CombinedPatternMatcher matcher = new CombinedPatternMatcher();
+      Assert.assertFalse(matcher.add(parser("/{a}-{b}")));
+      Assert.assertFalse(matcher.add(new RegexParameterizedPatternParser("/{path}")));
+
+      RegexParameterizedPatternParser constrained = parser("/{id}");
+      ParameterStore store = (ParameterStore) context.get(ParameterStore.class);
+      ((ConfigurableParameter<?>) store.get("id")).constrainedBy(new RegexConstraint("[0-9]+"));
+      Assert.assertFalse(matcher.add(constrained));
+
+      Assert.assertEquals(0, matcher.size());
+   }
+
+   @Test
+   public void testSubmitCapturedValues()
+   {
+      RegexParameterizedPatternParser parser = parser("/store/{category}/{item}");
+      CombinedPatternMatcher matcher = new CombinedPatternMatcher();
+      matcher.add(parser);
+
+      Assert.assertTrue(parser.parse(event, "/store/books/42").submit(event, context));
+
+      ParameterStore store = (ParameterStore) context.get(ParameterStore.class);
+      ParameterValueStore values = (ParameterValueStore) context.get(ParameterValueStore.class);
+      Assert.assertEquals("books", values.retrieve(store.get("category")));
+      Assert.assertEquals("42", values.retrieve(store.get("item")));
+   }
+}
@@ -481,4 +481,19 @@ public class ParameterizedPatternTest
       Assert.assertEquals("/lincoln/orders/24", path.build(Arrays.<Object> asList("lincoln", "24")));
    }
 
+   @Test
+   public void testLiteralPrefix()
+   {
+      Assert.assertEquals("/", new RegexParameterizedPatternParser("/{customer}/orders").getLiteralPrefix());
+      Assert.assertEquals("/orders/", new RegexParameterizedPatternParser("/orders/{id}").getLiteralPrefix());
+      Assert.assertEquals("/orders", new RegexParameterizedPatternParser("/orders").getLiteralPrefix());
+      Assert.assertEquals("", new RegexParameterizedPatternParser("{path}").getLiteralPrefix());
+   }
+
+   @Test
+   public void testLiteralPrefixUnescapesBraces()
+   {
+      Assert.assertEquals("/{literal}/", new RegexParameterizedPatternParser("/\\{literal}/{id}").getLiteralPrefix());
+   }
+
 }
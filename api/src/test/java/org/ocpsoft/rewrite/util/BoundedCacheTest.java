@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class BoundedCacheTest
+{
+   @Test
+   public void testCountsHitsAndMisses()
+   {
+      BoundedCache<String, String> cache = new BoundedCache<String, String>(16);
+      Assert.assertNull(cache.get("a"));
+      cache.put("a", "1");
+      Assert.assertEquals("1", cache.get("a"));
+
+      Assert.assertEquals(1, cache.getHitCount());
+      Assert.assertEquals(1, cache.getMissCount());
+   }
+
+   @Test
+   public void testEvictsLeastRecentlyUsedEntries()
+   {
+      BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>(16);
+      for (int i = 0; i < 100; i++) {
+         cache.put(i, i);
+      }
+
+      Assert.assertTrue(cache.size() <= 16);
+      Assert.assertEquals(100 - cache.size(), cache.getEvictionCount());
+      Assert.assertEquals(Integer.valueOf(99), cache.get(99));
+      Assert.assertNull(cache.get(0));
+   }
+
+   @Test
+   public void testRemovesOnlyMatchingValues()
+   {
+      BoundedCache<String, String> cache = new BoundedCache<String, String>(16);
+      cache.put("a", "1");
+
+      Assert.assertFalse(cache.remove("a", "2"));
+      Assert.assertTrue(cache.remove("a", "1"));
+      Assert.assertNull(cache.remove("a"));
+      Assert.assertEquals(0, cache.size());
+   }
+
+   @Test
+   public void testKeysAndClear()
+   {
+      BoundedCache<String, String> cache = new BoundedCache<String, String>(64);
+      cache.put("a", "1");
+      cache.put("b", "2");
+
+      Assert.assertEquals(2, cache.keys().size());
+      Assert.assertTrue(cache.keys().contains("a"));
+
+      cache.clear();
+      Assert.assertEquals(0, cache.size());
+      Assert.assertTrue(cache.keys().isEmpty());
+   }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.benchmark;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.rewrite.config.Configuration;
+import org.ocpsoft.rewrite.config.ConfigurationBuilder;
+import org.ocpsoft.rewrite.servlet.config.HttpConfigurationProvider;
+import org.ocpsoft.rewrite.servlet.config.rule.Join;
+
+/**
+ * Produces a {@link Configuration} of {@link Join} rules, one per section, sized by the {@link #RULES} servlet context
+ * init parameter. Rule <code>i</code> maps <code>/section{i}/{id}</code> to <code>/section{i}.jsp</code>.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class BenchmarkConfigurationProvider extends HttpConfigurationProvider
+{
+   public static final String RULES = "org.ocpsoft.rewrite.benchmark.RULES";
+
+   @Override
+   public Configuration getConfiguration(final ServletContext context)
+   {
+      ConfigurationBuilder config = ConfigurationBuilder.begin();
+
+      String rules = context.getInitParameter(RULES);
+      int count = rules == null ? 0 : Integer.parseInt(rules);
+      for (int i = 0; i < count; i++) {
+         config.addRule(Join.pathNonBinding("/section" + i + "/{id}").to("/section" + i + ".jsp"));
+      }
+
+      return config;
+   }
+
+   @Override
+   public int priority()
+   {
+      return 0;
+   }
+}
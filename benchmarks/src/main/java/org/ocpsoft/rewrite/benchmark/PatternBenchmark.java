@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.ocpsoft.rewrite.param.DefaultParameterStore;
+import org.ocpsoft.rewrite.param.ParameterizedPatternResult;
+import org.ocpsoft.rewrite.param.RegexParameterizedPatternBuilder;
+import org.ocpsoft.rewrite.param.RegexParameterizedPatternParser;
+import org.ocpsoft.rewrite.util.ParameterUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures matching and building of {@link RegexParameterizedPatternParser} and
+ * {@link RegexParameterizedPatternBuilder} patterns.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternBenchmark
+{
+   private static final String PATTERN = "/store/{category}/{item}/reviews/{page}";
+
+   private RegexParameterizedPatternParser parser;
+   private RegexParameterizedPatternBuilder builder;
+   private Map<String, Object> values;
+
+   @Setup
+   public void setup()
+   {
+      parser = new RegexParameterizedPatternParser(PATTERN);
+      ParameterUtils.initialize(new DefaultParameterStore(), parser);
+
+      builder = new RegexParameterizedPatternBuilder(PATTERN);
+      ParameterUtils.initialize(new DefaultParameterStore(), builder);
+
+      values = new HashMap<String, Object>();
+      values.put("category", "books");
+      values.put("item", "12345");
+      values.put("page", "3");
+   }
+
+   @Benchmark
+   public boolean parseHit()
+   {
+      ParameterizedPatternResult result = parser.parse("/store/books/12345/reviews/3");
+      return result.matches();
+   }
+
+   @Benchmark
+   public boolean parseMiss()
+   {
+      ParameterizedPatternResult result = parser.parse("/store/books/12345/details");
+      return result.matches();
+   }
+
+   @Benchmark
+   public String build()
+   {
+      return builder.build(values);
+   }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures decoding and encoding of query strings with {@link org.ocpsoft.rewrite.servlet.util.QueryStringBuilder},
+ * which still backs the <code>Query</code> and <code>EncodeQuery</code> conditions. The deprecated type is referenced
+ * by its qualified name, since importing it causes a warning that cannot be suppressed.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+@SuppressWarnings("deprecation")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryStringBuilderBenchmark
+{
+   private static final String ENCODED = "?q=rewrite%20rules&lang=en&tags=java&tags=servlet&redirect=%2Fctx%2Fhome%3Fa%3Db";
+   private static final String DECODED = "?q=rewrite rules&lang=en&tags=java&tags=servlet&redirect=/ctx/home?a=b";
+
+   @Benchmark
+   public String decode()
+   {
+      return org.ocpsoft.rewrite.servlet.util.QueryStringBuilder.createFromEncoded(ENCODED).decode()
+               .getParameter("redirect");
+   }
+
+   @Benchmark
+   public String encode()
+   {
+      return org.ocpsoft.rewrite.servlet.util.QueryStringBuilder.createNew().addParameters(DECODED).encode()
+               .toQueryString();
+   }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.ocpsoft.rewrite.benchmark.mock.MockHttpServletRequest;
+import org.ocpsoft.rewrite.benchmark.mock.MockHttpServletResponse;
+import org.ocpsoft.rewrite.benchmark.mock.MockServletContext;
+import org.ocpsoft.rewrite.servlet.config.response.ResponseContent;
+import org.ocpsoft.rewrite.servlet.config.response.ResponseContentInterceptor;
+import org.ocpsoft.rewrite.servlet.config.response.ResponseContentInterceptorChain;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+import org.ocpsoft.rewrite.servlet.impl.HttpRewriteWrappedResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing a response body through {@link HttpRewriteWrappedResponse}, both directly and buffered for a
+ * pass-through {@link ResponseContentInterceptor}.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBufferBenchmark
+{
+   private static final int CHUNK_SIZE = 8192;
+
+   private static final ResponseContentInterceptor PASS_THROUGH = new ResponseContentInterceptor() {
+      @Override
+      public void intercept(HttpServletRewrite event, ResponseContent buffer, ResponseContentInterceptorChain chain)
+      {
+         chain.proceed();
+      }
+   };
+
+   @Param({ "1024", "65536", "1048576" })
+   public int size;
+
+   private MockServletContext servletContext;
+   private byte[] chunk;
+
+   @Setup
+   public void setup()
+   {
+      servletContext = new MockServletContext("/ctx");
+      chunk = new byte[Math.min(size, CHUNK_SIZE)];
+      Arrays.fill(chunk, (byte) 'x');
+   }
+
+   @Benchmark
+   public long unbuffered() throws IOException
+   {
+      return write(false);
+   }
+
+   @Benchmark
+   public long intercepted() throws IOException
+   {
+      return write(true);
+   }
+
+   private long write(final boolean intercepted) throws IOException
+   {
+      MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ctx", "/ctx/index.html", null);
+      MockHttpServletResponse response = new MockHttpServletResponse();
+      HttpRewriteWrappedResponse wrapped = new HttpRewriteWrappedResponse(request, response, servletContext);
+      if (intercepted)
+         wrapped.addContentInterceptor(PASS_THROUGH);
+
+      OutputStream stream = wrapped.getOutputStream();
+      for (int written = 0; written < size; written += chunk.length) {
+         stream.write(chunk, 0, Math.min(chunk.length, size - written));
+      }
+
+      wrapped.flushBufferedContent();
+      return response.getBytesWritten();
+   }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.ocpsoft.rewrite.benchmark.mock.MockHttpServletRequest;
+import org.ocpsoft.rewrite.benchmark.mock.MockHttpServletResponse;
+import org.ocpsoft.rewrite.benchmark.mock.MockServletContext;
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.servlet.RewriteLifecycleContext;
+import org.ocpsoft.rewrite.servlet.event.InboundServletRewrite;
+import org.ocpsoft.rewrite.servlet.event.OutboundServletRewrite;
+import org.ocpsoft.rewrite.servlet.impl.DefaultHttpRewriteProvider;
+import org.ocpsoft.rewrite.servlet.impl.HttpInboundRewriteImpl;
+import org.ocpsoft.rewrite.servlet.impl.HttpOutboundRewriteImpl;
+import org.ocpsoft.rewrite.servlet.impl.HttpRewriteContextImpl;
+import org.ocpsoft.rewrite.servlet.spi.InboundRewriteProducer;
+import org.ocpsoft.rewrite.servlet.spi.OutboundRewriteProducer;
+import org.ocpsoft.rewrite.servlet.spi.RequestCycleWrapper;
+import org.ocpsoft.rewrite.servlet.spi.RewriteLifecycleListener;
+import org.ocpsoft.rewrite.servlet.spi.RewriteResultHandler;
+import org.ocpsoft.rewrite.spi.RewriteProvider;
+import org.ocpsoft.urlbuilder.AddressBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full {@link DefaultHttpRewriteProvider#rewriteHttp} pass over a {@link BenchmarkConfigurationProvider}
+ * configuration, with rule indexing and rule caching toggled by {@link #mode}:
+ * <ul>
+ * <li><code>plain</code> - every rule is evaluated in order</li>
+ * <li><code>indexed</code> - rules are pre-filtered by the rule index</li>
+ * <li><code>cached</code> - rules are pre-filtered by the rule index and the rule cache</li>
+ * </ul>
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RewriteProviderBenchmark
+{
+   private static final String CONTEXT_PATH = "/ctx";
+
+   @Param({ "10", "100", "1000", "10000" })
+   public int rules;
+
+   @Param({ "plain", "indexed", "cached" })
+   public String mode;
+
+   private MockServletContext servletContext;
+   private DefaultHttpRewriteProvider provider;
+   private HttpRewriteContextImpl lifecycleContext;
+
+   private String hitURI;
+   private String outboundURL;
+
+   @Setup
+   public void setup()
+   {
+      servletContext = new MockServletContext(CONTEXT_PATH)
+               .setInitParameter(BenchmarkConfigurationProvider.RULES, String.valueOf(rules));
+
+      if ("plain".equals(mode))
+      {
+         servletContext.setInitParameter("org.ocpsoft.rewrite.config.RULE_INDEXING", "false");
+         servletContext.setInitParameter("org.ocpsoft.rewrite.config.RULE_CACHE_SIZE", "0");
+      }
+      else if ("indexed".equals(mode))
+      {
+         servletContext.setInitParameter("org.ocpsoft.rewrite.config.RULE_CACHE_SIZE", "0");
+      }
+      else if (!"cached".equals(mode))
+      {
+         throw new IllegalArgumentException("Unknown mode [" + mode + "]");
+      }
+
+      provider = new DefaultHttpRewriteProvider();
+      provider.init(servletContext);
+
+      lifecycleContext = new HttpRewriteContextImpl(
+               new ArrayList<InboundRewriteProducer<ServletRequest, ServletResponse>>(),
+               new ArrayList<OutboundRewriteProducer<ServletRequest, ServletResponse, Object>>(),
+               new ArrayList<RewriteLifecycleListener<Rewrite>>(),
+               new ArrayList<RewriteResultHandler>(),
+               new ArrayList<RequestCycleWrapper<ServletRequest, ServletResponse>>(),
+               new ArrayList<RewriteProvider<ServletContext, Rewrite>>());
+
+      hitURI = CONTEXT_PATH + "/section" + (rules - 1) + "/42";
+      outboundURL = CONTEXT_PATH + "/section0.jsp?id=42";
+   }
+
+   /**
+    * Inbound request matching the last rule in the configuration.
+    */
+   @Benchmark
+   public InboundServletRewrite<?, ?> inboundHit()
+   {
+      return inbound(hitURI);
+   }
+
+   /**
+    * Inbound request matching no rule in the configuration.
+    */
+   @Benchmark
+   public InboundServletRewrite<?, ?> inboundMiss()
+   {
+      return inbound(CONTEXT_PATH + "/unmapped/42");
+   }
+
+   /**
+    * Outbound URL matching the first rule in the configuration, which is evaluated last.
+    */
+   @Benchmark
+   public OutboundServletRewrite<?, ?, ?> outboundHit()
+   {
+      MockHttpServletRequest request = request(hitURI);
+      HttpOutboundRewriteImpl event = new HttpOutboundRewriteImpl(request, new MockHttpServletResponse(),
+               servletContext, AddressBuilder.create(outboundURL));
+      provider.rewriteHttp(event);
+      return event;
+   }
+
+   private InboundServletRewrite<?, ?> inbound(final String requestURI)
+   {
+      HttpInboundRewriteImpl event = new HttpInboundRewriteImpl(request(requestURI), new MockHttpServletResponse(),
+               servletContext);
+      provider.rewriteHttp(event);
+      return event;
+   }
+
+   private MockHttpServletRequest request(final String requestURI)
+   {
+      MockHttpServletRequest request = new MockHttpServletRequest("GET", CONTEXT_PATH, requestURI, null);
+      request.setAttribute(RewriteLifecycleContext.LIFECYCLE_CONTEXT_KEY, lifecycleContext);
+      return request;
+   }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.benchmark.mock;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Minimal Servlet 2.5 {@link HttpServletRequest} for a single method, URI, and query string.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+@SuppressWarnings("rawtypes")
+public class MockHttpServletRequest implements HttpServletRequest
+{
+   private final String method;
+   private final String contextPath;
+   private final String requestURI;
+   private final String queryString;
+   private final Map<String, Object> attributes = new HashMap<String, Object>(4);
+   private String characterEncoding = "UTF-8";
+
+   public MockHttpServletRequest(final String method, final String contextPath, final String requestURI,
+            final String queryString)
+   {
+      this.method = method;
+      this.contextPath = contextPath;
+      this.requestURI = requestURI;
+      this.queryString = queryString;
+   }
+
+   @Override
+   public String getMethod()
+   {
+      return method;
+   }
+
+   @Override
+   public String getContextPath()
+   {
+      return contextPath;
+   }
+
+   @Override
+   public String getRequestURI()
+   {
+      return requestURI;
+   }
+
+   @Override
+   public String getQueryString()
+   {
+      return queryString;
+   }
+
+   @Override
+   public StringBuffer getRequestURL()
+   {
+      return new StringBuffer("http://localhost:8080").append(requestURI);
+   }
+
+   @Override
+   public String getServletPath()
+   {
+      return requestURI.substring(contextPath.length());
+   }
+
+   @Override
+   public String getPathInfo()
+   {
+      return null;
+   }
+
+   @Override
+   public String getPathTranslated()
+   {
+      return null;
+   }
+
+   @Override
+   public Object getAttribute(final String name)
+   {
+      return attributes.get(name);
+   }
+
+   @Override
+   public Enumeration getAttributeNames()
+   {
+      return Collections.enumeration(attributes.keySet());
+   }
+
+   @Override
+   public void setAttribute(final String name, final Object value)
+   {
+      attributes.put(name, value);
+   }
+
+   @Override
+   public void removeAttribute(final String name)
+   {
+      attributes.remove(name);
+   }
+
+   @Override
+   public String getCharacterEncoding()
+   {
+      return characterEncoding;
+   }
+
+   @Override
+   public void setCharacterEncoding(final String env)
+   {
+      this.characterEncoding = env;
+   }
+
+   @Override
+   public String getScheme()
+   {
+      return "http";
+   }
+
+   @Override
+   public String getServerName()
+   {
+      return "localhost";
+   }
+
+   @Override
+   public int getServerPort()
+   {
+      return 8080;
+   }
+
+   @Override
+   public String getProtocol()
+   {
+      return "HTTP/1.1";
+   }
+
+   @Override
+   public boolean isSecure()
+   {
+      return false;
+   }
+
+   @Override
+   public String getAuthType()
+   {
+      return null;
+   }
+
+   @Override
+   public Cookie[] getCookies()
+   {
+      return null;
+   }
+
+   @Override
+   public long getDateHeader(final String name)
+   {
+      return -1;
+   }
+
+   @Override
+   public String getHeader(final String name)
+   {
+      return null;
+   }
+
+   @Override
+   public Enumeration getHeaders(final String name)
+   {
+      return Collections.enumeration(Collections.emptySet());
+   }
+
+   @Override
+   public Enumeration getHeaderNames()
+   {
+      return Collections.enumeration(Collections.emptySet());
+   }
+
+   @Override
+   public int getIntHeader(final String name)
+   {
+      return -1;
+   }
+
+   @Override
+   public String getRemoteUser()
+   {
+      return null;
+   }
+
+   @Override
+   public boolean isUserInRole(final String role)
+   {
+      return false;
+   }
+
+   @Override
+   public Principal getUserPrincipal()
+   {
+      return null;
+   }
+
+   @Override
+   public String getRequestedSessionId()
+   {
+      return null;
+   }
+
+   @Override
+   public HttpSession getSession(final boolean create)
+   {
+      return null;
+   }
+
+   @Override
+   public HttpSession getSession()
+   {
+      return null;
+   }
+
+   @Override
+   public boolean isRequestedSessionIdValid()
+   {
+      return false;
+   }
+
+   @Override
+   public boolean isRequestedSessionIdFromCookie()
+   {
+      return false;
+   }
+
+   @Override
+   public boolean isRequestedSessionIdFromURL()
+   {
+      return false;
+   }
+
+   @Override
+   @SuppressWarnings("deprecation")
+   public boolean isRequestedSessionIdFromUrl()
+   {
+      return false;
+   }
+
+   @Override
+   public int getContentLength()
+   {
+      return -1;
+   }
+
+   @Override
+   public String getContentType()
+   {
+      return null;
+   }
+
+   @Override
+   public ServletInputStream getInputStream()
+   {
+      return null;
+   }
+
+   @Override
+   public String getParameter(final String name)
+   {
+      return null;
+   }
+
+   @Override
+   public Enumeration getParameterNames()
+   {
+      return Collections.enumeration(Collections.emptySet());
+   }
+
+   @Override
+   public String[] getParameterValues(final String name)
+   {
+      return null;
+   }
+
+   @Override
+   public Map getParameterMap()
+   {
+      return Collections.emptyMap();
+   }
+
+   @Override
+   public BufferedReader getReader()
+   {
+      return new BufferedReader(new StringReader(""));
+   }
+
+   @Override
+   public String getRemoteAddr()
+   {
+      return "127.0.0.1";
+   }
+
+   @Override
+   public String getRemoteHost()
+   {
+      return "localhost";
+   }
+
+   @Override
+   public int getRemotePort()
+   {
+      return 49152;
+   }
+
+   @Override
+   public String getLocalName()
+   {
+      return "localhost";
+   }
+
+   @Override
+   public String getLocalAddr()
+   {
+      return "127.0.0.1";
+   }
+
+   @Override
+   public int getLocalPort()
+   {
+      return 8080;
+   }
+
+   @Override
+   public Locale getLocale()
+   {
+      return Locale.ENGLISH;
+   }
+
+   @Override
+   public Enumeration getLocales()
+   {
+      return Collections.enumeration(Collections.singleton(Locale.ENGLISH));
+   }
+
+   @Override
+   public RequestDispatcher getRequestDispatcher(final String path)
+   {
+      return null;
+   }
+
+   @Override
+   @SuppressWarnings("deprecation")
+   public String getRealPath(final String path)
+   {
+      return null;
+   }
+}
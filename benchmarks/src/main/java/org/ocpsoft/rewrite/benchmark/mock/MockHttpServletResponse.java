@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.benchmark.mock;
+
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Minimal Servlet 2.5 {@link HttpServletResponse} that counts and discards all written content.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class MockHttpServletResponse implements HttpServletResponse
+{
+   private final CountingOutputStream outputStream = new CountingOutputStream();
+   private PrintWriter writer;
+   private String characterEncoding = "UTF-8";
+   private String contentType;
+   private int status = SC_OK;
+
+   /**
+    * Get the number of bytes written to this response.
+    */
+   public long getBytesWritten()
+   {
+      return outputStream.count;
+   }
+
+   public int getStatus()
+   {
+      return status;
+   }
+
+   @Override
+   public ServletOutputStream getOutputStream()
+   {
+      return outputStream;
+   }
+
+   @Override
+   public PrintWriter getWriter() throws UnsupportedEncodingException
+   {
+      if (writer == null)
+         writer = new PrintWriter(new OutputStreamWriter(outputStream, characterEncoding));
+      return writer;
+   }
+
+   @Override
+   public String getCharacterEncoding()
+   {
+      return characterEncoding;
+   }
+
+   @Override
+   public void setCharacterEncoding(final String charset)
+   {
+      this.characterEncoding = charset;
+   }
+
+   @Override
+   public String getContentType()
+   {
+      return contentType;
+   }
+
+   @Override
+   public void setContentType(final String type)
+   {
+      this.contentType = type;
+   }
+
+   @Override
+   public void setContentLength(final int len)
+   {}
+
+   @Override
+   public void setBufferSize(final int size)
+   {}
+
+   @Override
+   public int getBufferSize()
+   {
+      return 8192;
+   }
+
+   @Override
+   public void flushBuffer()
+   {}
+
+   @Override
+   public void resetBuffer()
+   {}
+
+   @Override
+   public boolean isCommitted()
+   {
+      return false;
+   }
+
+   @Override
+   public void reset()
+   {}
+
+   @Override
+   public void setLocale(final Locale loc)
+   {}
+
+   @Override
+   public Locale getLocale()
+   {
+      return Locale.ENGLISH;
+   }
+
+   @Override
+   public void addCookie(final Cookie cookie)
+   {}
+
+   @Override
+   public boolean containsHeader(final String name)
+   {
+      return false;
+   }
+
+   @Override
+   public String encodeURL(final String url)
+   {
+      return url;
+   }
+
+   @Override
+   public String encodeRedirectURL(final String url)
+   {
+      return url;
+   }
+
+   @Override
+   @SuppressWarnings("deprecation")
+   public String encodeUrl(final String url)
+   {
+      return url;
+   }
+
+   @Override
+   @SuppressWarnings("deprecation")
+   public String encodeRedirectUrl(final String url)
+   {
+      return url;
+   }
+
+   @Override
+   public void sendError(final int sc, final String msg)
+   {
+      this.status = sc;
+   }
+
+   @Override
+   public void sendError(final int sc)
+   {
+      this.status = sc;
+   }
+
+   @Override
+   public void sendRedirect(final String location)
+   {
+      this.status = SC_FOUND;
+   }
+
+   @Override
+   public void setDateHeader(final String name, final long date)
+   {}
+
+   @Override
+   public void addDateHeader(final String name, final long date)
+   {}
+
+   @Override
+   public void setHeader(final String name, final String value)
+   {}
+
+   @Override
+   public void addHeader(final String name, final String value)
+   {}
+
+   @Override
+   public void setIntHeader(final String name, final int value)
+   {}
+
+   @Override
+   public void addIntHeader(final String name, final int value)
+   {}
+
+   @Override
+   public void setStatus(final int sc)
+   {
+      this.status = sc;
+   }
+
+   @Override
+   @SuppressWarnings("deprecation")
+   public void setStatus(final int sc, final String sm)
+   {
+      this.status = sc;
+   }
+
+   private static class CountingOutputStream extends ServletOutputStream
+   {
+      private long count;
+
+      @Override
+      public void write(final int b)
+      {
+         count++;
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len)
+      {
+         count += len;
+      }
+   }
+}
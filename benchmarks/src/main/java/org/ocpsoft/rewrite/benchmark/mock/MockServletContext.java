@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.benchmark.mock;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.Servlet;
+import javax.servlet.ServletContext;
+
+/**
+ * Minimal Servlet 2.5 {@link ServletContext} holding init parameters and attributes in memory.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+@SuppressWarnings("rawtypes")
+public class MockServletContext implements ServletContext
+{
+   private final String contextPath;
+   private final Map<String, String> initParameters = new HashMap<String, String>();
+   private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+   public MockServletContext(final String contextPath)
+   {
+      this.contextPath = contextPath;
+   }
+
+   public MockServletContext setInitParameter(final String name, final String value)
+   {
+      initParameters.put(name, value);
+      return this;
+   }
+
+   @Override
+   public String getContextPath()
+   {
+      return contextPath;
+   }
+
+   @Override
+   public String getInitParameter(final String name)
+   {
+      return initParameters.get(name);
+   }
+
+   @Override
+   public Enumeration getInitParameterNames()
+   {
+      return Collections.enumeration(initParameters.keySet());
+   }
+
+   @Override
+   public synchronized Object getAttribute(final String name)
+   {
+      return attributes.get(name);
+   }
+
+   @Override
+   public synchronized Enumeration getAttributeNames()
+   {
+      return Collections.enumeration(attributes.keySet());
+   }
+
+   @Override
+   public synchronized void setAttribute(final String name, final Object value)
+   {
+      attributes.put(name, value);
+   }
+
+   @Override
+   public synchronized void removeAttribute(final String name)
+   {
+      attributes.remove(name);
+   }
+
+   @Override
+   public int getMajorVersion()
+   {
+      return 2;
+   }
+
+   @Override
+   public int getMinorVersion()
+   {
+      return 5;
+   }
+
+   @Override
+   public ServletContext getContext(final String uripath)
+   {
+      return null;
+   }
+
+   @Override
+   public String getMimeType(final String file)
+   {
+      return null;
+   }
+
+   @Override
+   public Set getResourcePaths(final String path)
+   {
+      return Collections.emptySet();
+   }
+
+   @Override
+   public URL getResource(final String path)
+   {
+      return null;
+   }
+
+   @Override
+   public InputStream getResourceAsStream(final String path)
+   {
+      return null;
+   }
+
+   @Override
+   public RequestDispatcher getRequestDispatcher(final String path)
+   {
+      return null;
+   }
+
+   @Override
+   public RequestDispatcher getNamedDispatcher(final String name)
+   {
+      return null;
+   }
+
+   @Override
+   @SuppressWarnings("deprecation")
+   public Servlet getServlet(final String name)
+   {
+      return null;
+   }
+
+   @Override
+   @SuppressWarnings("deprecation")
+   public Enumeration getServlets()
+   {
+      return Collections.enumeration(Collections.emptySet());
+   }
+
+   @Override
+   @SuppressWarnings("deprecation")
+   public Enumeration getServletNames()
+   {
+      return Collections.enumeration(Collections.emptySet());
+   }
+
+   @Override
+   public void log(final String msg)
+   {}
+
+   @Override
+   @SuppressWarnings("deprecation")
+   public void log(final Exception exception, final String msg)
+   {}
+
+   @Override
+   public void log(final String message, final Throwable throwable)
+   {}
+
+   @Override
+   @SuppressWarnings("deprecation")
+   public String getRealPath(final String path)
+   {
+      return null;
+   }
+
+   @Override
+   public String getServerInfo()
+   {
+      return "MockServletContext";
+   }
+
+   @Override
+   public String getServletContextName()
+   {
+      return "benchmarks";
+   }
+}
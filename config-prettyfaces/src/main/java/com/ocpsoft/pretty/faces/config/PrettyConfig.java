@@ -18,22 +18,40 @@ package com.ocpsoft.pretty.faces.config;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.ocpsoft.pretty.PrettyContext;
 import com.ocpsoft.pretty.faces.config.mapping.UrlMapping;
 import com.ocpsoft.pretty.faces.config.rewrite.RewriteRule;
 import com.ocpsoft.pretty.faces.url.URL;
+import com.ocpsoft.pretty.faces.url.URLPatternParser;
 
 public class PrettyConfig
 {
    public static final String CONFIG_REQUEST_KEY = "pretty_CONFIG_REQUEST_KEY";
+   public static final int DEFAULT_MAPPING_CACHE_SIZE = 1024;
+
+   /*
+    * Cached for URLs that are not mapped, since the cache cannot hold null values.
+    */
+   private static final UrlMapping NOT_MAPPED = new UrlMapping();
+
    private List<UrlMapping> mappings = new ArrayList<UrlMapping>();
    private List<RewriteRule> globalRewriteRules = new ArrayList<RewriteRule>();
    private String dynaviewId = "";
-   private final Map<String, UrlMapping> cachedMappings = new LinkedHashMap<String, UrlMapping>();
+   private final ConcurrentMap<String, UrlMapping> cachedMappings = new ConcurrentHashMap<String, UrlMapping>();
+   private final Queue<String> cachedMappingKeys = new ConcurrentLinkedQueue<String>();
+   private final AtomicLong mappingCacheHits = new AtomicLong();
+   private final AtomicLong mappingCacheMisses = new AtomicLong();
+   private volatile int mappingCacheSize = DEFAULT_MAPPING_CACHE_SIZE;
+   private volatile MappingIndex mappingIndex;
    private boolean useEncodeUrlForRedirects = false;
 
    /**
@@ -93,32 +111,120 @@ public class PrettyConfig
    public void setMappings(final List<UrlMapping> mappings)
    {
       this.mappings = Collections.unmodifiableList(mappings);
+      clearMappingCache();
    }
 
    /**
     * Search through all currently configured {@link UrlMapping} objects for the first one that matches the given URL.
+    * Only mappings whose pattern may match the first segment of the URL are searched. Results for URLs that match a
+    * mapping without expressions, and for URLs that match no mapping at all, are cached.
     * 
     * @return the first appropriate {@link UrlMapping} for a given URL.
     */
    public UrlMapping getMappingForUrl(final URL url)
    {
       final String mappingKey = url.toURL();
-      if (cachedMappings.containsKey(mappingKey)) {
-         return cachedMappings.get(mappingKey);
+      UrlMapping cached = cachedMappings.get(mappingKey);
+      if (cached != null)
+      {
+         mappingCacheHits.incrementAndGet();
+         return cached == NOT_MAPPED ? null : cached;
       }
-      for (UrlMapping mapping : getMappings())
+      mappingCacheMisses.incrementAndGet();
+
+      for (UrlMapping mapping : getMappingIndex().getCandidates(url))
       {
          if (mapping.matches(url))
          {
-            if (!mapping.getPatternParser().isElPattern()) {
-               cachedMappings.put(mappingKey, mapping);
+            if (!mapping.getPatternParser().isElPattern())
+            {
+               cacheMapping(mappingKey, mapping);
             }
             return mapping;
          }
       }
+      cacheMapping(mappingKey, NOT_MAPPED);
       return null;
    }
 
+   /**
+    * Get the maximum number of URLs for which the result of {@link #getMappingForUrl(URL)} is cached.
+    */
+   public int getMappingCacheSize()
+   {
+      return mappingCacheSize;
+   }
+
+   /**
+    * Set the maximum number of URLs for which the result of {@link #getMappingForUrl(URL)} is cached. The URLs cached
+    * first are evicted first. A size of <code>0</code> disables the cache.
+    */
+   public void setMappingCacheSize(final int mappingCacheSize)
+   {
+      if (mappingCacheSize < 0)
+      {
+         throw new IllegalArgumentException("Mapping cache size must not be negative, but was: " + mappingCacheSize);
+      }
+      this.mappingCacheSize = mappingCacheSize;
+      clearMappingCache();
+   }
+
+   /**
+    * Get the number of calls to {@link #getMappingForUrl(URL)} that were answered from the cache.
+    */
+   public long getMappingCacheHits()
+   {
+      return mappingCacheHits.get();
+   }
+
+   /**
+    * Get the number of calls to {@link #getMappingForUrl(URL)} that had to search the configured mappings.
+    */
+   public long getMappingCacheMisses()
+   {
+      return mappingCacheMisses.get();
+   }
+
+   /**
+    * Forget all cached results of {@link #getMappingForUrl(URL)}, for instance after changing the pattern of a
+    * configured {@link UrlMapping}.
+    */
+   public void clearMappingCache()
+   {
+      this.mappingIndex = null;
+      cachedMappings.clear();
+      cachedMappingKeys.clear();
+   }
+
+   private void cacheMapping(final String mappingKey, final UrlMapping mapping)
+   {
+      int maxSize = mappingCacheSize;
+      if ((maxSize > 0) && (cachedMappings.putIfAbsent(mappingKey, mapping) == null))
+      {
+         cachedMappingKeys.add(mappingKey);
+         while (cachedMappings.size() > maxSize)
+         {
+            String eldest = cachedMappingKeys.poll();
+            if (eldest == null)
+            {
+               break;
+            }
+            cachedMappings.remove(eldest);
+         }
+      }
+   }
+
+   private MappingIndex getMappingIndex()
+   {
+      MappingIndex index = mappingIndex;
+      if (index == null)
+      {
+         index = new MappingIndex(mappings);
+         mappingIndex = index;
+      }
+      return index;
+   }
+
    /**
     * Discover if the given id is a {@link UrlMapping} id specified in the current configuration.
     * 
@@ -205,4 +311,56 @@ public class PrettyConfig
    {
       return "PrettyConfig [mappings=" + mappings + ", globalRewriteRules=" + globalRewriteRules + "]";
    }
+
+   /**
+    * Groups {@link UrlMapping} instances by the literal first segment of their pattern. Each group also holds, in
+    * configured order, the mappings whose first segment is not literal, since those may match any URL.
+    */
+   private static class MappingIndex
+   {
+      private final Map<String, List<UrlMapping>> bySegment = new HashMap<String, List<UrlMapping>>();
+      private final List<UrlMapping> unindexed = new ArrayList<UrlMapping>();
+
+      private MappingIndex(final List<UrlMapping> mappings)
+      {
+         for (UrlMapping mapping : mappings)
+         {
+            String segment = getLiteralFirstSegment(mapping);
+            if ((segment != null) && !bySegment.containsKey(segment))
+            {
+               bySegment.put(segment, new ArrayList<UrlMapping>());
+            }
+         }
+
+         for (UrlMapping mapping : mappings)
+         {
+            String segment = getLiteralFirstSegment(mapping);
+            if (segment != null)
+            {
+               bySegment.get(segment).add(mapping);
+            }
+            else
+            {
+               unindexed.add(mapping);
+               for (List<UrlMapping> candidates : bySegment.values())
+               {
+                  candidates.add(mapping);
+               }
+            }
+         }
+      }
+
+      private List<UrlMapping> getCandidates(final URL url)
+      {
+         List<String> segments = url.getSegments();
+         List<UrlMapping> candidates = segments.isEmpty() ? null : bySegment.get(segments.get(0));
+         return candidates == null ? unindexed : candidates;
+      }
+
+      private static String getLiteralFirstSegment(final UrlMapping mapping)
+      {
+         URLPatternParser parser = mapping.getPatternParser();
+         return parser == null ? null : parser.getLiteralFirstSegment();
+      }
+   }
 }
@@ -18,6 +18,7 @@ package com.ocpsoft.pretty.faces.config.spi;
 
 import javax.servlet.ServletContext;
 
+import com.ocpsoft.pretty.PrettyException;
 import com.ocpsoft.pretty.faces.config.PrettyConfig;
 import com.ocpsoft.pretty.faces.spi.ConfigurationPostProcessor;
 
@@ -30,6 +31,7 @@ import com.ocpsoft.pretty.faces.spi.ConfigurationPostProcessor;
 public class ContextParamsPostProcessor implements ConfigurationPostProcessor
 {
    public static final String USE_ENCODE_URL_FOR_REDIRECTS = "com.ocpsoft.pretty.USE_ENCODE_URL_FOR_REDIRECTS";
+   public static final String MAPPING_CACHE_SIZE = "com.ocpsoft.pretty.MAPPING_CACHE_SIZE";
 
    @Override
    public PrettyConfig processConfiguration(ServletContext context, PrettyConfig config)
@@ -40,6 +42,19 @@ public class ContextParamsPostProcessor implements ConfigurationPostProcessor
          config.setUseEncodeUrlForRedirects(true);
       }
 
+      String mappingCacheSize = context.getInitParameter(MAPPING_CACHE_SIZE);
+      if ((mappingCacheSize != null) && (mappingCacheSize.trim().length() > 0))
+      {
+         try
+         {
+            config.setMappingCacheSize(Integer.parseInt(mappingCacheSize.trim()));
+         }
+         catch (IllegalArgumentException e)
+         {
+            throw new PrettyException("Invalid value for " + MAPPING_CACHE_SIZE + ": " + mappingCacheSize, e);
+         }
+      }
+
       return config;
    }
 }
@@ -52,6 +52,15 @@ public class Segment
       return TEMPLATE_PATTERN.matcher(target);
    }
 
+   /**
+    * Split the given target into the literal text before, between and after the template parameters encoded via
+    * {@link #parameterize(int)}
+    */
+   static String[] splitTemplate(final String target)
+   {
+      return TEMPLATE_PATTERN.split(target, -1);
+   }
+
    /**
     * Get a {@link Matcher} populated with this {@link Segment}'s regular expression.
     */
@@ -17,7 +17,6 @@ package com.ocpsoft.pretty.faces.url;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -34,6 +33,7 @@ public class URLPatternParser
 {
 
    private static final Pattern EL_REGEX_PATTERN = Pattern.compile(Expressions.EL_REGEX);
+   private static final Pattern LITERAL_SEGMENT = Pattern.compile("[\\w\\-~%]+");
 
    private final String originalPattern;
    private boolean elPattern;
@@ -42,6 +42,16 @@ public class URLPatternParser
    private List<Segment> pathSegments = new ArrayList<Segment>();
    private List<PathParameter> pathParameters = new ArrayList<PathParameter>();
 
+   /*
+    * Compiled once per segment, for each combination of leading and trailing slash (see #getSegmentPattern).
+    */
+   private Pattern[][] segmentPatterns;
+
+   /*
+    * The literal text of each segment template, between its parameters.
+    */
+   private String[][] segmentLiterals;
+
    /**
     * Set the pattern for which this parser will match. Find and replace all el expressions with regular expressions to
     * extract values from parsed URLs. Also extract all parameter names from expressions, and replace with valid EL
@@ -95,7 +105,8 @@ public class URLPatternParser
             String group = parameterMatcher.group(1);
             PathParameter parameter = pathParameters.get(Integer.valueOf(group));
             segment.addParameter(parameter);
-            parameterMatcher.appendReplacement(regex, "(" + parameter.getRegex() + ")");
+            parameterMatcher.appendReplacement(regex,
+                     "(?<" + getGroupName(parameter) + ">" + parameter.getRegex() + ")");
          }
          parameterMatcher.appendTail(regex);
 
@@ -112,8 +123,36 @@ public class URLPatternParser
       urlPattern = new URL(regexSegments, segmentedPattern.getMetadata().copy());
       if (elPattern) {
          urlElPattern = Pattern.compile(urlPattern.toURL());
+         compileSegments();
       }
       this.pathSegments = Collections.unmodifiableList(pathSegments);
+
+      segmentLiterals = new String[pathSegments.size()][];
+      for (int i = 0; i < pathSegments.size(); i++)
+      {
+         segmentLiterals[i] = Segment.splitTemplate(pathSegments.get(i).getTemplate());
+      }
+   }
+
+   private void compileSegments()
+   {
+      segmentPatterns = new Pattern[pathSegments.size()][4];
+      for (int i = 0; i < pathSegments.size(); i++)
+      {
+         String regex = pathSegments.get(i).getRegex();
+         segmentPatterns[i][0] = Pattern.compile(regex);
+         segmentPatterns[i][1] = Pattern.compile(regex + "/");
+         segmentPatterns[i][2] = Pattern.compile("/" + regex);
+         segmentPatterns[i][3] = Pattern.compile("/" + regex + "/");
+      }
+   }
+
+   /**
+    * Get the compiled pattern of the segment at the given index, preceded and followed by a slash as requested.
+    */
+   private Pattern getSegmentPattern(final int index, final boolean leadingSlash, final boolean trailingSlash)
+   {
+      return segmentPatterns[index][(leadingSlash ? 2 : 0) + (trailingSlash ? 1 : 0)];
    }
 
    /**
@@ -158,31 +197,25 @@ public class URLPatternParser
       String inboundUrl = url.toURL();
       if (this.matches(url))
       {
-         Iterator<Segment> iter = pathSegments.iterator();
-         while (iter.hasNext())
+         if (!elPattern)
          {
-            Segment segment = iter.next();
-
-            String regex = "";
-            if (url.hasLeadingSlash() && !"/".equals(url.toURL()))
-            {
-               regex += "/";
-            }
+            // without expressions there are no parameters to extract
+            return result;
+         }
 
-            regex += segment.getRegex();
-            if (iter.hasNext() || url.hasTrailingSlash())
-            {
-               regex += "/";
-            }
+         boolean leadingSlash = url.hasLeadingSlash() && !"/".equals(inboundUrl);
+         for (int i = 0; i < pathSegments.size(); i++)
+         {
+            Segment segment = pathSegments.get(i);
+            boolean trailingSlash = (i < pathSegments.size() - 1) || url.hasTrailingSlash();
 
-            Matcher segmentMatcher = Pattern.compile(regex).matcher(inboundUrl);
+            Matcher segmentMatcher = getSegmentPattern(i, leadingSlash, trailingSlash).matcher(inboundUrl);
             if (segmentMatcher.find())
             {
                for (int j = 0; j < segment.numParameters(); j++)
                {
-                  String value = segmentMatcher.group(j + 1);
                   PathParameter param = segment.getParameter(j).copy();
-                  param.setValue(value);
+                  param.setValue(segmentMatcher.group(getGroupName(param)));
                   result.add(param);
                }
 
@@ -205,6 +238,50 @@ public class URLPatternParser
       return result;
    }
 
+   /**
+    * Builds a list of PathParameters for this UrlPattern, extracted from the provided URL with a single match of the
+    * whole pattern, instead of matching segment by segment like {@link #parse(URL)}. The values are those of the
+    * match that {@link #matches(URL)} finds, which may differ from those found by {@link #parse(URL)} if a parameter
+    * regex can match more than one way.
+    */
+   public List<PathParameter> extract(final URL url)
+   {
+      if (!elPattern)
+      {
+         if (!this.matches(url))
+         {
+            throw new IllegalArgumentException("The given URL: " + url + ", cannot be parsed by the pattern: "
+                     + originalPattern);
+         }
+         return new ArrayList<PathParameter>();
+      }
+
+      Matcher matcher = urlElPattern.matcher(url.toURL());
+      if (!matcher.matches())
+      {
+         throw new IllegalArgumentException("The given URL: " + url + ", cannot be parsed by the pattern: "
+                  + originalPattern);
+      }
+
+      List<PathParameter> result = new ArrayList<PathParameter>(pathParameters.size());
+      for (PathParameter parameter : pathParameters)
+      {
+         PathParameter param = parameter.copy();
+         param.setValue(matcher.group(getGroupName(param)));
+         result.add(param);
+      }
+      return result;
+   }
+
+   /**
+    * Get the name of the capturing group of the given parameter, which stays the same no matter how many groups the
+    * regular expressions before it contain.
+    */
+   private static String getGroupName(final PathParameter parameter)
+   {
+      return "param" + parameter.getPosition();
+   }
+
    /**
     * URL encoding/decoding is not a concern of this method.
     * 
@@ -255,36 +332,27 @@ public class URLPatternParser
          }
 
          /*
-          * Build the result URL
+          * Build the result URL, appending the parameter values between the literal parts of each segment
           */
          int paramIndex = 0;
-         List<String> resultSegments = new ArrayList<String>();
-         for (Segment segment : pathSegments)
+         List<String> resultSegments = new ArrayList<String>(segmentLiterals.length);
+         StringBuilder sb = new StringBuilder();
+         for (String[] literals : segmentLiterals)
          {
-            String template = segment.getTemplate();
-            Matcher parameterMatcher = Segment.getTemplateMatcher(template);
+            if (literals.length == 1)
+            {
+               resultSegments.add(literals[0]);
+               continue;
+            }
 
-            StringBuffer sb = new StringBuffer();
-            while (parameterMatcher.find())
+            sb.setLength(0);
+            sb.append(literals[0]);
+            for (int i = 1; i < literals.length; i++)
             {
-               /*
-                * We need to escape $ and \ because they have a special meaning when 
-                * used in Matcher#appendReplacement(). From the docs:
-                * 
-                * Note that backslashes (\) and dollar signs ($) in the replacement string 
-                * may cause the results to be different than if it were being treated as a 
-                * literal replacement string. Dollar signs may be treated as references to 
-                * captured subsequences as described above, and backslashes are used to 
-                * escape literal characters in the replacement string.
-                */
-               String replacement = parameters[paramIndex].toString()
-                        .replace("$", "\\$")
-                        .replace("\\", "\\\\");
-
-               parameterMatcher.appendReplacement(sb, replacement);
+               sb.append(parameters[paramIndex].toString());
+               sb.append(literals[i]);
                paramIndex++;
             }
-            parameterMatcher.appendTail(sb);
             resultSegments.add(sb.toString());
          }
          result = new URL(resultSegments, urlPattern.getMetadata());
@@ -313,6 +381,31 @@ public class URLPatternParser
       return originalPattern;
    }
 
+   /**
+    * Return the first segment of this pattern if every URL matched by this pattern begins with exactly that segment,
+    * otherwise return <code>null</code>. Segments containing parameters or regular expression characters are not
+    * literal.
+    */
+   public String getLiteralFirstSegment()
+   {
+      if (pathSegments.isEmpty())
+      {
+         return null;
+      }
+
+      Segment first = pathSegments.get(0);
+      String template = first.getTemplate();
+      if ((template == null) || (template.length() == 0) || (first.numParameters() > 0))
+      {
+         return null;
+      }
+      if (elPattern && ((originalPattern.indexOf('|') != -1) || !LITERAL_SEGMENT.matcher(template).matches()))
+      {
+         return null;
+      }
+      return template;
+   }
+
    /**
     * @return whether the URL pattern is an expression language
     */
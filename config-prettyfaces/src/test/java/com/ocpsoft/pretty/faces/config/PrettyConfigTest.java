@@ -17,6 +17,7 @@ package com.ocpsoft.pretty.faces.config;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -98,4 +99,76 @@ public class PrettyConfigTest
       assertFalse(config.isViewMapped("/home/en/notmapped/okthen"));
    }
 
+   @Test
+   public void testCachesUnmappedUrls() throws Exception
+   {
+      PrettyConfig config = new PrettyConfig();
+      config.setMappings(mappings("/home/en/#{bean.property}/", "/about"));
+
+      assertNull(config.getMappingForUrl(new URL("/notmapped")));
+      assertNull(config.getMappingForUrl(new URL("/notmapped")));
+      assertEquals(1, config.getMappingCacheHits());
+      assertEquals(1, config.getMappingCacheMisses());
+   }
+
+   @Test
+   public void testDoesNotCacheExpressionMappings() throws Exception
+   {
+      PrettyConfig config = new PrettyConfig();
+      List<UrlMapping> mappings = mappings("/home/en/#{bean.property}/", "/about");
+      config.setMappings(mappings);
+
+      assertEquals(mappings.get(1), config.getMappingForUrl(new URL("/about")));
+      assertEquals(mappings.get(1), config.getMappingForUrl(new URL("/about")));
+      assertEquals(mappings.get(0), config.getMappingForUrl(new URL("/home/en/test/")));
+      assertEquals(mappings.get(0), config.getMappingForUrl(new URL("/home/en/test/")));
+      assertEquals(1, config.getMappingCacheHits());
+      assertEquals(3, config.getMappingCacheMisses());
+   }
+
+   @Test
+   public void testEvictsEldestUrls() throws Exception
+   {
+      PrettyConfig config = new PrettyConfig();
+      config.setMappingCacheSize(2);
+      config.setMappings(mappings("/about"));
+
+      config.getMappingForUrl(new URL("/one"));
+      config.getMappingForUrl(new URL("/two"));
+      config.getMappingForUrl(new URL("/three"));
+      config.getMappingForUrl(new URL("/three"));
+      config.getMappingForUrl(new URL("/one"));
+      assertEquals(1, config.getMappingCacheHits());
+      assertEquals(4, config.getMappingCacheMisses());
+   }
+
+   @Test
+   public void testIndexedLookupKeepsConfiguredOrder() throws Exception
+   {
+      PrettyConfig config = new PrettyConfig();
+      List<UrlMapping> mappings = mappings("/#{bean.any}/about", "/home/#{bean.first}", "/home/about",
+               "/sh.p/#{bean.item}", "/#{bean.any}/#{bean.other}");
+      config.setMappings(mappings);
+
+      assertEquals(mappings.get(0), config.getMappingForUrl(new URL("/home/about")));
+      assertEquals(mappings.get(1), config.getMappingForUrl(new URL("/home/contact")));
+      assertEquals(mappings.get(3), config.getMappingForUrl(new URL("/shop/item")));
+      assertEquals(mappings.get(4), config.getMappingForUrl(new URL("/other/page")));
+      assertNull(config.getMappingForUrl(new URL("/home/contact/more")));
+   }
+
+   private static List<UrlMapping> mappings(String... patterns)
+   {
+      List<UrlMapping> result = new ArrayList<UrlMapping>();
+      for (String pattern : patterns)
+      {
+         UrlMapping mapping = new UrlMapping();
+         mapping.setId("mapping" + result.size());
+         mapping.setPattern(pattern);
+         mapping.setViewId("/faces/view.jsf");
+         result.add(mapping);
+      }
+      return result;
+   }
+
 }
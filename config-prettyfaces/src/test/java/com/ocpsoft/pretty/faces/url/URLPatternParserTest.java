@@ -311,4 +311,45 @@ public class URLPatternParserTest
       URL url = regexParser.getMappedURL(new Object[] { "\\" });
       assertEquals("/\\/", url.toURL());
    }
+
+   @Test
+   public void testDollarHandling()
+   {
+      URLPatternParser parser = new URLPatternParser("/pay/#{amount}/");
+      URL url = parser.getMappedURL(new Object[] { "$1" });
+      assertEquals("/pay/$1/", url.toURL());
+   }
+
+   @Test
+   public void testParseWithGroupsInRegexes()
+   {
+      URLPatternParser parser = new URLPatternParser("/(en|de)/#{ /([0-9]+)-([a-z]+)/ id}-#{name}/");
+      List<PathParameter> params = parser.parse(new URL("/en/12-abc-foo/"));
+      assertEquals(2, params.size());
+      assertEquals("12-abc", params.get(0).getValue());
+      assertEquals("foo", params.get(1).getValue());
+   }
+
+   @Test
+   public void testExtractMatchesParse()
+   {
+      URLPatternParser parser = new URLPatternParser("/(en|de)/#{ /([0-9]+)-([a-z]+)/ id}-#{name}/#{page}");
+      URL url = new URL("/de/12-abc-foo/3");
+      List<PathParameter> parsed = parser.parse(url);
+      List<PathParameter> extracted = parser.extract(url);
+      assertEquals(3, extracted.size());
+      for (int i = 0; i < parsed.size(); i++)
+      {
+         assertEquals(parsed.get(i).getName(), extracted.get(i).getName());
+         assertEquals(parsed.get(i).getValue(), extracted.get(i).getValue());
+         assertEquals(i, extracted.get(i).getPosition());
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testExtractFailsIfNotMatched()
+   {
+      URLPatternParser parser = new URLPatternParser("/foo/#{named}/");
+      parser.extract(new URL("/bar/love/"));
+   }
 }
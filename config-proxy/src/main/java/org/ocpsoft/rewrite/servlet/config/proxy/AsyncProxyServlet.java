@@ -0,0 +1,395 @@
+/*
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.ocpsoft.rewrite.servlet.config.proxy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.protocol.HttpContext;
+import org.ocpsoft.logging.Logger;
+import org.ocpsoft.rewrite.servlet.AsyncRequest;
+
+/**
+ * A {@link ProxyServlet} that sends the proxy request through a non-blocking {@link ProxyClient#getHttpAsyncClient()},
+ * and completes an {@link AsyncRequest} once the response has been copied to the client, so that no container thread
+ * is held for the upstream round trip. Only requests without a body are supported.
+ * <p>
+ * Response content is handed from the I/O reactor to a writer thread in chunks. Reading from the destination is
+ * suspended while more than {@value #MAX_PENDING} bytes are waiting to be written to a slow client, and resumed once
+ * the writer has caught up.
+ * <p>
+ * Writes to the client block a writer thread, so each request is watched while it is in progress. Once it exceeds
+ * {@link ProxyClient#getRequestTimeout()} in total, or once a single write blocks for longer than
+ * {@link ProxyClient#getWriteTimeout()}, the proxy request is cancelled and the writer thread stops writing. It then
+ * answers with <code>504 Gateway Timeout</code>, or closes the response if it has already been committed. A write that
+ * stays blocked is left to fail by the container's own timeouts, since the response may not be completed while it is
+ * being written to.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+class AsyncProxyServlet extends ProxyServlet
+{
+   private static final Logger logger = Logger.getLogger(AsyncProxyServlet.class);
+
+   private static final int CHUNK_SIZE = 8 * 1024;
+   private static final int MAX_PENDING = 64 * 1024;
+   private static final long CHECK_INTERVAL = 1000;
+
+   private final ProxyClient client;
+
+   public AsyncProxyServlet(ProxyClient client)
+   {
+      super(client.getHttpClient());
+      this.client = client;
+   }
+
+   /**
+    * Determine whether the given request can be proxied by {@link #service(HttpServletRequest, AsyncRequest)}.
+    */
+   public static boolean supports(HttpServletRequest servletRequest)
+   {
+      /*
+       * Spec: RFC 2616, sec 4.3: either of these two headers signal that there is a message body.
+       */
+      return servletRequest.getHeader(HttpHeaders.CONTENT_LENGTH) == null
+               && servletRequest.getHeader(HttpHeaders.TRANSFER_ENCODING) == null;
+   }
+
+   /**
+    * Send the proxy request and return immediately. The response is written to {@link AsyncRequest#getResponse()}, and
+    * the {@link AsyncRequest} is completed once it has been written, or once the proxy request has failed.
+    */
+   public void service(HttpServletRequest servletRequest, AsyncRequest asyncRequest)
+   {
+      HttpRequest proxyRequest = new BasicHttpRequest(servletRequest.getMethod(), targetUri);
+      copyRequestHeaders(servletRequest, proxyRequest);
+
+      if (doLog)
+      {
+         logger.debug("async proxy " + servletRequest.getMethod() + " uri: " + servletRequest.getRequestURI()
+                  + " -- " + proxyRequest.getRequestLine().getUri());
+      }
+
+      /*
+       * The request is timed out by the watchdog below, which also cancels the proxy request; the container only times
+       * it out as a last resort.
+       */
+      long requestTimeout = client.getRequestTimeout();
+      asyncRequest.setTimeout(requestTimeout > 0 ? requestTimeout + 2 * CHECK_INTERVAL : 0);
+
+      final ResponseWriter writer = new ResponseWriter(servletRequest, asyncRequest, client.getWriterExecutor(),
+               requestTimeout, client.getWriteTimeout());
+      writer.upstream = client.getHttpAsyncClient().execute(
+               new BasicAsyncRequestProducer(URIUtils.extractHost(targetUriObj), proxyRequest),
+               new ResponseConsumer(writer), writer);
+
+      if (requestTimeout > 0 || client.getWriteTimeout() > 0)
+      {
+         writer.watchdog = client.getScheduler().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run()
+            {
+               writer.checkTimeouts();
+            }
+         }, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+         if (writer.completed.get())
+            writer.watchdog.cancel(false);
+      }
+   }
+
+   /**
+    * Copies the status and headers of the proxy response to the client, and hands content chunks to the
+    * {@link ResponseWriter}.
+    */
+   private class ResponseConsumer extends AbstractAsyncResponseConsumer<Void>
+   {
+      private final ResponseWriter writer;
+      private boolean discard;
+
+      public ResponseConsumer(ResponseWriter writer)
+      {
+         this.writer = writer;
+      }
+
+      @Override
+      protected void onResponseReceived(HttpResponse proxyResponse) throws IOException
+      {
+         int statusCode = proxyResponse.getStatusLine().getStatusCode();
+         try {
+            discard = doResponseRedirectOrNotModifiedLogic(writer.servletRequest, writer.servletResponse,
+                     proxyResponse, statusCode);
+         }
+         catch (ServletException e) {
+            throw new IOException(e);
+         }
+
+         if (!discard)
+         {
+            /*
+             * Pass the response code. This method with the "reason phrase" is deprecated but it's the only way to pass
+             * the reason along too. noinspection deprecation
+             */
+            writer.servletResponse.setStatus(statusCode, proxyResponse.getStatusLine().getReasonPhrase());
+            copyResponseHeaders(proxyResponse, writer.servletResponse);
+         }
+      }
+
+      @Override
+      protected void onEntityEnclosed(HttpEntity entity, ContentType contentType)
+      {}
+
+      @Override
+      protected void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException
+      {
+         ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+         while (decoder.read(buffer) > 0 && buffer.hasRemaining())
+         {
+            // keep reading until the chunk is full or no more content is available
+         }
+
+         if (!discard && buffer.position() > 0)
+         {
+            byte[] chunk = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(chunk);
+            writer.write(chunk, ioctrl);
+         }
+      }
+
+      @Override
+      protected Void buildResult(HttpContext context)
+      {
+         return null;
+      }
+
+      @Override
+      protected void releaseResources()
+      {}
+   }
+
+   /**
+    * Writes content chunks to the client on a writer thread, one task at a time per response, and completes the
+    * {@link AsyncRequest} once the proxy request has finished and all chunks have been written, or once it has timed
+    * out.
+    */
+   static class ResponseWriter implements Runnable, FutureCallback<Void>
+   {
+      private final HttpServletRequest servletRequest;
+      private final HttpServletResponse servletResponse;
+      private final AsyncRequest asyncRequest;
+      private final Executor executor;
+      private final long started = System.nanoTime();
+      private final long requestTimeout;
+      private final long writeTimeout;
+
+      private final Queue<byte[]> chunks = new ConcurrentLinkedQueue<byte[]>();
+      private final AtomicInteger pending = new AtomicInteger();
+      private final AtomicBoolean scheduled = new AtomicBoolean();
+      private final AtomicBoolean completed = new AtomicBoolean();
+
+      volatile Future<Void> upstream;
+      private volatile Future<?> watchdog;
+      private volatile boolean finished;
+      private volatile boolean aborted;
+      private volatile Exception failure;
+      private volatile long writeStarted;
+
+      private IOControl suspended;
+
+      public ResponseWriter(HttpServletRequest servletRequest, AsyncRequest asyncRequest, Executor executor,
+               long requestTimeout, long writeTimeout)
+      {
+         this.servletRequest = servletRequest;
+         this.servletResponse = (HttpServletResponse) asyncRequest.getResponse();
+         this.asyncRequest = asyncRequest;
+         this.executor = executor;
+         this.requestTimeout = TimeUnit.MILLISECONDS.toNanos(requestTimeout);
+         this.writeTimeout = TimeUnit.MILLISECONDS.toNanos(writeTimeout);
+      }
+
+      public void write(byte[] chunk, IOControl ioctrl)
+      {
+         chunks.add(chunk);
+         if (pending.addAndGet(chunk.length) >= MAX_PENDING)
+         {
+            synchronized (this)
+            {
+               if (pending.get() >= MAX_PENDING)
+               {
+                  ioctrl.suspendInput();
+                  suspended = ioctrl;
+               }
+            }
+         }
+         schedule();
+      }
+
+      @Override
+      public void completed(Void result)
+      {
+         finish(null);
+      }
+
+      @Override
+      public void failed(Exception e)
+      {
+         finish(e);
+      }
+
+      @Override
+      public void cancelled()
+      {
+         finish(null);
+      }
+
+      private void finish(Exception e)
+      {
+         if (e != null && failure == null)
+            failure = e;
+         finished = true;
+         schedule();
+      }
+
+      /**
+       * Abort this request if it has taken too long in total, or if the current write to the client is blocked. Called
+       * by the watchdog, which leaves completing the request to the writer thread.
+       */
+      public void checkTimeouts()
+      {
+         long now = System.nanoTime();
+         long write = writeStarted;
+         if (requestTimeout > 0 && now - started > requestTimeout)
+            abort(new TimeoutException("Proxy request timed out after [" + requestTimeout / 1000000 + "] ms"));
+         else if (writeTimeout > 0 && write != 0 && now - write > writeTimeout)
+            abort(new TimeoutException("Write to client blocked for more than [" + writeTimeout / 1000000 + "] ms"));
+      }
+
+      private void abort(Exception e)
+      {
+         if (aborted || completed.get())
+            return;
+
+         failure = e;
+         aborted = true;
+         chunks.clear();
+         if (upstream != null)
+            upstream.cancel(true);
+         schedule();
+      }
+
+      private void schedule()
+      {
+         if (!completed.get() && scheduled.compareAndSet(false, true))
+            executor.execute(this);
+      }
+
+      @Override
+      public void run()
+      {
+         try {
+            byte[] chunk = aborted ? null : chunks.poll();
+            if (chunk != null)
+            {
+               ServletOutputStream outputStream = servletResponse.getOutputStream();
+               try {
+                  for (; chunk != null && !aborted; chunk = chunks.poll())
+                  {
+                     writeStarted = System.nanoTime();
+                     outputStream.write(chunk);
+                     resume(pending.addAndGet(-chunk.length));
+                  }
+                  writeStarted = System.nanoTime();
+                  outputStream.flush();
+               }
+               finally {
+                  writeStarted = 0;
+               }
+            }
+
+            if (aborted || (finished && chunks.isEmpty()))
+               complete();
+         }
+         catch (Exception e) {
+            /*
+             * the client has gone away, so there is no point in reading the rest of the proxy response
+             */
+            logger.debug("Could not write proxied response to client", e);
+            chunks.clear();
+            if (upstream != null)
+               upstream.cancel(true);
+            complete();
+         }
+         finally {
+            scheduled.set(false);
+            if (!completed.get() && (aborted || finished || !chunks.isEmpty()))
+               schedule();
+         }
+      }
+
+      private synchronized void resume(int remaining)
+      {
+         if (suspended != null && remaining < MAX_PENDING / 2)
+         {
+            suspended.requestInput();
+            suspended = null;
+         }
+      }
+
+      private void complete()
+      {
+         if (completed.compareAndSet(false, true))
+         {
+            if (watchdog != null)
+               watchdog.cancel(false);
+
+            try {
+               Exception failure = this.failure;
+               if (failure != null)
+               {
+                  logger.warn("Could not proxy request [" + servletRequest.getRequestURI() + "]", failure);
+                  if (!servletResponse.isCommitted())
+                     servletResponse.sendError(failure instanceof TimeoutException
+                              || failure instanceof InterruptedIOException ? HttpServletResponse.SC_GATEWAY_TIMEOUT
+                              : HttpServletResponse.SC_BAD_GATEWAY);
+               }
+            }
+            catch (IOException e) {
+               logger.debug("Could not send error to client", e);
+            }
+            finally {
+               asyncRequest.complete();
+            }
+         }
+      }
+   }
+}
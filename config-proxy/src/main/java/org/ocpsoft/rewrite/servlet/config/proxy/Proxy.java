@@ -6,21 +6,39 @@
  */
 package org.ocpsoft.rewrite.servlet.config.proxy;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.ocpsoft.common.pattern.WeightedComparator;
+import org.ocpsoft.common.services.ServiceLoader;
+import org.ocpsoft.common.util.Iterators;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.exception.RewriteException;
 import org.ocpsoft.rewrite.param.ParameterStore;
 import org.ocpsoft.rewrite.param.Parameterized;
 import org.ocpsoft.rewrite.param.ParameterizedPatternBuilder;
 import org.ocpsoft.rewrite.param.RegexParameterizedPatternBuilder;
+import org.ocpsoft.rewrite.servlet.AsyncRequest;
+import org.ocpsoft.rewrite.servlet.RewriteWrappedResponse;
 import org.ocpsoft.rewrite.servlet.config.HttpOperation;
 import org.ocpsoft.rewrite.servlet.config.Lifecycle;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+import org.ocpsoft.rewrite.servlet.spi.AsyncRequestProvider;
 
 /**
+ * An {@link HttpOperation} that forwards the current request to a destination URL and copies the response back to the
+ * client. Requests of all {@link Proxy} operations share one pool of keep-alive connections per destination route,
+ * which is sized by the <code>org.ocpsoft.rewrite.proxy.MAX_CONNECTIONS</code> and
+ * <code>org.ocpsoft.rewrite.proxy.MAX_CONNECTIONS_PER_ROUTE</code> servlet context init parameters, and is shut down
+ * when the application is undeployed.
+ * <p>
+ * If the container supports asynchronous processing (e.g. if <code>rewrite-impl-servlet-3.0</code> is deployed),
+ * requests without a body are proxied through a non-blocking client, and the container thread is released while the
+ * destination is responding.
+ * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  * 
  */
@@ -28,6 +46,8 @@ public abstract class Proxy extends HttpOperation implements Parameterized
 {
    private final ParameterizedPatternBuilder destination;
 
+   private volatile List<AsyncRequestProvider> asyncRequestProviders;
+
    private Proxy(String destination)
    {
       this.destination = new RegexParameterizedPatternBuilder(destination);
@@ -49,20 +69,73 @@ public abstract class Proxy extends HttpOperation implements Parameterized
    {
       Map<String, String> params = new LinkedHashMap<String, String>();
       params.put("targetUri", destination.build(event, context));
-      ProxyServlet proxyServlet = new ProxyServlet();
+      ProxyClient client = ProxyClient.getInstance(event.getServletContext());
       ProxyServletConfig proxyConfig = new ProxyServletConfig(event.getServletContext(), params);
+
+      AsyncRequest asyncRequest = startAsync(event);
       try
       {
-         proxyServlet.init(proxyConfig);
-         proxyServlet.service(event.getRequest(), event.getResponse());
+         if (asyncRequest != null)
+         {
+            AsyncProxyServlet proxyServlet = new AsyncProxyServlet(client);
+            proxyServlet.init(proxyConfig);
+            proxyServlet.service(event.getRequest(), asyncRequest);
+         }
+         else
+         {
+            ProxyServlet proxyServlet = new ProxyServlet(client.getHttpClient());
+            proxyServlet.init(proxyConfig);
+            proxyServlet.service(event.getRequest(), event.getResponse());
+         }
          Lifecycle.abort().perform(event, context);
       }
       catch (Exception e)
       {
+         if (asyncRequest != null)
+            asyncRequest.complete();
          throw new RewriteException("Could not proxy event [" + event + "] to destination [" + destination + "]", e);
       }
    }
 
+   /**
+    * Put the current request into asynchronous mode using the {@link AsyncRequestProvider} SPI, or return
+    * <code>null</code> if it must be proxied on the current thread. This is the case if no provider supports
+    * asynchronous processing, if the request has a body, or if the response content is intercepted or wrapped, since
+    * it would then be flushed before the proxied content has been written.
+    */
+   private AsyncRequest startAsync(HttpServletRewrite event)
+   {
+      if (!AsyncProxyServlet.supports(event.getRequest()))
+         return null;
+
+      RewriteWrappedResponse response = RewriteWrappedResponse.getCurrentInstance(event.getRequest());
+      if (response != null && (response.isResponseContentIntercepted() || response.isResponseStreamWrapped()))
+         return null;
+
+      for (AsyncRequestProvider provider : getAsyncRequestProviders()) {
+         AsyncRequest asyncRequest = provider.startAsync(event.getRequest(), event.getResponse(),
+                  event.getServletContext());
+         if (asyncRequest != null)
+            return asyncRequest;
+      }
+      return null;
+   }
+
+   /**
+    * Returns the list of {@link AsyncRequestProvider} implementations.
+    */
+   private List<AsyncRequestProvider> getAsyncRequestProviders()
+   {
+      if (asyncRequestProviders == null)
+      {
+         List<AsyncRequestProvider> providers = Iterators.asList(
+                  ServiceLoader.loadTypesafe(AsyncRequestProvider.class).iterator());
+         Collections.sort(providers, new WeightedComparator());
+         asyncRequestProviders = providers;
+      }
+      return asyncRequestProviders;
+   }
+
    @Override
    public Set<String> getRequiredParameterNames()
    {
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.ocpsoft.rewrite.servlet.config.proxy;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletContext;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+import org.ocpsoft.logging.Logger;
+
+/**
+ * The {@link CloseableHttpClient} shared by all {@link Proxy} operations of a {@link ServletContext}, along with the
+ * {@link CloseableHttpAsyncClient} and writer threads used for asynchronous proxying, which are created on first use.
+ * Connections are pooled per destination route and kept alive between requests, and a background task closes expired
+ * connections and connections that have been idle for too long. The clients are shut down by
+ * {@link ProxyContextListener}.
+ * <p>
+ * Both clients give up on a destination that does not accept a connection within the connect timeout, or that stops
+ * sending data for longer than the socket timeout, and on a request that waits longer than the connection request
+ * timeout for a pooled connection. Asynchronously proxied requests are additionally aborted once they take longer than
+ * the request timeout in total, or once a single write to a slow client blocks for longer than the write timeout.
+ * <p>
+ * The defaults may be changed with the following servlet context init parameters in <code>web.xml</code>. Durations
+ * are given in seconds, and a value of zero disables the respective timeout; the keep-alive duration applies only if
+ * the destination does not send a <code>Keep-Alive</code> header of its own.
+ * 
+ * <pre>
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.proxy.MAX_CONNECTIONS&lt;/param-name&gt;
+ *   &lt;param-value&gt;200&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.proxy.MAX_CONNECTIONS_PER_ROUTE&lt;/param-name&gt;
+ *   &lt;param-value&gt;20&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.proxy.KEEP_ALIVE&lt;/param-name&gt;
+ *   &lt;param-value&gt;30&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.proxy.IDLE_TIMEOUT&lt;/param-name&gt;
+ *   &lt;param-value&gt;30&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.proxy.CONNECT_TIMEOUT&lt;/param-name&gt;
+ *   &lt;param-value&gt;10&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.proxy.SOCKET_TIMEOUT&lt;/param-name&gt;
+ *   &lt;param-value&gt;60&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.proxy.CONNECTION_REQUEST_TIMEOUT&lt;/param-name&gt;
+ *   &lt;param-value&gt;10&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.proxy.REQUEST_TIMEOUT&lt;/param-name&gt;
+ *   &lt;param-value&gt;300&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.proxy.WRITE_TIMEOUT&lt;/param-name&gt;
+ *   &lt;param-value&gt;30&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * </pre>
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+class ProxyClient
+{
+   private static final Logger log = Logger.getLogger(ProxyClient.class);
+
+   private static final String MAX_CONNECTIONS = "org.ocpsoft.rewrite.proxy.MAX_CONNECTIONS";
+   private static final String MAX_CONNECTIONS_PER_ROUTE = "org.ocpsoft.rewrite.proxy.MAX_CONNECTIONS_PER_ROUTE";
+   private static final String KEEP_ALIVE = "org.ocpsoft.rewrite.proxy.KEEP_ALIVE";
+   private static final String IDLE_TIMEOUT = "org.ocpsoft.rewrite.proxy.IDLE_TIMEOUT";
+   private static final String CONNECT_TIMEOUT = "org.ocpsoft.rewrite.proxy.CONNECT_TIMEOUT";
+   private static final String SOCKET_TIMEOUT = "org.ocpsoft.rewrite.proxy.SOCKET_TIMEOUT";
+   private static final String CONNECTION_REQUEST_TIMEOUT = "org.ocpsoft.rewrite.proxy.CONNECTION_REQUEST_TIMEOUT";
+   private static final String REQUEST_TIMEOUT = "org.ocpsoft.rewrite.proxy.REQUEST_TIMEOUT";
+   private static final String WRITE_TIMEOUT = "org.ocpsoft.rewrite.proxy.WRITE_TIMEOUT";
+
+   private static final String SHUTDOWN_KEY = ProxyClient.class.getName() + "_SHUTDOWN";
+
+   private final int maxConnections;
+   private final int maxConnectionsPerRoute;
+   private final ConnectionKeepAliveStrategy keepAliveStrategy;
+   private final RequestConfig requestConfig;
+   private final long requestTimeout;
+   private final long writeTimeout;
+
+   private final PoolingHttpClientConnectionManager connectionManager;
+   private final CloseableHttpClient client;
+   private final ScheduledExecutorService scheduler;
+
+   private PoolingNHttpClientConnectionManager asyncConnectionManager;
+   private CloseableHttpAsyncClient asyncClient;
+   private ExecutorService writers;
+
+   /**
+    * Create a {@link ProxyClient} with the given pool limits, keeping connections alive for the given number of seconds
+    * by default, and closing connections that have been idle for the given number of seconds, unless zero. The
+    * default timeouts apply.
+    */
+   public ProxyClient(int maxConnections, int maxConnectionsPerRoute, long keepAlive, long idleTimeout)
+   {
+      this(maxConnections, maxConnectionsPerRoute, keepAlive, idleTimeout, createRequestConfig(10, 60, 10), 300, 30);
+   }
+
+   /**
+    * Create a {@link ProxyClient} with the given pool limits, keeping connections alive for the given number of seconds
+    * by default, and closing connections that have been idle for the given number of seconds, unless zero. Requests
+    * are sent with the given {@link RequestConfig}, and asynchronously proxied requests are aborted after the given
+    * number of seconds in total, or once writing to the client blocks for the given number of seconds. Zero disables
+    * either timeout.
+    */
+   public ProxyClient(int maxConnections, int maxConnectionsPerRoute, final long keepAlive, final long idleTimeout,
+            RequestConfig requestConfig, long requestTimeout, long writeTimeout)
+   {
+      this.maxConnections = maxConnections;
+      this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+      this.requestConfig = requestConfig;
+      this.requestTimeout = TimeUnit.SECONDS.toMillis(requestTimeout);
+      this.writeTimeout = TimeUnit.SECONDS.toMillis(writeTimeout);
+      this.keepAliveStrategy = new ConnectionKeepAliveStrategy() {
+         @Override
+         public long getKeepAliveDuration(HttpResponse response, HttpContext context)
+         {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : TimeUnit.SECONDS.toMillis(keepAlive);
+         }
+      };
+
+      connectionManager = new PoolingHttpClientConnectionManager();
+      connectionManager.setMaxTotal(maxConnections);
+      connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+      /*
+       * Cookies, authentication and content encoding belong to the proxied clients, and must be passed through
+       * untouched rather than handled by a client that is shared between them.
+       */
+      client = HttpClients.custom()
+               .setConnectionManager(connectionManager)
+               .setKeepAliveStrategy(keepAliveStrategy)
+               .setDefaultRequestConfig(requestConfig)
+               .disableCookieManagement()
+               .disableAuthCaching()
+               .disableContentCompression()
+               .build();
+
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+         @Override
+         public Thread newThread(Runnable runnable)
+         {
+            Thread thread = new Thread(runnable, "rewrite-proxy-scheduler");
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      // timeouts of asynchronous requests are mostly cancelled, and should not pile up in the queue until they expire
+      executor.setRemoveOnCancelPolicy(true);
+      scheduler = executor;
+
+      /*
+       * Closing connections idle for zero seconds would close every connection between requests
+       */
+      if (idleTimeout > 0)
+      {
+         long period = Math.min(idleTimeout, 5);
+         scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run()
+            {
+               connectionManager.closeExpiredConnections();
+               connectionManager.closeIdleConnections(idleTimeout, TimeUnit.SECONDS);
+
+               PoolingNHttpClientConnectionManager asyncConnectionManager = getAsyncConnectionManager();
+               if (asyncConnectionManager != null)
+               {
+                  asyncConnectionManager.closeExpiredConnections();
+                  asyncConnectionManager.closeIdleConnections(idleTimeout, TimeUnit.SECONDS);
+               }
+            }
+         }, period, period, TimeUnit.SECONDS);
+      }
+   }
+
+   /**
+    * Get the {@link ProxyClient} for the given {@link ServletContext}, creating it on first access.
+    * 
+    * @throws IllegalStateException if the {@link ProxyClient} of the given {@link ServletContext} has been shut down.
+    */
+   public static ProxyClient getInstance(ServletContext context)
+   {
+      synchronized (ProxyClient.class)
+      {
+         ProxyClient client = (ProxyClient) context.getAttribute(ProxyClient.class.getName());
+         if (client == null)
+         {
+            if (context.getAttribute(SHUTDOWN_KEY) != null)
+               throw new IllegalStateException("The proxy client of this application has been shut down");
+
+            client = new ProxyClient(
+                     getInitParameter(context, MAX_CONNECTIONS, 200),
+                     getInitParameter(context, MAX_CONNECTIONS_PER_ROUTE, 20),
+                     getInitParameter(context, KEEP_ALIVE, 30),
+                     getInitParameter(context, IDLE_TIMEOUT, 30),
+                     createRequestConfig(
+                              getInitParameter(context, CONNECT_TIMEOUT, 10),
+                              getInitParameter(context, SOCKET_TIMEOUT, 60),
+                              getInitParameter(context, CONNECTION_REQUEST_TIMEOUT, 10)),
+                     getInitParameter(context, REQUEST_TIMEOUT, 300),
+                     getInitParameter(context, WRITE_TIMEOUT, 30));
+            context.setAttribute(ProxyClient.class.getName(), client);
+         }
+         return client;
+      }
+   }
+
+   /**
+    * Shut down the {@link ProxyClient} of the given {@link ServletContext}, if one was created. No new
+    * {@link ProxyClient} is created for the {@link ServletContext} afterwards.
+    */
+   public static void shutdown(ServletContext context)
+   {
+      ProxyClient client;
+      synchronized (ProxyClient.class)
+      {
+         client = (ProxyClient) context.getAttribute(ProxyClient.class.getName());
+         context.removeAttribute(ProxyClient.class.getName());
+         context.setAttribute(SHUTDOWN_KEY, Boolean.TRUE);
+      }
+
+      if (client != null)
+         client.shutdown();
+   }
+
+   /**
+    * Get the shared {@link CloseableHttpClient}.
+    */
+   public CloseableHttpClient getHttpClient()
+   {
+      return client;
+   }
+
+   PoolingHttpClientConnectionManager getConnectionManager()
+   {
+      return connectionManager;
+   }
+
+   RequestConfig getRequestConfig()
+   {
+      return requestConfig;
+   }
+
+   /**
+    * Get the shared {@link CloseableHttpAsyncClient}, creating and starting it on first access.
+    */
+   public synchronized CloseableHttpAsyncClient getHttpAsyncClient()
+   {
+      if (asyncClient == null)
+      {
+         try {
+            asyncConnectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor());
+         }
+         catch (IOReactorException e) {
+            throw new IllegalStateException("Could not create I/O reactor for asynchronous proxy requests", e);
+         }
+         asyncConnectionManager.setMaxTotal(maxConnections);
+         asyncConnectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+         asyncClient = HttpAsyncClients.custom()
+                  .setConnectionManager(asyncConnectionManager)
+                  .setKeepAliveStrategy(keepAliveStrategy)
+                  .setDefaultRequestConfig(requestConfig)
+                  .disableCookieManagement()
+                  .disableAuthCaching()
+                  .build();
+         asyncClient.start();
+      }
+      return asyncClient;
+   }
+
+   /**
+    * Get the {@link ScheduledExecutorService} on which timeouts of asynchronously proxied requests are checked.
+    */
+   public ScheduledExecutorService getScheduler()
+   {
+      return scheduler;
+   }
+
+   /**
+    * Get the time in milliseconds after which an asynchronously proxied request is aborted, or zero if it may take
+    * arbitrarily long.
+    */
+   public long getRequestTimeout()
+   {
+      return requestTimeout;
+   }
+
+   /**
+    * Get the time in milliseconds after which an asynchronously proxied request is aborted if writing its response to
+    * the client blocks, or zero if writes may block arbitrarily long.
+    */
+   public long getWriteTimeout()
+   {
+      return writeTimeout;
+   }
+
+   /**
+    * Get the {@link ExecutorService} on which asynchronously proxied response content is written to the client,
+    * creating it on first access.
+    */
+   public synchronized ExecutorService getWriterExecutor()
+   {
+      if (writers == null)
+      {
+         final AtomicInteger count = new AtomicInteger();
+         writers = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                  new ThreadFactory() {
+                     @Override
+                     public Thread newThread(Runnable runnable)
+                     {
+                        Thread thread = new Thread(runnable, "rewrite-proxy-writer-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                     }
+                  });
+      }
+      return writers;
+   }
+
+   /**
+    * Stop evicting idle connections, and close the shared clients along with all pooled connections.
+    */
+   public void shutdown()
+   {
+      scheduler.shutdownNow();
+      try {
+         client.close();
+      }
+      catch (IOException e) {
+         log.warn("Failed to close proxy HttpClient", e);
+      }
+
+      synchronized (this)
+      {
+         if (asyncClient != null)
+         {
+            try {
+               asyncClient.close();
+            }
+            catch (IOException e) {
+               log.warn("Failed to close proxy HttpAsyncClient", e);
+            }
+         }
+         if (writers != null)
+            writers.shutdownNow();
+      }
+   }
+
+   private synchronized PoolingNHttpClientConnectionManager getAsyncConnectionManager()
+   {
+      return asyncConnectionManager;
+   }
+
+   private static RequestConfig createRequestConfig(long connectTimeout, long socketTimeout,
+            long connectionRequestTimeout)
+   {
+      return RequestConfig.custom()
+               .setConnectTimeout((int) TimeUnit.SECONDS.toMillis(connectTimeout))
+               .setSocketTimeout((int) TimeUnit.SECONDS.toMillis(socketTimeout))
+               .setConnectionRequestTimeout((int) TimeUnit.SECONDS.toMillis(connectionRequestTimeout))
+               .build();
+   }
+
+   private static int getInitParameter(ServletContext context, String name, int defaultValue)
+   {
+      String value = context.getInitParameter(name);
+      if (value != null && !value.trim().isEmpty())
+      {
+         try {
+            return Integer.parseInt(value.trim());
+         }
+         catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for [" + name + "]: " + value, e);
+         }
+      }
+      return defaultValue;
+   }
+}
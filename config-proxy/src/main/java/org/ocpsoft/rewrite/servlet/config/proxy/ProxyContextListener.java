@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.ocpsoft.rewrite.servlet.config.proxy;
+
+import javax.servlet.ServletContextEvent;
+
+import org.ocpsoft.rewrite.servlet.spi.ContextListener;
+
+/**
+ * Shuts down the {@link ProxyClient} shared by all {@link Proxy} operations when the application is undeployed.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class ProxyContextListener implements ContextListener
+{
+   @Override
+   public int priority()
+   {
+      return 0;
+   }
+
+   @Override
+   public void contextInitialized(ServletContextEvent event)
+   {}
+
+   @Override
+   public void contextDestroyed(ServletContextEvent event)
+   {
+      ProxyClient.shutdown(event.getServletContext());
+   }
+}
@@ -91,8 +91,28 @@ public class ProxyServlet
 
    private ServletConfig servletConfig;
 
+   private final HttpClient sharedClient;
+
    private static final Logger logger = Logger.getLogger(ProxyServlet.class);
 
+   /**
+    * Create a {@link ProxyServlet} that creates its own {@link HttpClient} in {@link #init(ServletConfig)}, and shuts it
+    * down in {@link #destroy()}.
+    */
+   public ProxyServlet()
+   {
+      this(null);
+   }
+
+   /**
+    * Create a {@link ProxyServlet} that sends requests through the given shared {@link HttpClient}, which is owned by
+    * the caller and not shut down in {@link #destroy()}.
+    */
+   public ProxyServlet(HttpClient sharedClient)
+   {
+      this.sharedClient = sharedClient;
+   }
+
    public ServletConfig getServletConfig()
    {
       return servletConfig;
@@ -127,6 +147,8 @@ public class ProxyServlet
     */
    protected HttpClient createHttpClient(HttpParams hcParams)
    {
+      if (sharedClient != null)
+         return sharedClient;
       return new DefaultHttpClient(new ThreadSafeClientConnManager(), hcParams);
    }
 
@@ -162,7 +184,7 @@ public class ProxyServlet
       /*
        * shutdown() must be called according to documentation.
        */
-      if (proxyClient != null)
+      if (proxyClient != null && proxyClient != sharedClient)
          proxyClient.getConnectionManager().shutdown();
    }
 
@@ -194,6 +216,7 @@ public class ProxyServlet
 
       copyRequestHeaders(servletRequest, proxyRequest);
 
+      HttpResponse proxyResponse = null;
       try
       {
          /*
@@ -204,7 +227,7 @@ public class ProxyServlet
             logger.debug("proxy " + method + " uri: " + servletRequest.getRequestURI() + " -- "
                      + proxyRequest.getRequestLine().getUri());
          }
-         HttpResponse proxyResponse = proxyClient.execute(URIUtils.extractHost(targetUriObj), proxyRequest);
+         proxyResponse = proxyClient.execute(URIUtils.extractHost(targetUriObj), proxyRequest);
 
          /*
           * Process the response
@@ -253,6 +276,14 @@ public class ProxyServlet
             throw (IOException) e;
          throw new RuntimeException(e);
       }
+      finally
+      {
+         /*
+          * hand a pooled connection back once the entity has been consumed
+          */
+         if (proxyResponse instanceof Closeable)
+            closeQuietly((Closeable) proxyResponse);
+      }
    }
 
    protected boolean doResponseRedirectOrNotModifiedLogic(
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.ocpsoft.rewrite.servlet.config.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.nio.IOControl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.ocpsoft.rewrite.servlet.AsyncRequest;
+import org.ocpsoft.rewrite.servlet.config.proxy.AsyncProxyServlet.ResponseWriter;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class AsyncProxyServletTest
+{
+   private static final int CHUNK_SIZE = 8 * 1024;
+
+   private final ByteArrayOutputStream client = new ByteArrayOutputStream();
+   private final List<Runnable> tasks = new ArrayList<Runnable>();
+   private final Executor executor = new Executor() {
+      @Override
+      public synchronized void execute(Runnable command)
+      {
+         tasks.add(command);
+      }
+   };
+
+   private HttpServletRequest request;
+   private HttpServletResponse response;
+   private AsyncRequest asyncRequest;
+   private IOControl ioctrl;
+   private Future<Void> upstream;
+
+   @Before
+   @SuppressWarnings("unchecked")
+   public void before() throws IOException
+   {
+      request = Mockito.mock(HttpServletRequest.class);
+      response = Mockito.mock(HttpServletResponse.class);
+      Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+            client.write(b);
+         }
+      });
+      asyncRequest = Mockito.mock(AsyncRequest.class);
+      Mockito.when(asyncRequest.getResponse()).thenReturn(response);
+      ioctrl = Mockito.mock(IOControl.class);
+      upstream = Mockito.mock(Future.class);
+   }
+
+   @Test
+   public void testSuspendsReadingWhileClientFallsBehind() throws IOException
+   {
+      ResponseWriter writer = writer(0, 0);
+      for (int i = 0; i < 7; i++)
+         writer.write(new byte[CHUNK_SIZE], ioctrl);
+      Mockito.verify(ioctrl, Mockito.never()).suspendInput();
+
+      writer.write(new byte[CHUNK_SIZE], ioctrl);
+      Mockito.verify(ioctrl).suspendInput();
+
+      run();
+      Mockito.verify(ioctrl).requestInput();
+      Assert.assertEquals(8 * CHUNK_SIZE, client.size());
+
+      writer.completed(null);
+      run();
+      Mockito.verify(asyncRequest).complete();
+      Mockito.verify(response, Mockito.never()).sendError(Mockito.anyInt());
+   }
+
+   @Test
+   public void testAnswersGatewayTimeoutOnceRequestTimesOut() throws IOException, InterruptedException
+   {
+      ResponseWriter writer = writer(1, 0);
+      writer.write("partial".getBytes("UTF-8"), ioctrl);
+      Thread.sleep(10);
+      writer.checkTimeouts();
+
+      Mockito.verify(upstream).cancel(true);
+      Mockito.verify(asyncRequest, Mockito.never()).complete();
+
+      run();
+      Assert.assertEquals(0, client.size());
+      Mockito.verify(response).sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+      Mockito.verify(asyncRequest).complete();
+   }
+
+   @Test
+   public void testAnswersBadGatewayOnceUpstreamFails() throws IOException
+   {
+      ResponseWriter writer = writer(0, 0);
+      writer.failed(new ConnectException("Connection refused"));
+      run();
+
+      Mockito.verify(response).sendError(HttpServletResponse.SC_BAD_GATEWAY);
+      Mockito.verify(asyncRequest).complete();
+   }
+
+   @Test
+   public void testLeavesCompletionOfBlockedWriteToWriterThread() throws Exception
+   {
+      final CountDownLatch writing = new CountDownLatch(1);
+      final CountDownLatch unblock = new CountDownLatch(1);
+      Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+            writing.countDown();
+            try {
+               unblock.await();
+            }
+            catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         }
+      });
+
+      ResponseWriter writer = writer(0, 1);
+      writer.write(new byte[1], ioctrl);
+      Thread thread = new Thread() {
+         @Override
+         public void run()
+         {
+            AsyncProxyServletTest.this.run();
+         }
+      };
+      thread.start();
+
+      Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+      Thread.sleep(10);
+      writer.checkTimeouts();
+      Mockito.verify(upstream).cancel(true);
+      Mockito.verify(asyncRequest, Mockito.never()).complete();
+
+      unblock.countDown();
+      thread.join(5000);
+      run();
+      Mockito.verify(response).sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+      Mockito.verify(asyncRequest).complete();
+   }
+
+   @Test
+   public void testStopsReadingOnceClientDisconnects() throws IOException
+   {
+      Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+            throw new IOException("Broken pipe");
+         }
+      });
+
+      ResponseWriter writer = writer(0, 0);
+      writer.write("content".getBytes("UTF-8"), ioctrl);
+      run();
+
+      Mockito.verify(upstream).cancel(true);
+      Mockito.verify(asyncRequest).complete();
+      Mockito.verify(response, Mockito.never()).sendError(Mockito.anyInt());
+   }
+
+   private ResponseWriter writer(long requestTimeout, long writeTimeout)
+   {
+      ResponseWriter writer = new ResponseWriter(request, asyncRequest, executor, requestTimeout, writeTimeout);
+      writer.upstream = upstream;
+      return writer;
+   }
+
+   private void run()
+   {
+      while (true)
+      {
+         Runnable task;
+         synchronized (executor)
+         {
+            if (tasks.isEmpty())
+               return;
+            task = tasks.remove(0);
+         }
+         task.run();
+      }
+   }
+}
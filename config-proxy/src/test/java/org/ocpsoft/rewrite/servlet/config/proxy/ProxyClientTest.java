@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.ocpsoft.rewrite.servlet.config.proxy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import javax.servlet.ServletContext;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class ProxyClientTest
+{
+   private final Map<String, Object> attributes = new HashMap<String, Object>();
+   private ServletContext context;
+
+   @Before
+   public void before()
+   {
+      context = Mockito.mock(ServletContext.class);
+      Mockito.when(context.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      Mockito.doAnswer(new Answer<Void>() {
+         @Override
+         public Void answer(InvocationOnMock invocation)
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(context).setAttribute(Mockito.anyString(), Mockito.any());
+      Mockito.doAnswer(new Answer<Void>() {
+         @Override
+         public Void answer(InvocationOnMock invocation)
+         {
+            attributes.remove(invocation.getArguments()[0]);
+            return null;
+         }
+      }).when(context).removeAttribute(Mockito.anyString());
+   }
+
+   @Test
+   public void testConfiguresPoolAndTimeoutsFromInitParameters()
+   {
+      Mockito.when(context.getInitParameter("org.ocpsoft.rewrite.proxy.MAX_CONNECTIONS")).thenReturn("50");
+      Mockito.when(context.getInitParameter("org.ocpsoft.rewrite.proxy.MAX_CONNECTIONS_PER_ROUTE")).thenReturn(" 5 ");
+      Mockito.when(context.getInitParameter("org.ocpsoft.rewrite.proxy.CONNECT_TIMEOUT")).thenReturn("3");
+      Mockito.when(context.getInitParameter("org.ocpsoft.rewrite.proxy.REQUEST_TIMEOUT")).thenReturn("0");
+
+      ProxyClient client = ProxyClient.getInstance(context);
+      try {
+         Assert.assertSame(client, ProxyClient.getInstance(context));
+         Assert.assertEquals(50, client.getConnectionManager().getMaxTotal());
+         Assert.assertEquals(5, client.getConnectionManager().getDefaultMaxPerRoute());
+         Assert.assertEquals(3000, client.getRequestConfig().getConnectTimeout());
+         Assert.assertEquals(60000, client.getRequestConfig().getSocketTimeout());
+         Assert.assertEquals(10000, client.getRequestConfig().getConnectionRequestTimeout());
+         Assert.assertEquals(0, client.getRequestTimeout());
+         Assert.assertEquals(30000, client.getWriteTimeout());
+      }
+      finally {
+         ProxyClient.shutdown(context);
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsInvalidInitParameter()
+   {
+      Mockito.when(context.getInitParameter("org.ocpsoft.rewrite.proxy.MAX_CONNECTIONS")).thenReturn("many");
+      ProxyClient.getInstance(context);
+   }
+
+   @Test
+   public void testEvictsIdleConnectionsOnlyIfIdleTimeoutIsSet()
+   {
+      ProxyClient evicting = new ProxyClient(10, 2, 30, 30);
+      ProxyClient keeping = new ProxyClient(10, 2, 30, 0);
+      try {
+         Assert.assertEquals(1, ((ScheduledThreadPoolExecutor) evicting.getScheduler()).getQueue().size());
+         Assert.assertEquals(0, ((ScheduledThreadPoolExecutor) keeping.getScheduler()).getQueue().size());
+      }
+      finally {
+         evicting.shutdown();
+         keeping.shutdown();
+      }
+   }
+
+   @Test
+   public void testRefusesToCreateClientOnceShutDown()
+   {
+      ProxyClient client = ProxyClient.getInstance(context);
+      ProxyClient.shutdown(context);
+      Assert.assertTrue(client.getScheduler().isShutdown());
+
+      try {
+         ProxyClient.getInstance(context);
+         Assert.fail("created a client after shutdown");
+      }
+      catch (IllegalStateException e) {
+         Assert.assertFalse(attributes.containsKey(ProxyClient.class.getName()));
+      }
+   }
+}
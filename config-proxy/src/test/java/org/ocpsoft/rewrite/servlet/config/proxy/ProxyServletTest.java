@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.ocpsoft.rewrite.servlet.config.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class ProxyServletTest
+{
+   private final ByteArrayOutputStream client = new ByteArrayOutputStream();
+   private ServletConfig config;
+   private HttpServletRequest request;
+   private HttpServletResponse response;
+
+   @Before
+   public void before() throws IOException
+   {
+      config = Mockito.mock(ServletConfig.class);
+      Mockito.when(config.getInitParameter("targetUri")).thenReturn("http://example.com:8080/app/page");
+
+      request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getMethod()).thenReturn("GET");
+      Mockito.when(request.getHeaderNames()).thenReturn(Collections.enumeration(Collections.singletonList("Host")));
+      Mockito.when(request.getHeaders("Host")).thenReturn(
+               Collections.enumeration(Collections.singletonList("localhost")));
+
+      response = Mockito.mock(HttpServletResponse.class);
+      Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+            client.write(b);
+         }
+      });
+   }
+
+   @Test
+   @SuppressWarnings("deprecation")
+   public void testSendsRequestsThroughSharedClient() throws ServletException, IOException
+   {
+      BasicHttpResponse proxied = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+      proxied.addHeader("Content-Type", "text/plain");
+      proxied.addHeader("Connection", "keep-alive");
+      proxied.setEntity(new StringEntity("proxied content", "UTF-8"));
+
+      HttpClient shared = Mockito.mock(HttpClient.class);
+      Mockito.when(shared.execute(Mockito.any(HttpHost.class), Mockito.any(HttpRequest.class))).thenReturn(proxied);
+
+      ProxyServlet servlet = new ProxyServlet(shared);
+      servlet.init(config);
+      servlet.service(request, response);
+
+      ArgumentCaptor<HttpHost> host = ArgumentCaptor.forClass(HttpHost.class);
+      ArgumentCaptor<HttpRequest> sent = ArgumentCaptor.forClass(HttpRequest.class);
+      Mockito.verify(shared).execute(host.capture(), sent.capture());
+      Assert.assertEquals(new HttpHost("example.com", 8080, "http"), host.getValue());
+      Assert.assertEquals("example.com:8080", sent.getValue().getFirstHeader("Host").getValue());
+
+      Mockito.verify(response).setStatus(200, "OK");
+      Mockito.verify(response).addHeader("Content-Type", "text/plain");
+      Mockito.verify(response, Mockito.never()).addHeader(Mockito.eq("Connection"), Mockito.anyString());
+      Assert.assertEquals("proxied content", client.toString("UTF-8"));
+
+      servlet.destroy();
+      Mockito.verify(shared, Mockito.never()).getConnectionManager();
+   }
+
+   @Test
+   public void testCreatesOwnClientWithoutSharedClient() throws ServletException
+   {
+      ProxyServlet servlet = new ProxyServlet();
+      servlet.init(config);
+      Assert.assertNotNull(servlet.proxyClient);
+      servlet.destroy();
+   }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.ocpsoft.rewrite.config.Configuration;
+import org.ocpsoft.rewrite.config.ConfigurationBuilder;
+import org.ocpsoft.rewrite.config.Rule;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.param.ConfigurableParameter;
+import org.ocpsoft.rewrite.param.Constraint;
+import org.ocpsoft.rewrite.param.DefaultParameterStore;
+import org.ocpsoft.rewrite.param.ParameterStore;
+import org.ocpsoft.rewrite.param.RegexConstraint;
+import org.ocpsoft.rewrite.servlet.config.rule.Join;
+import org.ocpsoft.rewrite.servlet.impl.BoundedRuleCacheProvider;
+import org.ocpsoft.rewrite.servlet.impl.EvaluationContextImpl;
+import org.ocpsoft.rewrite.servlet.impl.HttpInboundRewriteImpl;
+import org.ocpsoft.rewrite.servlet.impl.HttpOutboundRewriteImpl;
+import org.ocpsoft.rewrite.util.ParameterUtils;
+import org.ocpsoft.urlbuilder.AddressBuilder;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class BoundedRuleCacheProviderTest
+{
+   private final Configuration configuration = ConfigurationBuilder.begin();
+   private final List<Rule> rules = ConfigurationBuilder.begin().addRule(Join.path("/a").to("/a.xhtml")).getRules();
+
+   private Rewrite inbound(String method, String uri)
+   {
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getMethod()).thenReturn(method);
+      Mockito.when(request.getContextPath()).thenReturn("/ctx");
+      Mockito.when(request.getRequestURI()).thenReturn(uri);
+      return new HttpInboundRewriteImpl(request, null, null);
+   }
+
+   private Rewrite outbound(String url)
+   {
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getMethod()).thenReturn("GET");
+      Mockito.when(request.getContextPath()).thenReturn("/ctx");
+      return new HttpOutboundRewriteImpl(request, null, null, AddressBuilder.create(url));
+   }
+
+   private EvaluationContext context(Configuration configuration)
+   {
+      EvaluationContext context = new EvaluationContextImpl();
+      context.put(Configuration.class, configuration);
+      return context;
+   }
+
+   @Test
+   public void testKeyByDirectionMethodAndPath()
+   {
+      BoundedRuleCacheProvider cache = new BoundedRuleCacheProvider(64);
+      Object key = cache.createKey(inbound("GET", "/ctx/a"), context(configuration));
+
+      Assert.assertEquals(key, cache.createKey(inbound("GET", "/ctx/a"), context(configuration)));
+      Assert.assertEquals(key, cache.createKey(inbound("GET", "/ctx/a;jsessionid=123"), context(configuration)));
+      Assert.assertNotEquals(key, cache.createKey(inbound("POST", "/ctx/a"), context(configuration)));
+      Assert.assertNotEquals(key, cache.createKey(inbound("GET", "/ctx/b"), context(configuration)));
+      Assert.assertNotEquals(key, cache.createKey(outbound("/ctx/a"), context(configuration)));
+   }
+
+   @Test
+   public void testHitsAndMisses()
+   {
+      BoundedRuleCacheProvider cache = new BoundedRuleCacheProvider(64);
+      Object key = cache.createKey(inbound("GET", "/ctx/a"), context(configuration));
+
+      Assert.assertNull(cache.get(key));
+      cache.put(key, rules);
+      Assert.assertEquals(rules, cache.get(cache.createKey(inbound("GET", "/ctx/a"), context(configuration))));
+
+      Assert.assertEquals(1, cache.getHitCount());
+      Assert.assertEquals(1, cache.getMissCount());
+      Assert.assertEquals(1, cache.size());
+   }
+
+   @Test
+   public void testEvictsLeastRecentlyUsed()
+   {
+      BoundedRuleCacheProvider cache = new BoundedRuleCacheProvider(16);
+      for (int i = 0; i < 100; i++) {
+         cache.put(cache.createKey(inbound("GET", "/ctx/" + i), context(configuration)), rules);
+      }
+
+      Assert.assertTrue(cache.size() <= 16);
+      Assert.assertEquals(100 - cache.size(), cache.getEvictionCount());
+
+      Object last = cache.createKey(inbound("GET", "/ctx/99"), context(configuration));
+      Assert.assertNotNull(cache.get(last));
+   }
+
+   @Test
+   public void testInvalidatedByNewConfiguration()
+   {
+      BoundedRuleCacheProvider cache = new BoundedRuleCacheProvider(64);
+      cache.put(cache.createKey(inbound("GET", "/ctx/a"), context(configuration)), rules);
+
+      Object key = cache.createKey(inbound("GET", "/ctx/a"), context(ConfigurationBuilder.begin()));
+      Assert.assertNull(cache.get(key));
+      Assert.assertEquals(0, cache.size());
+   }
+
+   @Test
+   public void testDisabled()
+   {
+      BoundedRuleCacheProvider cache = new BoundedRuleCacheProvider(0);
+      Assert.assertNull(cache.createKey(inbound("GET", "/ctx/a"), context(configuration)));
+   }
+
+   @Test
+   public void testPathCacheableOnlyWithRegexConstraints()
+   {
+      Path regex = Path.matches("/a/{x}");
+      ParameterStore store = new DefaultParameterStore();
+      ParameterUtils.initialize(store, regex);
+      ((ConfigurableParameter<?>) store.get("x")).constrainedBy(new RegexConstraint("[0-9]+"));
+      Assert.assertTrue(regex.isCacheable());
+
+      Path custom = Path.matches("/a/{y}");
+      ParameterUtils.initialize(store, custom);
+      ((ConfigurableParameter<?>) store.get("y")).constrainedBy(new Constraint<String>() {
+         @Override
+         public boolean isSatisfiedBy(Rewrite event, EvaluationContext context, String value)
+         {
+            return true;
+         }
+      });
+      Assert.assertFalse(custom.isCacheable());
+   }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.servlet.RewriteWrappedResponse;
+import org.ocpsoft.rewrite.servlet.config.response.ResponseStreamWrapper;
+import org.ocpsoft.rewrite.servlet.http.event.HttpInboundServletRewrite;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class CacheTest
+{
+   private final ByteArrayOutputStream client = new ByteArrayOutputStream();
+   private PageCache cache;
+   private HttpServletRequest request;
+   private HttpServletResponse response;
+   private RewriteWrappedResponse wrapped;
+   private HttpInboundServletRewrite event;
+   private ResponseStreamWrapper wrapper;
+   private OutputStream stream;
+
+   @Before
+   public void before() throws IOException
+   {
+      cache = PageCache.create().writer(new Executor() {
+         @Override
+         public void execute(Runnable command)
+         {
+            command.run();
+         }
+      });
+
+      wrapped = Mockito.mock(RewriteWrappedResponse.class);
+      request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getMethod()).thenReturn("GET");
+      Mockito.when(request.getAttribute(RewriteWrappedResponse.class.getName() + "_instance")).thenReturn(wrapped);
+
+      response = Mockito.mock(HttpServletResponse.class);
+      Mockito.when(response.getContentType()).thenReturn("text/html");
+      Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+            client.write(b);
+         }
+      });
+
+      event = Mockito.mock(HttpInboundServletRewrite.class);
+      Mockito.when(event.getRequest()).thenReturn(request);
+      Mockito.when(event.getResponse()).thenReturn(response);
+   }
+
+   @Test
+   public void testStoresRenderedPage() throws IOException
+   {
+      HttpServletResponse rendering = render();
+      rendering.addHeader("Cache-Control", "max-age=60");
+      rendering.setIntHeader("Content-Length", 7);
+      finish("content");
+
+      Assert.assertEquals("content", client.toString("UTF-8"));
+      Mockito.verify(event, Mockito.never()).abort();
+
+      CachedPage page = cache.get("home");
+      Assert.assertNotNull(page);
+      Assert.assertEquals(200, page.getStatus());
+      Assert.assertEquals("text/html", page.getContentType());
+      Assert.assertEquals("content", new String(page.getContent(), "UTF-8"));
+      Assert.assertEquals(1, page.getHeaders().size());
+      Assert.assertArrayEquals(new String[] { "Cache-Control", "max-age=60" }, page.getHeaders().get(0));
+   }
+
+   @Test
+   public void testServesStoredPage() throws IOException
+   {
+      cache.put(new CachedPage("home", System.currentTimeMillis(), 0, Collections.<String> emptySet(), 200,
+               "text/html", Collections.singletonList(new String[] { "Cache-Control", "max-age=60" }),
+               "content".getBytes("UTF-8")));
+      perform();
+
+      Assert.assertEquals("content", client.toString("UTF-8"));
+      Mockito.verify(response).setStatus(200);
+      Mockito.verify(response).addHeader("Cache-Control", "max-age=60");
+      Mockito.verify(response).setContentType("text/html");
+      Mockito.verify(response).setContentLength(7);
+      Mockito.verify(event).abort();
+      Mockito.verify(wrapped, Mockito.never()).addStreamWrapper(Mockito.any(ResponseStreamWrapper.class));
+   }
+
+   @Test
+   public void testServesStoredPageWithoutContentToHeadRequest() throws IOException
+   {
+      cache.put(new CachedPage("home", System.currentTimeMillis(), 0, Collections.<String> emptySet(), 200,
+               "text/html", Collections.<String[]> emptyList(), "content".getBytes("UTF-8")));
+      Mockito.when(request.getMethod()).thenReturn("HEAD");
+      perform();
+
+      Assert.assertEquals(0, client.size());
+      Mockito.verify(response).setContentLength(7);
+      Mockito.verify(event).abort();
+   }
+
+   @Test
+   public void testDoesNotStoreErrorPage() throws IOException
+   {
+      render().sendError(404);
+      finish("missing");
+      assertNotStored();
+   }
+
+   @Test
+   public void testDoesNotStoreNotModifiedResponse() throws IOException
+   {
+      render().setStatus(304);
+      finish("");
+      assertNotStored();
+   }
+
+   @Test
+   public void testDoesNotStorePageSettingCookies() throws IOException
+   {
+      render().addCookie(new Cookie("session", "1"));
+      finish("content");
+      assertNotStored();
+
+      render().addHeader("Set-Cookie", "session=1");
+      finish("content");
+      assertNotStored();
+   }
+
+   @Test
+   public void testDoesNotStorePrivatePage() throws IOException
+   {
+      render().setHeader("Cache-Control", "Private, max-age=60");
+      finish("content");
+      assertNotStored();
+
+      render().addHeader("Cache-Control", "no-store");
+      finish("content");
+      assertNotStored();
+   }
+
+   @Test
+   public void testDoesNotStoreResponseToHeadRequest() throws IOException
+   {
+      Mockito.when(request.getMethod()).thenReturn("HEAD");
+      render();
+      finish("");
+      assertNotStored();
+   }
+
+   /**
+    * Perform the {@link Cache} operation for a page that is not stored, and return the response the application
+    * renders it to.
+    */
+   private HttpServletResponse render() throws IOException
+   {
+      Mockito.reset(wrapped);
+      perform();
+
+      ArgumentCaptor<ResponseStreamWrapper> wrappers = ArgumentCaptor.forClass(ResponseStreamWrapper.class);
+      Mockito.verify(wrapped).addStreamWrapper(wrappers.capture());
+      ArgumentCaptor<HttpServletResponse> responses = ArgumentCaptor.forClass(HttpServletResponse.class);
+      Mockito.verify(event, Mockito.atLeastOnce()).setResponse(responses.capture());
+
+      wrapper = wrappers.getValue();
+      stream = wrapper.wrap(event, client);
+      return responses.getValue();
+   }
+
+   /**
+    * Write the given content as the rendered page, and finish the response.
+    */
+   private void finish(String content) throws IOException
+   {
+      stream.write(content.getBytes("UTF-8"));
+      wrapper.finish(event);
+   }
+
+   private void assertNotStored()
+   {
+      Assert.assertNull(cache.get("home"));
+      PageCache.Render render = cache.lock("home", Collections.<String> emptySet());
+      Assert.assertNotNull(render);
+      render.complete(null);
+   }
+
+   private void perform()
+   {
+      Cache.page(cache, "home").perform(event, Mockito.mock(EvaluationContext.class));
+   }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ocpsoft.rewrite.config.NoOp;
+import org.ocpsoft.rewrite.mock.MockRewrite;
+import org.ocpsoft.rewrite.param.DefaultParameter;
+import org.ocpsoft.rewrite.param.DefaultParameterValueStore;
+import org.ocpsoft.rewrite.param.ParameterValueStore;
+import org.ocpsoft.rewrite.servlet.impl.EvaluationContextImpl;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class EvaluationContextImplTest
+{
+   @Test
+   public void testClearRemovesOperations()
+   {
+      EvaluationContextImpl context = new EvaluationContextImpl();
+      context.addPreOperation(new NoOp());
+      context.addPostOperation(new NoOp());
+
+      context.clear();
+
+      Assert.assertTrue(context.getPreOperations().isEmpty());
+      Assert.assertTrue(context.getPostOperations().isEmpty());
+   }
+
+   @Test
+   public void testResetReusesEmptyValueStore()
+   {
+      EvaluationContextImpl context = new EvaluationContextImpl();
+      DefaultParameter parameter = new DefaultParameter("p");
+
+      DefaultParameterValueStore values = context.reset();
+      values.submit(new MockRewrite(), context, parameter, "value");
+      Assert.assertEquals("value", values.retrieve(parameter));
+      context.put("key", "value");
+
+      DefaultParameterValueStore reset = context.reset();
+      Assert.assertSame(values, reset);
+      Assert.assertSame(reset, context.get(ParameterValueStore.class));
+      Assert.assertNull(reset.retrieve(parameter));
+      Assert.assertNull(context.get("key"));
+   }
+}
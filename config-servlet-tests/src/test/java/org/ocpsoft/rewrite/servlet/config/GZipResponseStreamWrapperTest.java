@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ocpsoft.common.util.Streams;
+import org.ocpsoft.rewrite.servlet.config.response.GZipResponseStreamWrapper;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class GZipResponseStreamWrapperTest
+{
+   private final ByteArrayOutputStream client = new ByteArrayOutputStream();
+   private final Map<String, Object> attributes = new HashMap<String, Object>();
+   private HttpServletRequest request;
+   private HttpServletResponse response;
+   private HttpServletRewrite event;
+
+   @Before
+   public void before()
+   {
+      request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      Mockito.doAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(request).setAttribute(Mockito.anyString(), Mockito.any());
+
+      response = Mockito.mock(HttpServletResponse.class);
+      Mockito.when(response.getContentType()).thenReturn("text/html");
+
+      event = Mockito.mock(HttpServletRewrite.class);
+      Mockito.when(event.getRequest()).thenReturn(request);
+      Mockito.when(event.getResponse()).thenReturn(response);
+   }
+
+   @Test
+   public void testCompressesAsContentIsWritten() throws IOException
+   {
+      accept("deflate, gzip;q=0.8");
+      GZipResponseStreamWrapper wrapper = new GZipResponseStreamWrapper();
+      OutputStream stream = wrapper.wrap(event, client);
+
+      stream.write("first".getBytes("UTF-8"));
+      stream.flush();
+      Assert.assertTrue(client.size() > 0);
+
+      stream.write(" second".getBytes("UTF-8"));
+      wrapper.finish(event);
+      Assert.assertEquals("first second", gunzip(client.toByteArray()));
+      Mockito.verify(response).setHeader("Content-Encoding", "gzip");
+      Mockito.verify(response).addHeader("Vary", "Accept-Encoding");
+   }
+
+   @Test
+   public void testDoesNotCompressIfNotAccepted() throws IOException
+   {
+      accept("gzip;q=0, *");
+      GZipResponseStreamWrapper wrapper = new GZipResponseStreamWrapper();
+      OutputStream stream = wrapper.wrap(event, client);
+      stream.write("plain".getBytes("UTF-8"));
+      wrapper.finish(event);
+
+      Assert.assertEquals("plain", client.toString("UTF-8"));
+      Mockito.verify(response, Mockito.never()).setHeader("Content-Encoding", "gzip");
+      Mockito.verify(response).addHeader("Vary", "Accept-Encoding");
+   }
+
+   @Test
+   public void testDoesNotCompressSmallResponses() throws IOException
+   {
+      accept("gzip");
+      GZipResponseStreamWrapper wrapper = new GZipResponseStreamWrapper().withMinimumSize(64);
+      OutputStream stream = wrapper.wrap(event, client);
+      stream.write("small".getBytes("UTF-8"));
+      Assert.assertEquals(0, client.size());
+      wrapper.finish(event);
+
+      Assert.assertEquals("small", client.toString("UTF-8"));
+      Mockito.verify(response, Mockito.never()).setHeader("Content-Encoding", "gzip");
+   }
+
+   @Test
+   public void testDoesNotCompressCompressedContentTypes() throws IOException
+   {
+      accept("gzip");
+      Mockito.when(response.getContentType()).thenReturn("image/png");
+      GZipResponseStreamWrapper wrapper = new GZipResponseStreamWrapper();
+      OutputStream stream = wrapper.wrap(event, client);
+      stream.write("png".getBytes("UTF-8"));
+      wrapper.finish(event);
+
+      Assert.assertEquals("png", client.toString("UTF-8"));
+      Mockito.verify(response, Mockito.never()).setHeader("Content-Encoding", "gzip");
+   }
+
+   private void accept(String encoding)
+   {
+      Mockito.when(request.getHeaders("Accept-Encoding")).thenReturn(
+               Collections.enumeration(Collections.singletonList(encoding)));
+   }
+
+   private String gunzip(byte[] bytes) throws IOException
+   {
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      Streams.copy(new GZIPInputStream(new ByteArrayInputStream(bytes)), result);
+      return result.toString("UTF-8");
+   }
+}
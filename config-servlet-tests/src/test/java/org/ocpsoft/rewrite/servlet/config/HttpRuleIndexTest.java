@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.ocpsoft.rewrite.config.Condition;
+import org.ocpsoft.rewrite.config.ConfigurationBuilder;
+import org.ocpsoft.rewrite.config.Direction;
+import org.ocpsoft.rewrite.config.Rule;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.servlet.config.rule.Join;
+import org.ocpsoft.rewrite.servlet.impl.HttpInboundRewriteImpl;
+import org.ocpsoft.rewrite.servlet.impl.HttpOutboundRewriteImpl;
+import org.ocpsoft.rewrite.servlet.impl.HttpRuleIndex;
+import org.ocpsoft.urlbuilder.AddressBuilder;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class HttpRuleIndexTest
+{
+   private List<Rule> rules;
+   private HttpRuleIndex index;
+
+   @Before
+   public void before()
+   {
+      Condition custom = new Condition() {
+         @Override
+         public boolean evaluate(Rewrite event, EvaluationContext context)
+         {
+            return true;
+         }
+      };
+
+      ConfigurationBuilder config = ConfigurationBuilder.begin();
+      config.addRule(Join.path("/a/{x}").to("/a.xhtml"));
+      config.addRule().when(Path.matches("/b/{y}").and(Method.isPost()));
+      config.addRule().when(Direction.isOutbound().and(Path.matches("/c")));
+      config.addRule().when(custom);
+      config.addRule().when(Path.matches("/d").or(Path.matches("/e")));
+
+      rules = config.getRules();
+
+      index = new HttpRuleIndex(rules);
+   }
+
+   private Rewrite inbound(String method, String uri)
+   {
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getMethod()).thenReturn(method);
+      Mockito.when(request.getContextPath()).thenReturn("/ctx");
+      Mockito.when(request.getRequestURI()).thenReturn(uri);
+      return new HttpInboundRewriteImpl(request, null, null);
+   }
+
+   private Rewrite outbound(String url)
+   {
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getMethod()).thenReturn("GET");
+      Mockito.when(request.getContextPath()).thenReturn("/ctx");
+      return new HttpOutboundRewriteImpl(request, null, null, AddressBuilder.create(url));
+   }
+
+   @Test
+   public void testInboundPathPrefix()
+   {
+      List<Rule> candidates = index.getCandidates(inbound("GET", "/ctx/a/1"));
+      Assert.assertEquals(3, candidates.size());
+      Assert.assertSame(rules.get(0), candidates.get(0));
+      Assert.assertSame(rules.get(3), candidates.get(1));
+      Assert.assertSame(rules.get(4), candidates.get(2));
+   }
+
+   @Test
+   public void testInboundMethod()
+   {
+      Assert.assertEquals(2, index.getCandidates(inbound("GET", "/ctx/b/2")).size());
+
+      List<Rule> candidates = index.getCandidates(inbound("POST", "/ctx/b/2"));
+      Assert.assertEquals(3, candidates.size());
+      Assert.assertSame(rules.get(1), candidates.get(0));
+   }
+
+   @Test
+   public void testDirection()
+   {
+      Assert.assertEquals(2, index.getCandidates(inbound("GET", "/ctx/c")).size());
+
+      List<Rule> candidates = index.getCandidates(outbound("/ctx/c"));
+      Assert.assertEquals(3, candidates.size());
+      Assert.assertSame(rules.get(2), candidates.get(0));
+   }
+
+   @Test
+   public void testOutboundJoinResource()
+   {
+      List<Rule> candidates = index.getCandidates(outbound("/ctx/a.xhtml?x=1"));
+      Assert.assertEquals(3, candidates.size());
+      Assert.assertSame(rules.get(0), candidates.get(0));
+   }
+
+   @Test
+   public void testUnanalyzableRulesAlwaysReturned()
+   {
+      List<Rule> candidates = index.getCandidates(inbound("GET", "/ctx/unknown"));
+      Assert.assertEquals(2, candidates.size());
+      Assert.assertSame(rules.get(3), candidates.get(0));
+      Assert.assertSame(rules.get(4), candidates.get(1));
+   }
+}
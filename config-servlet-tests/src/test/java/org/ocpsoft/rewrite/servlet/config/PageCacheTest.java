@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestEvent;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class PageCacheTest
+{
+   @Test
+   public void testEvictsLeastRecentlyUsedPage()
+   {
+      PageCache cache = PageCache.create().maxPages(2);
+      cache.put(page("a", 0));
+      cache.put(page("b", 0));
+      cache.get("a");
+      cache.put(page("c", 0));
+
+      Assert.assertNotNull(cache.get("a"));
+      Assert.assertNull(cache.get("b"));
+      Assert.assertNotNull(cache.get("c"));
+   }
+
+   @Test
+   public void testDoesNotReturnExpiredPage()
+   {
+      PageCache cache = PageCache.create();
+      cache.put(page("a", System.currentTimeMillis() - 1));
+      Assert.assertNull(cache.get("a"));
+      Assert.assertEquals(0, cache.size());
+   }
+
+   @Test
+   public void testInvalidatesTaggedPages()
+   {
+      PageCache cache = PageCache.create();
+      cache.put(page("a", 0, "products"));
+      cache.put(page("b", 0, "users"));
+      cache.invalidateTag("products");
+
+      Assert.assertNull(cache.get("a"));
+      Assert.assertNotNull(cache.get("b"));
+   }
+
+   @Test
+   public void testDoesNotStorePageInvalidatedWhileRendering()
+   {
+      PageCache cache = PageCache.create();
+      PageCache.Render render = cache.lock("a", new HashSet<String>(Arrays.asList("products")));
+      Assert.assertNotNull(render);
+
+      cache.invalidateTag("products");
+      render.complete(page("a", 0, "products"));
+      Assert.assertNull(cache.get("a"));
+
+      Assert.assertNotNull(cache.lock("a", Collections.<String> emptySet()));
+   }
+
+   @Test
+   public void testWaitsForConcurrentRender() throws InterruptedException
+   {
+      final PageCache cache = PageCache.create().lockTimeout(5, TimeUnit.SECONDS);
+      final PageCache.Render render = cache.lock("a", Collections.<String> emptySet());
+
+      Thread renderer = new Thread() {
+         @Override
+         public void run()
+         {
+            try {
+               Thread.sleep(200);
+            }
+            catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+            render.complete(page("a", 0));
+         }
+      };
+      renderer.start();
+
+      Assert.assertNull(cache.lock("a", Collections.<String> emptySet()));
+      Assert.assertNotNull(cache.get("a"));
+      renderer.join();
+   }
+
+   @Test
+   public void testReadsEvictedPageFromDirectory() throws IOException, InterruptedException
+   {
+      File directory = Files.createTempDirectory("rewrite-page-cache").toFile();
+      try {
+         PageCache cache = PageCache.create().maxPages(1).directory(directory);
+         cache.put(page("a", 0, "products"));
+         awaitFiles(directory, 1);
+         cache.put(page("b", 0));
+         awaitFiles(directory, 2);
+
+         CachedPage page = cache.get("a");
+         Assert.assertNotNull(page);
+         Assert.assertEquals("content of a", new String(page.getContent(), "UTF-8"));
+         Assert.assertEquals("text/html", page.getContentType());
+         Assert.assertEquals("max-age=60", page.getHeaders().get(0)[1]);
+         Assert.assertTrue(page.getTags().contains("products"));
+
+         cache.invalidateTag("products");
+         Assert.assertEquals(1, directory.listFiles().length);
+         cache.clear();
+         Assert.assertEquals(0, directory.listFiles().length);
+      }
+      finally {
+         for (File file : directory.listFiles())
+            file.delete();
+         directory.delete();
+      }
+   }
+
+   @Test
+   public void testDoesNotWritePageInvalidatedWhileWriting() throws IOException
+   {
+      File directory = Files.createTempDirectory("rewrite-page-cache").toFile();
+      try {
+         final List<Runnable> tasks = new ArrayList<Runnable>();
+         PageCache cache = PageCache.create().directory(directory).writer(new Executor() {
+            @Override
+            public void execute(Runnable task)
+            {
+               tasks.add(task);
+            }
+         });
+
+         cache.put(page("a", 0, "products"));
+         cache.put(page("b", 0, "users"));
+         cache.invalidate("a");
+         cache.invalidateTag("users");
+         for (int i = 0; i < tasks.size(); i++)
+            tasks.get(i).run();
+
+         Assert.assertEquals(0, directory.listFiles().length);
+         Assert.assertNull(cache.get("a"));
+         Assert.assertNull(cache.get("b"));
+      }
+      finally {
+         delete(directory);
+      }
+   }
+
+   @Test
+   public void testEvictsLeastRecentlyUsedFiles() throws IOException
+   {
+      File directory = Files.createTempDirectory("rewrite-page-cache").toFile();
+      try {
+         PageCache cache = PageCache.create().maxPages(1).directory(directory).writer(new Executor() {
+            @Override
+            public void execute(Runnable task)
+            {
+               task.run();
+            }
+         });
+
+         cache.put(page("a", 0));
+         long size = cache.diskSize();
+         cache.maxDiskBytes(2 * size);
+         cache.put(page("b", 0));
+         Assert.assertNotNull(cache.get("a"));
+         cache.put(page("c", 0));
+
+         Assert.assertEquals(2, directory.listFiles().length);
+         Assert.assertEquals(2 * size, cache.diskSize());
+         Assert.assertNotNull(cache.get("a"));
+         Assert.assertNull(cache.get("b"));
+         Assert.assertNotNull(cache.get("c"));
+      }
+      finally {
+         delete(directory);
+      }
+   }
+
+   @Test
+   public void testReleasesRenderOfDestroyedRequest()
+   {
+      PageCache cache = PageCache.create().lockTimeout(0, TimeUnit.MILLISECONDS);
+      PageCache.Render render = cache.lock("a", Collections.<String> emptySet());
+
+      ServletRequest request = request();
+      PageCacheRequestListener.register(request, render);
+      new PageCacheRequestListener().requestDestroyed(new ServletRequestEvent(Mockito.mock(ServletContext.class),
+               request));
+
+      Assert.assertNotNull(cache.lock("a", Collections.<String> emptySet()));
+      Assert.assertNull(cache.get("a"));
+   }
+
+   private ServletRequest request()
+   {
+      final Map<String, Object> attributes = new HashMap<String, Object>();
+      ServletRequest request = Mockito.mock(ServletRequest.class);
+      Mockito.when(request.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      Mockito.doAnswer(new Answer<Void>() {
+         @Override
+         public Void answer(InvocationOnMock invocation)
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(request).setAttribute(Mockito.anyString(), Mockito.any());
+      return request;
+   }
+
+   private void delete(File directory)
+   {
+      for (File file : directory.listFiles())
+         file.delete();
+      directory.delete();
+   }
+
+   private void awaitFiles(File directory, int count) throws InterruptedException
+   {
+      for (int i = 0; i < 500 && !containsPages(directory, count); i++)
+         Thread.sleep(10);
+      Assert.assertTrue(containsPages(directory, count));
+   }
+
+   private boolean containsPages(File directory, int count)
+   {
+      String[] names = directory.list();
+      for (String name : names) {
+         if (!name.endsWith(".page"))
+            return false;
+      }
+      return names.length == count;
+   }
+
+   private static CachedPage page(String key, long expires, String... tags)
+   {
+      try {
+         return new CachedPage(key, System.currentTimeMillis(), expires, new HashSet<String>(Arrays.asList(tags)),
+                  200, "text/html", Collections.singletonList(new String[] { "Cache-Control", "max-age=60" }),
+                  ("content of " + key).getBytes("UTF-8"));
+      }
+      catch (IOException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.servlet.http.event.HttpInboundServletRewrite;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class PrecompressedTest
+{
+   private final EvaluationContext context = Mockito.mock(EvaluationContext.class);
+   private ServletContext servletContext;
+   private HttpServletRequest request;
+   private HttpServletResponse response;
+   private HttpInboundServletRewrite event;
+
+   @Before
+   public void before() throws MalformedURLException
+   {
+      servletContext = Mockito.mock(ServletContext.class);
+      final Map<String, Object> attributes = new HashMap<String, Object>();
+      Mockito.when(servletContext.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      Mockito.doAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(servletContext).setAttribute(Mockito.anyString(), Mockito.any());
+      Mockito.when(servletContext.getResource("/js/app.js.gz")).thenReturn(new URL("file:/js/app.js.gz"));
+      Mockito.when(servletContext.getMimeType("/js/app.js")).thenReturn("application/javascript");
+
+      request = Mockito.mock(HttpServletRequest.class);
+      response = Mockito.mock(HttpServletResponse.class);
+
+      event = Mockito.mock(HttpInboundServletRewrite.class);
+      Mockito.when(event.getRequest()).thenReturn(request);
+      Mockito.when(event.getResponse()).thenReturn(response);
+      Mockito.when(event.getServletContext()).thenReturn(servletContext);
+   }
+
+   @Test
+   public void testForwardsToAcceptedSibling() throws MalformedURLException
+   {
+      accept("br, gzip");
+      Precompressed.forward("/js/app.js").perform(event, context);
+
+      Mockito.verify(event).forward("/js/app.js.gz");
+      Mockito.verify(response).setHeader("Content-Encoding", "gzip");
+      Mockito.verify(response).setContentType("application/javascript");
+      Mockito.verify(response).addHeader("Vary", "Accept-Encoding");
+   }
+
+   @Test
+   public void testDoesNotForwardIfNotAccepted()
+   {
+      accept("identity");
+      Precompressed.forward("/js/app.js").perform(event, context);
+
+      Mockito.verify(event, Mockito.never()).forward(Mockito.anyString());
+      Mockito.verify(response).addHeader("Vary", "Accept-Encoding");
+      Assert.assertFalse(Precompressed.exists("/js/app.js").evaluate(event, context));
+   }
+
+   @Test
+   public void testLooksUpSiblingsOnce() throws MalformedURLException
+   {
+      accept("gzip");
+      Assert.assertTrue(Precompressed.exists("/js/app.js").evaluate(event, context));
+      Assert.assertTrue(Precompressed.exists("/js/app.js").evaluate(event, context));
+      Mockito.verify(servletContext, Mockito.times(1)).getResource("/js/app.js.gz");
+   }
+
+   @Test
+   public void testLooksUpMissingSiblingsOnce() throws MalformedURLException
+   {
+      accept("br, gzip");
+      Assert.assertTrue(Precompressed.exists("/js/app.js").evaluate(event, context));
+      Assert.assertTrue(Precompressed.exists("/js/app.js").evaluate(event, context));
+      Mockito.verify(servletContext, Mockito.times(1)).getResource("/js/app.js.br");
+   }
+
+   @Test
+   public void testPrefersAddedEncoding() throws MalformedURLException
+   {
+      accept("zstd, gzip");
+      Mockito.when(servletContext.getResource("/js/app.js.zst")).thenReturn(new URL("file:/js/app.js.zst"));
+      Precompressed.forward("/js/app.js").withEncoding("zstd", ".zst").perform(event, context);
+
+      Mockito.verify(event).forward("/js/app.js.zst");
+      Mockito.verify(response).setHeader("Content-Encoding", "zstd");
+   }
+
+   private void accept(final String encoding)
+   {
+      Mockito.when(request.getHeaders("Accept-Encoding")).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            return Collections.enumeration(Collections.singletonList(encoding));
+         }
+      });
+   }
+}
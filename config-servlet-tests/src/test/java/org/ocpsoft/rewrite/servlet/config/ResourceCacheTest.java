@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+
+import javax.servlet.ServletContext;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class ResourceCacheTest
+{
+   private ServletContext context;
+
+   @Before
+   public void before() throws MalformedURLException
+   {
+      context = Mockito.mock(ServletContext.class);
+      Mockito.when(context.getResource("/index.html")).thenReturn(new URL("file:/index.html"));
+      Mockito.when(context.getResourcePaths("/")).thenReturn(
+               new HashSet<String>(Collections.singletonList("/index.html")));
+   }
+
+   @Test
+   public void testRemembersExistingAndMissingResources() throws MalformedURLException
+   {
+      ResourceCache cache = new ResourceCache(60000, true);
+      Assert.assertTrue(cache.exists(context, "/index.html"));
+      Assert.assertTrue(cache.exists(context, "/index.html"));
+      Assert.assertFalse(cache.exists(context, "/missing.html"));
+      Assert.assertFalse(cache.exists(context, "/missing.html"));
+      Assert.assertEquals(Collections.singleton("/index.html"), cache.getResourcePaths(context, "/"));
+      Assert.assertEquals(Collections.singleton("/index.html"), cache.getResourcePaths(context, "/"));
+
+      Mockito.verify(context, Mockito.times(1)).getResource("/index.html");
+      Mockito.verify(context, Mockito.times(1)).getResource("/missing.html");
+      Mockito.verify(context, Mockito.times(1)).getResourcePaths("/");
+   }
+
+   @Test
+   public void testAlwaysRemembersMissingOptionalResources() throws MalformedURLException
+   {
+      ResourceCache cache = new ResourceCache(60000, false);
+      Assert.assertFalse(cache.existsOptional(context, "/index.html.br"));
+      Assert.assertFalse(cache.existsOptional(context, "/index.html.br"));
+      Assert.assertTrue(cache.existsOptional(context, "/index.html"));
+      Assert.assertTrue(cache.existsOptional(context, "/index.html"));
+
+      Mockito.verify(context, Mockito.times(1)).getResource("/index.html.br");
+      Mockito.verify(context, Mockito.times(1)).getResource("/index.html");
+
+      cache.clear();
+      Assert.assertFalse(cache.existsOptional(context, "/index.html.br"));
+      Mockito.verify(context, Mockito.times(2)).getResource("/index.html.br");
+   }
+
+   @Test
+   public void testDoesNotRememberMissingResourcesByDefault() throws MalformedURLException
+   {
+      ResourceCache cache = new ResourceCache(60000, false);
+      Assert.assertTrue(cache.exists(context, "/index.html"));
+      Assert.assertTrue(cache.exists(context, "/index.html"));
+      Assert.assertFalse(cache.exists(context, "/missing.html"));
+      Assert.assertFalse(cache.exists(context, "/missing.html"));
+      Assert.assertEquals(Collections.<String> emptySet(), cache.getResourcePaths(context, "/missing/"));
+      Assert.assertEquals(Collections.<String> emptySet(), cache.getResourcePaths(context, "/missing/"));
+
+      Mockito.verify(context, Mockito.times(1)).getResource("/index.html");
+      Mockito.verify(context, Mockito.times(2)).getResource("/missing.html");
+      Mockito.verify(context, Mockito.times(2)).getResourcePaths("/missing/");
+   }
+
+   @Test
+   public void testLooksUpAgainOnceExpired() throws MalformedURLException, InterruptedException
+   {
+      ResourceCache cache = new ResourceCache(1, false);
+      Assert.assertTrue(cache.exists(context, "/index.html"));
+      Thread.sleep(5);
+      Assert.assertTrue(cache.exists(context, "/index.html"));
+      Mockito.verify(context, Mockito.times(2)).getResource("/index.html");
+   }
+
+   @Test
+   public void testExpiresLookupsOnceRootIsNoLongerWatched() throws IOException, InterruptedException
+   {
+      File root = Files.createTempDirectory("rewrite-resources").toFile();
+      ResourceCache cache = new ResourceCache(Long.MAX_VALUE, false);
+      try {
+         cache.watch(root.toPath(), 1);
+         Assert.assertTrue(cache.exists(context, "/index.html"));
+         Assert.assertTrue(cache.exists(context, "/index.html"));
+         Mockito.verify(context, Mockito.times(1)).getResource("/index.html");
+
+         root.delete();
+         for (int i = 0; i < 500 && cache.getTtl() == Long.MAX_VALUE; i++)
+            Thread.sleep(10);
+         Thread.sleep(5);
+
+         Assert.assertTrue(cache.exists(context, "/index.html"));
+         Mockito.verify(context, Mockito.times(2)).getResource("/index.html");
+      }
+      finally {
+         cache.close();
+         root.delete();
+      }
+   }
+
+   @Test
+   public void testDoesNotRememberIfDisabled() throws MalformedURLException
+   {
+      ResourceCache cache = new ResourceCache(0, true);
+      Assert.assertTrue(cache.exists(context, "/index.html"));
+      Assert.assertTrue(cache.exists(context, "/index.html"));
+      Mockito.verify(context, Mockito.times(2)).getResource("/index.html");
+   }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.ocpsoft.common.util.Streams;
+import org.ocpsoft.rewrite.servlet.config.response.GZipResponseContentInterceptor;
+import org.ocpsoft.rewrite.servlet.config.response.ResponseContent;
+import org.ocpsoft.rewrite.servlet.config.response.ResponseContentInterceptor;
+import org.ocpsoft.rewrite.servlet.config.response.ResponseContentInterceptorChain;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+import org.ocpsoft.rewrite.servlet.impl.HttpRewriteWrappedResponse;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class ResponseContentInterceptorTest
+{
+   private final ByteArrayOutputStream client = new ByteArrayOutputStream();
+   private HttpServletResponse response;
+   private HttpRewriteWrappedResponse wrapped;
+
+   @Before
+   public void before() throws IOException
+   {
+      response = Mockito.mock(HttpServletResponse.class);
+      Mockito.when(response.getCharacterEncoding()).thenReturn("UTF-8");
+      Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+            client.write(b);
+         }
+      });
+
+      wrapped = new HttpRewriteWrappedResponse(Mockito.mock(HttpServletRequest.class), response, null);
+   }
+
+   @Test
+   public void testStreamingInterceptorWritesThrough() throws IOException
+   {
+      wrapped.addContentInterceptor(new GZipResponseContentInterceptor());
+      wrapped.getOutputStream().write("streamed content".getBytes("UTF-8"));
+      Assert.assertTrue(client.size() > 0);
+
+      wrapped.flushBufferedContent();
+      Assert.assertEquals("streamed content", gunzip(client.toByteArray()));
+      Mockito.verify(response).addHeader("Content-Encoding", "gzip");
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void testStreamingInterceptorLocksStreams()
+   {
+      wrapped.addContentInterceptor(new GZipResponseContentInterceptor());
+      wrapped.getOutputStream();
+      wrapped.addContentInterceptor(new GZipResponseContentInterceptor());
+   }
+
+   @Test
+   public void testBufferingInterceptorFallsBackToBuffering() throws IOException
+   {
+      wrapped.addContentInterceptor(new GZipResponseContentInterceptor());
+      wrapped.addContentInterceptor(new ResponseContentInterceptor() {
+         @Override
+         public void intercept(HttpServletRewrite event, ResponseContent buffer, ResponseContentInterceptorChain chain)
+         {
+            buffer.setContents(new String(buffer.getContents(), buffer.getCharset()).toUpperCase()
+                     .getBytes(buffer.getCharset()));
+            chain.proceed();
+         }
+      });
+
+      wrapped.getWriter().print("buffered content");
+      Assert.assertEquals(0, client.size());
+
+      wrapped.flushBufferedContent();
+      Assert.assertEquals("BUFFERED CONTENT", gunzip(client.toByteArray()));
+   }
+
+   private String gunzip(byte[] bytes) throws IOException
+   {
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      Streams.copy(new GZIPInputStream(new ByteArrayInputStream(bytes)), result);
+      return result.toString("UTF-8");
+   }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class StreamTest
+{
+   private final ByteArrayOutputStream client = new ByteArrayOutputStream();
+   private File file;
+   private HttpServletRequest request;
+   private HttpServletResponse response;
+   private HttpServletRewrite event;
+
+   @Before
+   public void before() throws IOException
+   {
+      file = File.createTempFile("rewrite-stream", ".txt");
+      FileOutputStream output = new FileOutputStream(file);
+      output.write("0123456789".getBytes("UTF-8"));
+      output.close();
+      file.setLastModified(1400000000000L);
+
+      request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getMethod()).thenReturn("GET");
+      Mockito.when(request.getDateHeader(Mockito.anyString())).thenReturn(-1L);
+
+      response = Mockito.mock(HttpServletResponse.class);
+      Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+         @Override
+         public void write(int b) throws IOException
+         {
+            client.write(b);
+         }
+      });
+
+      event = Mockito.mock(HttpServletRewrite.class);
+      Mockito.when(event.getRequest()).thenReturn(request);
+      Mockito.when(event.getResponse()).thenReturn(response);
+   }
+
+   @After
+   public void after()
+   {
+      file.delete();
+   }
+
+   @Test
+   public void testStreamsWholeFile() throws IOException
+   {
+      perform();
+      Assert.assertEquals("0123456789", client.toString("UTF-8"));
+      Mockito.verify(response).setContentLength(10);
+      Mockito.verify(response).setHeader("ETag", "\"a-" + Long.toHexString(file.lastModified()) + "\"");
+      Mockito.verify(response).setDateHeader("Last-Modified", 1400000000000L);
+   }
+
+   @Test
+   public void testStreamsRequestedRange() throws IOException
+   {
+      Mockito.when(request.getHeader("Range")).thenReturn("bytes=2-5");
+      perform();
+      Assert.assertEquals("2345", client.toString("UTF-8"));
+      Mockito.verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      Mockito.verify(response).setHeader("Content-Range", "bytes 2-5/10");
+      Mockito.verify(response).setContentLength(4);
+   }
+
+   @Test
+   public void testStreamsSuffixRange() throws IOException
+   {
+      Mockito.when(request.getHeader("Range")).thenReturn("bytes=-3");
+      perform();
+      Assert.assertEquals("789", client.toString("UTF-8"));
+      Mockito.verify(response).setHeader("Content-Range", "bytes 7-9/10");
+   }
+
+   @Test
+   public void testRejectsUnsatisfiableRange() throws IOException
+   {
+      Mockito.when(request.getHeader("Range")).thenReturn("bytes=20-");
+      perform();
+      Assert.assertEquals(0, client.size());
+      Mockito.verify(response).setStatus(416);
+      Mockito.verify(response).setHeader("Content-Range", "bytes */10");
+   }
+
+   @Test
+   public void testIgnoresRangeIfFileChanged() throws IOException
+   {
+      Mockito.when(request.getHeader("Range")).thenReturn("bytes=2-5");
+      Mockito.when(request.getHeader("If-Range")).thenReturn("\"stale\"");
+      perform();
+      Assert.assertEquals("0123456789", client.toString("UTF-8"));
+      Mockito.verify(response, Mockito.never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+   }
+
+   @Test
+   public void testNotModifiedIfETagMatches() throws IOException
+   {
+      Mockito.when(request.getHeader("If-None-Match")).thenReturn(
+               "\"other\", \"a-" + Long.toHexString(file.lastModified()) + "\"");
+      perform();
+      Assert.assertEquals(0, client.size());
+      Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+   }
+
+   @Test
+   public void testNotModifiedSinceLastModified() throws IOException
+   {
+      Mockito.when(request.getDateHeader("If-Modified-Since")).thenReturn(1400000000000L);
+      perform();
+      Assert.assertEquals(0, client.size());
+      Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+   }
+
+   @Test
+   public void testHandsFileToContainerSendfile() throws IOException
+   {
+      Mockito.when(request.getAttribute("org.apache.tomcat.sendfile.support")).thenReturn(Boolean.TRUE);
+      Mockito.when(request.getHeader("Range")).thenReturn("bytes=4-");
+      perform();
+      Assert.assertEquals(0, client.size());
+      Mockito.verify(request).setAttribute("org.apache.tomcat.sendfile.filename", file.getCanonicalPath());
+      Mockito.verify(request).setAttribute("org.apache.tomcat.sendfile.start", 4L);
+      Mockito.verify(request).setAttribute("org.apache.tomcat.sendfile.end", 10L);
+   }
+
+   private void perform()
+   {
+      Stream.from(file).perform(event, Mockito.mock(EvaluationContext.class));
+   }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class UserAgentTest
+{
+   private static final String IPAD = "Mozilla/5.0 (iPad; CPU OS 6_0 like Mac OS X) AppleWebKit/536.26 "
+            + "(KHTML, like Gecko) Version/6.0 Mobile/10A5355d Safari/8536.25";
+
+   private static final String IPHONE = "Mozilla/5.0 (iPhone; CPU iPhone OS 6_0 like Mac OS X) AppleWebKit/536.26 "
+            + "(KHTML, like Gecko) Version/6.0 Mobile/10A5376e Safari/8536.25";
+
+   private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:40.0) Gecko/20100101 Firefox/40.1";
+
+   private final EvaluationContext context = Mockito.mock(EvaluationContext.class);
+
+   @Test
+   public void testClassifiesDevices()
+   {
+      HttpServletRewrite tablet = event(IPAD);
+      Assert.assertTrue(evaluate(UserAgent.isTablet(), tablet));
+      Assert.assertFalse(evaluate(UserAgent.isMobile(), tablet));
+      Assert.assertFalse(evaluate(UserAgent.isDesktop(), tablet));
+
+      HttpServletRewrite mobile = event(IPHONE);
+      Assert.assertTrue(evaluate(UserAgent.isMobile(), mobile));
+      Assert.assertFalse(evaluate(UserAgent.isTablet(), mobile));
+
+      HttpServletRewrite desktop = event(FIREFOX);
+      Assert.assertTrue(evaluate(UserAgent.isDesktop(), desktop));
+      Assert.assertFalse(evaluate(UserAgent.isMobile(), desktop));
+   }
+
+   @Test
+   public void testClassifiesOncePerRequest()
+   {
+      HttpServletRewrite event = event(IPHONE);
+      evaluate(UserAgent.isMobile(), event);
+      evaluate(UserAgent.isTablet(), event);
+      evaluate(UserAgent.isDesktop(), event);
+
+      Mockito.verify(event.getRequest(), Mockito.times(1)).getHeader("user-agent");
+   }
+
+   /*
+    * The classification conditions are of a private type, so evaluate them through their public supertype.
+    */
+   private boolean evaluate(UserAgent condition, HttpServletRewrite event)
+   {
+      return condition.evaluate(event, context);
+   }
+
+   private HttpServletRewrite event(String userAgent)
+   {
+      final Map<String, Object> attributes = new HashMap<String, Object>();
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getHeader("user-agent")).thenReturn(userAgent);
+      Mockito.when(request.getHeader("Accept")).thenReturn("text/html");
+      Mockito.when(request.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      Mockito.doAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(request).setAttribute(Mockito.anyString(), Mockito.any());
+
+      HttpServletRewrite event = Mockito.mock(HttpServletRewrite.class);
+      Mockito.when(event.getRequest()).thenReturn(request);
+      return event;
+   }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import javax.servlet.ServletContext;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class WriteBehindOutputStreamTest
+{
+   private final List<Runnable> tasks = new ArrayList<Runnable>();
+   private final Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable command)
+      {
+         tasks.add(command);
+      }
+   };
+
+   private File directory;
+   private File target;
+
+   @Before
+   public void before() throws IOException
+   {
+      directory = Files.createTempDirectory("rewrite-write-behind").toFile();
+      target = new File(directory, "page.html");
+   }
+
+   @After
+   public void after()
+   {
+      for (File file : directory.listFiles())
+         file.delete();
+      directory.delete();
+   }
+
+   @Test
+   public void testRenamesTargetOnlyWhenComplete() throws IOException
+   {
+      WriteBehindOutputStream stream = new WriteBehindOutputStream(target, 4, true, executor);
+      stream.write("ab".getBytes("UTF-8"));
+      run();
+      stream.write("cdef".getBytes("UTF-8"), 0, 2);
+      run();
+      Assert.assertFalse(target.exists());
+
+      stream.close();
+      run();
+      Assert.assertFalse(stream.isDropped());
+      Assert.assertEquals("abcd", new String(Files.readAllBytes(target.toPath()), "UTF-8"));
+      Assert.assertEquals(1, directory.listFiles().length);
+   }
+
+   @Test
+   public void testWrapsAroundRingBuffer() throws IOException
+   {
+      WriteBehindOutputStream stream = new WriteBehindOutputStream(target, 4, true, executor);
+      stream.write("abc".getBytes("UTF-8"));
+      run();
+      stream.write("defg".getBytes("UTF-8"));
+      stream.close();
+      run();
+      Assert.assertEquals("abcdefg", new String(Files.readAllBytes(target.toPath()), "UTF-8"));
+   }
+
+   @Test
+   public void testDropsCaptureWhenFull() throws IOException
+   {
+      FileOutputStream existing = new FileOutputStream(target);
+      existing.write("old".getBytes("UTF-8"));
+      existing.close();
+
+      WriteBehindOutputStream stream = new WriteBehindOutputStream(target, 4, false, executor);
+      stream.write("abcdef".getBytes("UTF-8"));
+      Assert.assertTrue(stream.isDropped());
+      stream.close();
+      run();
+
+      Assert.assertEquals("old", new String(Files.readAllBytes(target.toPath()), "UTF-8"));
+      Assert.assertEquals(1, directory.listFiles().length);
+   }
+
+   @Test
+   public void testDropsCaptureOnceContextIsDestroyed() throws IOException
+   {
+      ServletContext first = mockContext();
+      ServletContext second = mockContext();
+      Executor executor = WriteBehindOutputStream.getExecutor(first);
+      Assert.assertSame(executor, WriteBehindOutputStream.getExecutor(first));
+      Assert.assertNotSame(executor, WriteBehindOutputStream.getExecutor(second));
+      WriteBehindOutputStream.shutdown(second);
+
+      WriteBehindOutputStream.shutdown(first);
+      WriteBehindOutputStream stream = new WriteBehindOutputStream(target, 4, true, executor);
+      stream.write("ab".getBytes("UTF-8"));
+      stream.close();
+
+      Assert.assertTrue(stream.isDropped());
+      Assert.assertFalse(target.exists());
+      Assert.assertEquals(0, directory.listFiles().length);
+   }
+
+   private static ServletContext mockContext()
+   {
+      final Map<String, Object> attributes = new HashMap<String, Object>();
+      ServletContext context = Mockito.mock(ServletContext.class);
+      Mockito.when(context.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      Mockito.doAnswer(new Answer<Void>() {
+         @Override
+         public Void answer(InvocationOnMock invocation)
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(context).setAttribute(Mockito.anyString(), Mockito.any());
+      Mockito.doAnswer(new Answer<Void>() {
+         @Override
+         public Void answer(InvocationOnMock invocation)
+         {
+            attributes.remove(invocation.getArguments()[0]);
+            return null;
+         }
+      }).when(context).removeAttribute(Mockito.anyString());
+      return context;
+   }
+
+   private void run()
+   {
+      while (!tasks.isEmpty())
+         tasks.remove(0).run();
+   }
+}
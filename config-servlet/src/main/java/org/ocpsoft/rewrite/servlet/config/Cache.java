@@ -0,0 +1,605 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.ocpsoft.common.util.Assert;
+import org.ocpsoft.logging.Logger;
+import org.ocpsoft.rewrite.config.Condition;
+import org.ocpsoft.rewrite.config.ConfigurationRuleParameterBuilder;
+import org.ocpsoft.rewrite.config.Operation;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.exception.RewriteException;
+import org.ocpsoft.rewrite.param.ParameterStore;
+import org.ocpsoft.rewrite.param.Parameterized;
+import org.ocpsoft.rewrite.param.ParameterizedPattern;
+import org.ocpsoft.rewrite.param.ParameterizedPatternBuilder;
+import org.ocpsoft.rewrite.param.RegexParameterizedPatternBuilder;
+import org.ocpsoft.rewrite.servlet.config.response.ResponseStreamWrapper;
+import org.ocpsoft.rewrite.servlet.http.event.HttpInboundServletRewrite;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+
+/**
+ * {@link Operation} and {@link Condition} instances that store rendered responses in a {@link PageCache}, serve them
+ * from it, and invalidate them.
+ * <p>
+ * Pages are stored under a key built from a {@link ParameterizedPattern}:
+ * <p>
+ * <code>
+ *    .addRule()<br>
+ *    .when(Method.isGet().and(Path.matches("/products/{id}")))<br>
+ *    .perform(Cache.page(pages, "product-{id}").tagged("products"))<br>
+ *    <br>
+ *    .addRule()<br>
+ *    .when(Method.isPost().and(Path.matches("/admin/products/{id}")))<br>
+ *    .perform(Cache.invalidate(pages, "product-{id}"))<br>
+ * </code>
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public abstract class Cache extends HttpOperation implements Parameterized
+{
+   private static final Logger log = Logger.getLogger(Cache.class);
+
+   protected final PageCache cache;
+   protected final RegexParameterizedPatternBuilder pattern;
+
+   private Cache(PageCache cache, String pattern)
+   {
+      Assert.notNull(cache, "PageCache must not be null.");
+      Assert.notNull(pattern, "Pattern must not be null.");
+      this.cache = cache;
+      this.pattern = new RegexParameterizedPatternBuilder(pattern);
+   }
+
+   /**
+    * Create an {@link Operation} that serves the page stored in the given {@link PageCache} under the given key, then
+    * calls {@link HttpInboundServletRewrite#abort()}. If no page is stored, the response rendered by the application is
+    * captured and stored, provided it has status <code>200</code>, sets no cookies, and is not marked
+    * <code>Cache-Control: no-store</code> or <code>private</code>.
+    * <p>
+    * Only one request renders a page at a time. Concurrent requests for the same key wait for it to be stored and are
+    * served from the {@link PageCache}.
+    * <p>
+    * The given key may be parameterized:
+    * <p>
+    * <code>
+    *    Cache.page(pages, "home") <br>
+    *    Cache.page(pages, "product-{id}") <br>
+    *    ...
+    * </code>
+    * <p>
+    *
+    * @param key {@link ParameterizedPattern} specifying the key of the page.
+    *
+    * @see {@link ConfigurationRuleParameterBuilder#where(String)}
+    */
+   public static CachePage page(PageCache cache, String key)
+   {
+      return new CachePage(cache, key);
+   }
+
+   /**
+    * Create an {@link Operation} that removes the page stored in the given {@link PageCache} under the given key. The
+    * given key may be parameterized.
+    *
+    * @param key {@link ParameterizedPattern} specifying the key of the page.
+    */
+   public static Cache invalidate(PageCache cache, final String key)
+   {
+      return new Cache(cache, key) {
+         @Override
+         public void performHttp(HttpServletRewrite event, EvaluationContext context)
+         {
+            String page = pattern.build(event, context);
+            log.debug("Invalidating cached page [" + page + "]");
+            this.cache.invalidate(page);
+         }
+
+         @Override
+         public String toString()
+         {
+            return "Cache.invalidate(\"" + key + "\")";
+         }
+      };
+   }
+
+   /**
+    * Create an {@link Operation} that removes all pages tagged with the given tag from the given {@link PageCache}. The
+    * given tag may be parameterized.
+    *
+    * @param tag {@link ParameterizedPattern} specifying the tag.
+    */
+   public static Cache invalidateTag(PageCache cache, final String tag)
+   {
+      return new Cache(cache, tag) {
+         @Override
+         public void performHttp(HttpServletRewrite event, EvaluationContext context)
+         {
+            String value = pattern.build(event, context);
+            log.debug("Invalidating cached pages tagged [" + value + "]");
+            this.cache.invalidateTag(value);
+         }
+
+         @Override
+         public String toString()
+         {
+            return "Cache.invalidateTag(\"" + tag + "\")";
+         }
+      };
+   }
+
+   /**
+    * Create a {@link Condition} that returns <code>true</code> if a page that has not expired is stored in the given
+    * {@link PageCache} under the given key. The given key may be parameterized.
+    *
+    * @param key {@link ParameterizedPattern} specifying the key of the page.
+    */
+   public static CacheContains contains(PageCache cache, String key)
+   {
+      return new CacheContains(cache, key);
+   }
+
+   @Override
+   public Set<String> getRequiredParameterNames()
+   {
+      return pattern.getRequiredParameterNames();
+   }
+
+   @Override
+   public void setParameterStore(ParameterStore store)
+   {
+      pattern.setParameterStore(store);
+   }
+
+   public ParameterizedPatternBuilder getExpression()
+   {
+      return pattern;
+   }
+
+   /**
+    * Write the given {@link CachedPage} to the {@link HttpServletResponse}.
+    */
+   private static void serve(HttpServletRewrite event, CachedPage page) throws IOException
+   {
+      HttpServletResponse response = event.getResponse();
+      response.setStatus(page.getStatus());
+      for (String[] header : page.getHeaders()) {
+         response.addHeader(header[0], header[1]);
+      }
+      if (page.getContentType() != null)
+         response.setContentType(page.getContentType());
+      response.setContentLength(page.getContent().length);
+
+      if (!"HEAD".equalsIgnoreCase(event.getRequest().getMethod()))
+         response.getOutputStream().write(page.getContent());
+      response.flushBuffer();
+   }
+
+   /**
+    * An {@link Operation} that serves a page from a {@link PageCache}, or stores the page rendered by the application.
+    */
+   public static class CachePage extends Cache
+   {
+      private final List<RegexParameterizedPatternBuilder> tags = new ArrayList<RegexParameterizedPatternBuilder>();
+
+      private CachePage(PageCache cache, String key)
+      {
+         super(cache, key);
+      }
+
+      /**
+       * Tag the stored page with the given tags, so that it is removed by {@link Cache#invalidateTag(PageCache, String)}.
+       * The given tags may be parameterized.
+       */
+      public CachePage tagged(String... tags)
+      {
+         for (String tag : tags) {
+            this.tags.add(new RegexParameterizedPatternBuilder(tag));
+         }
+         return this;
+      }
+
+      @Override
+      public void performHttp(final HttpServletRewrite event, EvaluationContext context)
+      {
+         if (!(event instanceof HttpInboundServletRewrite))
+            return;
+
+         cache.bind(event.getServletContext());
+         final String key = pattern.build(event, context);
+         CachedPage page = cache.get(key);
+
+         PageCache.Render render = null;
+         if (page == null)
+         {
+            Set<String> tags = new LinkedHashSet<String>();
+            for (RegexParameterizedPatternBuilder tag : this.tags) {
+               tags.add(tag.build(event, context));
+            }
+
+            render = cache.lock(key, tags);
+            if (render == null)
+               page = cache.get(key);
+            else
+            {
+               PageCacheRequestListener.register(event.getRequest(), render);
+               page = capture(event, context, key, tags, render);
+            }
+         }
+
+         if (page != null)
+         {
+            try {
+               log.debug("Serving cached page [" + page + "]");
+               serve(event, page);
+               ((HttpInboundServletRewrite) event).abort();
+            }
+            catch (IOException e) {
+               throw new RewriteException("Could not serve cached page [" + key + "]", e);
+            }
+         }
+         else if (render == null)
+            log.debug("Rendering page [" + key + "] without caching, since it could not be cached by another request");
+      }
+
+      /**
+       * Capture the response rendered by the application. Return the page stored in the meantime by another request,
+       * or <code>null</code> if the application must render the page.
+       */
+      private CachedPage capture(final HttpServletRewrite event, final EvaluationContext context, final String key,
+               final Set<String> tags, final PageCache.Render render)
+      {
+         /*
+          * Another request may have stored the page between our lookup and claiming the lock.
+          */
+         CachedPage page = cache.get(key);
+         if (page != null)
+         {
+            render.complete(null);
+            return page;
+         }
+
+         final boolean head = "HEAD".equalsIgnoreCase(event.getRequest().getMethod());
+         final CapturingResponse response = new CapturingResponse(event.getResponse());
+         ((HttpInboundServletRewrite) event).setResponse(response);
+
+         try {
+            Response.withOutputStreamWrappedBy(new ResponseStreamWrapper() {
+
+               private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+               private boolean overflow = false;
+
+               /*
+                * Determine whether the given number of bytes may still be captured, and stop capturing otherwise.
+                */
+               private boolean fits(int len)
+               {
+                  if (!overflow && content.size() + len > cache.getMaxBytes())
+                  {
+                     overflow = true;
+                     content.reset();
+                  }
+                  return !overflow;
+               }
+
+               @Override
+               public OutputStream wrap(HttpServletRewrite rewrite, final OutputStream outputStream)
+               {
+                  log.debug("Capturing page [" + key + "]");
+                  return new OutputStream() {
+                     @Override
+                     public void write(int b) throws IOException
+                     {
+                        outputStream.write(b);
+                        if (fits(1))
+                           content.write(b);
+                     }
+
+                     @Override
+                     public void write(byte[] bytes, int off, int len) throws IOException
+                     {
+                        outputStream.write(bytes, off, len);
+                        if (fits(len))
+                           content.write(bytes, off, len);
+                     }
+
+                     @Override
+                     public void flush() throws IOException
+                     {
+                        outputStream.flush();
+                     }
+
+                     @Override
+                     public void close() throws IOException
+                     {
+                        outputStream.close();
+                     }
+                  };
+               }
+
+               @Override
+               public void finish(HttpServletRewrite rewrite)
+               {
+                  CachedPage page = null;
+                  if (head || overflow)
+                     log.debug("Not caching page [" + key + "], since its content was not captured");
+                  else if (!response.isCacheable())
+                     log.debug("Not caching page [" + key + "] with status [" + response.status + "] and headers "
+                              + response.headers);
+                  else
+                  {
+                     long ttl = cache.getTtl();
+                     page = new CachedPage(key, render.getStarted(), ttl > 0 ? render.getStarted() + ttl : 0, tags,
+                              response.status, response.getContentType(), response.headers, content.toByteArray());
+                     log.debug("Caching page [" + page + "]");
+                  }
+                  render.complete(page);
+               }
+            }).perform(event, context);
+         }
+         catch (RuntimeException e) {
+            render.complete(null);
+            throw e;
+         }
+         return null;
+      }
+
+      @Override
+      public Set<String> getRequiredParameterNames()
+      {
+         Set<String> result = new LinkedHashSet<String>(super.getRequiredParameterNames());
+         for (RegexParameterizedPatternBuilder tag : tags) {
+            result.addAll(tag.getRequiredParameterNames());
+         }
+         return result;
+      }
+
+      @Override
+      public void setParameterStore(ParameterStore store)
+      {
+         super.setParameterStore(store);
+         for (RegexParameterizedPatternBuilder tag : tags) {
+            tag.setParameterStore(store);
+         }
+      }
+
+      @Override
+      public String toString()
+      {
+         StringBuilder result = new StringBuilder("Cache.page(\"" + pattern.getPattern() + "\")");
+         if (!tags.isEmpty())
+         {
+            result.append(".tagged(");
+            for (Iterator<RegexParameterizedPatternBuilder> iterator = tags.iterator(); iterator.hasNext();) {
+               result.append("\"").append(iterator.next().getPattern()).append("\"");
+               if (iterator.hasNext())
+                  result.append(", ");
+            }
+            result.append(")");
+         }
+         return result.toString();
+      }
+   }
+
+   /**
+    * A {@link Condition} that determines whether a {@link PageCache} holds a page.
+    */
+   public static class CacheContains extends HttpCondition implements Parameterized
+   {
+      private final PageCache cache;
+      private final RegexParameterizedPatternBuilder key;
+
+      private CacheContains(PageCache cache, String key)
+      {
+         Assert.notNull(cache, "PageCache must not be null.");
+         Assert.notNull(key, "Key must not be null.");
+         this.cache = cache;
+         this.key = new RegexParameterizedPatternBuilder(key);
+      }
+
+      @Override
+      public boolean evaluateHttp(HttpServletRewrite event, EvaluationContext context)
+      {
+         return key.isParameterComplete(event, context) && cache.get(key.build(event, context)) != null;
+      }
+
+      @Override
+      public Set<String> getRequiredParameterNames()
+      {
+         return key.getRequiredParameterNames();
+      }
+
+      @Override
+      public void setParameterStore(ParameterStore store)
+      {
+         key.setParameterStore(store);
+      }
+
+      @Override
+      public String toString()
+      {
+         return "Cache.contains(\"" + key.getPattern() + "\")";
+      }
+   }
+
+   /**
+    * Records the status and headers set by the application, which {@link HttpServletResponse} does not expose.
+    */
+   private static class CapturingResponse extends HttpServletResponseWrapper
+   {
+      private static final String DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+      private int status = SC_OK;
+      private boolean cookies = false;
+      private final List<String[]> headers = new ArrayList<String[]>();
+
+      public CapturingResponse(HttpServletResponse response)
+      {
+         super(response);
+      }
+
+      boolean isCacheable()
+      {
+         if (status != SC_OK || cookies)
+            return false;
+
+         for (String[] header : headers) {
+            if ("Cache-Control".equalsIgnoreCase(header[0]))
+            {
+               String value = header[1].toLowerCase(Locale.ENGLISH);
+               if (value.contains("no-store") || value.contains("private"))
+                  return false;
+            }
+         }
+         return true;
+      }
+
+      private void record(String name, String value, boolean replace)
+      {
+         if ("Set-Cookie".equalsIgnoreCase(name))
+            cookies = true;
+         if ("Content-Length".equalsIgnoreCase(name) || "Content-Type".equalsIgnoreCase(name))
+            return;
+
+         if (replace)
+         {
+            for (Iterator<String[]> iterator = headers.iterator(); iterator.hasNext();) {
+               if (iterator.next()[0].equalsIgnoreCase(name))
+                  iterator.remove();
+            }
+         }
+         headers.add(new String[] { name, value });
+      }
+
+      private String formatDate(long date)
+      {
+         SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+         format.setTimeZone(TimeZone.getTimeZone("GMT"));
+         return format.format(new Date(date));
+      }
+
+      @Override
+      public void setHeader(String name, String value)
+      {
+         record(name, value, true);
+         super.setHeader(name, value);
+      }
+
+      @Override
+      public void addHeader(String name, String value)
+      {
+         record(name, value, false);
+         super.addHeader(name, value);
+      }
+
+      @Override
+      public void setDateHeader(String name, long date)
+      {
+         record(name, formatDate(date), true);
+         super.setDateHeader(name, date);
+      }
+
+      @Override
+      public void addDateHeader(String name, long date)
+      {
+         record(name, formatDate(date), false);
+         super.addDateHeader(name, date);
+      }
+
+      @Override
+      public void setIntHeader(String name, int value)
+      {
+         record(name, String.valueOf(value), true);
+         super.setIntHeader(name, value);
+      }
+
+      @Override
+      public void addIntHeader(String name, int value)
+      {
+         record(name, String.valueOf(value), false);
+         super.addIntHeader(name, value);
+      }
+
+      @Override
+      public void addCookie(Cookie cookie)
+      {
+         cookies = true;
+         super.addCookie(cookie);
+      }
+
+      @Override
+      public void setStatus(int status)
+      {
+         this.status = status;
+         super.setStatus(status);
+      }
+
+      @Override
+      @SuppressWarnings("deprecation")
+      public void setStatus(int status, String message)
+      {
+         this.status = status;
+         super.setStatus(status, message);
+      }
+
+      @Override
+      public void sendError(int status) throws IOException
+      {
+         this.status = status;
+         super.sendError(status);
+      }
+
+      @Override
+      public void sendError(int status, String message) throws IOException
+      {
+         this.status = status;
+         super.sendError(status, message);
+      }
+
+      @Override
+      public void sendRedirect(String location) throws IOException
+      {
+         this.status = SC_FOUND;
+         super.sendRedirect(location);
+      }
+
+      @Override
+      public void reset()
+      {
+         status = SC_OK;
+         cookies = false;
+         headers.clear();
+         super.reset();
+      }
+   }
+}
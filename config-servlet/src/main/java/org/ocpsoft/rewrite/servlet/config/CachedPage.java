@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A rendered response held by a {@link PageCache}: its status, headers, content type and content, together with the
+ * tags it may be invalidated by.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class CachedPage
+{
+   private static final int FORMAT = 0x52575043;
+
+   private final String key;
+   private final long created;
+   private final long expires;
+   private final Set<String> tags;
+   private final int status;
+   private final String contentType;
+   private final List<String[]> headers;
+   private final byte[] content;
+
+   /**
+    * Create a new {@link CachedPage}. An <code>expires</code> value of <code>0</code> means the page never expires.
+    */
+   public CachedPage(String key, long created, long expires, Set<String> tags, int status, String contentType,
+            List<String[]> headers, byte[] content)
+   {
+      this.key = key;
+      this.created = created;
+      this.expires = expires;
+      this.tags = Collections.unmodifiableSet(new LinkedHashSet<String>(tags));
+      this.status = status;
+      this.contentType = contentType;
+      this.headers = Collections.unmodifiableList(new ArrayList<String[]>(headers));
+      this.content = content;
+   }
+
+   public String getKey()
+   {
+      return key;
+   }
+
+   /**
+    * The time at which rendering of this page began, in milliseconds.
+    */
+   public long getCreated()
+   {
+      return created;
+   }
+
+   /**
+    * The time after which this page is stale, in milliseconds, or <code>0</code> if it never expires.
+    */
+   public long getExpires()
+   {
+      return expires;
+   }
+
+   public boolean isExpired(long now)
+   {
+      return expires > 0 && now >= expires;
+   }
+
+   public Set<String> getTags()
+   {
+      return tags;
+   }
+
+   public int getStatus()
+   {
+      return status;
+   }
+
+   public String getContentType()
+   {
+      return contentType;
+   }
+
+   /**
+    * The response headers, as name and value pairs, in the order they were set.
+    */
+   public List<String[]> getHeaders()
+   {
+      return headers;
+   }
+
+   public byte[] getContent()
+   {
+      return content;
+   }
+
+   /**
+    * The approximate number of bytes this page occupies in memory.
+    */
+   int getSize()
+   {
+      int size = content.length + key.length() * 2;
+      for (String[] header : headers) {
+         size += (header[0].length() + header[1].length()) * 2;
+      }
+      return size;
+   }
+
+   void write(DataOutputStream output) throws IOException
+   {
+      output.writeInt(FORMAT);
+      output.writeUTF(key);
+      output.writeLong(created);
+      output.writeLong(expires);
+      output.writeInt(tags.size());
+      for (String tag : tags) {
+         output.writeUTF(tag);
+      }
+      output.writeInt(status);
+      output.writeBoolean(contentType != null);
+      if (contentType != null)
+         output.writeUTF(contentType);
+      output.writeInt(headers.size());
+      for (String[] header : headers) {
+         output.writeUTF(header[0]);
+         output.writeUTF(header[1]);
+      }
+      output.writeInt(content.length);
+      output.write(content);
+   }
+
+   /**
+    * Read a {@link CachedPage} previously written by {@link #write(DataOutputStream)}. If <code>content</code> is
+    * <code>false</code>, only the key, timestamps and tags are read, and the returned page has no headers or content.
+    */
+   static CachedPage read(DataInputStream input, boolean content) throws IOException
+   {
+      if (input.readInt() != FORMAT)
+         throw new IOException("Not a cached page");
+
+      String key = input.readUTF();
+      long created = input.readLong();
+      long expires = input.readLong();
+      Set<String> tags = new LinkedHashSet<String>();
+      for (int i = input.readInt(); i > 0; i--) {
+         tags.add(input.readUTF());
+      }
+
+      if (!content)
+         return new CachedPage(key, created, expires, tags, 0, null, Collections.<String[]> emptyList(), new byte[0]);
+
+      int status = input.readInt();
+      String contentType = input.readBoolean() ? input.readUTF() : null;
+      List<String[]> headers = new ArrayList<String[]>();
+      for (int i = input.readInt(); i > 0; i--) {
+         headers.add(new String[] { input.readUTF(), input.readUTF() });
+      }
+      byte[] bytes = new byte[input.readInt()];
+      input.readFully(bytes);
+      return new CachedPage(key, created, expires, tags, status, contentType, headers, bytes);
+   }
+
+   @Override
+   public String toString()
+   {
+      return "CachedPage [key=" + key + ", status=" + status + ", size=" + content.length + ", tags=" + tags + "]";
+   }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.ocpsoft.rewrite.servlet.RewriteWrappedResponse;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+
+/**
+ * Sends a {@link File} to the client, answering conditional and single byte-range requests. The file is transferred
+ * via {@link FileChannel#transferTo(long, long, WritableByteChannel)}, or handed to the container if it supports
+ * sending files directly from the file-system (e.g. Tomcat's <code>sendfile</code>).
+ * <p>
+ * Validators and ranges only apply if the response content is neither intercepted nor wrapped, since the bytes sent to
+ * the client would otherwise differ from those of the file.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+final class FileTransfer
+{
+   private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+   private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+   private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+   private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+   private static final int SC_REQUESTED_RANGE_NOT_SATISFIABLE = 416;
+
+   private static final long[] UNSATISFIABLE = new long[0];
+
+   private FileTransfer()
+   {}
+
+   /**
+    * Send the given {@link File} as the response to the current request.
+    */
+   public static void send(HttpServletRewrite event, File file) throws IOException
+   {
+      if (!file.isFile())
+         throw new FileNotFoundException(file.getAbsolutePath());
+
+      HttpServletRequest request = event.getRequest();
+      HttpServletResponse response = event.getResponse();
+
+      long length = file.length();
+      long start = 0;
+      long count = length;
+
+      RewriteWrappedResponse wrapped = RewriteWrappedResponse.getCurrentInstance(request);
+      boolean direct = wrapped == null
+               || !(wrapped.isResponseContentIntercepted() || wrapped.isResponseStreamWrapped());
+
+      if (direct)
+      {
+         long lastModified = file.lastModified() / 1000 * 1000;
+         String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(file.lastModified()) + "\"";
+
+         response.setHeader("ETag", etag);
+         response.setDateHeader("Last-Modified", lastModified);
+         response.setHeader("Accept-Ranges", "bytes");
+
+         String method = request.getMethod();
+         boolean safe = "GET".equals(method) || "HEAD".equals(method);
+
+         if (safe && isNotModified(request, etag, lastModified))
+         {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+         }
+
+         String range = request.getHeader("Range");
+         if (safe && range != null && isRangeCurrent(request, etag, lastModified))
+         {
+            long[] bounds = parseRange(range, length);
+            if (bounds == UNSATISFIABLE)
+            {
+               response.setHeader("Content-Range", "bytes */" + length);
+               response.setStatus(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+               return;
+            }
+            else if (bounds != null)
+            {
+               start = bounds[0];
+               count = bounds[1] - bounds[0] + 1;
+               response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+               response.setHeader("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + length);
+            }
+         }
+
+         if (count <= Integer.MAX_VALUE)
+            response.setContentLength((int) count);
+         else
+            response.setHeader("Content-Length", String.valueOf(count));
+
+         if ("HEAD".equals(method))
+            return;
+
+         if (count > 0 && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)))
+         {
+            request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START, Long.valueOf(start));
+            request.setAttribute(SENDFILE_END, Long.valueOf(start + count));
+            return;
+         }
+      }
+
+      transfer(file, start, count, Channels.newChannel(response.getOutputStream()));
+   }
+
+   private static void transfer(File file, long start, long count, WritableByteChannel target) throws IOException
+   {
+      FileInputStream input = new FileInputStream(file);
+      try {
+         FileChannel channel = input.getChannel();
+         long position = start;
+         long remaining = count;
+         while (remaining > 0)
+         {
+            long transferred = channel.transferTo(position, remaining, target);
+            if (transferred <= 0)
+               break;
+            position += transferred;
+            remaining -= transferred;
+         }
+      }
+      finally {
+         input.close();
+      }
+   }
+
+   /**
+    * Determine whether the client already holds the current version of the file, according to the
+    * <code>If-None-Match</code> header, or to <code>If-Modified-Since</code> if there is none.
+    */
+   private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified)
+   {
+      String ifNoneMatch = request.getHeader("If-None-Match");
+      if (ifNoneMatch != null)
+      {
+         for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/"))
+               tag = tag.substring(2);
+            if ("*".equals(tag) || etag.equals(tag))
+               return true;
+         }
+         return false;
+      }
+
+      long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+      return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+   }
+
+   /**
+    * Determine whether the <code>If-Range</code> header, if any, matches the current version of the file.
+    */
+   private static boolean isRangeCurrent(HttpServletRequest request, String etag, long lastModified)
+   {
+      String ifRange = request.getHeader("If-Range");
+      if (ifRange == null)
+         return true;
+      if (ifRange.trim().startsWith("\""))
+         return etag.equals(ifRange.trim());
+      return getDateHeader(request, "If-Range") == lastModified;
+   }
+
+   /**
+    * Parse a single <code>bytes</code> range into its first and last byte position. Returns <code>null</code> if the
+    * range must be ignored, since it is malformed or contains multiple ranges, or {@link #UNSATISFIABLE} if it does not
+    * overlap the file.
+    */
+   static long[] parseRange(String range, long length)
+   {
+      range = range.trim();
+      if (!range.startsWith("bytes=") || range.indexOf(',') != -1)
+         return null;
+
+      String spec = range.substring("bytes=".length()).trim();
+      int dash = spec.indexOf('-');
+      if (dash == -1)
+         return null;
+
+      try {
+         String first = spec.substring(0, dash).trim();
+         String last = spec.substring(dash + 1).trim();
+         if (first.isEmpty())
+         {
+            long suffix = Long.parseLong(last);
+            if (suffix <= 0 || length == 0)
+               return UNSATISFIABLE;
+            return new long[] { Math.max(0, length - suffix), length - 1 };
+         }
+
+         long start = Long.parseLong(first);
+         long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+         if (start < 0 || end < start)
+            return null;
+         if (start >= length)
+            return UNSATISFIABLE;
+         return new long[] { start, Math.min(end, length - 1) };
+      }
+      catch (NumberFormatException e) {
+         return null;
+      }
+   }
+
+   private static long getDateHeader(HttpServletRequest request, String name)
+   {
+      try {
+         return request.getDateHeader(name);
+      }
+      catch (IllegalArgumentException e) {
+         return -1;
+      }
+   }
+}
@@ -15,10 +15,16 @@
  */
 package org.ocpsoft.rewrite.servlet.config;
 
+import java.util.Arrays;
+import java.util.List;
+
 import javax.servlet.http.HttpServletRequest;
 
 import org.ocpsoft.common.util.Strings;
+import org.ocpsoft.rewrite.config.Cacheable;
 import org.ocpsoft.rewrite.config.Condition;
+import org.ocpsoft.rewrite.config.DispatchKey;
+import org.ocpsoft.rewrite.config.Dispatchable;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 
@@ -27,7 +33,7 @@ import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public abstract class Method extends HttpCondition
+public abstract class Method extends HttpCondition implements Dispatchable, Cacheable
 {
    private final HttpMethod method;
 
@@ -113,4 +119,16 @@ public abstract class Method extends HttpCondition
       return false;
    }
 
+   @Override
+   public List<DispatchKey> getDispatchKeys()
+   {
+      return Arrays.asList(DispatchKey.method(method.name()));
+   }
+
+   @Override
+   public boolean isCacheable()
+   {
+      return true;
+   }
+
 }
\ No newline at end of file
@@ -0,0 +1,735 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.common.util.Assert;
+import org.ocpsoft.logging.Logger;
+import org.ocpsoft.rewrite.exception.RewriteException;
+
+/**
+ * Holds {@link CachedPage} instances for {@link Cache} operations. Pages are kept in memory, evicting the least recently
+ * used page once the configured number of pages or bytes is exceeded, and are optionally also written to a directory
+ * on the host file-system, from which they are read back once evicted from memory or after a restart. Pages are
+ * written to disk in the background; a page invalidated before its write has completed is not stored. The directory
+ * is bounded as well, evicting the least recently used files once the configured number of bytes is exceeded, and is
+ * periodically swept of expired pages.
+ * <p>
+ * A {@link PageCache} is typically created once per {@link org.ocpsoft.rewrite.config.ConfigurationProvider} and shared
+ * by the {@link Cache} operations that store and invalidate its pages:
+ *
+ * <pre>
+ * PageCache pages = PageCache.create().maxPages(512).directory(new File("/var/cache/pages")).ttl(10, TimeUnit.MINUTES);
+ * </pre>
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class PageCache
+{
+   private static final Logger log = Logger.getLogger(PageCache.class);
+
+   private static final String SUFFIX = ".page";
+   private static final String TEMP_SUFFIX = ".tmp";
+   private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+   private static final long TEMP_EXPIRY = TimeUnit.HOURS.toMillis(1);
+
+   private static final Executor DIRECT = new Executor() {
+      @Override
+      public void execute(Runnable command)
+      {
+         command.run();
+      }
+   };
+
+   private int maxPages = 256;
+   private long maxBytes = 32 * 1024 * 1024;
+   private long ttl = 0;
+   private long lockTimeout = TimeUnit.SECONDS.toMillis(30);
+   private File directory;
+   private long maxDiskBytes = 256 * 1024 * 1024;
+   private volatile Executor writer = DIRECT;
+   private boolean ownWriter = false;
+
+   /*
+    * The memory tier, guarded by itself. The generation is advanced by every invalidation, so that pages read from disk
+    * or rendered before it are not stored afterwards.
+    */
+   private final LinkedHashMap<String, CachedPage> memory = new LinkedHashMap<String, CachedPage>(16, 0.75f, true);
+   private long bytes = 0;
+   private long generation = 0;
+
+   /*
+    * The disk tier, guarded by the file index: the pages being written behind by key, which are only stored if still
+    * present once written, and the sizes of stored files by name in access order, loaded on first use.
+    */
+   private final Map<String, CachedPage> writes = new HashMap<String, CachedPage>();
+   private final LinkedHashMap<String, Long> files = new LinkedHashMap<String, Long>(16, 0.75f, true);
+   private long diskBytes = -1;
+   private long swept = System.currentTimeMillis();
+
+   private final ConcurrentMap<String, Render> renders = new ConcurrentHashMap<String, Render>();
+
+   private PageCache()
+   {}
+
+   /**
+    * Create a new {@link PageCache} holding up to 256 pages or 32MB in memory, with no expiry and no disk tier.
+    */
+   public static PageCache create()
+   {
+      return new PageCache();
+   }
+
+   /**
+    * Hold at most the given number of pages in memory.
+    */
+   public PageCache maxPages(int maxPages)
+   {
+      Assert.assertTrue(maxPages > 0, "Maximum number of pages must be greater than zero.");
+      this.maxPages = maxPages;
+      return this;
+   }
+
+   /**
+    * Hold at most the given number of bytes of page content in memory. Larger pages are not cached.
+    */
+   public PageCache maxBytes(long maxBytes)
+   {
+      Assert.assertTrue(maxBytes > 0, "Maximum number of bytes must be greater than zero.");
+      this.maxBytes = maxBytes;
+      return this;
+   }
+
+   /**
+    * Expire pages the given time after they were rendered. A time of <code>0</code> means pages never expire.
+    */
+   public PageCache ttl(long time, TimeUnit unit)
+   {
+      Assert.assertTrue(time >= 0, "Time to live must not be negative.");
+      this.ttl = unit.toMillis(time);
+      return this;
+   }
+
+   /**
+    * Wait at most the given time for another request that is rendering the same page, before rendering it without
+    * caching.
+    */
+   public PageCache lockTimeout(long time, TimeUnit unit)
+   {
+      Assert.assertTrue(time >= 0, "Lock timeout must not be negative.");
+      this.lockTimeout = unit.toMillis(time);
+      return this;
+   }
+
+   /**
+    * Also store pages in the given directory, so that they survive eviction from memory and restarts.
+    */
+   public PageCache directory(File directory)
+   {
+      Assert.notNull(directory, "Directory must not be null.");
+      this.directory = directory;
+      return this;
+   }
+
+   /**
+    * Hold at most the given number of bytes of pages in the {@link #directory(File)}. Defaults to 256MB.
+    */
+   public PageCache maxDiskBytes(long maxDiskBytes)
+   {
+      Assert.assertTrue(maxDiskBytes > 0, "Maximum number of bytes on disk must be greater than zero.");
+      this.maxDiskBytes = maxDiskBytes;
+      return this;
+   }
+
+   /**
+    * Write pages to disk on the given {@link Executor}.
+    */
+   PageCache writer(Executor writer)
+   {
+      this.writer = writer;
+      this.ownWriter = true;
+      return this;
+   }
+
+   /**
+    * Write pages to disk on the writer thread of the given {@link ServletContext}, unless an {@link Executor} of its own
+    * was given. Until bound, pages are written on the calling thread.
+    */
+   void bind(ServletContext context)
+   {
+      if (!ownWriter)
+         writer = WriteBehindOutputStream.getExecutor(context);
+   }
+
+   /**
+    * Get the page stored for the given key, or <code>null</code> if there is none, or it has expired.
+    */
+   public CachedPage get(String key)
+   {
+      long now = System.currentTimeMillis();
+      CachedPage page;
+      long generation;
+      synchronized (memory)
+      {
+         page = memory.get(key);
+         if (page != null && page.isExpired(now))
+         {
+            remove(key);
+            page = null;
+         }
+         generation = this.generation;
+      }
+
+      if (page == null && directory != null)
+      {
+         page = readPage(key);
+         if (page != null)
+         {
+            if (page.isExpired(now))
+            {
+               delete(getFile(key));
+               page = null;
+            }
+            else
+            {
+               used(getFile(key));
+               synchronized (memory)
+               {
+                  if (this.generation == generation)
+                     putInMemory(page);
+               }
+            }
+         }
+      }
+      return page;
+   }
+
+   /**
+    * Store the given page, replacing any page stored for the same key.
+    */
+   public void put(CachedPage page)
+   {
+      store(page, null);
+   }
+
+   /**
+    * Store the given page, unless the given {@link Render} is not <code>null</code> and has been invalidated. Whether it
+    * has is checked under the same lock as pages are invalidated with, so that no invalidation is missed.
+    */
+   private void store(CachedPage page, Render render)
+   {
+      if (page.getSize() > maxBytes)
+      {
+         log.debug("Not caching [" + page + "], since it is larger than " + maxBytes + " bytes");
+         return;
+      }
+
+      synchronized (memory)
+      {
+         if (render != null && render.invalidated)
+            return;
+
+         putInMemory(page);
+         if (directory != null)
+         {
+            synchronized (files)
+            {
+               writes.put(page.getKey(), page);
+            }
+         }
+      }
+
+      if (directory != null)
+      {
+         writePage(page);
+         sweepIfDue();
+      }
+   }
+
+   /**
+    * Remove the page stored for the given key. A page for this key that is being rendered is not stored.
+    */
+   public void invalidate(String key)
+   {
+      synchronized (memory)
+      {
+         Render render = renders.get(key);
+         if (render != null)
+            render.invalidated = true;
+
+         generation++;
+         remove(key);
+      }
+      if (directory != null)
+      {
+         synchronized (files)
+         {
+            writes.remove(key);
+            delete(getFile(key));
+         }
+      }
+   }
+
+   /**
+    * Remove all pages tagged with the given tag. Pages with this tag that are being rendered are not stored.
+    */
+   public void invalidateTag(final String tag)
+   {
+      synchronized (memory)
+      {
+         for (Render render : renders.values()) {
+            if (render.tags.contains(tag))
+               render.invalidated = true;
+         }
+
+         generation++;
+         Iterator<Map.Entry<String, CachedPage>> iterator = memory.entrySet().iterator();
+         while (iterator.hasNext())
+         {
+            CachedPage page = iterator.next().getValue();
+            if (page.getTags().contains(tag))
+            {
+               bytes -= page.getSize();
+               iterator.remove();
+            }
+         }
+      }
+
+      if (directory != null)
+      {
+         synchronized (files)
+         {
+            Iterator<CachedPage> iterator = writes.values().iterator();
+            while (iterator.hasNext())
+            {
+               if (iterator.next().getTags().contains(tag))
+                  iterator.remove();
+            }
+         }
+
+         for (File file : listFiles()) {
+            CachedPage page = readPage(file, false);
+            if (page != null && page.getTags().contains(tag))
+               delete(file);
+         }
+      }
+   }
+
+   /**
+    * Remove all pages.
+    */
+   public void clear()
+   {
+      synchronized (memory)
+      {
+         for (Render render : renders.values()) {
+            render.invalidated = true;
+         }
+
+         generation++;
+         memory.clear();
+         bytes = 0;
+      }
+
+      if (directory != null)
+      {
+         synchronized (files)
+         {
+            writes.clear();
+         }
+         for (File file : listFiles()) {
+            delete(file);
+         }
+      }
+   }
+
+   /**
+    * Get the number of pages currently held in memory.
+    */
+   public int size()
+   {
+      synchronized (memory)
+      {
+         return memory.size();
+      }
+   }
+
+   /**
+    * Get the number of bytes of pages currently held in the {@link #directory(File)}.
+    */
+   long diskSize()
+   {
+      synchronized (files)
+      {
+         loadFiles();
+         return diskBytes;
+      }
+   }
+
+   long getTtl()
+   {
+      return ttl;
+   }
+
+   long getMaxBytes()
+   {
+      return maxBytes;
+   }
+
+   /**
+    * Claim the rendering of the page for the given key. If no other request is rendering it, return a {@link Render}
+    * that must be {@link Render#complete(CachedPage) completed} by the caller. Otherwise, wait for the other request to
+    * complete, and return <code>null</code>.
+    */
+   Render lock(String key, Set<String> tags)
+   {
+      Render render = new Render(key, tags);
+      Render pending = renders.putIfAbsent(key, render);
+      if (pending == null)
+         return render;
+
+      try {
+         if (!pending.latch.await(lockTimeout, TimeUnit.MILLISECONDS))
+         {
+            log.warn("Gave up waiting for [" + key + "] to be rendered after " + lockTimeout + "ms");
+            renders.remove(key, pending);
+         }
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      return null;
+   }
+
+   private void putInMemory(CachedPage page)
+   {
+      synchronized (memory)
+      {
+         remove(page.getKey());
+         memory.put(page.getKey(), page);
+         bytes += page.getSize();
+
+         Iterator<CachedPage> iterator = memory.values().iterator();
+         while ((memory.size() > maxPages || bytes > maxBytes) && iterator.hasNext())
+         {
+            CachedPage eldest = iterator.next();
+            bytes -= eldest.getSize();
+            iterator.remove();
+         }
+      }
+   }
+
+   private void remove(String key)
+   {
+      CachedPage removed = memory.remove(key);
+      if (removed != null)
+         bytes -= removed.getSize();
+   }
+
+   /**
+    * Write the given page to disk, once recorded as being written.
+    */
+   private void writePage(final CachedPage page)
+   {
+      try {
+         ByteArrayOutputStream buffer = new ByteArrayOutputStream(page.getContent().length + 512);
+         DataOutputStream data = new DataOutputStream(buffer);
+         page.write(data);
+         data.close();
+
+         OutputStream output = new WriteBehindOutputStream(getFile(page.getKey()), buffer.size(), true, writer) {
+            @Override
+            boolean commit(File temp, File target) throws IOException
+            {
+               synchronized (files)
+               {
+                  /*
+                   * Another page has been stored for the key since, or it has been invalidated.
+                   */
+                  if (writes.get(page.getKey()) != page)
+                     return false;
+
+                  writes.remove(page.getKey());
+                  super.commit(temp, target);
+                  stored(target);
+                  return true;
+               }
+            }
+         };
+         buffer.writeTo(output);
+         output.close();
+      }
+      catch (IOException e) {
+         synchronized (files)
+         {
+            writes.remove(page.getKey());
+         }
+         log.warn("Could not write [" + page + "] to [" + directory + "]", e);
+      }
+   }
+
+   /**
+    * Record the given {@link File} as just written, and evict the least recently used files while the directory holds
+    * more than {@link #maxDiskBytes(long)} bytes. Must be called while holding the lock on the file index.
+    */
+   private void stored(File file)
+   {
+      loadFiles();
+      long length = file.length();
+      Long previous = files.put(file.getName(), length);
+      diskBytes += length - (previous == null ? 0 : previous);
+
+      Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+      while (diskBytes > maxDiskBytes && iterator.hasNext())
+      {
+         Map.Entry<String, Long> eldest = iterator.next();
+         new File(directory, eldest.getKey()).delete();
+         diskBytes -= eldest.getValue();
+         iterator.remove();
+      }
+   }
+
+   private void used(File file)
+   {
+      synchronized (files)
+      {
+         loadFiles();
+         files.get(file.getName());
+      }
+   }
+
+   private void delete(File file)
+   {
+      synchronized (files)
+      {
+         file.delete();
+         Long length = files.remove(file.getName());
+         if (length != null)
+            diskBytes -= length;
+      }
+   }
+
+   /**
+    * Index the files already in the directory, oldest first, unless done already. Must be called while holding the lock
+    * on the file index.
+    */
+   private void loadFiles()
+   {
+      if (diskBytes < 0)
+      {
+         diskBytes = 0;
+         File[] existing = listFiles();
+         Arrays.sort(existing, new Comparator<File>() {
+            @Override
+            public int compare(File left, File right)
+            {
+               long difference = left.lastModified() - right.lastModified();
+               return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+         });
+         for (File file : existing) {
+            long length = file.length();
+            files.put(file.getName(), length);
+            diskBytes += length;
+         }
+      }
+   }
+
+   /**
+    * Delete expired pages, and temporary files left behind by interrupted writes, from the directory in the background,
+    * unless this has been done recently.
+    */
+   private void sweepIfDue()
+   {
+      final long now = System.currentTimeMillis();
+      synchronized (files)
+      {
+         if (now - swept < SWEEP_INTERVAL)
+            return;
+         swept = now;
+      }
+
+      try {
+         writer.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+               for (File file : listFiles()) {
+                  CachedPage page = readPage(file, false);
+                  if (page != null && page.isExpired(now))
+                     delete(file);
+               }
+
+               File[] temps = directory.listFiles(new FileFilter() {
+                  @Override
+                  public boolean accept(File file)
+                  {
+                     return file.isFile() && file.getName().endsWith(TEMP_SUFFIX)
+                              && now - file.lastModified() > TEMP_EXPIRY;
+                  }
+               });
+               if (temps != null)
+               {
+                  for (File file : temps) {
+                     file.delete();
+                  }
+               }
+            }
+         });
+      }
+      catch (RejectedExecutionException e) {
+         log.debug("Skipping sweep of [" + directory + "], since the writer thread has been stopped");
+      }
+   }
+
+   private CachedPage readPage(String key)
+   {
+      CachedPage page = readPage(getFile(key), true);
+      return page != null && key.equals(page.getKey()) ? page : null;
+   }
+
+   private CachedPage readPage(File file, boolean content)
+   {
+      try {
+         DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+         try {
+            return CachedPage.read(input, content);
+         }
+         finally {
+            input.close();
+         }
+      }
+      catch (FileNotFoundException e) {
+         return null;
+      }
+      catch (IOException e) {
+         log.warn("Discarding unreadable cached page [" + file + "]", e);
+         delete(file);
+         return null;
+      }
+   }
+
+   private File[] listFiles()
+   {
+      File[] files = directory.listFiles(new FileFilter() {
+         @Override
+         public boolean accept(File file)
+         {
+            return file.isFile() && file.getName().endsWith(SUFFIX);
+         }
+      });
+      return files == null ? new File[0] : files;
+   }
+
+   private File getFile(String key)
+   {
+      try {
+         byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+         StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+         for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+         }
+         return new File(directory, name.append(SUFFIX).toString());
+      }
+      catch (NoSuchAlgorithmException e) {
+         throw new RewriteException("Could not hash cache key [" + key + "]", e);
+      }
+      catch (IOException e) {
+         throw new RewriteException("Could not hash cache key [" + key + "]", e);
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PageCache [maxPages=" + maxPages + ", maxBytes=" + maxBytes + ", ttl=" + ttl + ", directory="
+               + directory + ", maxDiskBytes=" + maxDiskBytes + "]";
+   }
+
+   /**
+    * The rendering of a page by one request, for which other requests for the same page wait.
+    */
+   class Render
+   {
+      private final String key;
+      private final Set<String> tags;
+      private final long started = System.currentTimeMillis();
+      private final CountDownLatch latch = new CountDownLatch(1);
+      private final AtomicBoolean completed = new AtomicBoolean();
+      private boolean invalidated = false;
+
+      private Render(String key, Set<String> tags)
+      {
+         this.key = key;
+         this.tags = tags;
+      }
+
+      /**
+       * The time at which rendering began, in milliseconds.
+       */
+      long getStarted()
+      {
+         return started;
+      }
+
+      /**
+       * Store the given page, unless it is <code>null</code> or was invalidated while rendering, and release waiting
+       * requests. Has no effect if this {@link Render} has already been completed.
+       */
+      void complete(CachedPage page)
+      {
+         if (!completed.compareAndSet(false, true))
+            return;
+
+         try {
+            if (page != null)
+               store(page, this);
+         }
+         finally {
+            renders.remove(key, this);
+            latch.countDown();
+         }
+      }
+   }
+}
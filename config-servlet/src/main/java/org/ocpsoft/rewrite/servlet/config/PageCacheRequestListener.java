@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestEvent;
+
+import org.ocpsoft.rewrite.servlet.spi.RequestListener;
+
+/**
+ * Completes the {@link PageCache.Render} instances claimed by {@link Cache} operations once their request has been
+ * destroyed. A page is normally stored, and waiting requests released, when its response is finished; if the
+ * application or a later rule fails instead, this releases the waiting requests without storing the page.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class PageCacheRequestListener implements RequestListener
+{
+   private static final String RENDERS_KEY = PageCacheRequestListener.class.getName() + "_RENDERS";
+
+   /**
+    * Complete the given {@link PageCache.Render} when the given {@link ServletRequest} is destroyed, unless it has been
+    * completed by then.
+    */
+   static void register(ServletRequest request, PageCache.Render render)
+   {
+      @SuppressWarnings("unchecked")
+      List<PageCache.Render> renders = (List<PageCache.Render>) request.getAttribute(RENDERS_KEY);
+      if (renders == null)
+      {
+         renders = new ArrayList<PageCache.Render>(1);
+         request.setAttribute(RENDERS_KEY, renders);
+      }
+      renders.add(render);
+   }
+
+   @Override
+   public int priority()
+   {
+      return 0;
+   }
+
+   @Override
+   public void requestInitialized(ServletRequestEvent event)
+   {}
+
+   @Override
+   public void requestDestroyed(ServletRequestEvent event)
+   {
+      @SuppressWarnings("unchecked")
+      List<PageCache.Render> renders = (List<PageCache.Render>) event.getServletRequest().getAttribute(RENDERS_KEY);
+      if (renders != null)
+      {
+         for (PageCache.Render render : renders) {
+            render.complete(null);
+         }
+      }
+   }
+}
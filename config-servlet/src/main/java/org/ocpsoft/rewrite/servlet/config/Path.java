@@ -15,15 +15,22 @@
  */
 package org.ocpsoft.rewrite.servlet.config;
 
+import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.ocpsoft.common.util.Assert;
+import org.ocpsoft.rewrite.config.Cacheable;
 import org.ocpsoft.rewrite.config.Condition;
 import org.ocpsoft.rewrite.config.ConfigurationRuleParameterBuilder;
+import org.ocpsoft.rewrite.config.DispatchKey;
+import org.ocpsoft.rewrite.config.Dispatchable;
 import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.param.CombinablePattern;
+import org.ocpsoft.rewrite.param.CombinedPatternMatchers;
 import org.ocpsoft.rewrite.param.ConfigurableParameter;
 import org.ocpsoft.rewrite.param.Parameter;
 import org.ocpsoft.rewrite.param.ParameterStore;
@@ -44,9 +51,9 @@ import org.ocpsoft.urlbuilder.AddressBuilder;
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public abstract class Path extends HttpCondition implements Parameterized
+public abstract class Path extends HttpCondition implements Parameterized, Dispatchable, CombinablePattern, Cacheable
 {
-   private final ParameterizedPatternParser expression;
+   private final RegexParameterizedPatternParser expression;
    private boolean withRequestBinding = false;
    private String captureIn;
 
@@ -134,7 +141,7 @@ public abstract class Path extends HttpCondition implements Parameterized
       if (!contextPath.equals("/") && url.startsWith(contextPath))
          url = url.substring(contextPath.length());
 
-      return expression.parse(url).submit(event, context);
+      return expression.parse(event, url).submit(event, context);
    }
 
    /**
@@ -145,6 +152,24 @@ public abstract class Path extends HttpCondition implements Parameterized
       return expression;
    }
 
+   @Override
+   public List<DispatchKey> getDispatchKeys()
+   {
+      return Arrays.asList(DispatchKey.pathPrefix(expression.getLiteralPrefix()));
+   }
+
+   @Override
+   public boolean isCacheable()
+   {
+      return expression.isSelfContained();
+   }
+
+   @Override
+   public void combine(CombinedPatternMatchers matchers)
+   {
+      matchers.get(Path.class).add(expression);
+   }
+
    @Override
    public Set<String> getRequiredParameterNames()
    {
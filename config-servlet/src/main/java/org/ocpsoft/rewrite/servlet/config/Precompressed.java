@@ -0,0 +1,302 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.ocpsoft.common.util.Assert;
+import org.ocpsoft.logging.Logger;
+import org.ocpsoft.rewrite.config.Condition;
+import org.ocpsoft.rewrite.config.ConfigurationRuleParameterBuilder;
+import org.ocpsoft.rewrite.config.Operation;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.param.ParameterStore;
+import org.ocpsoft.rewrite.param.Parameterized;
+import org.ocpsoft.rewrite.param.ParameterizedPattern;
+import org.ocpsoft.rewrite.param.ParameterizedPatternBuilder;
+import org.ocpsoft.rewrite.param.RegexParameterizedPatternBuilder;
+import org.ocpsoft.rewrite.servlet.config.response.ContentEncoding;
+import org.ocpsoft.rewrite.servlet.http.event.HttpInboundServletRewrite;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+import org.ocpsoft.rewrite.util.ParseTools.CaptureType;
+import org.ocpsoft.rewrite.util.Transpositions;
+
+/**
+ * An {@link Operation} that forwards requests for a resource in the {@link ServletContext} to a pre-compressed sibling
+ * of that resource, such as <code>/js/app.js.br</code> or <code>/js/app.js.gz</code> for <code>/js/app.js</code>, if
+ * the client accepts its content coding. This avoids compressing static resources on every request.
+ * <p>
+ * The response carries the 'Content-Encoding' of the sibling and the content type of the original resource. Whether
+ * siblings exist, or are missing, is looked up once per path and remembered like other {@link ServletContext} resource
+ * lookups, so siblings should be deployed together with their original resources.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class Precompressed extends HttpOperation implements Parameterized
+{
+   private static final Logger log = Logger.getLogger(Precompressed.class);
+
+   private static final String VARIANT_KEY = Precompressed.class.getName() + "_VARIANT";
+
+   private final Variants variants;
+
+   private Precompressed(final String resource)
+   {
+      this.variants = new Variants(resource);
+   }
+
+   /**
+    * Create an {@link Operation} that forwards the current request to the pre-compressed sibling of the given resource
+    * preferred by the client, and adds 'Vary: Accept-Encoding' to the response. By default, Brotli (<code>.br</code>)
+    * siblings are preferred over GZip (<code>.gz</code>) siblings. If the client accepts neither, or no sibling exists,
+    * the request is not forwarded.
+    * <p>
+    * The given resource path may be parameterized:
+    * <p>
+    * <code>
+    *    /js/{file}.js <br>
+    *    /css/{value}.css <br>
+    *    ... 
+    * </code>
+    * <p>
+    * 
+    * @param resource {@link ParameterizedPattern} specifying the path of the uncompressed resource.
+    * 
+    * @see {@link ConfigurationRuleParameterBuilder#where(String)}
+    */
+   public static Precompressed forward(final String resource)
+   {
+      return new Precompressed(resource);
+   }
+
+   /**
+    * Create a {@link Condition} that returns <code>true</code> if a pre-compressed sibling of the given resource exists
+    * whose content coding is accepted by the client. The given resource path may be parameterized.
+    * 
+    * @param resource {@link ParameterizedPattern} specifying the path of the uncompressed resource.
+    */
+   public static PrecompressedExists exists(final String resource)
+   {
+      return new PrecompressedExists(resource);
+   }
+
+   /**
+    * Also consider siblings with the given file extension for the given content coding, in addition to and preferred
+    * over those already configured.
+    */
+   public Precompressed withEncoding(final String coding, final String extension)
+   {
+      variants.add(coding, extension);
+      return this;
+   }
+
+   @Override
+   public void performHttp(final HttpServletRewrite event, final EvaluationContext context)
+   {
+      if (!(event instanceof HttpInboundServletRewrite) || event.getRequest().getAttribute(VARIANT_KEY) != null)
+         return;
+
+      String resource = variants.build(event, context);
+      event.getResponse().addHeader("Vary", "Accept-Encoding");
+
+      Entry<String, String> variant = variants.select(event, resource);
+      if (variant != null)
+      {
+         String target = resource + variant.getValue();
+         log.debug("Forwarding [" + resource + "] to pre-compressed [" + target + "]");
+
+         event.getRequest().setAttribute(VARIANT_KEY, target);
+         HttpServletResponse response = event.getResponse();
+         response.setHeader("Content-Encoding", variant.getKey());
+         ((HttpInboundServletRewrite) event).setResponse(new ContentTypeResponse(response, event
+                  .getServletContext().getMimeType(resource)));
+         ((HttpInboundServletRewrite) event).forward(target);
+      }
+   }
+
+   public ParameterizedPatternBuilder getExpression()
+   {
+      return variants.resource;
+   }
+
+   @Override
+   public Set<String> getRequiredParameterNames()
+   {
+      return variants.resource.getRequiredParameterNames();
+   }
+
+   @Override
+   public void setParameterStore(ParameterStore store)
+   {
+      variants.resource.setParameterStore(store);
+   }
+
+   @Override
+   public String toString()
+   {
+      return "Precompressed.forward(\"" + variants.resource.getPattern() + "\")" + variants;
+   }
+
+   /**
+    * A {@link Condition} that determines whether a pre-compressed sibling of a resource is available to the client.
+    */
+   public static class PrecompressedExists extends HttpCondition implements Parameterized
+   {
+      private final Variants variants;
+
+      private PrecompressedExists(final String resource)
+      {
+         this.variants = new Variants(resource);
+      }
+
+      /**
+       * Also consider siblings with the given file extension for the given content coding, in addition to and
+       * preferred over those already configured.
+       */
+      public PrecompressedExists withEncoding(final String coding, final String extension)
+      {
+         variants.add(coding, extension);
+         return this;
+      }
+
+      @Override
+      public boolean evaluateHttp(final HttpServletRewrite event, final EvaluationContext context)
+      {
+         return variants.resource.isParameterComplete(event, context)
+                  && variants.select(event, variants.build(event, context)) != null;
+      }
+
+      @Override
+      public Set<String> getRequiredParameterNames()
+      {
+         return variants.resource.getRequiredParameterNames();
+      }
+
+      @Override
+      public void setParameterStore(ParameterStore store)
+      {
+         variants.resource.setParameterStore(store);
+      }
+
+      @Override
+      public String toString()
+      {
+         return "Precompressed.exists(\"" + variants.resource.getPattern() + "\")" + variants;
+      }
+   }
+
+   /**
+    * The content codings and sibling file extensions to consider, most preferred first.
+    */
+   private static class Variants
+   {
+      private final RegexParameterizedPatternBuilder resource;
+      private Map<String, String> extensions = new LinkedHashMap<String, String>();
+      private final StringBuilder added = new StringBuilder();
+
+      private Variants(final String resource)
+      {
+         Assert.notNull(resource, "Resource must not be null.");
+         this.resource = new RegexParameterizedPatternBuilder(CaptureType.BRACE, "[^/]+", resource);
+         extensions.put("br", ".br");
+         extensions.put("gzip", ".gz");
+      }
+
+      private void add(final String coding, final String extension)
+      {
+         Assert.notNull(coding, "Content coding must not be null.");
+         Assert.notNull(extension, "Extension must not be null.");
+         Map<String, String> result = new LinkedHashMap<String, String>();
+         result.put(coding, extension);
+         for (Entry<String, String> entry : extensions.entrySet()) {
+            if (!result.containsKey(entry.getKey()))
+               result.put(entry.getKey(), entry.getValue());
+         }
+         extensions = result;
+         added.append(".withEncoding(\"").append(coding).append("\", \"").append(extension).append("\")");
+      }
+
+      private String build(final HttpServletRewrite event, final EvaluationContext context)
+      {
+         return resource.build(event, context, Transpositions.identity());
+      }
+
+      /**
+       * Get the most preferred content coding and extension that is accepted by the client and for which a sibling of
+       * the given resource exists, or <code>null</code> if there is none.
+       */
+      private Entry<String, String> select(final HttpServletRewrite event, final String path)
+      {
+         ResourceCache cache = ResourceCache.getInstance(event.getServletContext());
+         for (Entry<String, String> entry : extensions.entrySet()) {
+            if (ContentEncoding.isAccepted(event.getRequest(), entry.getKey())
+                     && cache.existsOptional(event.getServletContext(), path + entry.getValue()))
+               return entry;
+         }
+         return null;
+      }
+
+      @Override
+      public String toString()
+      {
+         return added.toString();
+      }
+   }
+
+   /**
+    * Keeps the content type of the original resource, rather than the one of its pre-compressed sibling.
+    */
+   private static class ContentTypeResponse extends HttpServletResponseWrapper
+   {
+      private final String contentType;
+
+      public ContentTypeResponse(final HttpServletResponse response, final String contentType)
+      {
+         super(response);
+         this.contentType = contentType;
+         if (contentType != null)
+            response.setContentType(contentType);
+      }
+
+      @Override
+      public void setContentType(final String type)
+      {
+         if (contentType == null)
+            super.setContentType(type);
+      }
+
+      @Override
+      public void setHeader(final String name, final String value)
+      {
+         if (contentType == null || !"Content-Type".equalsIgnoreCase(name))
+            super.setHeader(name, value);
+      }
+
+      @Override
+      public void addHeader(final String name, final String value)
+      {
+         if (contentType == null || !"Content-Type".equalsIgnoreCase(name))
+            super.addHeader(name, value);
+      }
+   }
+}
@@ -15,12 +15,10 @@
  */
 package org.ocpsoft.rewrite.servlet.config;
 
-import java.net.MalformedURLException;
 import java.util.Set;
 
 import javax.servlet.ServletContext;
 
-import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.config.Condition;
 import org.ocpsoft.rewrite.config.ConfigurationRuleParameterBuilder;
 import org.ocpsoft.rewrite.context.EvaluationContext;
@@ -36,14 +34,14 @@ import org.ocpsoft.urlbuilder.Address;
 
 /**
  * A {@link Condition} responsible for determining existence of resources within the
- * {@link ServletContext#getResourcePaths(String)} of the servlet container.
+ * {@link ServletContext#getResourcePaths(String)} of the servlet container. Lookups of existing resources are
+ * remembered for 60 seconds, which may be changed with the <code>org.ocpsoft.rewrite.config.RESOURCE_CACHE_TTL</code>
+ * servlet context init parameter.
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
 public abstract class Resource extends HttpCondition implements Parameterized
 {
-   private static final Logger log = Logger.getLogger(Resource.class);
-
    private final ParameterizedPatternParser resource;
 
    private Resource(final String resource)
@@ -60,22 +58,15 @@ public abstract class Resource extends HttpCondition implements Parameterized
          if (builder.isParameterComplete(event, context))
          {
             String file = builder.build(event, context, Transpositions.encodePath());
-            try
-            {
-               return (event.getServletContext().getResource(file) != null);
-            }
-            catch (MalformedURLException e)
-            {
-               log.debug("Invalid file format [{}]", file);
-            }
+            return ResourceCache.getInstance(event.getServletContext()).exists(event.getServletContext(), file);
          }
          else
          {
             /*
              * Parameter didn't exist, that's OK, switch to parsing mode.
              */
-            @SuppressWarnings("unchecked")
-            Set<String> paths = event.getServletContext().getResourcePaths("/");
+            Set<String> paths = ResourceCache.getInstance(event.getServletContext()).getResourcePaths(
+                     event.getServletContext(), "/");
             for (String path : paths)
             {
                if (resource.parse(path).matches())
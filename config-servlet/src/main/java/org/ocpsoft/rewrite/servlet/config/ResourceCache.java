@@ -0,0 +1,381 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.logging.Logger;
+import org.ocpsoft.rewrite.util.BoundedCache;
+
+/**
+ * Remembers the results of {@link ServletContext#getResource(String)} and {@link ServletContext#getResourcePaths(String)}
+ * lookups, since containers may search the file-system and every JAR in <code>WEB-INF/lib</code> on each lookup.
+ * <p>
+ * Results are remembered for {@value #DEFAULT_TTL} seconds by default. To change this, or to disable caching with a
+ * value of <code>0</code>, add the following servlet context init parameter to <code>web.xml</code>:
+ * 
+ * <pre>
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.config.RESOURCE_CACHE_TTL&lt;/param-name&gt;
+ *   &lt;param-value&gt;60&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * </pre>
+ * 
+ * Lookups of paths that do not exist are only remembered if the
+ * <code>org.ocpsoft.rewrite.config.RESOURCE_CACHE_MISSING</code> init parameter is set to <code>true</code>, since a
+ * resource added at runtime would otherwise go unnoticed until its lookup expires. Lookups of optional paths, such as
+ * pre-compressed siblings, are the exception: they are usually missing, so misses are always remembered for them.
+ * <p>
+ * During development, the cache may instead be cleared whenever a file in an exploded application changes, by setting
+ * the <code>org.ocpsoft.rewrite.config.RESOURCE_CACHE_WATCH</code> init parameter to <code>true</code>. If the
+ * application directory can no longer be watched, lookups expire after the configured time instead. The watcher is
+ * stopped by {@link ResourceCacheContextListener} when the {@link ServletContext} is destroyed.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+class ResourceCache
+{
+   private static final Logger log = Logger.getLogger(ResourceCache.class);
+
+   private static final String CONTEXT_KEY = ResourceCache.class.getName() + "_INSTANCE";
+   private static final String RESOURCE_CACHE_TTL = "org.ocpsoft.rewrite.config.RESOURCE_CACHE_TTL";
+   private static final String RESOURCE_CACHE_WATCH = "org.ocpsoft.rewrite.config.RESOURCE_CACHE_WATCH";
+   private static final String RESOURCE_CACHE_MISSING = "org.ocpsoft.rewrite.config.RESOURCE_CACHE_MISSING";
+   private static final int DEFAULT_TTL = 60;
+   private static final int MAX_SIZE = 4096;
+
+   private final BoundedCache<String, Entry> resources = new BoundedCache<String, Entry>(MAX_SIZE);
+   private final BoundedCache<String, Entry> paths = new BoundedCache<String, Entry>(MAX_SIZE);
+   private final BoundedCache<String, Entry> optional = new BoundedCache<String, Entry>(MAX_SIZE);
+   private final boolean missing;
+   private volatile long ttl;
+   private volatile WatchService watcher;
+
+   /**
+    * Create a {@link ResourceCache} remembering lookups for the given number of milliseconds, and remembering lookups
+    * of paths that do not exist only if requested.
+    */
+   ResourceCache(long ttl, boolean missing)
+   {
+      this.ttl = ttl;
+      this.missing = missing;
+   }
+
+   /**
+    * Get the {@link ResourceCache} for the given {@link ServletContext}.
+    */
+   public static ResourceCache getInstance(ServletContext context)
+   {
+      ResourceCache cache = (ResourceCache) context.getAttribute(CONTEXT_KEY);
+      if (cache == null)
+      {
+         synchronized (context)
+         {
+            cache = (ResourceCache) context.getAttribute(CONTEXT_KEY);
+            if (cache == null)
+            {
+               cache = create(context);
+               context.setAttribute(CONTEXT_KEY, cache);
+            }
+         }
+      }
+      return cache;
+   }
+
+   /**
+    * Stop watching for changes to the resources of the given {@link ServletContext}, and discard its
+    * {@link ResourceCache}.
+    */
+   public static void shutdown(ServletContext context)
+   {
+      ResourceCache cache;
+      synchronized (context)
+      {
+         cache = (ResourceCache) context.getAttribute(CONTEXT_KEY);
+         context.removeAttribute(CONTEXT_KEY);
+      }
+
+      if (cache != null)
+         cache.close();
+   }
+
+   private static ResourceCache create(ServletContext context)
+   {
+      long ttl = getTtl(context);
+      boolean missing = "true".equalsIgnoreCase(trim(context.getInitParameter(RESOURCE_CACHE_MISSING)));
+      boolean watch = "true".equalsIgnoreCase(trim(context.getInitParameter(RESOURCE_CACHE_WATCH)));
+      String root = watch ? context.getRealPath("/") : null;
+      if (root != null)
+      {
+         ResourceCache cache = new ResourceCache(Long.MAX_VALUE, missing);
+         try {
+            cache.watch(new File(root).toPath(), ttl);
+            return cache;
+         }
+         catch (IOException e) {
+            log.warn("Could not watch [" + root + "] for changes, falling back to expiring cached resources", e);
+            cache.close();
+         }
+      }
+      else if (watch)
+         log.warn("Cannot watch resources of an application that is not exploded, falling back to expiring cached "
+                  + "resources");
+
+      return new ResourceCache(ttl, missing);
+   }
+
+   private static long getTtl(ServletContext context)
+   {
+      long ttl = DEFAULT_TTL;
+      String value = trim(context.getInitParameter(RESOURCE_CACHE_TTL));
+      if (value != null && !value.isEmpty())
+      {
+         try {
+            ttl = Long.parseLong(value);
+         }
+         catch (NumberFormatException e) {
+            log.warn("Ignoring invalid [" + RESOURCE_CACHE_TTL + "] value [" + value + "]");
+         }
+      }
+      return TimeUnit.SECONDS.toMillis(Math.max(ttl, 0));
+   }
+
+   /**
+    * Determine whether the given path exists in the given {@link ServletContext}.
+    */
+   public boolean exists(ServletContext context, String path)
+   {
+      Entry entry = get(resources, path);
+      if (entry == null)
+      {
+         boolean result = lookup(context, path);
+         entry = put(resources, path, result, result);
+      }
+      return (Boolean) entry.value;
+   }
+
+   /**
+    * Determine whether the given optional path, such as a pre-compressed sibling of a resource, exists in the given
+    * {@link ServletContext}. Since optional paths are usually missing, lookups of paths that do not exist are always
+    * remembered, in a cache of their own.
+    */
+   public boolean existsOptional(ServletContext context, String path)
+   {
+      Entry entry = get(optional, path);
+      if (entry == null)
+      {
+         boolean result = lookup(context, path);
+         entry = put(optional, path, result, true);
+      }
+      return (Boolean) entry.value;
+   }
+
+   private boolean lookup(ServletContext context, String path)
+   {
+      try {
+         return context.getResource(path) != null;
+      }
+      catch (MalformedURLException e) {
+         log.debug("Invalid file format [{}]", path);
+         return false;
+      }
+   }
+
+   /**
+    * Get the {@link ServletContext#getResourcePaths(String)} of the given path in the given {@link ServletContext}.
+    */
+   @SuppressWarnings("unchecked")
+   public Set<String> getResourcePaths(ServletContext context, String path)
+   {
+      Entry entry = get(paths, path);
+      if (entry == null)
+      {
+         Set<String> result = context.getResourcePaths(path);
+         result = result == null ? Collections.<String> emptySet() : Collections
+                  .unmodifiableSet(new LinkedHashSet<String>(result));
+         entry = put(paths, path, result, !result.isEmpty());
+      }
+      return (Set<String>) entry.value;
+   }
+
+   /**
+    * Forget all remembered lookups.
+    */
+   public void clear()
+   {
+      resources.clear();
+      paths.clear();
+      optional.clear();
+   }
+
+   /**
+    * Stop watching for changes, if watching. Lookups expire after the time they were remembered for so far.
+    */
+   public void close()
+   {
+      WatchService watcher = this.watcher;
+      this.watcher = null;
+      if (watcher != null)
+      {
+         try {
+            watcher.close();
+         }
+         catch (IOException e) {
+            log.warn("Could not stop watching resources for changes", e);
+         }
+      }
+   }
+
+   long getTtl()
+   {
+      return ttl;
+   }
+
+   private Entry get(BoundedCache<String, Entry> map, String path)
+   {
+      Entry entry = map.get(path);
+      if (entry != null && System.currentTimeMillis() - entry.created >= ttl)
+      {
+         map.remove(path, entry);
+         entry = null;
+      }
+      return entry;
+   }
+
+   private Entry put(BoundedCache<String, Entry> map, String path, Object value, boolean found)
+   {
+      Entry entry = new Entry(value, System.currentTimeMillis());
+      if (ttl > 0 && (found || missing))
+         map.put(path, entry);
+      return entry;
+   }
+
+   /**
+    * Clear this cache whenever a file or directory below the given root changes. If the root can no longer be watched,
+    * let lookups expire after the given number of milliseconds instead.
+    */
+   void watch(final Path root, final long fallbackTtl) throws IOException
+   {
+      final WatchService watcher = FileSystems.getDefault().newWatchService();
+      this.watcher = watcher;
+      register(watcher, root);
+
+      Thread thread = new Thread(new Runnable() {
+         @Override
+         public void run()
+         {
+            while (true)
+            {
+               WatchKey key;
+               try {
+                  key = watcher.take();
+               }
+               catch (InterruptedException e) {
+                  expire(fallbackTtl);
+                  return;
+               }
+               catch (ClosedWatchServiceException e) {
+                  expire(fallbackTtl);
+                  return;
+               }
+
+               for (WatchEvent<?> event : key.pollEvents()) {
+                  if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+                  {
+                     Path created = ((Path) key.watchable()).resolve((Path) event.context());
+                     if (Files.isDirectory(created))
+                     {
+                        try {
+                           register(watcher, created);
+                        }
+                        catch (IOException e) {
+                           log.warn("Could not watch [" + created + "] for changes", e);
+                        }
+                     }
+                  }
+               }
+               clear();
+
+               if (!key.reset() && root.equals(key.watchable()))
+               {
+                  log.warn("Can no longer watch [" + root + "] for changes, falling back to expiring cached resources");
+                  close();
+                  expire(fallbackTtl);
+                  return;
+               }
+            }
+         }
+      }, "rewrite-resource-watcher");
+      thread.setDaemon(true);
+      thread.start();
+      log.info("Watching [" + root + "] for resource changes");
+   }
+
+   private void expire(long ttl)
+   {
+      this.ttl = ttl;
+      clear();
+   }
+
+   private static void register(final WatchService watcher, Path root) throws IOException
+   {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+         @Override
+         public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException
+         {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                     StandardWatchEventKinds.ENTRY_MODIFY);
+            return FileVisitResult.CONTINUE;
+         }
+      });
+   }
+
+   private static String trim(String value)
+   {
+      return value == null ? null : value.trim();
+   }
+
+   private static class Entry
+   {
+      private final Object value;
+      private final long created;
+
+      private Entry(Object value, long created)
+      {
+         this.value = value;
+         this.created = created;
+      }
+   }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import javax.servlet.ServletContextEvent;
+
+import org.ocpsoft.rewrite.servlet.spi.ContextListener;
+
+/**
+ * Stops the {@link ResourceCache} of the application from watching for resource changes when the application is
+ * undeployed.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class ResourceCacheContextListener implements ContextListener
+{
+   @Override
+   public int priority()
+   {
+      return 0;
+   }
+
+   @Override
+   public void contextInitialized(ServletContextEvent event)
+   {}
+
+   @Override
+   public void contextDestroyed(ServletContextEvent event)
+   {
+      ResourceCache.shutdown(event.getServletContext());
+   }
+}
@@ -40,6 +40,7 @@ import org.ocpsoft.rewrite.servlet.config.response.GZipResponseContentIntercepto
 import org.ocpsoft.rewrite.servlet.config.response.GZipResponseStreamWrapper;
 import org.ocpsoft.rewrite.servlet.config.response.ResponseContentInterceptor;
 import org.ocpsoft.rewrite.servlet.config.response.ResponseStreamWrapper;
+import org.ocpsoft.rewrite.servlet.config.response.StreamingResponseContentInterceptor;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 
 /**
@@ -60,7 +61,8 @@ public abstract class Response extends HttpOperation
     * <b>WARNING:</b> This will cause the <b>ENTIRE</b> response to be buffered in memory, which may cause performance
     * issues on larger responses. Make sure you you really need to buffer the entire response! Favor using a
     * {@link ResponseStreamWrapper} if desired behavior may be performed as a stream operation; this will result in far
-    * less memory overhead.
+    * less memory overhead. Buffering is skipped if all registered interceptors are
+    * {@link StreamingResponseContentInterceptor} instances that do not require it.
     * 
     * @throws IllegalStateException When output has already been written to the client.
     */
@@ -238,7 +240,10 @@ public abstract class Response extends HttpOperation
    }
 
    /**
-    * Compress the {@link ServletOutputStream} contents written to the client.
+    * Compress the {@link ServletOutputStream} contents written to the client as they are written, if the client accepts
+    * GZip encoding and the content type is not already compressed. To change the compression level or only compress
+    * larger responses, use {@link #withOutputStreamWrappedBy(ResponseStreamWrapper...)} with a configured
+    * {@link GZipResponseStreamWrapper}.
     * <p>
     * <b>WARNING</b>: This means that the HTTP response will not contain a 'Content-Length' header.
     */
@@ -255,7 +260,7 @@ public abstract class Response extends HttpOperation
          @Override
          public String toString()
          {
-            return "Response.gzipCompression()";
+            return "Response.gzipStreamCompression()";
          }
 
       };
@@ -15,7 +15,6 @@
  */
 package org.ocpsoft.rewrite.servlet.config;
 
-import java.net.MalformedURLException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -27,7 +26,6 @@ import javax.servlet.ServletContext;
 import org.ocpsoft.common.pattern.WeightedComparator;
 import org.ocpsoft.common.services.ServiceLoader;
 import org.ocpsoft.common.util.Iterators;
-import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.config.Condition;
 import org.ocpsoft.rewrite.config.ConfigurationRuleParameterBuilder;
 import org.ocpsoft.rewrite.context.EvaluationContext;
@@ -50,8 +48,6 @@ import org.ocpsoft.urlbuilder.Address;
  */
 public abstract class ServletMapping extends HttpCondition implements Parameterized
 {
-   private static final Logger log = Logger.getLogger(Resource.class);
-
    private final RegexParameterizedPatternBuilder resource;
 
    private List<ServletRegistrationProvider> servletRegistrationProviders = null;
@@ -97,37 +93,30 @@ public abstract class ServletMapping extends HttpCondition implements Parameteri
       if (resource != null && resource.isParameterComplete(event, context))
       {
          String path = resource.build(event, context, Transpositions.encodePath());
-         try
+         for (ServletRegistration registration : getServletRegistration(event.getServletContext()))
          {
-            for (ServletRegistration registration : getServletRegistration(event.getServletContext()))
+            Collection<String> mappings = registration.getMappings();
+
+            for (String mapping : mappings)
             {
-               Collection<String> mappings = registration.getMappings();
+               if (path.startsWith("/") && !mapping.startsWith("/"))
+               {
+                  mapping = "/" + mapping;
+               }
 
-               for (String mapping : mappings)
+               if (mapping.contains("*"))
                {
-                  if (path.startsWith("/") && !mapping.startsWith("/"))
-                  {
-                     mapping = "/" + mapping;
-                  }
-
-                  if (mapping.contains("*"))
-                  {
-                     mapping = mapping.replaceAll("\\*", ".*");
-                  }
-
-                  if (path.matches(mapping))
-                  {
-                     return true;
-                  }
+                  mapping = mapping.replaceAll("\\*", ".*");
                }
-            }
 
-            return event.getServletContext().getResource(path) != null;
-         }
-         catch (MalformedURLException e)
-         {
-            log.debug("Invalid file format [{}]", path);
+               if (path.matches(mapping))
+               {
+                  return true;
+               }
+            }
          }
+
+         return ResourceCache.getInstance(event.getServletContext()).exists(event.getServletContext(), path);
       }
       return false;
    }
@@ -1,13 +1,9 @@
 package org.ocpsoft.rewrite.servlet.config;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Set;
 
@@ -52,6 +48,13 @@ public abstract class Stream extends HttpOperation implements Parameterized
     * {@link HttpServletResponse#getOutputStream()}.
     * 
     * <p>
+    * Unless the response content is intercepted or wrapped, the response carries <code>ETag</code>,
+    * <code>Last-Modified</code> and <code>Accept-Ranges</code> headers derived from the {@link File}, and conditional
+    * (<code>If-None-Match</code>, <code>If-Modified-Since</code>) and single byte-range (<code>Range</code>,
+    * <code>If-Range</code>) requests are answered accordingly. The {@link File} is transferred without copying it
+    * through the heap where the container and platform allow.
+    * 
+    * <p>
     * The given {@link File} path may be parameterized:
     * <p>
     * <code>
@@ -72,26 +75,14 @@ public abstract class Stream extends HttpOperation implements Parameterized
          @Override
          public void performHttp(HttpServletRewrite event, EvaluationContext context)
          {
-            InputStream stream = null;
             try {
                File file = new File(target.build(event, context, Transpositions.encodePath()));
-               stream = new BufferedInputStream(new FileInputStream(file));
                log.debug("Streaming from file [" + file + "] to response.");
-               Response.write(stream).perform(event, context);
+               FileTransfer.send(event, file);
             }
             catch (Exception e) {
                throw new RewriteException("Error streaming file.", e);
             }
-            finally
-            {
-               if (stream != null)
-                  try {
-                     stream.close();
-                  }
-                  catch (IOException e) {
-                     throw new RewriteException("Error closing stream.", e);
-                  }
-            }
          }
 
          @Override
@@ -105,68 +96,118 @@ public abstract class Stream extends HttpOperation implements Parameterized
    /**
     * Create an {@link Operation} that duplicates content written to {@link HttpServletResponse#getOutputStream()} and
     * writes it to the given {@link File}.
+    * 
+    * @see #writeBehind(File, int)
     */
    public static Operation to(File file)
    {
-      return new Stream(file) {
-         @Override
-         public void performHttp(HttpServletRewrite event, EvaluationContext context)
+      return new StreamTo(file, 0);
+   }
+
+   /**
+    * Create an {@link Operation} that duplicates content written to {@link HttpServletResponse#getOutputStream()} and
+    * writes it to the given {@link File} on a background thread instead of the request thread, buffering up to the
+    * given number of bytes. The {@link File} is written to a temporary file and atomically renamed once the response is
+    * complete, so that it is only ever seen complete. If the buffer is full, the request thread waits for it to be
+    * drained, unless {@link StreamTo#dropWhenFull()} is set.
+    */
+   public static StreamTo writeBehind(File file, int bufferSize)
+   {
+      if (bufferSize <= 0)
+         throw new IllegalArgumentException("Buffer size must be greater than zero");
+      return new StreamTo(file, bufferSize);
+   }
+
+   /**
+    * An {@link Operation} that duplicates content written to {@link HttpServletResponse#getOutputStream()} and writes
+    * it to a {@link File}.
+    */
+   public static class StreamTo extends Stream
+   {
+      private final int bufferSize;
+      private boolean block = true;
+
+      private StreamTo(File target, int bufferSize)
+      {
+         super(target);
+         this.bufferSize = bufferSize;
+      }
+
+      /**
+       * When writing behind, abandon writing the {@link File} instead of waiting if the buffer is full. The
+       * {@link File} is then left as it was. Has no effect unless created by {@link Stream#writeBehind(File, int)}.
+       */
+      public StreamTo dropWhenFull()
+      {
+         this.block = false;
+         return this;
+      }
+
+      @Override
+      public void performHttp(HttpServletRewrite event, EvaluationContext context)
+      {
+         final File file = new File(target.build(event, context, Transpositions.encodePath()));
+         if (bufferSize == 0 && !file.exists())
          {
-            final File file = new File(target.build(event, context, Transpositions.encodePath()));
-            if (!file.exists())
+            file.mkdirs();
+            file.delete();
+            try {
+               file.createNewFile();
+            }
+            catch (IOException e) {
+               throw new RewriteException("Could not create file for Stream operation", e);
+            }
+         }
+
+         Response.withOutputStreamWrappedBy(new ResponseStreamWrapper() {
+
+            @Override
+            public OutputStream wrap(HttpServletRewrite rewrite, OutputStream outputStream)
             {
-               file.mkdirs();
-               file.delete();
                try {
-                  file.createNewFile();
+                  OutputStream stream;
+                  if (bufferSize > 0)
+                     stream = new WriteBehindOutputStream(file, bufferSize, block,
+                              WriteBehindOutputStream.getExecutor(rewrite.getServletContext()));
+                  else
+                     stream = new BufferedOutputStream(new FileOutputStream(file));
+                  rewrite.getRequest().setAttribute(STREAM_KEY, stream);
+                  log.debug("Cloning response OutputStream to file [" + file + "]");
+                  return new MultiOutputStream(stream, outputStream);
                }
                catch (IOException e) {
-                  throw new RewriteException("Could not create file for Stream operation", e);
+                  throw new RewriteException("Could not wrap stream", e);
                }
             }
 
-            Response.withOutputStreamWrappedBy(new ResponseStreamWrapper() {
-
-               @Override
-               public OutputStream wrap(HttpServletRewrite rewrite, OutputStream outputStream)
-               {
-                  try {
-                     BufferedOutputStream stream = new BufferedOutputStream(new FileOutputStream(file));
-                     rewrite.getRequest().setAttribute(STREAM_KEY, stream);
-                     log.debug("Cloning response OutputStream to file [" + file + "]");
-                     return new MultiOutputStream(stream, outputStream);
-                  }
-                  catch (FileNotFoundException e) {
-                     throw new RewriteException("Could not wrap stream", e);
+            @Override
+            public void finish(HttpServletRewrite rewrite)
+            {
+               try {
+                  OutputStream stream = (OutputStream) rewrite.getRequest().getAttribute(STREAM_KEY);
+                  if (stream != null)
+                  {
+                     log.debug("Closing cloned file [" + file + "] OutputStream");
+                     stream.flush();
+                     stream.close();
                   }
-               }
-
-               @Override
-               public void finish(HttpServletRewrite rewrite)
-               {
-                  try {
-                     OutputStream stream = (OutputStream) rewrite.getRequest().getAttribute(STREAM_KEY);
-                     if (stream != null)
-                     {
-                        log.debug("Closing cloned file [" + file + "] OutputStream");
-                        stream.flush();
-                        stream.close();
-                     }
 
-                  }
-                  catch (Exception e) {
-                     throw new RewriteException("Could not close stream", e);
-                  }
                }
-            }).perform(event, context);
-         }
+               catch (Exception e) {
+                  throw new RewriteException("Could not close stream", e);
+               }
+            }
+         }).perform(event, context);
+      }
 
-         @Override
-         public String toString()
-         {
-            return "Stream.to(\"" + target.getPattern() + "\")";
-         }
-      };
+      @Override
+      public String toString()
+      {
+         if (bufferSize > 0)
+            return "Stream.writeBehind(\"" + target.getPattern() + "\", " + bufferSize + ")"
+                     + (block ? "" : ".dropWhenFull()");
+         return "Stream.to(\"" + target.getPattern() + "\")";
+      }
    }
 
    private static class MultiOutputStream extends OutputStream
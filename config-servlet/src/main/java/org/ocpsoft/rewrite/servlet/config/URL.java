@@ -24,6 +24,8 @@ import org.ocpsoft.rewrite.config.Rule;
 import org.ocpsoft.rewrite.config.Operation;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.event.InboundRewrite;
+import org.ocpsoft.rewrite.param.CombinablePattern;
+import org.ocpsoft.rewrite.param.CombinedPatternMatchers;
 import org.ocpsoft.rewrite.param.ConfigurableParameter;
 import org.ocpsoft.rewrite.param.Parameter;
 import org.ocpsoft.rewrite.param.ParameterStore;
@@ -42,9 +44,9 @@ import org.ocpsoft.urlbuilder.Address;
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public abstract class URL extends HttpCondition implements Parameterized
+public abstract class URL extends HttpCondition implements Parameterized, CombinablePattern
 {
-   private final ParameterizedPatternParser expression;
+   private final RegexParameterizedPatternParser expression;
    private boolean requestBinding;
 
    private URL(final String pattern)
@@ -139,7 +141,7 @@ public abstract class URL extends HttpCondition implements Parameterized
          requestURL = event.getAddress().toString();
       }
 
-      return expression.parse(requestURL).submit(event, context);
+      return expression.parse(event, requestURL).submit(event, context);
    }
 
    /**
@@ -157,6 +159,12 @@ public abstract class URL extends HttpCondition implements Parameterized
       return expression;
    }
 
+   @Override
+   public void combine(CombinedPatternMatchers matchers)
+   {
+      matchers.get(URL.class).add(expression);
+   }
+
    @Override
    public Set<String> getRequiredParameterNames()
    {
@@ -28,9 +28,13 @@ import org.ocpsoft.rewrite.param.Parameterized;
 import org.ocpsoft.rewrite.param.ParameterizedPattern;
 import org.ocpsoft.rewrite.param.RegexParameterizedPatternParser;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+import org.ocpsoft.rewrite.util.BoundedCache;
 
 /**
  * A {@link Condition} that inspects the value of {@link HttpServletRequest#getHeader(String)} "User-Agent"
+ * <p>
+ * Device classification is computed at most once per request, and the results for recently seen "User-Agent" and
+ * "Accept" headers are shared between requests.
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
@@ -118,24 +122,69 @@ public abstract class UserAgent extends HttpCondition
       @Override
       public boolean evaluateHttp(HttpServletRewrite event, EvaluationContext context)
       {
-         String userAgentStr = event.getRequest().getHeader("user-agent");
-         String httpAccept = event.getRequest().getHeader("Accept");
-         UserAgentUtil util = new UserAgentUtil(userAgentStr, httpAccept);
+         DeviceClassification device = DeviceClassification.of(event.getRequest());
 
          switch (type)
          {
          case DESKTOP:
-            return !util.detectMobileQuick() && !util.detectTierTablet();
+            return !device.mobile && !device.tablet;
          case MOBILE:
-            return util.detectMobileQuick();
+            return device.mobile;
          case TABLET:
-            return util.detectTierTablet();
+            return device.tablet;
          }
 
          return false;
       }
    }
 
+   /**
+    * The immutable result of classifying a "User-Agent" and "Accept" header pair with {@link UserAgentUtil}.
+    */
+   private static class DeviceClassification
+   {
+      private static final String REQUEST_KEY = DeviceClassification.class.getName() + "_INSTANCE";
+      private static final int MAX_SIZE = 1024;
+
+      private static final BoundedCache<String, DeviceClassification> cache =
+               new BoundedCache<String, DeviceClassification>(MAX_SIZE);
+
+      private final boolean mobile;
+      private final boolean tablet;
+
+      private DeviceClassification(final boolean mobile, final boolean tablet)
+      {
+         this.mobile = mobile;
+         this.tablet = tablet;
+      }
+
+      /**
+       * Get the {@link DeviceClassification} of the given {@link HttpServletRequest}, classifying its headers only if
+       * neither this request nor a recent request with the same headers has been classified.
+       */
+      public static DeviceClassification of(final HttpServletRequest request)
+      {
+         DeviceClassification result = (DeviceClassification) request.getAttribute(REQUEST_KEY);
+         if (result == null)
+         {
+            String userAgent = request.getHeader("user-agent");
+            String httpAccept = request.getHeader("Accept");
+            String key = userAgent + "\n" + httpAccept;
+
+            result = cache.get(key);
+            if (result == null)
+            {
+               UserAgentUtil util = new UserAgentUtil(userAgent, httpAccept);
+               result = new DeviceClassification(util.detectMobileQuick(), util.detectTierTablet());
+               cache.put(key, result);
+            }
+
+            request.setAttribute(REQUEST_KEY, result);
+         }
+         return result;
+      }
+   }
+
    private static class PatternUserAgent extends UserAgent implements Parameterized
    {
       private final RegexParameterizedPatternParser expression;
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.logging.Logger;
+
+/**
+ * An {@link OutputStream} that copies written bytes into a bounded ring buffer, from which a writer thread writes them
+ * to a temporary file next to the target {@link File}. Once the stream is closed and the buffer has been drained, the
+ * temporary file is atomically renamed to the target, so that readers only ever see complete files.
+ * <p>
+ * If the buffer is full because the disk falls behind, writers either block until space is available, or drop the
+ * capture, in which case the temporary file is deleted and the target is left untouched.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+class WriteBehindOutputStream extends OutputStream
+{
+   private static final Logger log = Logger.getLogger(WriteBehindOutputStream.class);
+
+   private static final String EXECUTOR_KEY = WriteBehindOutputStream.class.getName() + "_EXECUTOR";
+
+   private final File target;
+   private final File temp;
+   private final FileOutputStream output;
+   private final boolean block;
+   private final Executor executor;
+
+   private final byte[] ring;
+   private int head = 0;
+   private int count = 0;
+
+   private boolean closed = false;
+   private boolean dropped = false;
+   private boolean draining = false;
+   private boolean finished = false;
+   private IOException failure;
+
+   /**
+    * Create a {@link WriteBehindOutputStream} for the given target {@link File}, buffering up to the given number of
+    * bytes, either blocking or dropping the capture when the buffer is full, and writing on the given {@link Executor}.
+    */
+   WriteBehindOutputStream(File target, int bufferSize, boolean block, Executor executor) throws IOException
+   {
+      this.target = target;
+      this.block = block;
+      this.executor = executor;
+      this.ring = new byte[bufferSize];
+
+      File directory = target.getAbsoluteFile().getParentFile();
+      if (directory != null)
+         directory.mkdirs();
+      this.temp = File.createTempFile(target.getName() + ".", ".tmp", directory);
+      this.output = new FileOutputStream(temp);
+   }
+
+   /**
+    * Get the writer thread of the given {@link ServletContext}, starting it if necessary. Each application writes on a
+    * thread of its own, so that a slow disk of one application does not hold up the others.
+    */
+   static Executor getExecutor(ServletContext context)
+   {
+      ExecutorService executor = (ExecutorService) context.getAttribute(EXECUTOR_KEY);
+      if (executor == null)
+      {
+         synchronized (context)
+         {
+            executor = (ExecutorService) context.getAttribute(EXECUTOR_KEY);
+            if (executor == null)
+            {
+               executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                  @Override
+                  public Thread newThread(Runnable runnable)
+                  {
+                     Thread thread = new Thread(runnable, "rewrite-stream-writer");
+                     thread.setDaemon(true);
+                     return thread;
+                  }
+               });
+               context.setAttribute(EXECUTOR_KEY, executor);
+            }
+         }
+      }
+      return executor;
+   }
+
+   /**
+    * Stop the writer thread of the given {@link ServletContext} once the writes already scheduled are done. Streams
+    * written later are dropped.
+    */
+   static void shutdown(ServletContext context)
+   {
+      ExecutorService executor;
+      synchronized (context)
+      {
+         executor = (ExecutorService) context.getAttribute(EXECUTOR_KEY);
+         context.removeAttribute(EXECUTOR_KEY);
+      }
+
+      if (executor != null)
+         executor.shutdown();
+   }
+
+   @Override
+   public void write(int b) throws IOException
+   {
+      write(new byte[] { (byte) b }, 0, 1);
+   }
+
+   @Override
+   public void write(byte[] bytes, int off, int len) throws IOException
+   {
+      synchronized (this)
+      {
+         if (closed)
+            throw new IOException("Stream closed");
+
+         while (len > 0 && !dropped && failure == null)
+         {
+            int free = ring.length - count;
+            if (free == 0)
+            {
+               if (!block)
+               {
+                  log.debug("Dropping capture of [" + target + "], since writing to disk has fallen behind");
+                  dropped = true;
+                  schedule();
+                  return;
+               }
+
+               try {
+                  wait();
+               }
+               catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  dropped = true;
+                  schedule();
+                  return;
+               }
+               continue;
+            }
+
+            int tail = (head + count) % ring.length;
+            int n = Math.min(len, Math.min(free, ring.length - tail));
+            System.arraycopy(bytes, off, ring, tail, n);
+            count += n;
+            off += n;
+            len -= n;
+            schedule();
+         }
+      }
+   }
+
+   /**
+    * Does not wait for buffered bytes to be written; they are written in the background.
+    */
+   @Override
+   public void flush()
+   {}
+
+   /**
+    * Mark this stream as complete. The target {@link File} is replaced once all buffered bytes have been written.
+    */
+   @Override
+   public void close()
+   {
+      synchronized (this)
+      {
+         if (!closed)
+         {
+            closed = true;
+            schedule();
+         }
+      }
+   }
+
+   /**
+    * Determine whether this capture has been abandoned, either because the buffer was full or because writing failed.
+    */
+   public synchronized boolean isDropped()
+   {
+      return dropped || failure != null;
+   }
+
+   private void schedule()
+   {
+      if (!draining && !finished)
+      {
+         draining = true;
+         try {
+            executor.execute(new Runnable() {
+               @Override
+               public void run()
+               {
+                  drain();
+               }
+            });
+         }
+         catch (RejectedExecutionException e) {
+            log.debug("Dropping capture of [" + target + "], since the writer thread has been stopped");
+            draining = false;
+            dropped = true;
+            finished = true;
+            abandon();
+         }
+      }
+   }
+
+   private void drain()
+   {
+      while (true)
+      {
+         int offset;
+         int length;
+         boolean abandon = false;
+         boolean complete = false;
+         synchronized (this)
+         {
+            if (count == 0 || dropped || failure != null)
+            {
+               draining = false;
+               abandon = dropped || failure != null;
+               complete = !abandon && closed;
+               finished = abandon || complete;
+            }
+            offset = head;
+            length = Math.min(count, ring.length - head);
+         }
+
+         if (abandon)
+            abandon();
+         if (complete)
+            complete();
+         if (abandon || complete || length == 0)
+            return;
+
+         /*
+          * The occupied region is only ever modified by this thread, so it may be written outside the lock.
+          */
+         try {
+            output.write(ring, offset, length);
+         }
+         catch (IOException e) {
+            synchronized (this)
+            {
+               failure = e;
+               notifyAll();
+            }
+            continue;
+         }
+
+         synchronized (this)
+         {
+            head = (head + length) % ring.length;
+            count -= length;
+            notifyAll();
+         }
+      }
+   }
+
+   private void complete()
+   {
+      try {
+         output.close();
+         if (commit(temp, target))
+            log.debug("Completed capture of [" + target + "]");
+         else
+         {
+            log.debug("Discarded capture of [" + target + "]");
+            temp.delete();
+         }
+      }
+      catch (IOException e) {
+         synchronized (this)
+         {
+            failure = e;
+         }
+         abandon();
+      }
+   }
+
+   /**
+    * Replace the target {@link File} with the completely written temporary {@link File}, or return <code>false</code>
+    * to discard the capture instead. Called on the writer thread.
+    */
+   boolean commit(File temp, File target) throws IOException
+   {
+      try {
+         Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                  StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+         Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      return true;
+   }
+
+   private void abandon()
+   {
+      IOException failure;
+      synchronized (this)
+      {
+         failure = this.failure;
+      }
+      if (failure != null)
+         log.warn("Could not capture [" + target + "]", failure);
+
+      try {
+         output.close();
+      }
+      catch (IOException e) {
+         log.debug("Could not close [" + temp + "]", e);
+      }
+      temp.delete();
+   }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config.response;
+
+import java.util.Enumeration;
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Utility for negotiating response content codings with the request 'Accept-Encoding' header.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public final class ContentEncoding
+{
+   private ContentEncoding()
+   {}
+
+   /**
+    * Determine whether the 'Accept-Encoding' header of the given {@link HttpServletRequest} allows the given content
+    * coding, either by name or through the <code>*</code> wildcard, with a non-zero quality value. <code>gzip</code>
+    * also matches its <code>x-gzip</code> alias.
+    */
+   public static boolean isAccepted(HttpServletRequest request, String coding)
+   {
+      return isAccepted(request.getHeaders("Accept-Encoding"), coding);
+   }
+
+   static boolean isAccepted(Enumeration<?> headers, String coding)
+   {
+      coding = coding.toLowerCase(Locale.ENGLISH);
+      Boolean named = null;
+      Boolean wildcard = null;
+      while (headers != null && headers.hasMoreElements())
+      {
+         for (String element : String.valueOf(headers.nextElement()).split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++) {
+               String parameter = parts[i].trim();
+               if (parameter.startsWith("q="))
+               {
+                  try {
+                     accepted = Double.parseDouble(parameter.substring(2).trim()) > 0;
+                  }
+                  catch (NumberFormatException e) {
+                     accepted = false;
+                  }
+               }
+            }
+
+            if (name.equals(coding) || ("gzip".equals(coding) && "x-gzip".equals(name)))
+               named = accepted;
+            else if ("*".equals(name))
+               wildcard = accepted;
+         }
+      }
+      return named != null ? named : wildcard != null && wildcard;
+   }
+}
@@ -3,6 +3,7 @@ package org.ocpsoft.rewrite.servlet.config.response;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.zip.GZIPOutputStream;
 
 import org.ocpsoft.common.util.Streams;
@@ -11,12 +12,31 @@ import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 
 /**
  * A {@link ResponseContentInterceptor} that compresses the response output to GZip format and sets the proper response
- * headers.
+ * headers. When response content is streamed, compression is performed as content is written, after any
+ * {@link StreamingResponseContentInterceptor} instances registered before this one.
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public class GZipResponseContentInterceptor implements ResponseContentInterceptor
+public class GZipResponseContentInterceptor implements StreamingResponseContentInterceptor
 {
+   @Override
+   public boolean isBufferingRequired(HttpServletRewrite event)
+   {
+      return false;
+   }
+
+   @Override
+   public OutputStream intercept(HttpServletRewrite event, OutputStream output)
+   {
+      event.getResponse().addHeader("Content-Encoding", "gzip");
+      try {
+         return new GZIPOutputStream(output);
+      }
+      catch (IOException e) {
+         throw new RewriteException("Failed to GZIP compress output content: ", e);
+      }
+   }
+
    @Override
    public void intercept(HttpServletRewrite event, ResponseContent buffer, ResponseContentInterceptorChain chain)
    {
@@ -15,16 +15,31 @@
  */
 package org.ocpsoft.rewrite.servlet.config.response;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.ocpsoft.rewrite.exception.RewriteException;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 
 /**
  * A {@link ResponseStreamWrapper} that compresses the response output to GZip format and sets the proper response
  * headers.
+ * <p>
+ * Content is compressed as it is written, and every flush pushes the compressed bytes written so far to the client, so
+ * the response is sent with chunked transfer encoding rather than a 'Content-Length'. Content is only compressed if the
+ * request 'Accept-Encoding' header allows GZip, the response is not already encoded, its content type is not one of the
+ * {@link #excludingContentTypes(String...) excluded content types}, and it is at least the
+ * {@link #withMinimumSize(int) minimum size}. Otherwise, it is written unchanged. Either way, the response carries a
+ * 'Vary: Accept-Encoding' header.
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
@@ -32,26 +47,71 @@ public class GZipResponseStreamWrapper implements ResponseStreamWrapper
 {
    public final static String STREAM_KEY = GZipResponseStreamWrapper.class.getName() + "_STREAM";
 
+   private static final String[] COMPRESSED_CONTENT_TYPES = { "image/", "audio/", "video/", "font/woff",
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-bzip2",
+            "application/x-7z-compressed", "application/x-rar-compressed", "application/font-woff" };
+
+   private int level = Deflater.DEFAULT_COMPRESSION;
+   private int minimumSize = 0;
+   private final Set<String> excluded = new LinkedHashSet<String>(Arrays.asList(COMPRESSED_CONTENT_TYPES));
+
+   /**
+    * Compress with the given {@link Deflater} compression level, from {@link Deflater#BEST_SPEED} to
+    * {@link Deflater#BEST_COMPRESSION}.
+    */
+   public GZipResponseStreamWrapper withCompressionLevel(int level)
+   {
+      if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION)
+         throw new IllegalArgumentException("Invalid compression level [" + level + "]");
+      this.level = level;
+      return this;
+   }
+
+   /**
+    * Only compress responses with at least the given number of bytes. Up to this many bytes are held back until the
+    * response is known to be large enough.
+    */
+   public GZipResponseStreamWrapper withMinimumSize(int bytes)
+   {
+      if (bytes < 0)
+         throw new IllegalArgumentException("Minimum size must not be negative.");
+      this.minimumSize = bytes;
+      return this;
+   }
+
+   /**
+    * Do not compress responses whose content type starts with one of the given prefixes, in addition to the
+    * already-compressed image, audio, video, font and archive types excluded by default.
+    */
+   public GZipResponseStreamWrapper excludingContentTypes(String... prefixes)
+   {
+      for (String prefix : prefixes) {
+         excluded.add(prefix.toLowerCase(Locale.ENGLISH));
+      }
+      return this;
+   }
+
    @Override
    public OutputStream wrap(final HttpServletRewrite rewrite, OutputStream outputStream)
    {
-      rewrite.getResponse().setHeader("Content-Encoding", "gzip");
+      /*
+       * The response depends on the request 'Accept-Encoding' header even when it is not compressed, so that caches must
+       * not serve an uncompressed response to clients accepting GZip, nor the other way around.
+       */
+      rewrite.getResponse().addHeader("Vary", "Accept-Encoding");
+      if (!ContentEncoding.isAccepted(rewrite.getRequest(), "gzip"))
+         return outputStream;
 
-      try {
-         GZIPOutputStream stream = new GZIPOutputStream(outputStream);
-         rewrite.getRequest().setAttribute(STREAM_KEY, stream);
-         return stream;
-      }
-      catch (IOException e) {
-         throw new RewriteException("Could not wrap OutputStream", e);
-      }
+      DeferredGZipOutputStream stream = new DeferredGZipOutputStream(rewrite.getResponse(), outputStream);
+      rewrite.getRequest().setAttribute(STREAM_KEY, stream);
+      return stream;
    }
 
    @Override
    public void finish(HttpServletRewrite rewrite)
    {
       try {
-         GZIPOutputStream stream = (GZIPOutputStream) rewrite.getRequest().getAttribute(STREAM_KEY);
+         DeferredGZipOutputStream stream = (DeferredGZipOutputStream) rewrite.getRequest().getAttribute(STREAM_KEY);
          if (stream != null)
          {
             stream.flush();
@@ -62,4 +122,107 @@ public class GZipResponseStreamWrapper implements ResponseStreamWrapper
          throw new RewriteException("Could not finish GZip Encoding", e);
       }
    }
+
+   private boolean isCompressible(HttpServletResponse response)
+   {
+      if (response.containsHeader("Content-Encoding"))
+         return false;
+
+      String contentType = response.getContentType();
+      if (contentType != null)
+      {
+         contentType = contentType.toLowerCase(Locale.ENGLISH);
+         if (contentType.startsWith("image/svg"))
+            return true;
+         for (String prefix : excluded) {
+            if (contentType.startsWith(prefix))
+               return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Holds back content until the {@link GZipResponseStreamWrapper#withMinimumSize(int) minimum size} is reached, then
+    * decides whether to compress the response.
+    */
+   private class DeferredGZipOutputStream extends OutputStream
+   {
+      private final HttpServletResponse response;
+      private final OutputStream output;
+      private ByteArrayOutputStream pending;
+      private OutputStream stream;
+
+      public DeferredGZipOutputStream(HttpServletResponse response, OutputStream output)
+      {
+         this.response = response;
+         this.output = output;
+         this.pending = new ByteArrayOutputStream(Math.min(minimumSize, 8192));
+      }
+
+      @Override
+      public void write(int b) throws IOException
+      {
+         write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] bytes, int off, int len) throws IOException
+      {
+         if (stream == null)
+         {
+            pending.write(bytes, off, len);
+            if (pending.size() >= minimumSize)
+               decide(true);
+         }
+         else
+            stream.write(bytes, off, len);
+      }
+
+      /**
+       * Content held back is not flushed, since the response may still turn out to be too small to compress.
+       */
+      @Override
+      public void flush() throws IOException
+      {
+         if (stream != null)
+            stream.flush();
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         finish();
+         output.close();
+      }
+
+      public void finish() throws IOException
+      {
+         if (stream == null)
+            decide(false);
+
+         if (stream instanceof GZIPOutputStream)
+            ((GZIPOutputStream) stream).finish();
+         else
+            stream.flush();
+      }
+
+      private void decide(boolean large) throws IOException
+      {
+         if (large && isCompressible(response))
+         {
+            response.setHeader("Content-Encoding", "gzip");
+            stream = new GZIPOutputStream(output, 8192, true) {
+               {
+                  def.setLevel(level);
+               }
+            };
+         }
+         else
+            stream = output;
+
+         pending.writeTo(stream);
+         pending = null;
+      }
+   }
 }
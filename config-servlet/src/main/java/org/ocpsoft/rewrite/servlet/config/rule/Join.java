@@ -28,12 +28,17 @@ import org.ocpsoft.rewrite.bind.Binding;
 import org.ocpsoft.rewrite.config.ConditionBuilder;
 import org.ocpsoft.rewrite.config.ConditionVisit;
 import org.ocpsoft.rewrite.config.ConfigurationRuleParameterBuilder;
+import org.ocpsoft.rewrite.config.DispatchKey;
+import org.ocpsoft.rewrite.config.Dispatchable;
 import org.ocpsoft.rewrite.config.ParameterizedCallback;
 import org.ocpsoft.rewrite.config.ParameterizedConditionVisitor;
 import org.ocpsoft.rewrite.config.Rule;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.event.InboundRewrite;
+import org.ocpsoft.rewrite.event.OutboundRewrite;
 import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.param.CombinablePattern;
+import org.ocpsoft.rewrite.param.CombinedPatternMatchers;
 import org.ocpsoft.rewrite.param.Parameter;
 import org.ocpsoft.rewrite.param.ParameterStore;
 import org.ocpsoft.rewrite.param.Parameterized;
@@ -60,7 +65,7 @@ import org.ocpsoft.urlbuilder.AddressBuilderBase;
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
-public class Join implements Rule, JoinPath, Parameterized
+public class Join implements Rule, JoinPath, Parameterized, Dispatchable, CombinablePattern
 {
    private static final String JOIN_DISABLED_KEY = Join.class.getName() + "_DISABLED";
 
@@ -323,6 +328,35 @@ public class Join implements Rule, JoinPath, Parameterized
       }
    }
 
+   @Override
+   public List<DispatchKey> getDispatchKeys()
+   {
+      if (resourcePath == null)
+         return null;
+
+      DispatchKey inbound = DispatchKey.eventType(InboundRewrite.class);
+      DispatchKey outbound = DispatchKey.eventType(OutboundRewrite.class);
+
+      List<DispatchKey> result = new ArrayList<DispatchKey>();
+      for (DispatchKey key : requestPath.getDispatchKeys()) {
+         result.add(inbound.and(key));
+      }
+      for (DispatchKey key : resourcePath.getDispatchKeys()) {
+         if (inboundCorrection)
+            result.add(inbound.and(key));
+         result.add(outbound.and(key));
+      }
+      return result;
+   }
+
+   @Override
+   public void combine(final CombinedPatternMatchers matchers)
+   {
+      requestPath.combine(matchers);
+      if (resourcePath != null)
+         resourcePath.combine(matchers);
+   }
+
    private void saveCurrentJoin(final HttpServletRequest request)
    {
       request.setAttribute(CURRENT_JOIN, this);
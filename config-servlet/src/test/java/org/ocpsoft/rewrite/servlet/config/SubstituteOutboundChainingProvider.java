@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.rewrite.config.Configuration;
+import org.ocpsoft.rewrite.config.ConfigurationBuilder;
+import org.ocpsoft.rewrite.config.Direction;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class SubstituteOutboundChainingProvider extends HttpConfigurationProvider
+{
+   @Override
+   public int priority()
+   {
+      return 0;
+   }
+
+   @Override
+   public Configuration getConfiguration(final ServletContext context)
+   {
+      Configuration config = ConfigurationBuilder
+               .begin()
+
+               .addRule()
+               .when(Direction.isInbound().and(Path.matches("/chain")))
+               .perform(Redirect.temporary(context.getContextPath() + "/original"))
+
+               /*
+                * Outbound rules are evaluated last to first, so this rule sees the address substituted by the next one.
+                * It can never match the original address.
+                */
+               .addRule()
+               .when(Direction.isOutbound().and(Path.matches("/substituted")))
+               .perform(Substitute.with("/final"))
+
+               .addRule()
+               .when(Direction.isOutbound().and(Path.matches("/original")))
+               .perform(Substitute.with("/substituted"))
+
+               .addRule()
+               .when(Direction.isInbound().and(Path.matches("/final")))
+               .perform(SendStatus.code(200))
+
+      ;
+
+      return config;
+   }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.impl;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.ocpsoft.rewrite.servlet.AsyncRequest;
+import org.ocpsoft.rewrite.servlet.spi.AsyncRequestProvider;
+
+/**
+ * Implementation of {@link AsyncRequestProvider} that uses {@link ServletRequest#startAsync(ServletRequest,
+ * ServletResponse)} if a Servlet 3.0 environment is detected and the request supports asynchronous processing.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class Servlet3AsyncRequestProvider implements AsyncRequestProvider
+{
+
+   @Override
+   public int priority()
+   {
+      return 10;
+   }
+
+   @Override
+   public AsyncRequest startAsync(ServletRequest request, ServletResponse response, ServletContext context)
+   {
+      if (context.getMajorVersion() >= 3 && request.isAsyncSupported() && !request.isAsyncStarted()) {
+         return new Servlet3AsyncRequest(request.startAsync(request, response));
+      }
+      return null;
+   }
+
+   private static class Servlet3AsyncRequest implements AsyncRequest
+   {
+      private final AsyncContext context;
+
+      public Servlet3AsyncRequest(AsyncContext context)
+      {
+         this.context = context;
+      }
+
+      @Override
+      public ServletResponse getResponse()
+      {
+         return context.getResponse();
+      }
+
+      @Override
+      public void setTimeout(long timeout)
+      {
+         context.setTimeout(timeout);
+      }
+
+      @Override
+      public void complete()
+      {
+         context.complete();
+      }
+   }
+
+}
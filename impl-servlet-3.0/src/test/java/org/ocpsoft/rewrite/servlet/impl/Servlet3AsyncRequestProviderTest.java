@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.impl;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.ocpsoft.rewrite.servlet.AsyncRequest;
+import org.ocpsoft.rewrite.servlet.spi.AsyncRequestProvider;
+
+public class Servlet3AsyncRequestProviderTest
+{
+
+   @Test
+   public void testShouldStartAsyncForServlet3()
+   {
+
+      // GIVEN a Servlet 3.0 container
+      ServletContext servletContext = mock(ServletContext.class);
+      when(servletContext.getMajorVersion()).thenReturn(3);
+
+      // AND a request that supports asynchronous processing
+      HttpServletRequest request = mock(HttpServletRequest.class);
+      HttpServletResponse response = mock(HttpServletResponse.class);
+      AsyncContext asyncContext = mock(AsyncContext.class);
+      when(request.isAsyncSupported()).thenReturn(true);
+      when(request.startAsync(request, response)).thenReturn(asyncContext);
+      when(asyncContext.getResponse()).thenReturn(response);
+
+      // WHEN the provider is asked to start asynchronous processing
+      AsyncRequestProvider provider = new Servlet3AsyncRequestProvider();
+      AsyncRequest asyncRequest = provider.startAsync(request, response, servletContext);
+
+      // THEN it should return a handle for the AsyncContext
+      assertNotNull(asyncRequest);
+      assertSame(response, asyncRequest.getResponse());
+      asyncRequest.complete();
+      verify(asyncContext).complete();
+
+   }
+
+   @Test
+   public void testShouldReturnNullIfAsyncNotSupported()
+   {
+
+      // GIVEN a Servlet 3.0 container
+      ServletContext servletContext = mock(ServletContext.class);
+      when(servletContext.getMajorVersion()).thenReturn(3);
+
+      // AND a request that does not support asynchronous processing
+      HttpServletRequest request = mock(HttpServletRequest.class);
+      HttpServletResponse response = mock(HttpServletResponse.class);
+      when(request.isAsyncSupported()).thenReturn(false);
+
+      // WHEN the provider is asked to start asynchronous processing
+      AsyncRequestProvider provider = new Servlet3AsyncRequestProvider();
+      AsyncRequest asyncRequest = provider.startAsync(request, response, servletContext);
+
+      // THEN it should return null without starting it
+      assertNull(asyncRequest);
+      verify(request, never()).startAsync(request, response);
+
+   }
+
+   @Test
+   public void testShouldReturnNullForServlet25()
+   {
+
+      // GIVEN a Servlet 2.5 container
+      ServletContext servletContext = mock(ServletContext.class);
+      when(servletContext.getMajorVersion()).thenReturn(2);
+      HttpServletRequest request = mock(HttpServletRequest.class);
+      HttpServletResponse response = mock(HttpServletResponse.class);
+      when(request.isAsyncSupported()).thenThrow(new IllegalStateException("Call not allowed"));
+
+      // WHEN the provider is asked to start asynchronous processing
+      AsyncRequestProvider provider = new Servlet3AsyncRequestProvider();
+      AsyncRequest asyncRequest = provider.startAsync(request, response, servletContext);
+
+      // THEN it should return null
+      assertNull(asyncRequest);
+
+   }
+
+}
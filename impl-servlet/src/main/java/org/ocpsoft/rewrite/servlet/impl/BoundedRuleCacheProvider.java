@@ -0,0 +1,248 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.impl;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.rewrite.config.Cacheable;
+import org.ocpsoft.rewrite.config.Configuration;
+import org.ocpsoft.rewrite.config.ConfigurationLoader;
+import org.ocpsoft.rewrite.config.Rule;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.event.InboundRewrite;
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+import org.ocpsoft.rewrite.spi.RuleCacheProvider;
+import org.ocpsoft.rewrite.util.BoundedCache;
+
+/**
+ * Default {@link RuleCacheProvider} for HTTP environments. Remembers the {@link Rule} instances that may match requests
+ * with a given direction, request method, and request path, so that {@link Rule} instances composed entirely of
+ * {@link Cacheable} conditions that did not match are not evaluated again for the same request.
+ * <p>
+ * Entries are held in a {@link BoundedCache}, evicting the least recently used entries once full, and are discarded
+ * whenever the {@link ConfigurationLoader} produces a new {@link Configuration}. The maximum number of cached entries
+ * defaults to {@value #DEFAULT_SIZE}. To change it, or to disable rule caching with a value of <code>0</code>, add the
+ * following servlet context init parameter to <code>web.xml</code>:
+ * 
+ * <pre>
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.config.RULE_CACHE_SIZE&lt;/param-name&gt;
+ *   &lt;param-value&gt;1024&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * </pre>
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class BoundedRuleCacheProvider implements RuleCacheProvider
+{
+   private static final String RULE_CACHE_SIZE = "org.ocpsoft.rewrite.config.RULE_CACHE_SIZE";
+   private static final int DEFAULT_SIZE = 1024;
+
+   private volatile int capacity = -1;
+   private volatile Configuration configuration;
+   private volatile BoundedCache<Object, List<Rule>> cache;
+
+   public BoundedRuleCacheProvider()
+   {}
+
+   /**
+    * Create a new {@link BoundedRuleCacheProvider} holding at most the given number of entries, ignoring any servlet
+    * context init parameter.
+    */
+   public BoundedRuleCacheProvider(final int capacity)
+   {
+      setCapacity(capacity);
+   }
+
+   @Override
+   public Object createKey(final Rewrite event, final EvaluationContext context)
+   {
+      if (!(event instanceof HttpServletRewrite))
+         return null;
+
+      HttpServletRewrite rewrite = (HttpServletRewrite) event;
+      if (capacity < 0)
+         setCapacity(getCapacity(rewrite.getServletContext()));
+
+      if (capacity == 0)
+         return null;
+
+      Configuration current = (Configuration) context.get(Configuration.class);
+      if (current != configuration)
+         invalidate(current);
+
+      return new Key(current, event instanceof InboundRewrite, rewrite.getRequest().getMethod(),
+               HttpRuleIndex.getPath(rewrite));
+   }
+
+   @Override
+   public List<Rule> get(final Object key)
+   {
+      BoundedCache<Object, List<Rule>> current = cache;
+      if (key == null || current == null)
+         return null;
+
+      return current.get(key);
+   }
+
+   @Override
+   public void put(final Object key, final List<Rule> rules)
+   {
+      BoundedCache<Object, List<Rule>> current = cache;
+      if (key == null || rules == null || current == null)
+         return;
+
+      current.put(key, Collections.unmodifiableList(rules));
+   }
+
+   /**
+    * Discard all cached entries, and begin caching entries for the given {@link Configuration}.
+    */
+   public void invalidate(final Configuration configuration)
+   {
+      synchronized (this)
+      {
+         if (cache != null)
+            cache.clear();
+         this.configuration = configuration;
+      }
+   }
+
+   /**
+    * Get the number of lookups that returned a cached entry.
+    */
+   public long getHitCount()
+   {
+      BoundedCache<Object, List<Rule>> current = cache;
+      return current == null ? 0 : current.getHitCount();
+   }
+
+   /**
+    * Get the number of lookups that did not return a cached entry.
+    */
+   public long getMissCount()
+   {
+      BoundedCache<Object, List<Rule>> current = cache;
+      return current == null ? 0 : current.getMissCount();
+   }
+
+   /**
+    * Get the number of entries discarded to make room for new entries.
+    */
+   public long getEvictionCount()
+   {
+      BoundedCache<Object, List<Rule>> current = cache;
+      return current == null ? 0 : current.getEvictionCount();
+   }
+
+   /**
+    * Get the number of entries currently cached.
+    */
+   public int size()
+   {
+      BoundedCache<Object, List<Rule>> current = cache;
+      return current == null ? 0 : current.size();
+   }
+
+   private void setCapacity(final int capacity)
+   {
+      synchronized (this)
+      {
+         this.cache = capacity > 0 ? new BoundedCache<Object, List<Rule>>(capacity) : null;
+         this.capacity = Math.max(0, capacity);
+      }
+   }
+
+   private int getCapacity(final ServletContext context)
+   {
+      String value = context == null ? null : context.getInitParameter(RULE_CACHE_SIZE);
+      if (value == null || value.trim().isEmpty())
+         return DEFAULT_SIZE;
+
+      try {
+         return Integer.parseInt(value.trim());
+      }
+      catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Invalid value [" + value + "] for servlet context init parameter ["
+                  + RULE_CACHE_SIZE + "], must be an integer.", e);
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "BoundedRuleCacheProvider [capacity=" + capacity + ", hits=" + getHitCount() + ", misses="
+               + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+   }
+
+   /**
+    * Identifies requests with the same direction, request method, and request path, under the same
+    * {@link Configuration}.
+    */
+   private static class Key
+   {
+      private final Configuration configuration;
+      private final boolean inbound;
+      private final String method;
+      private final String path;
+      private final int hashCode;
+
+      public Key(final Configuration configuration, final boolean inbound, final String method, final String path)
+      {
+         this.configuration = configuration;
+         this.inbound = inbound;
+         this.method = method;
+         this.path = path;
+
+         int result = System.identityHashCode(configuration);
+         result = 31 * result + (inbound ? 1 : 0);
+         result = 31 * result + (method == null ? 0 : method.hashCode());
+         result = 31 * result + (path == null ? 0 : path.hashCode());
+         this.hashCode = result;
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return hashCode;
+      }
+
+      @Override
+      public boolean equals(final Object obj)
+      {
+         if (this == obj)
+            return true;
+         if (!(obj instanceof Key))
+            return false;
+
+         Key other = (Key) obj;
+         return configuration == other.configuration
+                  && inbound == other.inbound
+                  && (method == null ? other.method == null : method.equals(other.method))
+                  && (path == null ? other.path == null : path.equals(other.path));
+      }
+
+      @Override
+      public String toString()
+      {
+         return (inbound ? "inbound " : "outbound ") + method + " " + path;
+      }
+   }
+}
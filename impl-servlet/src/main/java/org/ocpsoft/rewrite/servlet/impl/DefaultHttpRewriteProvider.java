@@ -16,7 +16,10 @@
 package org.ocpsoft.rewrite.servlet.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.Map.Entry;
 
 import javax.servlet.ServletContext;
@@ -25,8 +28,12 @@ import org.ocpsoft.common.services.NonEnriching;
 import org.ocpsoft.common.services.ServiceLoader;
 import org.ocpsoft.common.util.Iterators;
 import org.ocpsoft.logging.Logger;
+import org.ocpsoft.rewrite.config.Cacheable;
+import org.ocpsoft.rewrite.config.CompositeCondition;
+import org.ocpsoft.rewrite.config.Condition;
 import org.ocpsoft.rewrite.config.Configuration;
 import org.ocpsoft.rewrite.config.ConfigurationLoader;
+import org.ocpsoft.rewrite.config.IndexedConfiguration;
 import org.ocpsoft.rewrite.config.Operation;
 import org.ocpsoft.rewrite.config.Rule;
 import org.ocpsoft.rewrite.context.RewriteState;
@@ -36,13 +43,13 @@ import org.ocpsoft.rewrite.exception.RewriteException;
 import org.ocpsoft.rewrite.param.DefaultParameterValueStore;
 import org.ocpsoft.rewrite.param.Parameter;
 import org.ocpsoft.rewrite.param.ParameterStore;
-import org.ocpsoft.rewrite.param.ParameterValueStore;
 import org.ocpsoft.rewrite.servlet.event.BaseRewrite.ServletRewriteFlow;
 import org.ocpsoft.rewrite.servlet.http.HttpRewriteProvider;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 import org.ocpsoft.rewrite.spi.RuleCacheProvider;
 import org.ocpsoft.rewrite.util.ParameterUtils;
 import org.ocpsoft.rewrite.util.ServiceLogger;
+import org.ocpsoft.urlbuilder.Address;
 
 /**
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
@@ -57,6 +64,7 @@ public class DefaultHttpRewriteProvider extends HttpRewriteProvider implements N
    private static Logger log = Logger.getLogger(DefaultHttpRewriteProvider.class);
    private volatile ConfigurationLoader loader;
    private volatile List<RuleCacheProvider> ruleCacheProviders;
+   private volatile CacheableRules cacheableRules;
 
    @Override
    @SuppressWarnings("unchecked")
@@ -110,96 +118,34 @@ public class DefaultHttpRewriteProvider extends HttpRewriteProvider implements N
       }
 
       Configuration compiledConfiguration = loader.loadConfiguration(servletContext);
-      List<Rule> rules = compiledConfiguration.getRules();
 
-      final EvaluationContextImpl context = new EvaluationContextImpl();
+      final EvaluationContextImpl context = new EvaluationContextImpl(false);
 
-      Object cacheKey = null;
-      for (int i = 0; i < ruleCacheProviders.size(); i++)
+      Object[] cacheKeys = createCacheKeys(compiledConfiguration, event, context);
+      List<Rule> rules = getCachedRules(cacheKeys, event);
+      boolean[] excluded = null;
+      if (rules == null)
       {
-         RuleCacheProvider provider = ruleCacheProviders.get(i);
-
-         cacheKey = provider.createKey(event, context);
-         final List<Rule> list = provider.get(cacheKey);
-         if (list != null && !list.isEmpty())
-         {
-            if (log.isDebugEnabled())
-               log.debug("Using cached ruleset for event [" + event + "] from provider [" + provider + "].");
-            for (int j = 0; j < list.size(); j++)
-            {
-               Rule rule = list.get(j);
-               try {
-                  event.getEvaluatedRules().add(rule);
-
-                  context.clear();
-                  DefaultParameterValueStore values = new DefaultParameterValueStore();
-                  context.put(ParameterValueStore.class, values);
-                  context.setState(RewriteState.EVALUATING);
-
-                  if (rule.evaluate(event, context))
-                  {
-                     if (handleBindings(event, context, values))
-                     {
-                        context.setState(RewriteState.PERFORMING);
-                        if (log.isDebugEnabled())
-                           log.debug("Rule [" + rule + "] matched and will be performed.");
-
-                        List<Operation> preOperations = context.getPreOperations();
-                        for (int k = 0; k < preOperations.size(); k++)
-                        {
-                           preOperations.get(k).perform(event, context);
-                        }
-
-                        if (event.getFlow().is(ServletRewriteFlow.HANDLED))
-                        {
-                           return;
-                        }
-
-                        rule.perform(event, context);
-
-                        if (event.getFlow().is(ServletRewriteFlow.HANDLED))
-                        {
-                           return;
-                        }
-
-                        List<Operation> postOperations = context.getPostOperations();
-                        for (int k = 0; k < postOperations.size(); k++)
-                        {
-                           postOperations.get(k).perform(event, context);
-                        }
-
-                        if (event.getFlow().is(ServletRewriteFlow.HANDLED))
-                        {
-                           return;
-                        }
-                     }
-                  }
-                  else
-                  {
-                     event.getEvaluatedRules().remove(rule);
-                     break;
-                  }
-               }
-               catch (Exception e) {
-                  throw new RewriteException("Error during [" + event + "] while executing rule [" + rule + "]", e);
-               }
-            }
-         }
+         rules = getCandidateRules(compiledConfiguration, event);
+         if (cacheKeys != null)
+            excluded = new boolean[rules.size()];
       }
 
+      /*
+       * Rules evaluated after a rule has replaced the address were not evaluated against the cached path.
+       */
+      Address address = event.getAddress();
+
       /*
        * Highly optimized loop - for performance reasons. Think before you change this!
        */
-      List<Rule> cacheable = new ArrayList<Rule>();
       for (int i = 0; i < rules.size(); i++)
       {
          Rule rule = rules.get(i);
          try {
             event.getEvaluatedRules().add(rule);
 
-            context.clear();
-            DefaultParameterValueStore values = new DefaultParameterValueStore();
-            context.put(ParameterValueStore.class, values);
+            DefaultParameterValueStore values = context.reset();
 
             context.setState(RewriteState.EVALUATING);
             if (rule.evaluate(event, context))
@@ -209,7 +155,6 @@ public class DefaultHttpRewriteProvider extends HttpRewriteProvider implements N
                   context.setState(RewriteState.PERFORMING);
                   if (log.isDebugEnabled())
                      log.debug("Rule [" + rule + "] matched and will be performed.");
-                  cacheable.add(rule);
                   List<Operation> preOperations = context.getPreOperations();
                   for (int k = 0; k < preOperations.size(); k++)
                   {
@@ -243,6 +188,8 @@ public class DefaultHttpRewriteProvider extends HttpRewriteProvider implements N
             else
             {
                event.getEvaluatedRules().remove(rule);
+               if (excluded != null && event.getAddress() == address)
+                  excluded[i] = isCacheable(compiledConfiguration, rule);
             }
          }
          catch (Exception e) {
@@ -250,13 +197,8 @@ public class DefaultHttpRewriteProvider extends HttpRewriteProvider implements N
          }
       }
 
-      if (!cacheable.isEmpty())
-      {
-         for (int i = 0; i < ruleCacheProviders.size(); i++)
-         {
-            ruleCacheProviders.get(i).put(cacheKey, cacheable);
-         }
-      }
+      if (excluded != null)
+         putCachedRules(cacheKeys, rules, excluded);
    }
 
    private void rewriteOutbound(HttpServletRewrite event)
@@ -272,96 +214,35 @@ public class DefaultHttpRewriteProvider extends HttpRewriteProvider implements N
       }
 
       Configuration compiledConfiguration = loader.loadConfiguration(servletContext);
-      List<Rule> rules = compiledConfiguration.getRules();
 
-      final EvaluationContextImpl context = new EvaluationContextImpl();
+      final EvaluationContextImpl context = new EvaluationContextImpl(false);
 
-      Object cacheKey = null;
-      for (int i = ruleCacheProviders.size() - 1; i >= 0; i--)
+      Object[] cacheKeys = createCacheKeys(compiledConfiguration, event, context);
+      List<Rule> candidates = getCachedRules(cacheKeys, event);
+      boolean[] excluded = null;
+      if (candidates == null)
       {
-         RuleCacheProvider provider = ruleCacheProviders.get(i);
-
-         cacheKey = provider.createKey(event, context);
-         final List<Rule> list = provider.get(cacheKey);
-         if (list != null && !list.isEmpty())
-         {
-            if (log.isDebugEnabled())
-               log.debug("Using cached ruleset for event [" + event + "] from provider [" + provider + "].");
-            for (int j = list.size() - 1; j >= 0; j--)
-            {
-               Rule rule = list.get(j);
-               try {
-                  event.getEvaluatedRules().add(rule);
-
-                  context.clear();
-                  DefaultParameterValueStore values = new DefaultParameterValueStore();
-                  context.put(ParameterValueStore.class, values);
-                  context.setState(RewriteState.EVALUATING);
-
-                  if (rule.evaluate(event, context))
-                  {
-                     if (handleBindings(event, context, values))
-                     {
-                        context.setState(RewriteState.PERFORMING);
-                        if (log.isDebugEnabled())
-                           log.debug("Rule [" + rule + "] matched and will be performed.");
-
-                        List<Operation> preOperations = context.getPreOperations();
-                        for (int k = 0; k < preOperations.size(); k++)
-                        {
-                           preOperations.get(k).perform(event, context);
-                        }
-
-                        if (event.getFlow().is(ServletRewriteFlow.HANDLED))
-                        {
-                           return;
-                        }
-
-                        rule.perform(event, context);
-
-                        if (event.getFlow().is(ServletRewriteFlow.HANDLED))
-                        {
-                           return;
-                        }
-
-                        List<Operation> postOperations = context.getPostOperations();
-                        for (int k = 0; k < postOperations.size(); k++)
-                        {
-                           postOperations.get(k).perform(event, context);
-                        }
-
-                        if (event.getFlow().is(ServletRewriteFlow.HANDLED))
-                        {
-                           return;
-                        }
-                     }
-                  }
-                  else
-                  {
-                     event.getEvaluatedRules().remove(rule);
-                     break;
-                  }
-               }
-               catch (Exception e) {
-                  throw new RewriteException("Error during [" + event + "] while executing rule [" + rule + "]", e);
-               }
-            }
-         }
+         candidates = getCandidateRules(compiledConfiguration, event);
+         if (cacheKeys != null)
+            excluded = new boolean[candidates.size()];
       }
+      List<Rule> rules = candidates;
+
+      /*
+       * Rules evaluated after a rule has replaced the address were not evaluated against the cached path.
+       */
+      Address address = event.getAddress();
 
       /*
        * Highly optimized loop - for performance reasons. Think before you change this!
        */
-      List<Rule> cacheable = new ArrayList<Rule>();
       for (int i = rules.size() - 1; i >= 0; i--)
       {
          Rule rule = rules.get(i);
          try {
             event.getEvaluatedRules().add(rule);
 
-            context.clear();
-            DefaultParameterValueStore values = new DefaultParameterValueStore();
-            context.put(ParameterValueStore.class, values);
+            DefaultParameterValueStore values = context.reset();
 
             context.setState(RewriteState.EVALUATING);
             if (rule.evaluate(event, context))
@@ -371,7 +252,6 @@ public class DefaultHttpRewriteProvider extends HttpRewriteProvider implements N
                   context.setState(RewriteState.PERFORMING);
                   if (log.isDebugEnabled())
                      log.debug("Rule [" + rule + "] matched and will be performed.");
-                  cacheable.add(rule);
                   List<Operation> preOperations = context.getPreOperations();
                   for (int k = 0; k < preOperations.size(); k++)
                   {
@@ -400,10 +280,22 @@ public class DefaultHttpRewriteProvider extends HttpRewriteProvider implements N
                   {
                      break;
                   }
+
+                  /*
+                   * Candidates were selected for the original address, so once it has been replaced (e.g. by
+                   * Substitute or EncodeQuery) the remaining rules must all be evaluated, as without the index.
+                   */
+                  if (rules == candidates && event.getAddress() != address)
+                  {
+                     rules = compiledConfiguration.getRules();
+                     i = rules.indexOf(rule);
+                  }
                }
             }
             else {
                event.getEvaluatedRules().remove(rule);
+               if (excluded != null && rules == candidates && event.getAddress() == address)
+                  excluded[i] = isCacheable(compiledConfiguration, rule);
             }
          }
          catch (Exception e) {
@@ -411,13 +303,125 @@ public class DefaultHttpRewriteProvider extends HttpRewriteProvider implements N
          }
       }
 
-      if (!cacheable.isEmpty())
+      if (excluded != null)
+         putCachedRules(cacheKeys, candidates, excluded);
+   }
+
+   /**
+    * Create a key for the given event from each {@link RuleCacheProvider}, or return <code>null</code> if no
+    * {@link RuleCacheProvider} is able to cache the given event.
+    */
+   private Object[] createCacheKeys(final Configuration configuration, final HttpServletRewrite event,
+            final EvaluationContextImpl context)
+   {
+      if (ruleCacheProviders.isEmpty())
+         return null;
+
+      context.put(Configuration.class, configuration);
+
+      Object[] result = null;
+      for (int i = 0; i < ruleCacheProviders.size(); i++)
+      {
+         Object key = ruleCacheProviders.get(i).createKey(event, context);
+         if (key != null)
+         {
+            if (result == null)
+               result = new Object[ruleCacheProviders.size()];
+            result[i] = key;
+         }
+      }
+
+      return result;
+   }
+
+   /**
+    * Return the cached {@link Rule} instances that may match the given event, or <code>null</code> if none were cached.
+    */
+   private List<Rule> getCachedRules(final Object[] cacheKeys, final HttpServletRewrite event)
+   {
+      if (cacheKeys == null)
+         return null;
+
+      for (int i = 0; i < cacheKeys.length; i++)
+      {
+         if (cacheKeys[i] != null)
+         {
+            RuleCacheProvider provider = ruleCacheProviders.get(i);
+            List<Rule> result = provider.get(cacheKeys[i]);
+            if (result != null)
+            {
+               if (log.isDebugEnabled())
+                  log.debug("Using cached ruleset for event [" + event + "] from provider [" + provider + "].");
+               return result;
+            }
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Cache the given {@link Rule} instances, except those excluded because they did not match and never will for an
+    * event with the same cache key.
+    */
+   private void putCachedRules(final Object[] cacheKeys, final List<Rule> rules, final boolean[] excluded)
+   {
+      List<Rule> cacheable = new ArrayList<Rule>(rules.size());
+      for (int i = 0; i < excluded.length; i++)
+      {
+         if (!excluded[i])
+            cacheable.add(rules.get(i));
+      }
+
+      for (int i = 0; i < cacheKeys.length; i++)
+      {
+         if (cacheKeys[i] != null)
+            ruleCacheProviders.get(i).put(cacheKeys[i], cacheable);
+      }
+   }
+
+   /**
+    * Return <code>true</code> if the result of the given {@link Rule} depends only on the {@link Cacheable} conditions
+    * from which it is composed.
+    */
+   private boolean isCacheable(final Configuration configuration, final Rule rule)
+   {
+      CacheableRules cacheable = cacheableRules;
+      if (cacheable == null || cacheable.configuration != configuration)
+      {
+         cacheable = new CacheableRules(configuration);
+         cacheableRules = cacheable;
+      }
+      return cacheable.rules.contains(rule);
+   }
+
+   private static boolean isCacheable(final Condition condition)
+   {
+      if (!(condition instanceof Cacheable) || !((Cacheable) condition).isCacheable())
+         return false;
+
+      if (condition instanceof CompositeCondition)
       {
-         for (int i = ruleCacheProviders.size() - 1; i >= 0; i--)
+         List<Condition> conditions = ((CompositeCondition) condition).getConditions();
+         if (conditions != null)
          {
-            ruleCacheProviders.get(i).put(cacheKey, cacheable);
+            for (Condition child : conditions) {
+               if (child != null && !isCacheable(child))
+                  return false;
+            }
          }
       }
+      return true;
+   }
+
+   /**
+    * Return only the {@link Rule} instances that may match the given event, if the {@link Configuration} has been
+    * indexed; otherwise, return all {@link Rule} instances.
+    */
+   private List<Rule> getCandidateRules(final Configuration configuration, final HttpServletRewrite event)
+   {
+      if (configuration instanceof IndexedConfiguration)
+         return ((IndexedConfiguration) configuration).getRuleIndex().getCandidates(event);
+      return configuration.getRules();
    }
 
    private boolean handleBindings(final HttpServletRewrite event, final EvaluationContextImpl context,
@@ -440,6 +444,24 @@ public class DefaultHttpRewriteProvider extends HttpRewriteProvider implements N
       return result;
    }
 
+   /**
+    * The {@link Rule} instances of a {@link Configuration} composed entirely of {@link Cacheable} conditions.
+    */
+   private static class CacheableRules
+   {
+      private final Configuration configuration;
+      private final Set<Rule> rules = Collections.newSetFromMap(new IdentityHashMap<Rule, Boolean>());
+
+      public CacheableRules(final Configuration configuration)
+      {
+         this.configuration = configuration;
+         for (Rule rule : configuration.getRules()) {
+            if (isCacheable(rule))
+               rules.add(rule);
+         }
+      }
+   }
+
    @Override
    public void shutdown(ServletContext context)
    {}
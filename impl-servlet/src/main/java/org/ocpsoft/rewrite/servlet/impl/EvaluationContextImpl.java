@@ -20,11 +20,14 @@ import java.util.Collections;
 import java.util.List;
 
 import org.ocpsoft.rewrite.config.Operation;
+import org.ocpsoft.rewrite.config.Rule;
 import org.ocpsoft.rewrite.context.ContextBase;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.context.RewriteState;
 import org.ocpsoft.rewrite.param.DefaultParameterStore;
+import org.ocpsoft.rewrite.param.DefaultParameterValueStore;
 import org.ocpsoft.rewrite.param.ParameterStore;
+import org.ocpsoft.rewrite.param.ParameterValueStore;
 
 /**
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
@@ -35,12 +38,23 @@ public class EvaluationContextImpl extends ContextBase implements EvaluationCont
    private final List<Operation> preOperations = new ArrayList<Operation>();
    private final List<Operation> postOperations = new ArrayList<Operation>();
    private RewriteState state;
+   private DefaultParameterValueStore values;
 
    public EvaluationContextImpl()
    {
       put(ParameterStore.class, new DefaultParameterStore());
    }
 
+   /**
+    * Create a new {@link EvaluationContextImpl} without an initial {@link ParameterStore}, for use when each evaluated
+    * {@link Rule} supplies its own.
+    */
+   EvaluationContextImpl(final boolean withParameterStore)
+   {
+      if (withParameterStore)
+         put(ParameterStore.class, new DefaultParameterStore());
+   }
+
    @Override
    public void addPreOperation(final Operation operation)
    {
@@ -81,12 +95,27 @@ public class EvaluationContextImpl extends ContextBase implements EvaluationCont
    @Override
    public void clear()
    {
-      this.postOperations.clear();
+      this.preOperations.clear();
       this.postOperations.clear();
       state = null;
       super.clear();
    }
 
+   /**
+    * Clears the state of this context, then installs an empty {@link DefaultParameterValueStore} that is reused each
+    * time this method is called. Evaluating a {@link Rule} after calling this method requires no further allocation.
+    */
+   public DefaultParameterValueStore reset()
+   {
+      clear();
+      if (values == null)
+         values = new DefaultParameterValueStore();
+      else
+         values.clear();
+      put(ParameterValueStore.class, values);
+      return values;
+   }
+
    @Override
    public RewriteState getState()
    {
@@ -17,6 +17,7 @@ package org.ocpsoft.rewrite.servlet.impl;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -44,6 +45,7 @@ import org.ocpsoft.rewrite.servlet.RewriteWrappedResponse;
 import org.ocpsoft.rewrite.servlet.config.response.ResponseContent;
 import org.ocpsoft.rewrite.servlet.config.response.ResponseContentInterceptor;
 import org.ocpsoft.rewrite.servlet.config.response.ResponseStreamWrapper;
+import org.ocpsoft.rewrite.servlet.config.response.StreamingResponseContentInterceptor;
 import org.ocpsoft.rewrite.servlet.event.BaseRewrite.ServletRewriteFlow;
 import org.ocpsoft.rewrite.servlet.event.OutboundServletRewrite;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
@@ -85,6 +87,8 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
    private List<ResponseStreamWrapper> responseStreamWrappers = new ArrayList<ResponseStreamWrapper>();
 
    private boolean contentWritten = false;
+   private boolean contentBuffered = false;
+   private OutputStream streamedResponseContent = null;
 
    private PrintWriter printWriter;
    private ServletOutputStream outputStream = null;
@@ -134,6 +138,42 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
       this.contentWritten = true;
    }
 
+   /**
+    * Get the {@link OutputStream} through which response content is pushed to all registered
+    * {@link StreamingResponseContentInterceptor} instances, opening it on first access; or <code>null</code> if
+    * response content must be buffered.
+    */
+   private OutputStream getStreamedResponseContent()
+   {
+      if (streamedResponseContent == null && !contentBuffered)
+      {
+         HttpServletRewrite event = new HttpBufferRewriteImpl(request, this, servletContext);
+         for (ResponseContentInterceptor interceptor : responseContentInterceptors) {
+            if (!(interceptor instanceof StreamingResponseContentInterceptor)
+                     || ((StreamingResponseContentInterceptor) interceptor).isBufferingRequired(event))
+            {
+               contentBuffered = true;
+               return null;
+            }
+         }
+
+         try {
+            lockStreams();
+            OutputStream stream = new UnclosableOutputStream(isResponseStreamWrapped() ? getWrappedOutputStream()
+                     : super.getOutputStream());
+            for (int i = responseContentInterceptors.size() - 1; i >= 0; i--) {
+               stream = ((StreamingResponseContentInterceptor) responseContentInterceptors.get(i)).intercept(event,
+                        stream);
+            }
+            streamedResponseContent = stream;
+         }
+         catch (IOException e) {
+            throw new RewriteException("Could not get response output stream.", e);
+         }
+      }
+      return streamedResponseContent;
+   }
+
    /**
     * Cause any buffered {@link ServletResponse} content to be processed and flushed to the client.
     */
@@ -142,7 +182,16 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
    {
       if (isResponseContentIntercepted())
       {
+         if (getStreamedResponseContent() != null)
+         {
+            finishStreamedContent();
+            return;
+         }
+
          try {
+            if (printWriter != null) {
+               printWriter.flush();
+            }
             bufferedResponseContent.close();
 
             ResponseContent buffer = new ResponseContentImpl(bufferedResponseContent.toByteArray(),
@@ -153,7 +202,7 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
             if (!Charset.forName(getCharacterEncoding()).equals(buffer.getCharset()))
                setCharacterEncoding(buffer.getCharset().name());
 
-            ServletOutputStream outputStream = isResponseStreamWrapped() ? wrappedOutputStream : super
+            ServletOutputStream outputStream = isResponseStreamWrapped() ? getWrappedOutputStream() : super
                      .getOutputStream();
 
             if (outputStream != null)
@@ -170,11 +219,31 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
       }
    }
 
+   private void finishStreamedContent()
+   {
+      try {
+         if (printWriter != null) {
+            printWriter.close();
+         }
+         streamedResponseContent.close();
+      }
+      catch (IOException e) {
+         throw new RewriteException("Error occurred when flushing response content streamed by "
+                  + responseContentInterceptors, e);
+      }
+   }
+
    @Override
    public void finishStreamWrappers()
    {
       if (isResponseStreamWrapped())
       {
+         /*
+          * Content written through the writer must reach the wrapped streams before they are finished.
+          */
+         if (printWriter != null && !isResponseContentIntercepted())
+            printWriter.flush();
+
          HttpServletRewrite event = new HttpBufferRewriteImpl(request, this, servletContext);
          for (ResponseStreamWrapper wrapper : responseStreamWrappers) {
             wrapper.finish(event);
@@ -185,7 +254,7 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
    @Override
    public String toString()
    {
-      if (isResponseContentIntercepted())
+      if (isResponseContentIntercepted() && streamedResponseContent == null)
       {
          try {
             return bufferedResponseContent.toString(getCharacterEncoding());
@@ -203,12 +272,12 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
    {
       if (printWriter == null)
       {
-         if (isResponseContentIntercepted())
+         if (isResponseContentIntercepted() && getStreamedResponseContent() == null)
          {
             printWriter = new PrintWriter(new OutputStreamWriter(bufferedResponseContent,
                      Charset.forName(getCharacterEncoding())), true);
          }
-         else if (isResponseStreamWrapped())
+         else if (isResponseContentIntercepted() || isResponseStreamWrapped())
          {
             printWriter = new PrintWriter(new OutputStreamWriter(getOutputStream(),
                      Charset.forName(getCharacterEncoding())), true);
@@ -236,7 +305,8 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
       {
          if (isResponseContentIntercepted())
          {
-            outputStream = new RewriteServletOutputStream(bufferedResponseContent);
+            OutputStream stream = getStreamedResponseContent();
+            outputStream = new RewriteServletOutputStream(stream == null ? bufferedResponseContent : stream);
          }
          else
          {
@@ -251,25 +321,10 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
 
          if (isResponseStreamWrapped())
          {
-            if (wrappedOutputStream == null)
+            ServletOutputStream wrapped = getWrappedOutputStream();
+            if (!isResponseContentIntercepted())
             {
-               HttpServletRewrite event = new HttpBufferRewriteImpl(request, this, servletContext);
-
-               try {
-                  OutputStream wrapped = super.getOutputStream();
-                  for (ResponseStreamWrapper wrapper : responseStreamWrappers) {
-                     wrapped = wrapper.wrap(event, wrapped);
-                  }
-                  wrappedOutputStream = new RewriteServletOutputStream(wrapped);
-                  if (!isResponseContentIntercepted())
-                  {
-                     outputStream = wrappedOutputStream;
-                  }
-               }
-               catch (IOException e) {
-                  throw new RewriteException("Could not get response output stream.", e);
-               }
-
+               outputStream = wrapped;
             }
          }
       }
@@ -277,6 +332,26 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
       return outputStream;
    }
 
+   private ServletOutputStream getWrappedOutputStream()
+   {
+      if (wrappedOutputStream == null)
+      {
+         HttpServletRewrite event = new HttpBufferRewriteImpl(request, this, servletContext);
+
+         try {
+            OutputStream wrapped = super.getOutputStream();
+            for (ResponseStreamWrapper wrapper : responseStreamWrappers) {
+               wrapped = wrapper.wrap(event, wrapped);
+            }
+            wrappedOutputStream = new RewriteServletOutputStream(wrapped);
+         }
+         catch (IOException e) {
+            throw new RewriteException("Could not get response output stream.", e);
+         }
+      }
+      return wrappedOutputStream;
+   }
+
    @Override
    public void setContentLength(int contentLength)
    {
@@ -300,7 +375,12 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
    public void flushBuffer() throws IOException
    {
       if (isResponseContentIntercepted())
-         bufferedResponseContent.flush();
+      {
+         if (streamedResponseContent != null)
+            streamedResponseContent.flush();
+         else
+            bufferedResponseContent.flush();
+      }
       else
       {
          lockStreams();
@@ -308,6 +388,30 @@ public class HttpRewriteWrappedResponse extends RewriteWrappedResponse
       }
    }
 
+   /**
+    * Passes content through to the client {@link OutputStream}, which remains open when streamed response content is
+    * closed.
+    */
+   private static class UnclosableOutputStream extends FilterOutputStream
+   {
+      public UnclosableOutputStream(OutputStream outputStream)
+      {
+         super(outputStream);
+      }
+
+      @Override
+      public void write(byte[] bytes, int off, int len) throws IOException
+      {
+         out.write(bytes, off, len);
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         flush();
+      }
+   }
+
    /**
     * Buffered {@link ServletOutputStream} implementation.
     * 
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ocpsoft.rewrite.config.Condition;
+import org.ocpsoft.rewrite.config.ConjunctiveCondition;
+import org.ocpsoft.rewrite.config.DispatchKey;
+import org.ocpsoft.rewrite.config.Dispatchable;
+import org.ocpsoft.rewrite.config.Rule;
+import org.ocpsoft.rewrite.config.RuleIndex;
+import org.ocpsoft.rewrite.event.InboundRewrite;
+import org.ocpsoft.rewrite.event.OutboundRewrite;
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.servlet.http.event.HttpOutboundServletRewrite;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+import org.ocpsoft.urlbuilder.AddressBuilder;
+
+/**
+ * {@link RuleIndex} for HTTP environments. Buckets {@link Rule} instances by {@link Rewrite} direction, request method,
+ * and literal request path prefix, as described by any {@link Dispatchable} conditions that must be satisfied for the
+ * {@link Rule} to match. {@link Rule} instances that cannot be analyzed are always returned as candidates.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class HttpRuleIndex implements RuleIndex
+{
+   /**
+    * Upper bound on the number of {@link DispatchKey} instances computed for a single {@link Rule} before it is treated
+    * as unanalyzable.
+    */
+   private static final int MAX_KEYS_PER_RULE = 64;
+
+   private final List<Rule> rules;
+   private final Node inbound = new Node();
+   private final Node outbound = new Node();
+
+   public HttpRuleIndex(final List<Rule> rules)
+   {
+      this.rules = rules;
+      for (int i = 0; i < rules.size(); i++)
+      {
+         Set<DispatchKey> keys = getDispatchKeys(rules.get(i));
+         for (DispatchKey key : keys) {
+            Class<? extends Rewrite> type = key.getEventType();
+            if (type == null || type.isAssignableFrom(InboundRewrite.class)
+                     || InboundRewrite.class.isAssignableFrom(type))
+               inbound.add(key, i);
+            if (type == null || type.isAssignableFrom(OutboundRewrite.class)
+                     || OutboundRewrite.class.isAssignableFrom(type))
+               outbound.add(key, i);
+         }
+      }
+      inbound.compact();
+      outbound.compact();
+   }
+
+   @Override
+   public List<Rule> getCandidates(final Rewrite event)
+   {
+      Node root = null;
+      if (event instanceof InboundRewrite)
+         root = inbound;
+      else if (event instanceof OutboundRewrite)
+         root = outbound;
+
+      if (root == null || !(event instanceof HttpServletRewrite))
+         return rules;
+
+      HttpServletRewrite rewrite = (HttpServletRewrite) event;
+      String path = getPath(rewrite);
+      String method = rewrite.getRequest().getMethod();
+
+      boolean[] selected = new boolean[rules.size()];
+      int count = 0;
+
+      Node node = root;
+      int position = 0;
+      while (node != null)
+      {
+         for (int i = 0; i < node.entries.length; i++)
+         {
+            Entry entry = node.entries[i];
+            if (!selected[entry.rule] && entry.matches(event, method))
+            {
+               selected[entry.rule] = true;
+               count++;
+            }
+         }
+
+         if (position < path.length())
+            node = node.get(path.charAt(position++));
+         else
+            node = null;
+      }
+
+      if (count == rules.size())
+         return rules;
+
+      List<Rule> result = new ArrayList<Rule>(count);
+      for (int i = 0; i < selected.length; i++)
+      {
+         if (selected[i])
+            result.add(rules.get(i));
+      }
+      return result;
+   }
+
+   /**
+    * Compute the request path in the same manner as path based conditions, relative to the application context path.
+    */
+   static String getPath(final HttpServletRewrite event)
+   {
+      String path = null;
+      if (event instanceof HttpOutboundServletRewrite)
+         path = ((HttpOutboundServletRewrite) event).getOutboundAddress().getPath();
+      else
+         path = AddressBuilder.begin().pathDecoded(event.getInboundAddress().getPath()).buildLiteral().toString();
+
+      if (path == null)
+         return "";
+
+      String contextPath = event.getContextPath();
+      if (!contextPath.equals("/") && path.startsWith(contextPath))
+         path = path.substring(contextPath.length());
+
+      return path;
+   }
+
+   /**
+    * Compute the set of {@link DispatchKey} instances of which at least one must match for the given {@link Condition}
+    * to match.
+    */
+   static Set<DispatchKey> getDispatchKeys(final Condition condition)
+   {
+      Set<DispatchKey> result = new LinkedHashSet<DispatchKey>();
+      result.add(DispatchKey.any());
+
+      if (condition instanceof Dispatchable)
+      {
+         List<DispatchKey> keys = ((Dispatchable) condition).getDispatchKeys();
+         if (keys != null && !keys.isEmpty())
+         {
+            result.clear();
+            result.addAll(keys);
+         }
+      }
+
+      if (condition instanceof ConjunctiveCondition)
+      {
+         List<Condition> conditions = ((ConjunctiveCondition) condition).getConditions();
+         if (conditions != null)
+         {
+            for (Condition child : conditions) {
+               if (child == null)
+                  continue;
+
+               Set<DispatchKey> childKeys = getDispatchKeys(child);
+               if (childKeys.size() == 1 && childKeys.contains(DispatchKey.any()))
+                  continue;
+
+               Set<DispatchKey> combined = new LinkedHashSet<DispatchKey>();
+               for (DispatchKey key : result) {
+                  for (DispatchKey childKey : childKeys) {
+                     DispatchKey intersection = key.and(childKey);
+                     if (intersection != null)
+                        combined.add(intersection);
+                  }
+               }
+
+               if (combined.size() > MAX_KEYS_PER_RULE)
+                  break;
+
+               result = combined;
+            }
+         }
+      }
+
+      return result;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "HttpRuleIndex [rules=" + rules.size() + "]";
+   }
+
+   private static class Entry
+   {
+      private final int rule;
+      private final Class<? extends Rewrite> eventType;
+      private final String method;
+
+      public Entry(final int rule, final DispatchKey key)
+      {
+         this.rule = rule;
+         this.eventType = key.getEventType();
+         this.method = key.getMethod();
+      }
+
+      public boolean matches(final Rewrite event, final String method)
+      {
+         return (this.eventType == null || this.eventType.isInstance(event))
+                  && (this.method == null || this.method.equals(method));
+      }
+   }
+
+   /**
+    * A character trie node keyed by literal path prefix.
+    */
+   private static class Node
+   {
+      private static final Entry[] NO_ENTRIES = new Entry[0];
+
+      private Map<Character, Node> children = new HashMap<Character, Node>();
+      private List<Entry> pending = new ArrayList<Entry>();
+      private Entry[] entries = NO_ENTRIES;
+
+      public void add(final DispatchKey key, final int rule)
+      {
+         String prefix = key.getPathPrefix();
+         Node node = this;
+         if (prefix != null)
+         {
+            for (int i = 0; i < prefix.length(); i++)
+            {
+               Character c = prefix.charAt(i);
+               Node child = node.children.get(c);
+               if (child == null)
+               {
+                  child = new Node();
+                  node.children.put(c, child);
+               }
+               node = child;
+            }
+         }
+         node.pending.add(new Entry(rule, key));
+      }
+
+      public Node get(final char c)
+      {
+         return children.isEmpty() ? null : children.get(c);
+      }
+
+      public void compact()
+      {
+         entries = pending.toArray(new Entry[pending.size()]);
+         pending = null;
+         for (Node child : children.values()) {
+            child.compact();
+         }
+      }
+
+      @Override
+      public String toString()
+      {
+         return "Node [entries=" + Arrays.asList(entries) + ", children=" + children.keySet() + "]";
+      }
+   }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.impl;
+
+import java.util.List;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.logging.Logger;
+import org.ocpsoft.rewrite.config.Condition;
+import org.ocpsoft.rewrite.config.ConditionVisit;
+import org.ocpsoft.rewrite.config.Rule;
+import org.ocpsoft.rewrite.config.RuleIndex;
+import org.ocpsoft.rewrite.param.CombinablePattern;
+import org.ocpsoft.rewrite.param.CombinedPatternMatcher;
+import org.ocpsoft.rewrite.param.CombinedPatternMatchers;
+import org.ocpsoft.rewrite.spi.RuleIndexProvider;
+import org.ocpsoft.rewrite.util.Visitor;
+
+/**
+ * Default {@link RuleIndexProvider} for HTTP environments, producing an {@link HttpRuleIndex}.
+ * <p>
+ * To disable rule indexing, and evaluate every rule on each request, add the following servlet context init parameter
+ * to <code>web.xml</code>:
+ * 
+ * <pre>
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.config.RULE_INDEXING&lt;/param-name&gt;
+ *   &lt;param-value&gt;false&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * </pre>
+ * <p>
+ * To additionally match all supported path and URL patterns with a single {@link CombinedPatternMatcher} pass per
+ * request, instead of one regular expression per rule, add the following servlet context init parameter:
+ * 
+ * <pre>
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.config.COMBINED_PATTERN_MATCHING&lt;/param-name&gt;
+ *   &lt;param-value&gt;true&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * </pre>
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class HttpRuleIndexProvider implements RuleIndexProvider
+{
+   private static final Logger log = Logger.getLogger(HttpRuleIndexProvider.class);
+
+   private static final String RULE_INDEXING = "org.ocpsoft.rewrite.config.RULE_INDEXING";
+   private static final String COMBINED_PATTERN_MATCHING = "org.ocpsoft.rewrite.config.COMBINED_PATTERN_MATCHING";
+
+   @Override
+   public boolean handles(final Object context)
+   {
+      return context instanceof ServletContext;
+   }
+
+   @Override
+   public RuleIndex getIndex(final Object context, final List<Rule> rules)
+   {
+      ServletContext servletContext = (ServletContext) context;
+      if ("true".equalsIgnoreCase(getInitParameter(servletContext, COMBINED_PATTERN_MATCHING)))
+         combinePatterns(rules);
+
+      if ("false".equalsIgnoreCase(getInitParameter(servletContext, RULE_INDEXING)))
+         return null;
+
+      return new HttpRuleIndex(rules);
+   }
+
+   private void combinePatterns(final List<Rule> rules)
+   {
+      final CombinedPatternMatchers matchers = new CombinedPatternMatchers();
+      Visitor<Condition> visitor = new Visitor<Condition>() {
+         @Override
+         public void visit(Condition condition)
+         {
+            if (condition instanceof CombinablePattern)
+               ((CombinablePattern) condition).combine(matchers);
+         }
+      };
+
+      for (Rule rule : rules) {
+         new ConditionVisit(rule).accept(visitor);
+      }
+
+      if (log.isDebugEnabled())
+         log.debug("Combined rule patterns into " + matchers);
+   }
+
+   private String getInitParameter(final ServletContext context, final String name)
+   {
+      String value = context.getInitParameter(name);
+      return value == null ? null : value.trim();
+   }
+
+   @Override
+   public int priority()
+   {
+      return 0;
+   }
+}
@@ -18,10 +18,21 @@ package org.ocpsoft.rewrite.transform.less;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
 import org.ocpsoft.common.util.Streams;
+import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 import org.ocpsoft.rewrite.transform.StringTransformer;
 import org.ocpsoft.rewrite.transform.Transformer;
@@ -29,13 +40,27 @@ import org.ocpsoft.rewrite.transform.Transformer;
 /**
  * A {@link Transformer} that compiles LESS files into CSS. This implementation is based on Mozilla Rhino and LESS
  * 1.3.0.
+ * <p>
+ * The LESS compiler scripts are compiled once, to bytecode where possible, and evaluated into a pool of scopes that
+ * are sealed afterwards. Each transformation borrows one of these scopes and only invokes the LESS compiler on the
+ * given input, in a child scope. The pool holds one scope per available processor by default, see
+ * {@link #scopePoolSize(int)}.
  * 
  * @author Christian Kaltepoth
  */
 public class Less extends StringTransformer
 {
+   private static final Logger log = Logger.getLogger(Less.class);
 
-   private final String baseScript;
+   private static final String[] SCRIPTS = { "env.rhino.1.2.js", "less-1.3.0.min.js", "api.js" };
+
+   private static volatile List<Script> compiledScripts;
+
+   private final BlockingQueue<Scriptable> scopes = new LinkedBlockingQueue<Scriptable>();
+
+   private final AtomicInteger created = new AtomicInteger();
+
+   private volatile int scopePoolSize = Runtime.getRuntime().availableProcessors();
 
    /**
     * Create a {@link Transformer} that compiles LESS files into CSS.
@@ -46,46 +71,131 @@ public class Less extends StringTransformer
    }
 
    private Less()
+   {}
+
+   /**
+    * Set the maximum number of LESS compiler scopes, and therefore of concurrent transformations. Further
+    * transformations wait for a scope to become available.
+    */
+   public Less scopePoolSize(int size)
    {
-      StringBuilder scriptBuilder = new StringBuilder();
-      scriptBuilder.append("function print(s) {}"); // required by env.rhino
-      scriptBuilder.append(getClasspathResourceAsString("org/ocpsoft/rewrite/transform/js/" + "env.rhino.1.2.js"));
-      scriptBuilder.append(getClasspathResourceAsString("org/ocpsoft/rewrite/transform/js/" + "less-1.3.0.min.js"));
-      scriptBuilder.append(getClasspathResourceAsString("org/ocpsoft/rewrite/transform/js/" + "api.js"));
-      baseScript = scriptBuilder.toString();
+      if (size < 1)
+         throw new IllegalArgumentException("Scope pool size must be at least 1, was [" + size + "]");
+      this.scopePoolSize = size;
+      return this;
    }
 
    @Override
    public String transform(HttpServletRewrite event, String less)
    {
-
-      Context context = Context.enter();
-
+      Scriptable scope = borrowScope();
       try {
+         Context context = enterContext();
+         try {
+            Scriptable call = context.newObject(scope);
+            call.setPrototype(scope);
+            call.setParentScope(null);
+
+            Function lessToCss = (Function) ScriptableObject.getProperty(scope, "lessToCss");
+            Object result = lessToCss.call(context, call, call, new Object[] { less });
+
+            if (result != null && !(result instanceof Undefined)) {
+               return Context.toString(result);
+            }
+         }
+         finally {
+            Context.exit();
+         }
+      }
+      finally {
+         scopes.add(scope);
+      }
+      return null;
+   }
 
-         context.setOptimizationLevel(-1);
-         context.setLanguageVersion(Context.VERSION_1_6);
-
-         Scriptable scope = context.initStandardObjects();
-
-         String script = new StringBuilder(baseScript)
-                  .append("lessToCss('")
-                  .append(escape(less))
-                  .append("');")
-                  .toString();
-
-         Object result = context.evaluateString(scope, script, this.getClass().getSimpleName(), 1, null);
-
-         if (result != null) {
-            return result.toString();
+   private Scriptable borrowScope()
+   {
+      Scriptable scope = scopes.poll();
+      if (scope == null)
+      {
+         if (created.incrementAndGet() <= scopePoolSize)
+            return createScope();
+
+         created.decrementAndGet();
+         try {
+            scope = scopes.take();
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a LESS compiler scope", e);
          }
+      }
+      return scope;
+   }
 
+   private Scriptable createScope()
+   {
+      Context context = enterContext();
+      try {
+         ScriptableObject scope = context.initStandardObjects();
+         for (Script script : getCompiledScripts(context)) {
+            script.exec(context, scope);
+         }
+         scope.sealObject();
+         return scope;
+      }
+      catch (RuntimeException e) {
+         created.decrementAndGet();
+         throw e;
       }
       finally {
          Context.exit();
       }
-      return null;
+   }
+
+   private static List<Script> getCompiledScripts(Context context)
+   {
+      if (compiledScripts == null)
+      {
+         synchronized (Less.class)
+         {
+            if (compiledScripts == null)
+            {
+               List<Script> scripts = new ArrayList<Script>();
+               scripts.add(compile(context, "function print(s) {}", "print")); // required by env.rhino
+               for (String name : SCRIPTS) {
+                  scripts.add(compile(context,
+                           getClasspathResourceAsString("org/ocpsoft/rewrite/transform/js/" + name), name));
+               }
+               compiledScripts = scripts;
+            }
+         }
+      }
+      return compiledScripts;
+   }
+
+   private static Script compile(Context context, String source, String name)
+   {
+      try {
+         context.setOptimizationLevel(9);
+         return context.compileString(source, name, 1, null);
+      }
+      catch (EvaluatorException e) {
+         /*
+          * Generated bytecode may exceed JVM limits, in which case the script is interpreted instead.
+          */
+         log.debug("Could not compile [" + name + "] to bytecode, falling back to interpreter", e);
+         context.setOptimizationLevel(-1);
+         return context.compileString(source, name, 1, null);
+      }
+   }
 
+   private static Context enterContext()
+   {
+      Context context = Context.enter();
+      context.setOptimizationLevel(-1);
+      context.setLanguageVersion(Context.VERSION_1_6);
+      return context;
    }
 
    private static String getClasspathResourceAsString(String resource)
@@ -99,9 +209,9 @@ public class Less extends StringTransformer
       return new String(output.toByteArray(), Charset.forName("UTF-8"));
    }
 
-   private String escape(String s)
+   @Override
+   public String toString()
    {
-      return s.replace("\r", "").replace("\n", "\\n");
+      return "Less.compiler()";
    }
-
 }
@@ -17,6 +17,13 @@ package org.ocpsoft.rewrite.transform.less;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 import org.ocpsoft.rewrite.transform.less.Less;
 
@@ -47,6 +54,40 @@ public class LessTest
       assertSameCSS(".bordered{ border: 1px solid red; }\n.navigation{ border: 1px solid red; }\n", output);
    }
 
+   @Test
+   public void testQuotedInput()
+   {
+      String input = ".quoted { content: \"it's\"; }";
+      String output = Less.compiler().transform(null, input);
+      assertSameCSS(".quoted { content: \"it's\"; }", output);
+   }
+
+   @Test
+   public void testConcurrentTransformationsShareScopePool() throws Exception
+   {
+      final Less less = Less.compiler().scopePoolSize(2);
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         List<Future<String>> results = new ArrayList<Future<String>>();
+         for (int i = 0; i < 8; i++) {
+            final int width = i;
+            results.add(executor.submit(new Callable<String>() {
+               @Override
+               public String call()
+               {
+                  return less.transform(null, ".class { width: " + width + " + 1 }");
+               }
+            }));
+         }
+         for (int i = 0; i < results.size(); i++) {
+            assertSameCSS(".class { width: " + (i + 1) + "; }", results.get(i).get());
+         }
+      }
+      finally {
+         executor.shutdown();
+      }
+   }
+
    private static void assertSameCSS(String expected, String actual)
    {
       assertEquals(normalize(expected), normalize(actual));
@@ -89,7 +89,7 @@ public class Asciidoc extends JRubyTransformer<Asciidoc>
    public Object runScript(ScriptingContainer container)
    {
 
-      Object fragment = container.runScriptlet(SCRIPT);
+      Object fragment = runScriptlet(container, SCRIPT);
 
       if (fragment != null) {
 
@@ -123,4 +123,9 @@ public class Asciidoc extends JRubyTransformer<Asciidoc>
       return Asciidoc.class;
    }
 
+   @Override
+   public String toString()
+   {
+      return fullDocument ? "Asciidoc.fullDocument()" + documentBuilder : "Asciidoc.partialDocument()";
+   }
 }
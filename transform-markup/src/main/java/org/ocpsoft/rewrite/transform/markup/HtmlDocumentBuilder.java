@@ -71,4 +71,19 @@ class HtmlDocumentBuilder
 
    }
 
+   @Override
+   public String toString()
+   {
+      StringBuilder result = new StringBuilder();
+      if (title != null) {
+         result.append(".withTitle(\"").append(title).append("\")");
+      }
+      for (String stylesheet : stylesheets) {
+         result.append(".addStylesheet(\"").append(stylesheet).append("\")");
+      }
+      for (String headerInjection : headerInjections) {
+         result.append(".addHeaderInjection(\"").append(headerInjection).append("\")");
+      }
+      return result.toString();
+   }
 }
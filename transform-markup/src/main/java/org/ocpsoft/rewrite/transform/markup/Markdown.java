@@ -89,7 +89,7 @@ public class Markdown extends JRubyTransformer<Markdown>
    public Object runScript(ScriptingContainer container)
    {
 
-      Object fragment = container.runScriptlet(SCRIPT);
+      Object fragment = runScriptlet(container, SCRIPT);
 
       if (fragment != null) {
 
@@ -122,4 +122,10 @@ public class Markdown extends JRubyTransformer<Markdown>
    {
       return Markdown.class;
    }
+
+   @Override
+   public String toString()
+   {
+      return fullDocument ? "Markdown.fullDocument()" + documentBuilder : "Markdown.partialDocument()";
+   }
 }
@@ -54,7 +54,7 @@ public class Sass extends JRubyTransformer<Sass>
    @Override
    public Object runScript(ScriptingContainer container)
    {
-      return container.runScriptlet(SCRIPT);
+      return runScriptlet(container, SCRIPT);
    }
 
    @Override
@@ -72,4 +72,10 @@ public class Sass extends JRubyTransformer<Sass>
    {
       return Sass.class;
    }
+
+   @Override
+   public String toString()
+   {
+      return "Sass.compiler()";
+   }
 }
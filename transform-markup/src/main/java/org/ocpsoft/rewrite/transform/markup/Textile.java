@@ -86,7 +86,7 @@ public class Textile extends JRubyTransformer<Textile>
    public Object runScript(ScriptingContainer container)
    {
 
-      Object fragment = container.runScriptlet(SCRIPT);
+      Object fragment = runScriptlet(container, SCRIPT);
 
       if (fragment != null) {
 
@@ -120,4 +120,9 @@ public class Textile extends JRubyTransformer<Textile>
       return Textile.class;
    }
 
+   @Override
+   public String toString()
+   {
+      return fullDocument ? "Textile.fullDocument()" + documentBuilder : "Textile.partialDocument()";
+   }
 }
@@ -1,22 +1,28 @@
 package org.ocpsoft.rewrite.transform.markup.impl;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.ServletContext;
 
 import org.jruby.CompatVersion;
 import org.jruby.RubyInstanceConfig.CompileMode;
+import org.jruby.embed.EmbedEvalUnit;
 import org.jruby.embed.LocalContextScope;
 import org.jruby.embed.LocalVariableBehavior;
 import org.jruby.embed.ScriptingContainer;
+import org.jruby.javasupport.JavaEmbedUtils;
+import org.jruby.runtime.builtin.IRubyObject;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 import org.ocpsoft.rewrite.transform.StringTransformer;
 import org.ocpsoft.rewrite.transform.Transformer;
 
 /**
- * Base class for {@link Transformer} implementations that use JRuby scripts.
+ * Base class for {@link Transformer} implementations that use JRuby scripts. Scripts are run in containers borrowed
+ * from a bounded {@link ScriptingContainerPool} per container configuration, so that transformations of the same type
+ * can run concurrently.
  * 
  * @author Christian Kaltepoth
  */
@@ -24,6 +30,8 @@ public abstract class JRubyTransformer<T extends JRubyTransformer<T>> extends St
 {
    static final String CONTAINER_STORE_KEY = JRubyTransformer.class.getName() + "_CONTAINER_INSTANCE";
 
+   private static final String SCRIPT_CACHE_KEY = JRubyTransformer.class.getName() + "_SCRIPT_CACHE";
+
    private CompileMode compileMode = CompileMode.JIT;
 
    private CompatVersion compatVersion = CompatVersion.RUBY2_0;
@@ -50,72 +58,130 @@ public abstract class JRubyTransformer<T extends JRubyTransformer<T>> extends St
    @Override
    public final String transform(HttpServletRewrite event, String input)
    {
-      ScriptingContainer container = getContainer(event.getServletContext());
+      ScriptingContainerPool pool = ScriptingContainerPool.getInstance(event.getServletContext(), this);
+      ScriptingContainer container = pool.borrow();
       try {
-
-         Object result = null;
-         // 'input' will be the string to transform
-         container.put("input", input);
-
-         // execute the script returned by the implementation
-         result = runScript(container);
-
-         // the result must be a string
-         return result != null ? result.toString() : null;
+         return transform(container, input);
       }
       finally {
-         if (container != null)
-            container.clear();
+         pool.release(container);
       }
+   }
 
+   /**
+    * Fill the {@link ScriptingContainerPool} for the container configuration of this transformer up to its size,
+    * running the script of this transformer once in each new container so that subsequent transformations do not have
+    * to load and parse it.
+    */
+   void warmUp(ServletContext context)
+   {
+      ScriptingContainerPool pool = ScriptingContainerPool.getInstance(context, this);
+      ScriptingContainer container;
+      while (!pool.isTerminated() && (container = pool.create()) != null)
+      {
+         try {
+            transform(container, "");
+         }
+         finally {
+            pool.release(container);
+         }
+      }
+   }
+
+   private String transform(ScriptingContainer container, String input)
+   {
+      // 'input' will be the string to transform
+      container.put("input", input);
+
+      // execute the script returned by the implementation
+      Object result = runScript(container);
+
+      // the result must be a string
+      return result != null ? result.toString() : null;
    }
 
-   private ScriptingContainer getContainer(ServletContext context)
+   /**
+    * Run the given script in the supplied {@link ScriptingContainer}. The script is parsed on first use and the parsed
+    * form is cached in the container, so implementations of {@link #runScript(ScriptingContainer)} should prefer this
+    * method over {@link ScriptingContainer#runScriptlet(String)}.
+    */
+   protected Object runScriptlet(ScriptingContainer container, String script)
    {
       @SuppressWarnings("unchecked")
-      Map<Class<T>, ScriptingContainer> storage = (Map<Class<T>, ScriptingContainer>) context
-               .getAttribute(CONTAINER_STORE_KEY);
-      if (storage == null)
+      Map<String, EmbedEvalUnit> scripts = (Map<String, EmbedEvalUnit>) container.getAttribute(SCRIPT_CACHE_KEY);
+      if (scripts == null)
       {
-         storage = new ConcurrentHashMap<Class<T>, ScriptingContainer>();
-         context.setAttribute(CONTAINER_STORE_KEY, storage);
+         scripts = new HashMap<String, EmbedEvalUnit>();
+         container.setAttribute(SCRIPT_CACHE_KEY, scripts);
       }
 
-      ScriptingContainer cachedContainer = storage.get(getTransformerType());
-      if (cachedContainer == null)
+      EmbedEvalUnit unit = scripts.get(script);
+      if (unit == null)
       {
-         cachedContainer = new ScriptingContainer(LocalContextScope.CONCURRENT, LocalVariableBehavior.TRANSIENT);
-         cachedContainer.setRunRubyInProcess(false);
-
-         storage.put(getTransformerType(), cachedContainer);
+         unit = container.parse(script);
+         scripts.put(script, unit);
+      }
 
-         // the user may have set a custom CompileMode
-         if (compileMode != null) {
-            cachedContainer.setCompileMode(compileMode);
-         }
+      IRubyObject result = unit.run();
+      return result != null ? JavaEmbedUtils.rubyToJava(result) : null;
+   }
 
-         // the user may have set a customn CompatVersion
-         if (compatVersion != null) {
-            cachedContainer.setCompatVersion(compatVersion);
-         }
+   /**
+    * Create and configure a new {@link ScriptingContainer} for the container configuration of this transformer.
+    */
+   ScriptingContainer createContainer()
+   {
+      // containers are only ever used by a single thread at a time, see ScriptingContainerPool
+      ScriptingContainer container = new ScriptingContainer(LocalContextScope.SINGLETHREAD,
+               LocalVariableBehavior.TRANSIENT);
+      container.setRunRubyInProcess(false);
+
+      // the user may have set a custom CompileMode
+      if (compileMode != null) {
+         container.setCompileMode(compileMode);
+      }
 
-         // scripts typically need to set the load path for 3rd party gems
-         List<String> loadPaths = getLoadPaths();
-         if (loadPaths != null && !loadPaths.isEmpty()) {
-            cachedContainer.getLoadPaths().addAll(loadPaths);
-         }
+      // the user may have set a customn CompatVersion
+      if (compatVersion != null) {
+         container.setCompatVersion(compatVersion);
+      }
 
-         // perform custom initialization of the container
-         prepareContainer(cachedContainer);
+      // scripts typically need to set the load path for 3rd party gems
+      List<String> loadPaths = getLoadPaths();
+      if (loadPaths != null && !loadPaths.isEmpty()) {
+         container.getLoadPaths().addAll(loadPaths);
       }
 
-      return cachedContainer;
+      // perform custom initialization of the container
+      prepareContainer(container);
+
+      return container;
+   }
+
+   /**
+    * Return the key of the {@link ScriptingContainerPool} to borrow containers from. Transformers share a pool only if
+    * they would configure their containers identically in {@link #createContainer()}.
+    */
+   Object getContainerKey()
+   {
+      return Arrays.<Object> asList(getTransformerType(), compileMode, compatVersion, getLoadPaths(),
+               getContainerSettings());
    }
 
    abstract protected Class<T> getTransformerType();
 
    abstract protected void prepareContainer(ScriptingContainer container);
 
+   /**
+    * Return the settings that {@link #prepareContainer(ScriptingContainer)} applies to new containers, or
+    * <code>null</code> if it always prepares them the same way. Transformers with unequal settings do not share
+    * containers, so the returned object must implement {@link Object#equals(Object)} and {@link Object#hashCode()}.
+    */
+   protected Object getContainerSettings()
+   {
+      return null;
+   }
+
    /**
     * Allows to customize the {@link CompileMode} used by the JRuby runtime.
     */
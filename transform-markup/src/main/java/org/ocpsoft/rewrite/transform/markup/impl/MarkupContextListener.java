@@ -1,15 +1,41 @@
 package org.ocpsoft.rewrite.transform.markup.impl;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 
-import org.jruby.embed.ScriptingContainer;
+import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.servlet.spi.ContextListener;
+import org.ocpsoft.rewrite.transform.markup.Asciidoc;
+import org.ocpsoft.rewrite.transform.markup.Markdown;
+import org.ocpsoft.rewrite.transform.markup.Sass;
+import org.ocpsoft.rewrite.transform.markup.Textile;
 
+/**
+ * Manages the {@link ScriptingContainerPool} instances of all {@link JRubyTransformer} configurations. Pools are
+ * terminated when the {@link ServletContext} is destroyed.
+ * <p>
+ * Starting a JRuby runtime and loading the scripts of a transformer takes several seconds, so pools may optionally be
+ * filled in the background on startup. To do so, list the transformers to warm up in the following servlet context
+ * init parameter in <code>web.xml</code>. Supported values are <code>Markdown</code>, <code>Asciidoc</code>,
+ * <code>Textile</code> and <code>Sass</code>. Only the pools of transformers with the default compile mode and compat
+ * version are warmed up; transformers configured differently get pools of their own that are filled on demand.
+ * 
+ * <pre>
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.transform.markup.WARM_UP&lt;/param-name&gt;
+ *   &lt;param-value&gt;Markdown, Sass&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * </pre>
+ */
 public class MarkupContextListener implements ContextListener
 {
+   private static final Logger log = Logger.getLogger(MarkupContextListener.class);
+
+   private static final String WARM_UP = "org.ocpsoft.rewrite.transform.markup.WARM_UP";
 
    @Override
    public int priority()
@@ -19,22 +45,69 @@ public class MarkupContextListener implements ContextListener
 
    @Override
    public void contextInitialized(ServletContextEvent event)
-   {}
+   {
+      final ServletContext context = event.getServletContext();
+      final List<JRubyTransformer<?>> transformers = getWarmUpTransformers(context);
+      if (!transformers.isEmpty())
+      {
+         Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run()
+            {
+               for (JRubyTransformer<?> transformer : transformers) {
+                  try {
+                     transformer.warmUp(context);
+                  }
+                  catch (RuntimeException e) {
+                     log.warn("Failed to warm up ScriptingContainer pool for [" + transformer + "]", e);
+                  }
+               }
+            }
+         }, "rewrite-markup-warm-up");
+         thread.setDaemon(true);
+         thread.start();
+      }
+   }
 
    @Override
    @SuppressWarnings("unchecked")
    public void contextDestroyed(ServletContextEvent event)
    {
       ServletContext context = event.getServletContext();
-      Map<Class<?>, ScriptingContainer> storage = (Map<Class<?>, ScriptingContainer>) context
+      Map<Object, ScriptingContainerPool> storage = (Map<Object, ScriptingContainerPool>) context
                .getAttribute(JRubyTransformer.CONTAINER_STORE_KEY);
       if (storage != null)
       {
-         for (ScriptingContainer scriptingContainer : storage.values()) {
-            if (scriptingContainer != null)
-               scriptingContainer.terminate();
+         for (ScriptingContainerPool pool : storage.values()) {
+            if (pool != null)
+               pool.terminate();
+         }
+      }
+   }
+
+   private static List<JRubyTransformer<?>> getWarmUpTransformers(ServletContext context)
+   {
+      List<JRubyTransformer<?>> result = new ArrayList<JRubyTransformer<?>>();
+      String value = context.getInitParameter(WARM_UP);
+      if (value != null)
+      {
+         for (String name : value.split(",")) {
+            name = name.trim();
+            if (name.isEmpty())
+               continue;
+            else if ("Markdown".equalsIgnoreCase(name))
+               result.add(Markdown.partialDocument());
+            else if ("Asciidoc".equalsIgnoreCase(name))
+               result.add(Asciidoc.partialDocument());
+            else if ("Textile".equalsIgnoreCase(name))
+               result.add(Textile.partialDocument());
+            else if ("Sass".equalsIgnoreCase(name))
+               result.add(Sass.compiler());
+            else
+               throw new IllegalArgumentException("Unknown transformer [" + name + "] in [" + WARM_UP + "]");
          }
       }
+      return result;
    }
 
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.transform.markup.impl;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+
+import org.jruby.embed.ScriptingContainer;
+
+/**
+ * Bounded pool of {@link ScriptingContainer} instances sharing a single container configuration, as identified by
+ * {@link JRubyTransformer#getContainerKey()}. Containers are created on demand until the pool is full, after which
+ * callers wait for a container to be released. Each container is used by only one thread at a time.
+ * <p>
+ * Pools hold as many containers as there are available processors by default. To change this, add the following
+ * servlet context init parameter to <code>web.xml</code>:
+ * 
+ * <pre>
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.transform.markup.POOL_SIZE&lt;/param-name&gt;
+ *   &lt;param-value&gt;4&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * </pre>
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+final class ScriptingContainerPool
+{
+   private static final String POOL_SIZE = "org.ocpsoft.rewrite.transform.markup.POOL_SIZE";
+
+   private final JRubyTransformer<?> factory;
+   private final int size;
+
+   private final BlockingQueue<ScriptingContainer> idle = new LinkedBlockingQueue<ScriptingContainer>();
+   private int created = 0;
+   private volatile boolean terminated = false;
+
+   /**
+    * Create a {@link ScriptingContainerPool} holding up to the given number of containers, each configured by the given
+    * {@link JRubyTransformer}.
+    */
+   public ScriptingContainerPool(JRubyTransformer<?> factory, int size)
+   {
+      this.factory = factory;
+      this.size = size;
+   }
+
+   /**
+    * Get the {@link ScriptingContainerPool} for the container configuration of the given {@link JRubyTransformer},
+    * creating it on first access.
+    */
+   @SuppressWarnings("unchecked")
+   public static ScriptingContainerPool getInstance(ServletContext context, JRubyTransformer<?> transformer)
+   {
+      synchronized (ScriptingContainerPool.class)
+      {
+         Map<Object, ScriptingContainerPool> storage = (Map<Object, ScriptingContainerPool>) context
+                  .getAttribute(JRubyTransformer.CONTAINER_STORE_KEY);
+         if (storage == null)
+         {
+            storage = new ConcurrentHashMap<Object, ScriptingContainerPool>();
+            context.setAttribute(JRubyTransformer.CONTAINER_STORE_KEY, storage);
+         }
+
+         Object key = transformer.getContainerKey();
+         ScriptingContainerPool pool = storage.get(key);
+         if (pool == null)
+         {
+            pool = new ScriptingContainerPool(transformer, getSize(context));
+            storage.put(key, pool);
+         }
+         return pool;
+      }
+   }
+
+   /**
+    * Take a container from this pool, creating one if none is idle and the pool is not yet full, or waiting for one to
+    * be released otherwise. The container must be handed back via {@link #release(ScriptingContainer)}.
+    */
+   public ScriptingContainer borrow()
+   {
+      ScriptingContainer container = idle.poll();
+      if (container != null)
+         return container;
+
+      container = create();
+      if (container != null)
+         return container;
+
+      try {
+         while ((container = idle.poll(1, TimeUnit.SECONDS)) == null)
+         {
+            if (terminated)
+               throw new IllegalStateException("ScriptingContainer pool has been terminated");
+         }
+         return container;
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while waiting for a ScriptingContainer", e);
+      }
+   }
+
+   /**
+    * Create a new container if this pool is not yet full, or return <code>null</code> otherwise. The container must be
+    * handed back via {@link #release(ScriptingContainer)}.
+    */
+   public ScriptingContainer create()
+   {
+      synchronized (this)
+      {
+         if (terminated)
+            throw new IllegalStateException("ScriptingContainer pool has been terminated");
+         if (created >= size)
+            return null;
+         created++;
+      }
+
+      try {
+         return factory.createContainer();
+      }
+      catch (RuntimeException e) {
+         synchronized (this)
+         {
+            created--;
+         }
+         throw e;
+      }
+   }
+
+   /**
+    * Hand the given container back to this pool, clearing its variables.
+    */
+   public void release(ScriptingContainer container)
+   {
+      container.clear();
+      idle.offer(container);
+      if (terminated)
+         terminateIdle();
+   }
+
+   /**
+    * Terminate all idle containers of this pool. Containers currently in use are terminated once released.
+    */
+   public void terminate()
+   {
+      terminated = true;
+      terminateIdle();
+   }
+
+   public boolean isTerminated()
+   {
+      return terminated;
+   }
+
+   private void terminateIdle()
+   {
+      ScriptingContainer container;
+      while ((container = idle.poll()) != null)
+      {
+         container.terminate();
+      }
+   }
+
+   private static int getSize(ServletContext context)
+   {
+      String value = context.getInitParameter(POOL_SIZE);
+      if (value != null && !value.trim().isEmpty())
+      {
+         try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+         }
+         catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for [" + POOL_SIZE + "]: " + value, e);
+         }
+      }
+      return Runtime.getRuntime().availableProcessors();
+   }
+}
@@ -7,7 +7,6 @@ import java.util.HashMap;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 
-import org.jruby.embed.ScriptingContainer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -28,7 +27,7 @@ public class AsciidocTest
    {
       context = Mockito.mock(ServletContext.class);
       Mockito.when(context.getAttribute(JRubyTransformer.CONTAINER_STORE_KEY))
-               .thenReturn(new HashMap<Class<?>, ScriptingContainer>());
+               .thenReturn(new HashMap<Object, ScriptingContainerPool>());
 
       event = Mockito.mock(HttpServletRewrite.class);
       Mockito.when(event.getServletContext()).thenReturn(context);
@@ -17,15 +17,25 @@ package org.ocpsoft.rewrite.transform.markup.impl;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 
-import org.jruby.embed.ScriptingContainer;
+import org.jruby.CompatVersion;
+import org.jruby.RubyInstanceConfig.CompileMode;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -44,7 +54,7 @@ public class MarkdownTest
    {
       context = Mockito.mock(ServletContext.class);
       Mockito.when(context.getAttribute(JRubyTransformer.CONTAINER_STORE_KEY))
-               .thenReturn(new HashMap<Class<?>, ScriptingContainer>());
+               .thenReturn(new HashMap<Object, ScriptingContainerPool>());
 
       event = Mockito.mock(HttpServletRewrite.class);
       Mockito.when(event.getServletContext()).thenReturn(context);
@@ -147,6 +157,60 @@ public class MarkdownTest
 
    }
 
+   @Test
+   public void testWarmUpFillsContainerPool()
+   {
+      Mockito.when(context.getInitParameter("org.ocpsoft.rewrite.transform.markup.POOL_SIZE")).thenReturn("2");
+
+      JRubyTransformer<Markdown> markdown = Markdown.partialDocument();
+      markdown.warmUp(context);
+
+      ScriptingContainerPool pool = ScriptingContainerPool.getInstance(context, markdown);
+      assertNull(pool.create());
+
+      assertEquals("\n<p>This is <strong>bold</strong>!</p>\n", markdown.transform(event, "This is **bold**!"));
+   }
+
+   @Test
+   public void testContainerPoolsAreKeyedByConfiguration()
+   {
+      ScriptingContainerPool pool = ScriptingContainerPool.getInstance(context, Markdown.partialDocument());
+
+      assertSame(pool, ScriptingContainerPool.getInstance(context, Markdown.fullDocument()));
+      assertNotSame(pool, ScriptingContainerPool.getInstance(context,
+               Markdown.partialDocument().compileMode(CompileMode.OFF)));
+      assertNotSame(pool, ScriptingContainerPool.getInstance(context,
+               Markdown.partialDocument().compatVersion(CompatVersion.RUBY1_9)));
+   }
+
+   @Test
+   public void testConcurrentTransformationsShareContainerPool() throws Exception
+   {
+      Mockito.when(context.getInitParameter("org.ocpsoft.rewrite.transform.markup.POOL_SIZE")).thenReturn("2");
+
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         List<Future<String>> results = new ArrayList<Future<String>>();
+         for (int i = 0; i < 16; i++) {
+            final String markdown = "Item **" + i + "**";
+            results.add(executor.submit(new Callable<String>() {
+               @Override
+               public String call() throws Exception
+               {
+                  return Markdown.partialDocument().transform(event, markdown);
+               }
+            }));
+         }
+
+         for (int i = 0; i < results.size(); i++) {
+            assertEquals("\n<p>Item <strong>" + i + "</strong></p>\n", results.get(i).get());
+         }
+      }
+      finally {
+         executor.shutdown();
+      }
+   }
+
    private static String normalize(String s)
    {
       return s.replaceAll("\n", "").replaceAll("[\t ]+", " ").trim();
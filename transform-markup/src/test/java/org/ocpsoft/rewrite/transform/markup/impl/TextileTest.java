@@ -25,7 +25,6 @@ import java.util.HashMap;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 
-import org.jruby.embed.ScriptingContainer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -46,7 +45,7 @@ public class TextileTest
    {
       context = Mockito.mock(ServletContext.class);
       Mockito.when(context.getAttribute(JRubyTransformer.CONTAINER_STORE_KEY))
-               .thenReturn(new HashMap<Class<?>, ScriptingContainer>());
+               .thenReturn(new HashMap<Object, ScriptingContainerPool>());
 
       event = Mockito.mock(HttpServletRewrite.class);
       Mockito.when(event.getServletContext()).thenReturn(context);
@@ -53,4 +53,9 @@ public class CssMinify extends Minify implements Transformer
 
    }
 
+   @Override
+   public String toString()
+   {
+      return "Minify.css().usingCharset(" + getCharset() + ")";
+   }
 }
@@ -52,4 +52,9 @@ public class JsMinify extends Minify implements Transformer
       writer.flush();
    }
 
+   @Override
+   public String toString()
+   {
+      return "Minify.js().usingCharset(" + getCharset() + ")";
+   }
 }
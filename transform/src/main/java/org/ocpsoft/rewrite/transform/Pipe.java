@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.transform;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * A bounded, in-memory pipe connecting two {@link Transformer} stages running on different threads. Writes block while
+ * the buffer is full, and reads block while it is empty. Once the reading side is closed, further writes are discarded.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+class Pipe
+{
+   private final byte[] buffer;
+   private int position = 0;
+   private int count = 0;
+
+   private boolean writerClosed = false;
+   private boolean readerClosed = false;
+   private Throwable failure;
+
+   private final InputStream inputStream = new InputStream() {
+      @Override
+      public int read() throws IOException
+      {
+         byte[] b = new byte[1];
+         return Pipe.this.read(b, 0, 1) == -1 ? -1 : (b[0] & 0xff);
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException
+      {
+         return Pipe.this.read(b, off, len);
+      }
+
+      @Override
+      public int available()
+      {
+         return Pipe.this.available();
+      }
+
+      @Override
+      public void close()
+      {
+         closeReader();
+      }
+   };
+
+   private final OutputStream outputStream = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException
+      {
+         Pipe.this.write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+         Pipe.this.write(b, off, len);
+      }
+
+      @Override
+      public void close()
+      {
+         closeWriter();
+      }
+   };
+
+   public Pipe(int capacity)
+   {
+      this.buffer = new byte[capacity];
+   }
+
+   /**
+    * Get the {@link InputStream} from which content written to this {@link Pipe} is read.
+    */
+   public InputStream getInputStream()
+   {
+      return inputStream;
+   }
+
+   /**
+    * Get the {@link OutputStream} to which content is written.
+    */
+   public OutputStream getOutputStream()
+   {
+      return outputStream;
+   }
+
+   /**
+    * Close the writing side of this {@link Pipe} because the given {@link Throwable} occurred. Subsequent reads will
+    * fail with an {@link IOException} caused by the given {@link Throwable}.
+    */
+   public synchronized void fail(Throwable cause)
+   {
+      this.failure = cause;
+      this.writerClosed = true;
+      notifyAll();
+   }
+
+   private synchronized int read(byte[] b, int off, int len) throws IOException
+   {
+      if (len == 0)
+         return 0;
+
+      while (count == 0)
+      {
+         if (failure != null)
+            throw new IOException("Preceding transformer in pipeline failed", failure);
+         if (writerClosed)
+            return -1;
+         if (readerClosed)
+            throw new IOException("Pipe closed");
+         await();
+      }
+
+      int read = Math.min(len, Math.min(count, buffer.length - position));
+      System.arraycopy(buffer, position, b, off, read);
+      position = (position + read) % buffer.length;
+      count -= read;
+      notifyAll();
+      return read;
+   }
+
+   private synchronized void write(byte[] b, int off, int len) throws IOException
+   {
+      while (len > 0)
+      {
+         if (writerClosed)
+            throw new IOException("Pipe closed");
+         if (readerClosed)
+            return;
+
+         if (count == buffer.length)
+         {
+            await();
+            continue;
+         }
+
+         int end = (position + count) % buffer.length;
+         int written = Math.min(len, Math.min(buffer.length - count, buffer.length - end));
+         System.arraycopy(b, off, buffer, end, written);
+         count += written;
+         off += written;
+         len -= written;
+         notifyAll();
+      }
+   }
+
+   private synchronized int available()
+   {
+      return count;
+   }
+
+   private synchronized void closeWriter()
+   {
+      writerClosed = true;
+      notifyAll();
+   }
+
+   private synchronized void closeReader()
+   {
+      readerClosed = true;
+      count = 0;
+      notifyAll();
+   }
+
+   private void await() throws InterruptedIOException
+   {
+      try {
+         wait();
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while waiting on transformer pipeline");
+      }
+   }
+}
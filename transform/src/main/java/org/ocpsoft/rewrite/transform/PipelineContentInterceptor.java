@@ -19,42 +19,174 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletContext;
 
 import org.ocpsoft.common.util.Streams;
 import org.ocpsoft.rewrite.servlet.config.response.ResponseContent;
 import org.ocpsoft.rewrite.servlet.config.response.ResponseContentInterceptor;
 import org.ocpsoft.rewrite.servlet.config.response.ResponseContentInterceptorChain;
 import org.ocpsoft.rewrite.servlet.config.response.ResponseStreamWrapper;
+import org.ocpsoft.rewrite.servlet.config.response.StreamingResponseContentInterceptor;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 
 /**
  * This pipeline is responsible to apply the registered {@link Transformer} implementations to the intercepted response
  * in the expected order.
  * <p>
+ * When pipelined, every {@link Transformer} but the last runs concurrently on an executor of the {@link ServletContext},
+ * and stages are connected by bounded {@link Pipe} instances instead of fully buffering each intermediate result. If no
+ * executor threads are available, the pipeline is executed sequentially. The executor is shut down by
+ * {@link TransformContextListener} when the {@link ServletContext} is destroyed.
+ * <p>
+ * When cached, output is stored in the {@link TransformCache}, keyed by a hash of the intercepted content and of each
+ * {@link Transformer} class, version, and {@link Object#toString()} description, and sent with a matching
+ * <code>ETag</code> header.
+ * <p>
  * TODO An alternate implementation should probably be provided that uses a {@link ResponseStreamWrapper}.
  * {@link Transformer} implementations would then need to select between stream wrapping or content interception.
  * 
  * @author Christian Kaltepoth
  */
-class PipelineContentInterceptor implements ResponseContentInterceptor
+class PipelineContentInterceptor implements StreamingResponseContentInterceptor
 {
+   private static final int PIPE_SIZE = 64 * 1024;
+
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+
+   private static final String INSTANCE_ID = UUID.randomUUID().toString();
+
+   private static final Semaphore stageThreads = new Semaphore(Math.max(4, Runtime.getRuntime()
+            .availableProcessors() * 2));
+
+   private static final String EXECUTOR_KEY = PipelineContentInterceptor.class.getName() + "_EXECUTOR";
+
+   private static final String SHUTDOWN_KEY = PipelineContentInterceptor.class.getName() + "_SHUTDOWN";
 
    private List<Transformer> pipeline = new ArrayList<Transformer>();
 
+   private boolean pipelined = false;
+
+   private boolean cached = false;
+
+   /**
+    * Get the executor running pipeline stages for the given {@link ServletContext}, creating it on first access, or
+    * <code>null</code> if it has been shut down.
+    */
+   static ExecutorService getExecutor(ServletContext context)
+   {
+      ExecutorService executor = (ExecutorService) context.getAttribute(EXECUTOR_KEY);
+      if (executor == null)
+      {
+         synchronized (context)
+         {
+            executor = (ExecutorService) context.getAttribute(EXECUTOR_KEY);
+            if (executor == null && context.getAttribute(SHUTDOWN_KEY) == null)
+            {
+               executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                  private final AtomicInteger count = new AtomicInteger();
+
+                  @Override
+                  public Thread newThread(Runnable runnable)
+                  {
+                     Thread thread = new Thread(runnable, "rewrite-transform-pipeline-" + count.incrementAndGet());
+                     thread.setDaemon(true);
+                     return thread;
+                  }
+               });
+               context.setAttribute(EXECUTOR_KEY, executor);
+            }
+         }
+      }
+      return executor;
+   }
+
+   /**
+    * Shut down the executor running pipeline stages for the given {@link ServletContext}, once the stages already
+    * running are done. Pipelines of the {@link ServletContext} are executed sequentially afterwards.
+    */
+   static void shutdown(ServletContext context)
+   {
+      ExecutorService executor;
+      synchronized (context)
+      {
+         executor = (ExecutorService) context.getAttribute(EXECUTOR_KEY);
+         context.removeAttribute(EXECUTOR_KEY);
+         context.setAttribute(SHUTDOWN_KEY, Boolean.TRUE);
+      }
+
+      if (executor != null)
+         executor.shutdown();
+   }
+
    public void add(Transformer transformer)
    {
       pipeline.add(transformer);
    }
 
+   public void setPipelined(boolean pipelined)
+   {
+      this.pipelined = pipelined;
+   }
+
+   public void setCached(boolean cached)
+   {
+      this.cached = cached;
+   }
+
+   @Override
+   public boolean isBufferingRequired(HttpServletRewrite event)
+   {
+      return false;
+   }
+
+   @Override
+   public OutputStream intercept(final HttpServletRewrite event, final OutputStream output)
+   {
+      /*
+       * Transformers consume a complete InputStream, so collect the response here, but write the result directly.
+       */
+      return new ByteArrayOutputStream() {
+         private boolean closed = false;
+
+         @Override
+         public void close() throws IOException
+         {
+            if (!closed)
+            {
+               closed = true;
+               transform(event, buf, count, output);
+               output.close();
+            }
+         }
+      };
+   }
+
    @Override
    public void intercept(HttpServletRewrite event, ResponseContent buffer, ResponseContentInterceptorChain chain)
    {
       try {
+         byte[] contents = buffer.getContents();
          ByteArrayOutputStream output = new ByteArrayOutputStream();
-         transform(event, new ByteArrayInputStream(buffer.getContents()), output);
+         transform(event, contents, contents.length, output);
          buffer.setContents(output.toByteArray());
          chain.proceed();
       }
@@ -63,8 +195,101 @@ class PipelineContentInterceptor implements ResponseContentInterceptor
       }
    }
 
+   private void transform(HttpServletRewrite event, byte[] source, int length, OutputStream output)
+            throws IOException
+   {
+      /*
+       * Empty content is never cached, since it is also produced by HEAD requests and 304 responses.
+       */
+      if (!cached || length == 0) {
+         transform(event, new ByteArrayInputStream(source, 0, length), output);
+         return;
+      }
+
+      String key = getCacheKey(source, length);
+      String etag = "\"" + key + "\"";
+      event.getResponse().setHeader("ETag", etag);
+      if (isMatch(event.getRequest().getHeader("If-None-Match"), etag)) {
+         event.getResponse().setStatus(304);
+         return;
+      }
+
+      TransformCache cache = TransformCache.getInstance(event.getServletContext());
+      ByteBuffer result = cache.get(key);
+      if (result == null) {
+         ByteArrayOutputStream transformed = new ByteArrayOutputStream();
+         transform(event, new ByteArrayInputStream(source, 0, length), transformed);
+         byte[] contents = transformed.toByteArray();
+         cache.put(key, contents);
+         output.write(contents);
+      }
+      else if (result.hasArray()) {
+         output.write(result.array(), result.arrayOffset() + result.position(), result.remaining());
+      }
+      else {
+         Channels.newChannel(output).write(result);
+      }
+   }
+
+   private String getCacheKey(byte[] source, int length)
+   {
+      try {
+         MessageDigest digest = MessageDigest.getInstance("SHA-256");
+         for (Transformer transformer : pipeline) {
+            digest.update(transformer.getClass().getName().getBytes(UTF8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(transformer.getClass().getPackage() == null ? null
+                     : transformer.getClass().getPackage().getImplementationVersion()).getBytes(UTF8));
+            digest.update((byte) 0);
+            digest.update(describe(transformer).getBytes(UTF8));
+            digest.update((byte) 0);
+         }
+         digest.update(source, 0, length);
+
+         StringBuilder result = new StringBuilder();
+         for (byte b : digest.digest()) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+         }
+         return result.toString();
+      }
+      catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+      }
+   }
+
+   /**
+    * Describe the configuration of the given {@link Transformer}. If it does not override {@link Object#toString()},
+    * its identity in this JVM is used instead, so its output is only cached for the lifetime of the instance.
+    */
+   private static String describe(Transformer transformer)
+   {
+      try {
+         if (!Object.class.equals(transformer.getClass().getMethod("toString").getDeclaringClass()))
+            return transformer.toString();
+      }
+      catch (NoSuchMethodException e) {
+         // not possible, every class has toString()
+      }
+      return INSTANCE_ID + "@" + Integer.toHexString(System.identityHashCode(transformer));
+   }
+
+   private static boolean isMatch(String ifNoneMatch, String etag)
+   {
+      if (ifNoneMatch != null) {
+         for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/"))
+               tag = tag.substring(2);
+            if (tag.equals(etag) || tag.equals("*"))
+               return true;
+         }
+      }
+      return false;
+   }
+
    public void transform(HttpServletRewrite event, InputStream input, OutputStream output) throws IOException
    {
+      ExecutorService executor = pipelined && pipeline.size() > 1 ? getExecutor(event.getServletContext()) : null;
 
       // just do a copy if no transformers have been added
       if (pipeline.isEmpty()) {
@@ -76,6 +301,16 @@ class PipelineContentInterceptor implements ResponseContentInterceptor
          pipeline.get(0).transform(event, input, output);
       }
 
+      // connect concurrent transformers with pipes, if enough threads are available
+      else if (executor != null && stageThreads.tryAcquire(pipeline.size() - 1)) {
+         try {
+            transformPipelined(event, executor, input, output);
+         }
+         finally {
+            stageThreads.release(pipeline.size() - 1);
+         }
+      }
+
       // multiple transformers
       else {
 
@@ -109,6 +344,113 @@ class PipelineContentInterceptor implements ResponseContentInterceptor
       }
    }
 
+   private void transformPipelined(final HttpServletRewrite event, final ExecutorService executor,
+            final InputStream input, final OutputStream output) throws IOException
+   {
+      List<Future<Void>> stages = new ArrayList<Future<Void>>();
+      Throwable failure = null;
+
+      InputStream in = input;
+      try {
+         for (int i = 0; i < pipeline.size() - 1; i++) {
+            Pipe pipe = new Pipe(PIPE_SIZE);
+            stages.add(executor.submit(new Stage(event, pipeline.get(i), in, in != input, pipe)));
+            in = pipe.getInputStream();
+         }
+
+         pipeline.get(pipeline.size() - 1).transform(event, in, output);
+      }
+      catch (Throwable t) {
+         failure = t;
+      }
+      finally {
+         /*
+          * Release any stage still writing, then wait for all stages to finish.
+          */
+         if (in != input)
+            in.close();
+      }
+
+      /*
+       * Later stages fail when an earlier stage fails, so report the failure of the earliest stage.
+       */
+      boolean interrupted = false;
+      for (int i = stages.size() - 1; i >= 0; i--) {
+         while (true) {
+            try {
+               stages.get(i).get();
+               break;
+            }
+            catch (ExecutionException e) {
+               failure = e.getCause();
+               break;
+            }
+            catch (InterruptedException e) {
+               interrupted = true;
+            }
+         }
+      }
+
+      if (interrupted) {
+         Thread.currentThread().interrupt();
+         if (failure == null)
+            failure = new InterruptedIOException("Interrupted while waiting on transformer pipeline");
+      }
+
+      if (failure instanceof IOException)
+         throw (IOException) failure;
+      if (failure instanceof RuntimeException)
+         throw (RuntimeException) failure;
+      if (failure instanceof Error)
+         throw (Error) failure;
+      if (failure != null)
+         throw new IOException(failure);
+   }
+
+   /**
+    * Runs a single {@link Transformer}, writing its result to the next stage of the pipeline.
+    */
+   private static class Stage implements Callable<Void>
+   {
+      private final HttpServletRewrite event;
+      private final Transformer transformer;
+      private final InputStream input;
+      private final boolean closeInput;
+      private final Pipe output;
+
+      public Stage(HttpServletRewrite event, Transformer transformer, InputStream input, boolean closeInput,
+               Pipe output)
+      {
+         this.event = event;
+         this.transformer = transformer;
+         this.input = input;
+         this.closeInput = closeInput;
+         this.output = output;
+      }
+
+      @Override
+      public Void call() throws Exception
+      {
+         try {
+            transformer.transform(event, input, output.getOutputStream());
+            output.getOutputStream().close();
+            return null;
+         }
+         catch (Exception e) {
+            output.fail(e);
+            throw e;
+         }
+         catch (Error e) {
+            output.fail(e);
+            throw e;
+         }
+         finally {
+            if (closeInput)
+               input.close();
+         }
+      }
+   }
+
    @Override
    public String toString()
    {
@@ -56,6 +56,33 @@ public class Transform extends HttpOperation
       return this;
    }
 
+   /**
+    * Execute the {@link Transformer} pipeline concurrently, connecting each step to the next with a bounded buffer
+    * instead of fully buffering every intermediate result. Has no effect if fewer than two {@link Transformer}
+    * instances have been added.
+    */
+   public Transform pipelined()
+   {
+      pipeline.setPipelined(true);
+      return this;
+   }
+
+   /**
+    * Cache the output of the {@link Transformer} pipeline, keyed by a hash of the {@link HttpServletResponse} content
+    * and the configured {@link Transformer} instances, and send it with a matching <code>ETag</code> header. Requests
+    * with a matching <code>If-None-Match</code> header receive <code>304 Not Modified</code>. Only use this if the
+    * output of every {@link Transformer} depends on nothing but its input. Configurable {@link Transformer} instances
+    * should describe their configuration in {@link Object#toString()} for output to be cached across restarts.
+    * <p>
+    * The cache size and directory are configured by the <code>org.ocpsoft.rewrite.transform.CACHE_SIZE</code> and
+    * <code>org.ocpsoft.rewrite.transform.CACHE_DIRECTORY</code> servlet context init parameters.
+    */
+   public Transform cached()
+   {
+      pipeline.setCached(true);
+      return this;
+   }
+
    @Override
    public void performHttp(HttpServletRewrite event, EvaluationContext context)
    {
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.transform;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.logging.Logger;
+
+/**
+ * Content-addressed cache of {@link Transformer} pipeline output. Entries are held in an in-heap tier, and are written
+ * through to an optional on-disk tier. Each tier evicts its least recently used entries once the total size of its
+ * cached output exceeds its capacity. Entries found on disk are promoted to the in-heap tier; entries too large for
+ * the in-heap tier are read via memory-mapped files. Entries are never invalidated, since a changed source or pipeline
+ * yields a different key; the on-disk tier may be cleared at any time.
+ * <p>
+ * The in-heap tier holds {@value #DEFAULT_SIZE} bytes by default, and the on-disk tier {@value #DEFAULT_DISK_SIZE}
+ * bytes. The on-disk tier is stored in the servlet container's temporary directory by default, and is disabled if the
+ * configured directory is empty. To change any of these, add the following servlet context init parameters to
+ * <code>web.xml</code>:
+ * 
+ * <pre>
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.transform.CACHE_SIZE&lt;/param-name&gt;
+ *   &lt;param-value&gt;33554432&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.transform.CACHE_DISK_SIZE&lt;/param-name&gt;
+ *   &lt;param-value&gt;268435456&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * &lt;context-param&gt;
+ *   &lt;param-name&gt;org.ocpsoft.rewrite.transform.CACHE_DIRECTORY&lt;/param-name&gt;
+ *   &lt;param-value&gt;/var/cache/rewrite-transform&lt;/param-value&gt;
+ * &lt;/context-param&gt;
+ * </pre>
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+class TransformCache
+{
+   private static final Logger log = Logger.getLogger(TransformCache.class);
+
+   private static final String CACHE_SIZE = "org.ocpsoft.rewrite.transform.CACHE_SIZE";
+   private static final String CACHE_DISK_SIZE = "org.ocpsoft.rewrite.transform.CACHE_DISK_SIZE";
+   private static final String CACHE_DIRECTORY = "org.ocpsoft.rewrite.transform.CACHE_DIRECTORY";
+   private static final String TEMP_DIRECTORY = "javax.servlet.context.tempdir";
+   private static final String TEMP_SUFFIX = ".tmp";
+   private static final long DEFAULT_SIZE = 32 * 1024 * 1024;
+   private static final long DEFAULT_DISK_SIZE = 256 * 1024 * 1024;
+
+   private final long capacity;
+   private final long diskCapacity;
+   private final File directory;
+
+   private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+   private long size = 0;
+
+   /*
+    * Lengths of the files in the on-disk tier, in access order; guarded by itself, and loaded on first access.
+    */
+   private final LinkedHashMap<String, Long> files = new LinkedHashMap<String, Long>(16, 0.75f, true);
+   private long diskSize = -1;
+
+   /**
+    * Create a {@link TransformCache} holding up to the given number of bytes in heap, and writing through to the given
+    * directory, or to no directory if <code>null</code>, holding up to {@value #DEFAULT_DISK_SIZE} bytes on disk.
+    */
+   public TransformCache(long capacity, File directory)
+   {
+      this(capacity, directory, DEFAULT_DISK_SIZE);
+   }
+
+   /**
+    * Create a {@link TransformCache} holding up to the given number of bytes in heap, and writing through to the given
+    * directory, or to no directory if <code>null</code>, holding up to the given number of bytes on disk.
+    */
+   public TransformCache(long capacity, File directory, long diskCapacity)
+   {
+      this.capacity = capacity;
+      this.directory = directory;
+      this.diskCapacity = diskCapacity;
+   }
+
+   /**
+    * Get the {@link TransformCache} for the given {@link ServletContext}, creating it on first access.
+    */
+   public static TransformCache getInstance(ServletContext context)
+   {
+      synchronized (TransformCache.class)
+      {
+         TransformCache cache = (TransformCache) context.getAttribute(TransformCache.class.getName());
+         if (cache == null)
+         {
+            cache = new TransformCache(getSize(context, CACHE_SIZE, DEFAULT_SIZE), getDirectory(context),
+                     getSize(context, CACHE_DISK_SIZE, DEFAULT_DISK_SIZE));
+            context.setAttribute(TransformCache.class.getName(), cache);
+         }
+         return cache;
+      }
+   }
+
+   /**
+    * Get the cached output for the given key, or <code>null</code> if no output has been cached.
+    */
+   public ByteBuffer get(String key)
+   {
+      synchronized (this)
+      {
+         byte[] contents = entries.get(key);
+         if (contents != null)
+            return ByteBuffer.wrap(contents);
+      }
+
+      if (directory != null)
+      {
+         File file = new File(directory, key);
+         if (file.isFile())
+         {
+            try {
+               RandomAccessFile input = new RandomAccessFile(file, "r");
+               try {
+                  FileChannel channel = input.getChannel();
+                  long length = channel.size();
+                  touch(key, length);
+
+                  /*
+                   * Promote the entry, so that it is not read from disk again while it stays in heap.
+                   */
+                  if (length <= capacity)
+                  {
+                     byte[] contents = new byte[(int) length];
+                     input.readFully(contents);
+                     putInHeap(key, contents);
+                     return ByteBuffer.wrap(contents);
+                  }
+                  return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+               }
+               finally {
+                  input.close();
+               }
+            }
+            catch (IOException e) {
+               log.warn("Could not read cached transform output [" + file + "]", e);
+            }
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Cache the given output for the given key.
+    */
+   public void put(String key, byte[] contents)
+   {
+      putInHeap(key, contents);
+
+      if (directory != null && contents.length <= diskCapacity)
+      {
+         File file = new File(directory, key);
+         if (!file.isFile())
+         {
+            try {
+               /*
+                * Write to a temporary file first, so that concurrent readers never map a partial entry.
+                */
+               directory.mkdirs();
+               File temp = File.createTempFile(key, TEMP_SUFFIX, directory);
+               OutputStream output = new FileOutputStream(temp);
+               try {
+                  output.write(contents);
+               }
+               finally {
+                  output.close();
+               }
+               if (temp.renameTo(file))
+                  touch(key, contents.length);
+               else
+                  temp.delete();
+            }
+            catch (IOException e) {
+               log.warn("Could not write cached transform output [" + file + "]", e);
+            }
+         }
+      }
+   }
+
+   /**
+    * Get the number of bytes currently cached in heap.
+    */
+   public synchronized long size()
+   {
+      return size;
+   }
+
+   /**
+    * Get the number of bytes currently cached on disk.
+    */
+   public long diskSize()
+   {
+      synchronized (files)
+      {
+         loadFiles();
+         return diskSize;
+      }
+   }
+
+   private synchronized void putInHeap(String key, byte[] contents)
+   {
+      if (contents.length <= capacity)
+      {
+         byte[] previous = entries.put(key, contents);
+         size += contents.length - (previous == null ? 0 : previous.length);
+
+         Iterator<Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+         while (size > capacity && iterator.hasNext()) {
+            size -= iterator.next().getValue().length;
+            iterator.remove();
+         }
+      }
+   }
+
+   /**
+    * Record an access to the given on-disk entry, and delete the least recently used entries while the on-disk tier
+    * exceeds its capacity.
+    */
+   private void touch(String key, long length)
+   {
+      synchronized (files)
+      {
+         loadFiles();
+         Long previous = files.put(key, length);
+         diskSize += length - (previous == null ? 0 : previous);
+
+         Iterator<Entry<String, Long>> iterator = files.entrySet().iterator();
+         while (diskSize > diskCapacity && iterator.hasNext()) {
+            Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(key))
+               continue;
+            File file = new File(directory, eldest.getKey());
+            if (file.delete() || !file.exists()) {
+               diskSize -= eldest.getValue();
+               iterator.remove();
+            }
+         }
+      }
+   }
+
+   /**
+    * Index the entries already on disk, least recently written first, since access times do not survive a restart.
+    */
+   private void loadFiles()
+   {
+      if (diskSize >= 0)
+         return;
+
+      diskSize = 0;
+      File[] existing = directory == null ? null : directory.listFiles();
+      if (existing == null)
+         return;
+
+      Arrays.sort(existing, new Comparator<File>() {
+         @Override
+         public int compare(File left, File right)
+         {
+            long difference = left.lastModified() - right.lastModified();
+            return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+         }
+      });
+      for (File file : existing) {
+         if (file.isFile() && !file.getName().endsWith(TEMP_SUFFIX)) {
+            files.put(file.getName(), file.length());
+            diskSize += file.length();
+         }
+      }
+   }
+
+   private static long getSize(ServletContext context, String parameter, long defaultSize)
+   {
+      String value = context.getInitParameter(parameter);
+      if (value == null || value.trim().isEmpty())
+         return defaultSize;
+
+      try {
+         return Long.parseLong(value.trim());
+      }
+      catch (NumberFormatException e) {
+         throw new IllegalArgumentException("Invalid value [" + value + "] for servlet context init parameter ["
+                  + parameter + "], must be an integer.", e);
+      }
+   }
+
+   private static File getDirectory(ServletContext context)
+   {
+      String value = context.getInitParameter(CACHE_DIRECTORY);
+      if (value != null)
+         return value.trim().isEmpty() ? null : new File(value.trim());
+
+      Object temp = context.getAttribute(TEMP_DIRECTORY);
+      return temp instanceof File ? new File((File) temp, "rewrite-transform") : null;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "TransformCache [capacity=" + capacity + ", size=" + size() + ", diskCapacity=" + diskCapacity
+               + ", diskSize=" + diskSize() + ", directory=" + directory + "]";
+   }
+}
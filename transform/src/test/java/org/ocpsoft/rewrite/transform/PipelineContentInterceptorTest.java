@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.transform;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ocpsoft.common.util.Streams;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class PipelineContentInterceptorTest
+{
+   private static final Transformer COPY = new Transformer() {
+      @Override
+      public void transform(HttpServletRewrite event, InputStream input, OutputStream output) throws IOException
+      {
+         Streams.copy(input, output);
+      }
+   };
+
+   private final Map<String, Object> attributes = new HashMap<String, Object>();
+   private ServletContext context;
+   private HttpServletRewrite event;
+
+   @Before
+   public void before()
+   {
+      context = Mockito.mock(ServletContext.class);
+      Mockito.when(context.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      Mockito.doAnswer(new Answer<Void>() {
+         @Override
+         public Void answer(InvocationOnMock invocation)
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(context).setAttribute(Mockito.anyString(), Mockito.any());
+      Mockito.doAnswer(new Answer<Void>() {
+         @Override
+         public Void answer(InvocationOnMock invocation)
+         {
+            attributes.remove(invocation.getArguments()[0]);
+            return null;
+         }
+      }).when(context).removeAttribute(Mockito.anyString());
+
+      event = Mockito.mock(HttpServletRewrite.class);
+      Mockito.when(event.getServletContext()).thenReturn(context);
+   }
+
+   @After
+   public void after()
+   {
+      PipelineContentInterceptor.shutdown(context);
+   }
+
+   @Test
+   public void testPipelinedMatchesSequential() throws IOException
+   {
+      assertEquals("THIS IS BAR", transform(false, "this is foo"));
+      assertEquals("THIS IS BAR", transform(true, "this is foo"));
+   }
+
+   @Test
+   public void testPipelinedStreamsLargeContent() throws IOException
+   {
+      byte[] content = new byte[4 * 1024 * 1024];
+      new Random(42).nextBytes(content);
+
+      PipelineContentInterceptor pipeline = new PipelineContentInterceptor();
+      pipeline.add(COPY);
+      pipeline.add(COPY);
+      pipeline.add(COPY);
+      pipeline.setPipelined(true);
+
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      pipeline.transform(event, new ByteArrayInputStream(content), output);
+      assertArrayEquals(content, output.toByteArray());
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void testPipelinedPropagatesStageFailure() throws IOException
+   {
+      PipelineContentInterceptor pipeline = new PipelineContentInterceptor();
+      pipeline.add(new Transformer() {
+         @Override
+         public void transform(HttpServletRewrite event, InputStream input, OutputStream output)
+         {
+            throw new IllegalStateException("stage failed");
+         }
+      });
+      pipeline.add(COPY);
+      pipeline.setPipelined(true);
+
+      pipeline.transform(event, new ByteArrayInputStream(new byte[1024 * 1024]), new ByteArrayOutputStream());
+   }
+
+   @Test
+   public void testRunsSequentiallyOnceShutDown() throws IOException
+   {
+      assertEquals("THIS IS BAR", transform(true, "this is foo"));
+      assertNotNull(PipelineContentInterceptor.getExecutor(context));
+
+      new TransformContextListener().contextDestroyed(new ServletContextEvent(context));
+      assertNull(PipelineContentInterceptor.getExecutor(context));
+      assertEquals("THIS IS BAR", transform(true, "this is foo"));
+   }
+
+   private String transform(boolean pipelined, String input) throws IOException
+   {
+      PipelineContentInterceptor pipeline = new PipelineContentInterceptor();
+      pipeline.add(new FooBarTransformer());
+      pipeline.add(new UppercaseTransformer());
+      pipeline.setPipelined(pipelined);
+
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      pipeline.transform(event, new ByteArrayInputStream(input.getBytes("UTF-8")), output);
+      return output.toString("UTF-8");
+   }
+}
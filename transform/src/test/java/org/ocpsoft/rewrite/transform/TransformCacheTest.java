@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.ocpsoft.common.util.Streams;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class TransformCacheTest
+{
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   @Test
+   public void testHeapTierEvictsLeastRecentlyUsed()
+   {
+      TransformCache cache = new TransformCache(10, null);
+      cache.put("a", new byte[4]);
+      cache.put("b", new byte[4]);
+      cache.get("a");
+      cache.put("c", new byte[4]);
+
+      assertEquals(8, cache.size());
+      assertEquals(4, cache.get("a").remaining());
+      assertNull(cache.get("b"));
+      assertEquals(4, cache.get("c").remaining());
+   }
+
+   @Test
+   public void testDiskTierSurvivesHeapEviction() throws IOException
+   {
+      File directory = folder.newFolder();
+      new TransformCache(0, directory).put("key", "output".getBytes("UTF-8"));
+
+      ByteBuffer result = new TransformCache(0, directory).get("key");
+      byte[] contents = new byte[result.remaining()];
+      result.get(contents);
+      assertEquals("output", new String(contents, "UTF-8"));
+   }
+
+   @Test
+   public void testDiskTierEvictsLeastRecentlyUsed() throws IOException
+   {
+      File directory = folder.newFolder();
+      TransformCache cache = new TransformCache(0, directory, 10);
+      cache.put("aaa", new byte[4]);
+      cache.put("bbb", new byte[4]);
+      cache.get("aaa");
+      cache.put("ccc", new byte[4]);
+
+      assertEquals(8, cache.diskSize());
+      assertTrue(new File(directory, "aaa").isFile());
+      assertFalse(new File(directory, "bbb").exists());
+      assertTrue(new File(directory, "ccc").isFile());
+   }
+
+   @Test
+   public void testDiskHitsArePromotedToHeap() throws IOException
+   {
+      File directory = folder.newFolder();
+      new TransformCache(0, directory).put("key", "output".getBytes("UTF-8"));
+
+      TransformCache cache = new TransformCache(1024, directory);
+      assertEquals(6, cache.get("key").remaining());
+      assertEquals(6, cache.size());
+
+      assertTrue(new File(directory, "key").delete());
+      assertEquals(6, cache.get("key").remaining());
+   }
+
+   @Test
+   public void testCachedPipelineTransformsOnceAndHonorsETag() throws IOException
+   {
+      final AtomicInteger transformations = new AtomicInteger();
+      PipelineContentInterceptor pipeline = new PipelineContentInterceptor();
+      pipeline.add(new Transformer() {
+         @Override
+         public void transform(HttpServletRewrite event, InputStream input, OutputStream output) throws IOException
+         {
+            transformations.incrementAndGet();
+            Streams.copy(input, output);
+         }
+      });
+      pipeline.setCached(true);
+
+      ServletContext context = Mockito.mock(ServletContext.class);
+      Mockito.when(context.getAttribute(TransformCache.class.getName())).thenReturn(new TransformCache(1024, null));
+
+      HttpServletRewrite first = event(context, null);
+      assertEquals("content", intercept(pipeline, first, "content"));
+      assertEquals("content", intercept(pipeline, event(context, null), "content"));
+      assertEquals(1, transformations.get());
+
+      ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+      Mockito.verify(first.getResponse()).setHeader(Mockito.eq("ETag"), etag.capture());
+
+      HttpServletRewrite conditional = event(context, etag.getValue());
+      assertEquals("", intercept(pipeline, conditional, "content"));
+      Mockito.verify(conditional.getResponse()).setStatus(304);
+   }
+
+   private String intercept(PipelineContentInterceptor pipeline, HttpServletRewrite event, String content)
+            throws IOException
+   {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      OutputStream stream = pipeline.intercept(event, output);
+      stream.write(content.getBytes("UTF-8"));
+      stream.close();
+      return output.toString("UTF-8");
+   }
+
+   private HttpServletRewrite event(ServletContext context, String ifNoneMatch)
+   {
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+
+      HttpServletRewrite event = Mockito.mock(HttpServletRewrite.class);
+      Mockito.when(event.getRequest()).thenReturn(request);
+      Mockito.when(event.getResponse()).thenReturn(Mockito.mock(HttpServletResponse.class));
+      Mockito.when(event.getServletContext()).thenReturn(context);
+      return event;
+   }
+}